@@ -6,6 +6,7 @@ plugins {
   application
   id("com.github.johnrengelman.shadow") version "7.0.0"
   id("com.github.sherter.google-java-format") version "0.9"
+  id("me.champeau.jmh") version "0.6.5"
 }
 
 group = "com.example"
@@ -28,6 +29,20 @@ application {
   mainClass.set(launcherClassName)
 }
 
+sourceSets {
+  // end-to-end load test harness, run by the loadTest task
+  create("loadtest") {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+  }
+}
+
+val loadtestImplementation: Configuration by configurations.getting {
+  extendsFrom(configurations.implementation.get())
+}
+
+configurations["loadtestRuntimeOnly"].extendsFrom(configurations.runtimeOnly.get())
+
 dependencies {
   implementation(platform("io.vertx:vertx-stack-depchain:$vertxVersion"))
   implementation("io.vertx:vertx-web")
@@ -37,6 +52,8 @@ dependencies {
   testImplementation("io.vertx:vertx-junit5")
   testImplementation("org.junit.jupiter:junit-jupiter:$junitJupiterVersion")
 //  testImplementation("org.apache.logging.log4j.log4j-slf4j-impl:2.14.1")
+
+  loadtestImplementation("org.hdrhistogram:HdrHistogram:2.1.12")
 }
 
 java {
@@ -44,6 +61,15 @@ java {
   targetCompatibility = JavaVersion.VERSION_11
 }
 
+jmh {
+  // report allocations per operation next to the throughput
+  profilers.add("gc")
+  // ./gradlew jmh -PjmhIncludes=HandlerDispatch runs the matching benchmarks only
+  if (project.hasProperty("jmhIncludes")) {
+    includes.add(project.property("jmhIncludes") as String)
+  }
+}
+
 tasks.withType<ShadowJar> {
   archiveClassifier.set("fat")
   manifest {
@@ -59,10 +85,19 @@ tasks.withType<Test> {
   }
 }
 
-tasks.withType<JavaExec> {
+tasks.named<JavaExec>("run") {
   args = listOf("run", mainVerticleName, "--redeploy=$watchForChange", "--launcher-class=$launcherClassName", "--on-redeploy=$doOnChange")
 }
 
+// ./gradlew loadTest --args="rate=5000 durationSeconds=30", -Dpubsub.* properties configure the service
+tasks.register<JavaExec>("loadTest") {
+  description = "Runs the service against an in-process Redis stand-in under a generated load"
+  group = "verification"
+  classpath = sourceSets["loadtest"].runtimeClasspath
+  mainClass.set("com.morozov.pubsub.loadtest.LoadTest")
+  systemProperties(System.getProperties().filterKeys { it.toString().startsWith("pubsub.") }.mapKeys { it.key.toString() })
+}
+
 tasks.withType<GradleBuild> {
   dependsOn(":googleJavaFormat")
 }
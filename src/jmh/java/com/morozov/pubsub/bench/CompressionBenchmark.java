@@ -0,0 +1,109 @@
+package com.morozov.pubsub.bench;
+
+import com.morozov.pubsub.store.CompressedMessage;
+import com.morozov.pubsub.store.MessageCodec;
+import com.morozov.pubsub.store.MessageCompressor;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the payload compression against the payload size: encoding on publish, decoding on get
+ * and the deflate passthrough. The stored size, i.e. the Redis memory per message, is reported as
+ * the storedBytes result of encode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CompressionBenchmark {
+  private static final long TS = 1620000000000L;
+
+  @Param({"100", "1024", "12800", "131072"})
+  private int payloadSize;
+
+  /** 0 stores the payloads as is */
+  @Param({"0", "1024"})
+  private int minBytes;
+
+  private MessageCompressor compressor;
+  private Buffer messageJson;
+  private Buffer encoded;
+
+  @Setup
+  public void setUp() {
+    compressor =
+        new MessageCompressor(new JsonObject().put("compression.minBytes", minBytes));
+    messageJson = Buffer.buffer("\"" + jsonLikePayload(payloadSize) + "\"");
+    encoded = compressor.encode(messageJson, TS).copy();
+  }
+
+  @Benchmark
+  public int encode(StoredSize storedSize) {
+    storedSize.storedBytes = compressor.encode(messageJson, TS).length();
+    return storedSize.storedBytes;
+  }
+
+  @Benchmark
+  public String decode() throws Exception {
+    return MessageCodec.decode(encoded).getMessage();
+  }
+
+  /** Response body of a client accepting the deflate encoding */
+  @Benchmark
+  public Buffer deflateResponse() throws Exception {
+    final var message = MessageCodec.decode(encoded);
+
+    if (message instanceof CompressedMessage) {
+      return ((CompressedMessage) message).toDeflateResponse();
+    }
+
+    return Buffer.buffer(message.getMessage());
+  }
+
+  /** Size of an encoded message, reported next to the encode throughput */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class StoredSize {
+    public int storedBytes;
+  }
+
+  /**
+   * Repeated records with random values, compressing about as well as typical JSON payloads
+   *
+   * @param size payload size
+   * @return payload
+   */
+  private static String jsonLikePayload(int size) {
+    final var random = new Random(42);
+    final var payload = new StringBuilder(size + 64);
+
+    while (payload.length() < size) {
+      payload
+          .append("{'id':")
+          .append(random.nextInt(1000000))
+          .append(",'price':")
+          .append(random.nextInt(100000) / 100.0)
+          .append(",'side':'")
+          .append(random.nextBoolean() ? "buy" : "sell")
+          .append("'}");
+    }
+
+    return payload.substring(0, size);
+  }
+}
@@ -0,0 +1,160 @@
+package com.morozov.pubsub.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.morozov.pubsub.ServiceVerticle;
+import com.morozov.pubsub.cache.PublisherCache;
+import com.morozov.pubsub.cache.SubscriberCache;
+import com.morozov.pubsub.constants.ConfigConstants;
+import com.morozov.pubsub.model.dto.Message;
+import com.morozov.pubsub.model.dto.SubscriberInfo;
+import com.morozov.pubsub.model.req.GetMessageRequest;
+import com.morozov.pubsub.model.req.PublishMessageRequest;
+import com.morozov.pubsub.redis.SharedRedisClient;
+import com.morozov.pubsub.store.MessageCodec;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import io.vertx.redis.client.Command;
+import io.vertx.redis.client.impl.types.NumberType;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full handler dispatch: an HTTP request over loopback through the Router, the body handler, the
+ * handler and the message store, down to the Redis client, which is a {@link StubRedis} answering
+ * right away. The publisher and the subscriber are in the node caches, like on a warm node, so
+ * every operation costs the same.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class HandlerDispatchBenchmark {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final String TOPIC = "bench-topic";
+  private static final String PUB_ID = "d92714b1-93d5-422c-84b4-d41a671eb049";
+  private static final String SUB_ID = "5a3f5a2e-8c1c-4bb3-a4ba-1b7d7b1c1c25";
+  private static final long TS = 1620000000000L;
+
+  @Param({"100", "1024", "16384", "131072"})
+  private int payloadSize;
+
+  private Vertx vertx;
+  private HttpClient client;
+  private Buffer publishBody;
+  private Buffer getBody;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    final var random = new Random(42);
+    final var payload = new StringBuilder(payloadSize);
+
+    for (int i = 0; i < payloadSize; i++) {
+      payload.append((char) ('a' + random.nextInt(26)));
+    }
+
+    final int port;
+
+    try (var socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+
+    // no cache TTL: a cache miss would get a canned reply of the wrong key
+    final var config =
+        new JsonObject()
+            .put(ConfigConstants.HTTP_PORT, port)
+            .put(ConfigConstants.PUBLISHER_CACHE_TTL_MS, 0)
+            .put(ConfigConstants.SUBSCRIBER_CACHE_TTL_MS, 0)
+            .put(ConfigConstants.LONG_POLL_CROSS_NODE, false);
+
+    final var redis = new StubRedis();
+    redis.reply(Command.EVALSHA, StubRedis.multi(NumberType.create(1L), NumberType.create(0L)));
+    redis.reply(
+        Command.LRANGE,
+        StubRedis.multi(List.of(MessageCodec.encode(new Message(payload.toString(), TS + 1)))));
+
+    vertx = Vertx.vertx();
+
+    final var redisClient = SharedRedisClient.share(vertx, redis);
+    PublisherCache.get(vertx, config).registered(redisClient.api(), TOPIC, PUB_ID, 1, null);
+    SubscriberCache.get(vertx, config).subscribed(new SubscriberInfo(SUB_ID, TOPIC, TS));
+
+    vertx
+        .deployVerticle(new ServiceVerticle(), new DeploymentOptions().setConfig(config))
+        .toCompletionStage()
+        .toCompletableFuture()
+        .get();
+
+    client = vertx.createHttpClient(new HttpClientOptions().setDefaultPort(port));
+    publishBody =
+        Buffer.buffer(
+            MAPPER.writeValueAsBytes(new PublishMessageRequest(PUB_ID, payload.toString())));
+    getBody = Buffer.buffer(MAPPER.writeValueAsBytes(new GetMessageRequest(SUB_ID)));
+
+    // measuring error responses would be meaningless
+    checkOk(HttpMethod.POST, "/message/publish/" + TOPIC, publishBody);
+    checkOk(HttpMethod.GET, "/message/get/" + TOPIC, getBody);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    vertx.close().toCompletionStage().toCompletableFuture().get();
+  }
+
+  @Benchmark
+  public Buffer publish() throws Exception {
+    return send(HttpMethod.POST, "/message/publish/" + TOPIC, publishBody);
+  }
+
+  @Benchmark
+  public Buffer get() throws Exception {
+    return send(HttpMethod.GET, "/message/get/" + TOPIC, getBody);
+  }
+
+  private void checkOk(HttpMethod method, String uri, Buffer body) throws Exception {
+    final var statusCode =
+        client
+            .request(method, uri)
+            .compose(request -> request.send(body))
+            .map(HttpClientResponse::statusCode)
+            .toCompletionStage()
+            .toCompletableFuture()
+            .get();
+
+    if (statusCode != 200) {
+      throw new IllegalStateException(method + " " + uri + " answered " + statusCode);
+    }
+  }
+
+  private Buffer send(HttpMethod method, String uri, Buffer body) throws Exception {
+    return client
+        .request(method, uri)
+        .compose(request -> request.send(body))
+        .compose(HttpClientResponse::body)
+        .toCompletionStage()
+        .toCompletableFuture()
+        .get();
+  }
+}
@@ -0,0 +1,74 @@
+package com.morozov.pubsub.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.morozov.pubsub.model.dto.Message;
+import com.morozov.pubsub.model.req.PublishMessageRequest;
+import com.morozov.pubsub.model.req.RawPublishMessageRequest;
+import com.morozov.pubsub.store.MessageCodec;
+import io.vertx.core.buffer.Buffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Publish path from the request body to the Redis argument: the String based path decoding the
+ * whole body and encoding the stored message again, against the raw path slicing the payload out
+ * of the body. Run with the gc profiler to compare gc.alloc.rate.norm, the bytes allocated per
+ * publish. Both paths end with the bytes the Redis client writes to the socket.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PublishPathBenchmark {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final long TS = 1620000000000L;
+
+  @Param({"100", "12800", "131072"})
+  private int payloadSize;
+
+  private Buffer body;
+
+  @Setup
+  public void setUp() throws Exception {
+    final var random = new Random(42);
+    final var payload = new StringBuilder(payloadSize);
+
+    for (int i = 0; i < payloadSize; i++) {
+      payload.append((char) ('a' + random.nextInt(26)));
+    }
+
+    body =
+        Buffer.buffer(
+            MAPPER.writeValueAsBytes(
+                new PublishMessageRequest(
+                    "d92714b1-93d5-422c-84b4-d41a671eb049", payload.toString())));
+  }
+
+  /** Body to String, to a request, to a message, to a JSON String, to the Redis argument */
+  @Benchmark
+  public byte[] stringPublish() throws Exception {
+    final var request = MAPPER.readValue(body.toString(), PublishMessageRequest.class);
+    final var messageJson = MAPPER.writeValueAsString(new Message(request.getMessage(), TS));
+    return Buffer.buffer(messageJson).getBytes();
+  }
+
+  /** Body parsed as a stream, the payload slice wrapped into the stored message */
+  @Benchmark
+  public byte[] rawPublish() throws Exception {
+    final var request = RawPublishMessageRequest.parse(body);
+    return MessageCodec.encode(request.getMessageJson(), TS).getBytes();
+  }
+}
@@ -0,0 +1,95 @@
+package com.morozov.pubsub.bench;
+
+import com.morozov.pubsub.ServiceUtils;
+import com.morozov.pubsub.model.dto.Message;
+import com.morozov.pubsub.model.dto.SubscriberInfo;
+import com.morozov.pubsub.model.req.PublishMessageRequest;
+import com.morozov.pubsub.store.MessageCodec;
+import io.vertx.core.buffer.Buffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JSON and binary serialization of the models on the request path: the ServiceUtils JSON helpers
+ * every handler goes through, the subscriber info cached and stored in Redis, and the message
+ * envelope of every publish and get. Payloads from 100 B up to the 128 KB body limit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SerializationBenchmark {
+  private static final long TS = 1620000000000L;
+  private static final String PUB_ID = "d92714b1-93d5-422c-84b4-d41a671eb049";
+
+  @Param({"100", "1024", "16384", "131072"})
+  private int payloadSize;
+
+  private PublishMessageRequest request;
+  private String requestJson;
+  private Message message;
+  private Buffer encodedMessage;
+  private SubscriberInfo subInfo;
+  private String subInfoJson;
+
+  @Setup
+  public void setUp() {
+    final var random = new Random(42);
+    final var payload = new StringBuilder(payloadSize);
+
+    for (int i = 0; i < payloadSize; i++) {
+      payload.append((char) ('a' + random.nextInt(26)));
+    }
+
+    request = new PublishMessageRequest(PUB_ID, payload.toString());
+    // the helpers only use the routing context to answer errors
+    requestJson = ServiceUtils.toJsonString(request, null);
+    message = new Message(payload.toString(), TS);
+    encodedMessage = MessageCodec.encode(message);
+    subInfo = new SubscriberInfo("5a3f5a2e-8c1c-4bb3-a4ba-1b7d7b1c1c25", "test-topic", TS);
+    subInfoJson = ServiceUtils.toJsonString(subInfo, null);
+  }
+
+  @Benchmark
+  public String requestToJson() {
+    return ServiceUtils.toJsonString(request, null);
+  }
+
+  @Benchmark
+  public PublishMessageRequest requestFromJson() {
+    return ServiceUtils.fromString(requestJson, PublishMessageRequest.class, null);
+  }
+
+  @Benchmark
+  public String subscriberInfoToJson() {
+    return ServiceUtils.toJsonString(subInfo, null);
+  }
+
+  @Benchmark
+  public SubscriberInfo subscriberInfoFromJson() {
+    return ServiceUtils.fromString(subInfoJson, SubscriberInfo.class, null);
+  }
+
+  @Benchmark
+  public Buffer messageEncode() {
+    return MessageCodec.encode(message);
+  }
+
+  @Benchmark
+  public Message messageDecode() throws Exception {
+    return MessageCodec.decode(encodedMessage);
+  }
+}
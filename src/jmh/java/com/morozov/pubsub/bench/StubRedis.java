@@ -0,0 +1,113 @@
+package com.morozov.pubsub.bench;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.redis.client.Command;
+import io.vertx.redis.client.Redis;
+import io.vertx.redis.client.RedisConnection;
+import io.vertx.redis.client.Request;
+import io.vertx.redis.client.Response;
+import io.vertx.redis.client.impl.types.BulkType;
+import io.vertx.redis.client.impl.types.MultiType;
+import io.vertx.redis.client.impl.types.NumberType;
+import io.vertx.redis.client.impl.types.SimpleStringType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Redis stand-in answering every command with a canned reply by command, so a benchmark measures
+ * the service and not the network or Redis. Keys are not looked at: the benchmarks warm the node
+ * caches up so the replies only have to be right for the commands on the measured path. Pub/sub
+ * connections are never established.
+ */
+class StubRedis implements Redis {
+  private final Map<Command, Response> replies = new ConcurrentHashMap<>();
+
+  StubRedis() {
+    reply(Command.PING, SimpleStringType.create("PONG"));
+    reply(Command.SET, SimpleStringType.OK);
+    reply(Command.DEL, NumberType.create(1L));
+    reply(Command.SADD, NumberType.create(1L));
+    reply(Command.PUBLISH, NumberType.create(0L));
+    reply(Command.SCRIPT, BulkType.create(Buffer.buffer("0")));
+    reply(Command.SSCAN, multi(BulkType.create(Buffer.buffer("0")), multi()));
+  }
+
+  /**
+   * Set the reply of a command, commands without a reply get a null one
+   *
+   * @param command command
+   * @param reply reply
+   */
+  void reply(Command command, Response reply) {
+    replies.put(command, reply);
+  }
+
+  static Response multi(Response... responses) {
+    final var multi = MultiType.create(responses.length, false);
+
+    for (var response : responses) {
+      multi.add(response);
+    }
+
+    return multi;
+  }
+
+  static Response multi(List<Buffer> bulks) {
+    final var responses = new ArrayList<Response>(bulks.size());
+
+    for (var bulk : bulks) {
+      responses.add(BulkType.create(bulk));
+    }
+
+    return multi(responses.toArray(new Response[0]));
+  }
+
+  @Override
+  public Redis connect(Handler<AsyncResult<RedisConnection>> handler) {
+    connect().onComplete(handler);
+    return this;
+  }
+
+  /** Never completes: nothing can subscribe to a stub */
+  @Override
+  public Future<RedisConnection> connect() {
+    return Promise.<RedisConnection>promise().future();
+  }
+
+  @Override
+  public void close() {}
+
+  @Override
+  public Redis send(Request command, Handler<AsyncResult<Response>> onSend) {
+    send(command).onComplete(onSend);
+    return this;
+  }
+
+  @Override
+  public Future<Response> send(Request command) {
+    return Future.succeededFuture(replies.get(command.command()));
+  }
+
+  @Override
+  public Redis batch(List<Request> commands, Handler<AsyncResult<List<Response>>> onSend) {
+    batch(commands).onComplete(onSend);
+    return this;
+  }
+
+  @Override
+  public Future<List<Response>> batch(List<Request> commands) {
+    final var responses = new ArrayList<Response>(commands.size());
+
+    for (var command : commands) {
+      responses.add(replies.get(command.command()));
+    }
+
+    return Future.succeededFuture(responses);
+  }
+}
@@ -0,0 +1,357 @@
+package com.morozov.pubsub.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.morozov.pubsub.constants.EndPoints;
+import com.morozov.pubsub.model.req.GetMessageRequest;
+import com.morozov.pubsub.model.req.PublishMessageRequest;
+import com.morozov.pubsub.model.res.RegisterPublisherResponse;
+import com.morozov.pubsub.model.res.SubscribeResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Drives the workload against the service over HTTP: registers the topics and subscribes to them,
+ * then sends requests on an open-loop schedule at the target rate. A request's latency is counted
+ * from the time it was scheduled for, not from when it was sent, so a stalled service shows up in
+ * the percentiles instead of just slowing the load down (coordinated omission).
+ */
+class LoadDriver extends AbstractVerticle {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final String TOPIC_PREFIX = "load-topic-";
+  private static final long TICK_MS = 1;
+  private static final long HEALTH_RETRY_MS = 100;
+  private static final int HEALTH_MAX_RETRIES = 100;
+  private static final long DRAIN_TIMEOUT_MS = 30000;
+  private static final int SIGNIFICANT_DIGITS = 3;
+
+  enum Operation {
+    PUBLISH(HttpMethod.POST, EndPoints.MESSAGE_PUBLISH),
+    GET(HttpMethod.GET, EndPoints.MESSAGE_GET),
+    ACK(HttpMethod.DELETE, EndPoints.MESSAGE_ACK);
+
+    private final HttpMethod method;
+    private final EndPoints endPoint;
+
+    Operation(HttpMethod method, EndPoints endPoint) {
+      this.method = method;
+      this.endPoint = endPoint;
+    }
+  }
+
+  private final LoadTestOptions options;
+  private final int port;
+  private final Random random = new Random(42);
+  private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+  private final List<String> topics = new ArrayList<>();
+  private final List<Buffer> publishBodies = new ArrayList<>();
+  private final List<String> subscriberTopics = new ArrayList<>();
+  private final List<Buffer> subscriberBodies = new ArrayList<>();
+  private final Promise<Void> finished = Promise.promise();
+  private HttpClient client;
+  private long startNanos;
+  private long measureFromNanos;
+  private long endNanos;
+  private long scheduled;
+  private long outstanding;
+  private long abandoned;
+  private long timerId;
+  private boolean stopped;
+
+  /**
+   * @param options load test options
+   * @param port service port
+   */
+  LoadDriver(LoadTestOptions options, int port) {
+    this.options = options;
+    this.port = port;
+
+    for (var operation : Operation.values()) {
+      stats.put(operation, new OperationStats());
+    }
+  }
+
+  /** Wait for the service to be healthy, then register the topics and subscribe to them */
+  @Override
+  public void start(Promise<Void> startPromise) {
+    client =
+        vertx.createHttpClient(
+            new HttpClientOptions()
+                .setDefaultHost("127.0.0.1")
+                .setDefaultPort(port)
+                .setMaxPoolSize(options.connections));
+
+    awaitHealthy(0)
+        .compose(val -> setUpTopics())
+        .onSuccess(val -> startPromise.complete())
+        .onFailure(startPromise::fail);
+  }
+
+  /**
+   * Run the warmup and the measured load, then wait for the outstanding requests
+   *
+   * @return completion
+   */
+  Future<Void> run() {
+    context.runOnContext(
+        val -> {
+          startNanos = System.nanoTime();
+          measureFromNanos = startNanos + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+          endNanos = measureFromNanos + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+          timerId = vertx.setPeriodic(TICK_MS, id -> tick());
+        });
+
+    return finished.future();
+  }
+
+  /**
+   * Print the per operation and the total throughput, latency percentiles and response statuses
+   *
+   * @param out report stream
+   */
+  void report(PrintStream out) {
+    final var total = new OperationStats();
+    stats.values().forEach(total::add);
+
+    out.println(options);
+    out.printf(
+        "%-9s %10s %12s %9s %9s %9s %9s %9s  %s%n",
+        "operation",
+        "count",
+        "throughput/s",
+        "p50 ms",
+        "p90 ms",
+        "p99 ms",
+        "p99.9 ms",
+        "max ms",
+        "statuses");
+
+    for (var entry : stats.entrySet()) {
+      entry.getValue().print(out, entry.getKey().name().toLowerCase(), options.durationSeconds);
+    }
+
+    total.print(out, "total", options.durationSeconds);
+
+    if (abandoned > 0) {
+      out.println(abandoned + " requests were still outstanding after the drain timeout");
+    }
+  }
+
+  /** Send the requests that are due since the last tick */
+  private void tick() {
+    final var now = System.nanoTime();
+    final var intervalNanos = TimeUnit.SECONDS.toNanos(1) / options.rate;
+    var due = startNanos + (long) (scheduled * intervalNanos);
+
+    while (due <= now && due < endNanos) {
+      send(due);
+      scheduled++;
+      due = startNanos + (long) (scheduled * intervalNanos);
+    }
+
+    if (due >= endNanos) {
+      vertx.cancelTimer(timerId);
+      stopped = true;
+      vertx.setTimer(
+          DRAIN_TIMEOUT_MS,
+          id -> {
+            abandoned = outstanding;
+            finished.tryComplete();
+          });
+      finishIfDrained();
+    }
+  }
+
+  private void send(long dueNanos) {
+    final var operation = nextOperation();
+    final var publish = operation == Operation.PUBLISH;
+    final var index = random.nextInt(publish ? topics.size() : subscriberTopics.size());
+    final var topic = publish ? topics.get(index) : subscriberTopics.get(index);
+    final var body = publish ? publishBodies.get(index) : subscriberBodies.get(index);
+
+    outstanding++;
+
+    request(operation.method, operation.endPoint.getVal() + topic, body)
+        .onComplete(
+            result -> {
+              outstanding--;
+
+              // the report is out once finished, late responses are left out of it
+              if (dueNanos >= measureFromNanos && !finished.future().isComplete()) {
+                stats.get(operation).record(result, System.nanoTime() - dueNanos);
+              }
+
+              finishIfDrained();
+            });
+  }
+
+  private Operation nextOperation() {
+    final var choice = random.nextInt(options.totalWeight());
+
+    if (choice < options.publishWeight) {
+      return Operation.PUBLISH;
+    }
+
+    return choice < options.publishWeight + options.getWeight ? Operation.GET : Operation.ACK;
+  }
+
+  private void finishIfDrained() {
+    if (stopped && outstanding == 0) {
+      finished.tryComplete();
+    }
+  }
+
+  /**
+   * Send a request and read the whole response
+   *
+   * @return status code
+   */
+  private Future<Integer> request(HttpMethod method, String uri, Buffer body) {
+    return client
+        .request(method, uri)
+        .compose(request -> request.send(body))
+        .compose(response -> response.body().map(val -> response.statusCode()));
+  }
+
+  /**
+   * Send a request expecting a 200 response
+   *
+   * @return response body
+   */
+  private Future<Buffer> requestOk(HttpMethod method, String uri) {
+    return client
+        .request(method, uri)
+        .compose(request -> request.send())
+        .compose(
+            response -> {
+              if (response.statusCode() == HttpResponseStatus.OK.code()) {
+                return response.body();
+              }
+
+              final var error = method + " " + uri + " answered " + response.statusCode();
+              return response.body().compose(body -> Future.failedFuture(error + ": " + body));
+            });
+  }
+
+  private Future<Void> awaitHealthy(int retry) {
+    return requestOk(HttpMethod.GET, EndPoints.HEALTH.getVal())
+        .<Void>mapEmpty()
+        .recover(
+            throwable -> {
+              if (retry >= HEALTH_MAX_RETRIES) {
+                return Future.failedFuture(throwable);
+              }
+
+              final var promise = Promise.<Void>promise();
+              vertx.setTimer(HEALTH_RETRY_MS, id -> awaitHealthy(retry + 1).onComplete(promise));
+              return promise.future();
+            });
+  }
+
+  /** Register the topics one by one and subscribe to every one of them */
+  private Future<Void> setUpTopics() {
+    final var payload = "x".repeat(options.payloadBytes);
+    Future<Void> chain = Future.succeededFuture();
+
+    for (int i = 0; i < options.topics; i++) {
+      final var topic = TOPIC_PREFIX + i;
+
+      chain =
+          chain
+              .compose(
+                  val -> requestOk(HttpMethod.POST, EndPoints.TOPIC_REGISTER.getVal() + topic))
+              .map(
+                  body -> {
+                    final var pubId = read(body, RegisterPublisherResponse.class).getPubId();
+                    topics.add(topic);
+                    publishBodies.add(write(new PublishMessageRequest(pubId, payload)));
+                    return null;
+                  });
+
+      for (int j = 0; j < options.subscribersPerTopic; j++) {
+        chain =
+            chain
+                .compose(
+                    val -> requestOk(HttpMethod.POST, EndPoints.TOPIC_SUBSCRIBE.getVal() + topic))
+                .map(
+                    body -> {
+                      final var subId = read(body, SubscribeResponse.class).getSubId();
+                      subscriberTopics.add(topic);
+                      subscriberBodies.add(write(new GetMessageRequest(subId)));
+                      return null;
+                    });
+      }
+    }
+
+    return chain;
+  }
+
+  private static <T> T read(Buffer body, Class<T> type) {
+    try {
+      return MAPPER.readValue(body.getBytes(), type);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static Buffer write(Object request) {
+    try {
+      return Buffer.buffer(MAPPER.writeValueAsBytes(request));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Latencies and response statuses of an operation, confined to the driver event loop */
+  private static class OperationStats {
+    private static final String FAILED = "failed";
+
+    private final Histogram latencies = new Histogram(SIGNIFICANT_DIGITS);
+    private final Map<String, Long> statuses = new TreeMap<>();
+
+    void record(AsyncResult<Integer> result, long latencyNanos) {
+      latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+      statuses.merge(result.succeeded() ? String.valueOf(result.result()) : FAILED, 1L, Long::sum);
+    }
+
+    void add(OperationStats other) {
+      latencies.add(other.latencies);
+      other.statuses.forEach((status, count) -> statuses.merge(status, count, Long::sum));
+    }
+
+    void print(PrintStream out, String name, int seconds) {
+      out.printf(
+          "%-9s %10d %12.1f %9.3f %9.3f %9.3f %9.3f %9.3f  %s%n",
+          name,
+          latencies.getTotalCount(),
+          (double) latencies.getTotalCount() / seconds,
+          millis(latencies.getValueAtPercentile(50)),
+          millis(latencies.getValueAtPercentile(90)),
+          millis(latencies.getValueAtPercentile(99)),
+          millis(latencies.getValueAtPercentile(99.9)),
+          millis(latencies.getMaxValue()),
+          statuses);
+    }
+
+    private static double millis(long micros) {
+      return micros / 1000.0;
+    }
+  }
+}
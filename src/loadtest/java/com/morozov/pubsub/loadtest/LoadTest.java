@@ -0,0 +1,72 @@
+package com.morozov.pubsub.loadtest;
+
+import com.morozov.pubsub.ServiceVerticle;
+import com.morozov.pubsub.constants.ConfigConstants;
+import com.morozov.pubsub.store.MessageStore;
+import com.morozov.pubsub.store.TopicStore;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import java.net.ServerSocket;
+
+/**
+ * End-to-end load test: boots the service in process, against a {@link RespServer} for the list
+ * engine, then runs a {@link LoadDriver} workload and prints its report. Run it with
+ * ./gradlew loadTest --args="rate=5000 durationSeconds=30"
+ */
+public class LoadTest {
+  public static void main(String[] args) throws Exception {
+    final LoadTestOptions options;
+
+    try {
+      options = LoadTestOptions.parse(args);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(LoadTestOptions.USAGE);
+      System.exit(2);
+      return;
+    }
+
+    final var config = ServiceVerticle.configFromSystemProperties();
+    final var instances =
+        config.getInteger(ConfigConstants.INSTANCES, Runtime.getRuntime().availableProcessors());
+    final int port;
+
+    try (var socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+
+    config.put(ConfigConstants.HTTP_PORT, port).put(ConfigConstants.STORAGE_ENGINE, options.engine);
+
+    final var vertx = Vertx.vertx();
+
+    try {
+      if (TopicStore.LIST_ENGINE.equals(options.engine)) {
+        final var redis = new RespServer(options.redisLatencyMs);
+        await(vertx.deployVerticle(redis));
+        config.put(ConfigConstants.REDIS_CONNECTION_STRING, "redis://127.0.0.1:" + redis.port());
+      }
+
+      await(
+          vertx.deployVerticle(
+              ServiceVerticle::new,
+              new DeploymentOptions().setInstances(instances).setConfig(config)));
+
+      final var driver = new LoadDriver(options, port);
+      await(vertx.deployVerticle(driver));
+      System.out.println(
+          "Running on "
+              + instances
+              + " verticle instances"
+              + (MessageStore.isMemoryEngine(config) ? "" : " against the Redis stand-in"));
+      await(driver.run());
+      driver.report(System.out);
+    } finally {
+      await(vertx.close());
+    }
+  }
+
+  private static <T> T await(Future<T> future) throws Exception {
+    return future.toCompletionStage().toCompletableFuture().get();
+  }
+}
@@ -0,0 +1,146 @@
+package com.morozov.pubsub.loadtest;
+
+import com.morozov.pubsub.store.MessageStore;
+import com.morozov.pubsub.store.TopicStore;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/** Load test parameters, parsed from key=value arguments */
+class LoadTestOptions {
+  static final String USAGE =
+      "Arguments, all optional, as key=value:\n"
+          + "  engine=list               list (against the Redis stand-in) or memory\n"
+          + "  rate=2000                 requests per second, all operations together\n"
+          + "  durationSeconds=30        measured run time\n"
+          + "  warmupSeconds=5           unmeasured run time before it\n"
+          + "  mix=60:20:20              publish:get:ack weights\n"
+          + "  payloadBytes=1024         published message size\n"
+          + "  topics=4                  registered topics\n"
+          + "  subscribersPerTopic=4     subscribers of every topic\n"
+          + "  connections=64            HTTP connections to the service\n"
+          + "  redisLatencyMs=0          delay of every Redis stand-in reply\n"
+          + "The service is configured by -Dpubsub.* system properties, as when run standalone";
+
+  private static final Set<String> ENGINES =
+      Set.of(TopicStore.LIST_ENGINE, MessageStore.MEMORY_ENGINE);
+  private static final Set<String> KEYS =
+      Set.of(
+          "engine",
+          "rate",
+          "durationSeconds",
+          "warmupSeconds",
+          "mix",
+          "payloadBytes",
+          "topics",
+          "subscribersPerTopic",
+          "connections",
+          "redisLatencyMs");
+
+  final String engine;
+  final double rate;
+  final int durationSeconds;
+  final int warmupSeconds;
+  final int publishWeight;
+  final int getWeight;
+  final int ackWeight;
+  final int payloadBytes;
+  final int topics;
+  final int subscribersPerTopic;
+  final int connections;
+  final long redisLatencyMs;
+
+  private LoadTestOptions(Map<String, String> args) {
+    engine = args.getOrDefault("engine", TopicStore.LIST_ENGINE);
+    rate = Double.parseDouble(args.getOrDefault("rate", "2000"));
+    durationSeconds = Integer.parseInt(args.getOrDefault("durationSeconds", "30"));
+    warmupSeconds = Integer.parseInt(args.getOrDefault("warmupSeconds", "5"));
+    payloadBytes = Integer.parseInt(args.getOrDefault("payloadBytes", "1024"));
+    topics = Integer.parseInt(args.getOrDefault("topics", "4"));
+    subscribersPerTopic = Integer.parseInt(args.getOrDefault("subscribersPerTopic", "4"));
+    connections = Integer.parseInt(args.getOrDefault("connections", "64"));
+    redisLatencyMs = Long.parseLong(args.getOrDefault("redisLatencyMs", "0"));
+
+    final var mix = args.getOrDefault("mix", "60:20:20").split(":");
+
+    if (mix.length != 3) {
+      throw new IllegalArgumentException("mix must be publish:get:ack weights");
+    }
+
+    publishWeight = Integer.parseInt(mix[0]);
+    getWeight = Integer.parseInt(mix[1]);
+    ackWeight = Integer.parseInt(mix[2]);
+
+    if (!ENGINES.contains(engine)) {
+      throw new IllegalArgumentException("engine must be one of " + ENGINES);
+    }
+
+    if (rate <= 0 || durationSeconds <= 0 || warmupSeconds < 0) {
+      throw new IllegalArgumentException(
+          "rate and durationSeconds must be positive, warmupSeconds not negative");
+    }
+
+    if (publishWeight < 0 || getWeight < 0 || ackWeight < 0 || totalWeight() == 0) {
+      throw new IllegalArgumentException("mix weights must be non-negative, one at least positive");
+    }
+
+    if (topics <= 0 || subscribersPerTopic <= 0 || connections <= 0 || payloadBytes < 0) {
+      throw new IllegalArgumentException("topics, subscribers and connections must be positive");
+    }
+  }
+
+  /**
+   * @param args key=value arguments
+   * @return options
+   * @throws IllegalArgumentException if an argument is unknown or invalid
+   */
+  static LoadTestOptions parse(String[] args) {
+    final var values = new HashMap<String, String>();
+
+    for (var arg : args) {
+      final var separator = arg.indexOf('=');
+
+      if (separator <= 0) {
+        throw new IllegalArgumentException("Expected key=value, got " + arg);
+      }
+
+      values.put(arg.substring(0, separator), arg.substring(separator + 1));
+    }
+
+    try {
+      final var options = new LoadTestOptions(values);
+      values.keySet().removeAll(KEYS);
+
+      if (!values.isEmpty()) {
+        throw new IllegalArgumentException("Unknown arguments " + values.keySet());
+      }
+
+      return options;
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Not a number: " + e.getMessage(), e);
+    }
+  }
+
+  int totalWeight() {
+    return publishWeight + getWeight + ackWeight;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s engine, %.0f req/s for %d s after a %d s warmup, mix %d:%d:%d, %d B payloads, "
+            + "%d topics x %d subscribers, %d connections, %d ms Redis latency",
+        engine,
+        rate,
+        durationSeconds,
+        warmupSeconds,
+        publishWeight,
+        getWeight,
+        ackWeight,
+        payloadBytes,
+        topics,
+        subscribersPerTopic,
+        connections,
+        redisLatencyMs);
+  }
+}
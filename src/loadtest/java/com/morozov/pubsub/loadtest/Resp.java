@@ -0,0 +1,65 @@
+package com.morozov.pubsub.loadtest;
+
+import io.vertx.core.buffer.Buffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/** RESP2 reply encoding */
+final class Resp {
+  static final Buffer OK = simple("OK");
+  static final Buffer NULL_BULK = Buffer.buffer("$-1\r\n");
+  private static final byte[] CRLF = {'\r', '\n'};
+
+  private Resp() {}
+
+  static Buffer simple(String value) {
+    return Buffer.buffer("+" + value + "\r\n");
+  }
+
+  static Buffer error(String message) {
+    return Buffer.buffer("-" + message + "\r\n");
+  }
+
+  static Buffer integer(long value) {
+    return Buffer.buffer(":" + value + "\r\n");
+  }
+
+  static Buffer bulk(String value) {
+    return bulk(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  static Buffer bulk(byte[] value) {
+    return appendBulk(Buffer.buffer(value.length + 16), value);
+  }
+
+  /**
+   * @param items encoded replies
+   * @return array of the replies
+   */
+  static Buffer array(List<Buffer> items) {
+    final var array = Buffer.buffer().appendString("*" + items.size() + "\r\n");
+    items.forEach(array::appendBuffer);
+    return array;
+  }
+
+  /**
+   * @param values bulk strings
+   * @return array of the bulk strings
+   */
+  static Buffer bulkArray(List<byte[]> values) {
+    final var array = Buffer.buffer().appendString("*" + values.size() + "\r\n");
+
+    for (var value : values) {
+      appendBulk(array, value);
+    }
+
+    return array;
+  }
+
+  private static Buffer appendBulk(Buffer buffer, byte[] value) {
+    return buffer
+        .appendString("$" + value.length + "\r\n")
+        .appendBytes(value)
+        .appendBytes(CRLF);
+  }
+}
@@ -0,0 +1,111 @@
+package com.morozov.pubsub.loadtest;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental parser of the commands a Redis client sends: arrays of bulk strings. Socket chunks
+ * are buffered until a whole command has arrived, so a command may span any number of chunks.
+ */
+class RespParser implements Handler<Buffer> {
+  private static final int INCOMPLETE = -1;
+
+  private final Handler<List<byte[]>> commandHandler;
+  private Buffer pending = Buffer.buffer();
+  private int position;
+
+  /**
+   * @param commandHandler handler of every parsed command, its name and arguments
+   */
+  RespParser(Handler<List<byte[]>> commandHandler) {
+    this.commandHandler = commandHandler;
+  }
+
+  @Override
+  public void handle(Buffer chunk) {
+    pending.appendBuffer(chunk);
+
+    List<byte[]> command;
+    while ((command = parseCommand()) != null) {
+      commandHandler.handle(command);
+    }
+
+    // drop the parsed commands, the remainder is the start of the next one
+    if (position > 0) {
+      pending = pending.getBuffer(position, pending.length());
+      position = 0;
+    }
+  }
+
+  /**
+   * Parse a command at the current position and move past it
+   *
+   * @return command or null if it hasn't arrived in full yet
+   */
+  private List<byte[]> parseCommand() {
+    var offset = position;
+    final var count = parseHeader('*', offset);
+
+    if (count == INCOMPLETE) {
+      return null;
+    }
+
+    offset = lineEnd(offset) + 2;
+    final var command = new ArrayList<byte[]>(count);
+
+    for (int i = 0; i < count; i++) {
+      final var length = parseHeader('$', offset);
+
+      if (length == INCOMPLETE) {
+        return null;
+      }
+
+      final var start = lineEnd(offset) + 2;
+
+      if (pending.length() < start + length + 2) {
+        return null;
+      }
+
+      command.add(pending.getBytes(start, start + length));
+      offset = start + length + 2;
+    }
+
+    position = offset;
+    return command;
+  }
+
+  /**
+   * @param type expected type byte
+   * @param offset header offset
+   * @return number following the type byte or INCOMPLETE if the line hasn't arrived in full yet
+   */
+  private int parseHeader(char type, int offset) {
+    final var end = lineEnd(offset);
+
+    if (end < 0) {
+      return INCOMPLETE;
+    }
+
+    if (pending.getByte(offset) != type) {
+      throw new IllegalStateException("Expected '" + type + "' at " + offset);
+    }
+
+    return Integer.parseInt(pending.getString(offset + 1, end));
+  }
+
+  /**
+   * @param offset line offset
+   * @return offset of the line CRLF or -1 if it hasn't arrived yet
+   */
+  private int lineEnd(int offset) {
+    for (int i = offset; i < pending.length() - 1; i++) {
+      if (pending.getByte(i) == '\r' && pending.getByte(i + 1) == '\n') {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+}
@@ -0,0 +1,167 @@
+package com.morozov.pubsub.loadtest;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.net.NetServer;
+import io.vertx.core.net.NetSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for Redis speaking RESP2 over TCP, so the service runs its real client, pool
+ * and scripts against it without a Redis server. It's deployed as a single verticle: every command
+ * runs on one event loop, one at a time like in Redis. Replies can be delayed by a fixed latency to
+ * model a remote Redis, pub/sub pushes are never delayed.
+ */
+public class RespServer extends AbstractVerticle {
+  private final long latencyMs;
+  private final RespStore store = new RespStore();
+  private final Map<String, Set<NetSocket>> channels = new HashMap<>();
+  private final Map<String, Set<NetSocket>> patterns = new HashMap<>();
+  private final Map<String, Pattern> compiledPatterns = new HashMap<>();
+  private NetServer server;
+
+  /**
+   * @param latencyMs delay of every reply, 0 for none
+   */
+  public RespServer(long latencyMs) {
+    this.latencyMs = latencyMs;
+  }
+
+  @Override
+  public void start(Promise<Void> startPromise) {
+    vertx
+        .createNetServer()
+        .connectHandler(this::connected)
+        .listen(0, "127.0.0.1")
+        .onSuccess(
+            listening -> {
+              server = listening;
+              startPromise.complete();
+            })
+        .onFailure(startPromise::fail);
+  }
+
+  /**
+   * @return port the stand-in listens on, once deployed
+   */
+  public int port() {
+    return server.actualPort();
+  }
+
+  private void connected(NetSocket socket) {
+    socket.handler(new RespParser(command -> handle(socket, command)));
+    socket.closeHandler(
+        val -> {
+          channels.values().forEach(sockets -> sockets.remove(socket));
+          patterns.values().forEach(sockets -> sockets.remove(socket));
+        });
+  }
+
+  private void handle(NetSocket socket, List<byte[]> command) {
+    final var name = new String(command.get(0), StandardCharsets.UTF_8).toUpperCase(Locale.ROOT);
+
+    switch (name) {
+      case "SUBSCRIBE":
+        subscribe(socket, command, "subscribe", channels);
+        break;
+      case "PSUBSCRIBE":
+        subscribe(socket, command, "psubscribe", patterns);
+        break;
+      case "PUBLISH":
+        reply(socket, Resp.integer(publish(command.get(1), command.get(2))));
+        break;
+      default:
+        reply(socket, store.execute(command));
+    }
+  }
+
+  private void reply(NetSocket socket, Buffer reply) {
+    if (latencyMs > 0) {
+      // the same delay for every reply keeps them in order
+      vertx.setTimer(latencyMs, timer -> socket.write(reply));
+    } else {
+      socket.write(reply);
+    }
+  }
+
+  /** Every channel is confirmed by its own reply, as Redis does */
+  private void subscribe(
+      NetSocket socket, List<byte[]> command, String kind, Map<String, Set<NetSocket>> targets) {
+    for (var target : command.subList(1, command.size())) {
+      final var name = new String(target, StandardCharsets.UTF_8);
+      targets.computeIfAbsent(name, key -> new LinkedHashSet<>()).add(socket);
+
+      socket.write(
+          Resp.array(List.of(Resp.bulk(kind), Resp.bulk(target), Resp.integer(count(socket)))));
+    }
+  }
+
+  private long count(NetSocket socket) {
+    return channels.values().stream().filter(sockets -> sockets.contains(socket)).count()
+        + patterns.values().stream().filter(sockets -> sockets.contains(socket)).count();
+  }
+
+  /**
+   * Push a message to the channel and pattern subscribers
+   *
+   * @return number of receivers
+   */
+  private long publish(byte[] channel, byte[] message) {
+    final var name = new String(channel, StandardCharsets.UTF_8);
+    var receivers = 0L;
+
+    for (var socket : channels.getOrDefault(name, Set.of())) {
+      socket.write(
+          Resp.array(List.of(Resp.bulk("message"), Resp.bulk(channel), Resp.bulk(message))));
+      receivers++;
+    }
+
+    for (var entry : patterns.entrySet()) {
+      final var pattern = compiledPatterns.computeIfAbsent(entry.getKey(), RespServer::glob);
+
+      if (!pattern.matcher(name).matches()) {
+        continue;
+      }
+
+      final var push =
+          Resp.array(
+              List.of(
+                  Resp.bulk("pmessage"),
+                  Resp.bulk(entry.getKey()),
+                  Resp.bulk(channel),
+                  Resp.bulk(message)));
+
+      for (var socket : entry.getValue()) {
+        socket.write(push.copy());
+        receivers++;
+      }
+    }
+
+    return receivers;
+  }
+
+  /** Redis glob: * and ? wildcards, everything else literal */
+  private static Pattern glob(String pattern) {
+    final var regex = new StringBuilder();
+
+    for (var c : pattern.toCharArray()) {
+      if (c == '*') {
+        regex.append(".*");
+      } else if (c == '?') {
+        regex.append('.');
+      } else {
+        regex.append(Pattern.quote(String.valueOf(c)));
+      }
+    }
+
+    return Pattern.compile(regex.toString());
+  }
+}
@@ -0,0 +1,397 @@
+package com.morozov.pubsub.loadtest;
+
+import com.morozov.pubsub.redis.RedisScript;
+import com.morozov.pubsub.redis.RedisScripts;
+import com.morozov.pubsub.store.MessageCodec;
+import io.vertx.core.buffer.Buffer;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * Keyspace of the Redis stand-in and the commands the list engine sends. The Lua scripts of the
+ * list engine are emulated in Java, step by step like their sources, and looked up by SHA1 like
+ * Redis does. Not thread-safe: it belongs to the single event loop of the stand-in, which makes
+ * every command and script atomic as in Redis.
+ */
+class RespStore {
+  private static final ArrayDeque<byte[]> EMPTY_LIST = new ArrayDeque<>();
+
+  private final Map<String, byte[]> strings = new HashMap<>();
+  private final Map<String, ArrayDeque<byte[]>> lists = new HashMap<>();
+  private final Map<String, Set<String>> sets = new HashMap<>();
+  private final Map<String, BiFunction<List<String>, List<byte[]>, Buffer>> scripts =
+      new HashMap<>();
+
+  RespStore() {
+    scripts.put(RedisScripts.LIST_APPEND.sha(), this::listAppend);
+    scripts.put(RedisScripts.ACK_MESSAGE.sha(), this::ackMessage);
+    scripts.put(RedisScripts.LIST_EXPIRE.sha(), this::listExpire);
+  }
+
+  /**
+   * Execute a command
+   *
+   * @param command command name and arguments
+   * @return encoded reply
+   */
+  Buffer execute(List<byte[]> command) {
+    final var name = string(command.get(0)).toUpperCase(Locale.ROOT);
+    final var args = command.subList(1, command.size());
+
+    try {
+      switch (name) {
+        case "PING":
+          return args.isEmpty() ? Resp.simple("PONG") : Resp.bulk(args.get(0));
+        case "GET":
+          final var value = strings.get(string(args.get(0)));
+          return value == null ? Resp.NULL_BULK : Resp.bulk(value);
+        case "SET":
+          // expiration options are accepted and ignored, a load test doesn't outlive them
+          lists.remove(string(args.get(0)));
+          strings.put(string(args.get(0)), args.get(1));
+          return Resp.OK;
+        case "DEL":
+          return Resp.integer(del(args));
+        case "INCRBY":
+          return Resp.integer(incrBy(string(args.get(0)), number(args.get(1))));
+        case "DECRBY":
+          return Resp.integer(incrBy(string(args.get(0)), -number(args.get(1))));
+        case "SADD":
+          return Resp.integer(sadd(args));
+        case "SSCAN":
+          // the whole set in one page
+          return Resp.array(
+              List.of(Resp.bulk("0"), Resp.bulkArray(members(string(args.get(0))))));
+        case "RPUSH":
+          return Resp.integer(rpush(args));
+        case "LPOP":
+          final var popped = lpop(string(args.get(0)));
+          return popped == null ? Resp.NULL_BULK : Resp.bulk(popped);
+        case "LLEN":
+          return Resp.integer(list(string(args.get(0))).size());
+        case "LINDEX":
+          final var item = lindex(string(args.get(0)), (int) number(args.get(1)));
+          return item == null ? Resp.NULL_BULK : Resp.bulk(item);
+        case "LRANGE":
+          return Resp.bulkArray(
+              lrange(string(args.get(0)), (int) number(args.get(1)), (int) number(args.get(2))));
+        case "LTRIM":
+          ltrim(string(args.get(0)), (int) number(args.get(1)), (int) number(args.get(2)));
+          return Resp.OK;
+        case "SCRIPT":
+          return "LOAD".equalsIgnoreCase(string(args.get(0)))
+              ? Resp.bulk(RedisScript.sha1(string(args.get(1))))
+              : Resp.OK;
+        case "EVALSHA":
+          return eval(string(args.get(0)), args);
+        case "EVAL":
+          return eval(RedisScript.sha1(string(args.get(0))), args);
+        case "CONFIG":
+        case "CLIENT":
+        case "SELECT":
+          return Resp.OK;
+        default:
+          // HELLO included, which makes the client fall back to RESP2
+          return Resp.error("ERR unknown command '" + name.toLowerCase(Locale.ROOT) + "'");
+      }
+    } catch (RuntimeException e) {
+      return Resp.error("ERR " + name + " failed: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Run an emulated script
+   *
+   * @param sha script SHA1
+   * @param args EVAL arguments: script, key count, keys and script arguments
+   * @return script reply
+   */
+  private Buffer eval(String sha, List<byte[]> args) {
+    final var script = scripts.get(sha);
+
+    if (script == null) {
+      return Resp.error("NOSCRIPT No matching script. Please use EVAL.");
+    }
+
+    final var keyCount = (int) number(args.get(1));
+    final var keys = new ArrayList<String>(keyCount);
+
+    for (var key : args.subList(2, 2 + keyCount)) {
+      keys.add(string(key));
+    }
+
+    return script.apply(keys, args.subList(2 + keyCount, args.size()));
+  }
+
+  /** list-append.lua */
+  private Buffer listAppend(List<String> keys, List<byte[]> argv) {
+    final var maxMessages = number(argv.get(0));
+    final var maxBytes = number(argv.get(1));
+    final var list = lists.computeIfAbsent(keys.get(0), key -> new ArrayDeque<>());
+    final var messages = argv.subList(2, argv.size());
+    var seq = incrBy(keys.get(2), messages.size()) - messages.size();
+    var bytes = 0L;
+
+    for (var message : messages) {
+      final var sequenced = MessageCodec.sequenced(Buffer.buffer(message), ++seq).getBytes();
+      list.addLast(sequenced);
+      bytes += sequenced.length;
+    }
+
+    bytes = incrBy(keys.get(1), bytes);
+
+    var trimmed = 0L;
+
+    if (maxMessages > 0) {
+      while (list.size() > maxMessages) {
+        bytes -= list.pollFirst().length;
+        trimmed++;
+      }
+    }
+
+    if (maxBytes > 0) {
+      // the newest message is kept even if it's larger than max bytes
+      while (bytes > maxBytes && list.size() > 1) {
+        bytes -= list.pollFirst().length;
+        trimmed++;
+      }
+    }
+
+    if (trimmed > 0) {
+      setNumber(keys.get(1), Math.max(bytes, 0));
+    }
+
+    return Resp.array(List.of(Resp.integer(list.size()), Resp.integer(trimmed)));
+  }
+
+  /** ack-message.lua */
+  private Buffer ackMessage(List<String> keys, List<byte[]> argv) {
+    final var max = number(argv.get(0));
+    final var maxBytes = number(argv.get(1));
+    final var subscribedTs = number(argv.get(2));
+    final var offset = argv.get(3).length == 0 ? null : number(argv.get(3));
+    final var result = new ArrayList<Buffer>();
+    var bytes = 0L;
+
+    result.add(Resp.integer(1));
+
+    for (var encoded : lrange(keys.get(0), 0, (int) max - 1)) {
+      // messages published before the subscription are not visible to the subscriber
+      if (!isVisible(subscribedTs, offset, encoded)) {
+        break;
+      }
+
+      // the first message is taken even if it's larger than max bytes
+      if (result.size() > 1 && bytes + encoded.length > maxBytes) {
+        break;
+      }
+
+      bytes += encoded.length;
+      result.add(Resp.bulk(encoded));
+    }
+
+    if (result.size() == 1) {
+      return Resp.array(List.of(Resp.integer(2)));
+    }
+
+    ltrim(keys.get(0), result.size() - 1, -1);
+
+    if (incrBy(keys.get(1), -bytes) < 0) {
+      setNumber(keys.get(1), 0);
+    }
+
+    return Resp.array(result);
+  }
+
+  /** list-expire.lua */
+  private Buffer listExpire(List<String> keys, List<byte[]> argv) {
+    final var minTs = number(argv.get(0));
+    final var max = number(argv.get(1));
+    var trimmed = 0L;
+    var bytes = 0L;
+
+    while (trimmed < max) {
+      final var encoded = lindex(keys.get(0), 0);
+
+      if (encoded == null || messageTs(encoded) >= minTs) {
+        break;
+      }
+
+      lpop(keys.get(0));
+      bytes += encoded.length;
+      trimmed++;
+    }
+
+    if (bytes > 0 && incrBy(keys.get(1), -bytes) < 0) {
+      setNumber(keys.get(1), 0);
+    }
+
+    return Resp.integer(trimmed);
+  }
+
+  private long del(List<byte[]> keys) {
+    var deleted = 0L;
+
+    for (var key : keys) {
+      final var name = string(key);
+
+      if (strings.remove(name) != null | lists.remove(name) != null | sets.remove(name) != null) {
+        deleted++;
+      }
+    }
+
+    return deleted;
+  }
+
+  private long incrBy(String key, long increment) {
+    final var value = strings.get(key);
+    final var result = (value == null ? 0 : number(value)) + increment;
+    setNumber(key, result);
+    return result;
+  }
+
+  private void setNumber(String key, long value) {
+    strings.put(key, String.valueOf(value).getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private long sadd(List<byte[]> args) {
+    final var set = sets.computeIfAbsent(string(args.get(0)), key -> new LinkedHashSet<>());
+    var added = 0L;
+
+    for (var member : args.subList(1, args.size())) {
+      if (set.add(string(member))) {
+        added++;
+      }
+    }
+
+    return added;
+  }
+
+  private List<byte[]> members(String key) {
+    final var members = new ArrayList<byte[]>();
+
+    for (var member : sets.getOrDefault(key, Set.of())) {
+      members.add(member.getBytes(StandardCharsets.UTF_8));
+    }
+
+    return members;
+  }
+
+  private long rpush(List<byte[]> args) {
+    final var list = lists.computeIfAbsent(string(args.get(0)), key -> new ArrayDeque<>());
+    args.subList(1, args.size()).forEach(list::addLast);
+    return list.size();
+  }
+
+  private byte[] lpop(String key) {
+    final var list = lists.get(key);
+
+    if (list == null) {
+      return null;
+    }
+
+    final var popped = list.pollFirst();
+
+    // Redis deletes emptied lists
+    if (list.isEmpty()) {
+      lists.remove(key);
+    }
+
+    return popped;
+  }
+
+  private byte[] lindex(String key, int index) {
+    final var range = lrange(key, index, index);
+    return range.isEmpty() ? null : range.get(0);
+  }
+
+  /** Range of a list, negative indexes count from the tail as in Redis */
+  private List<byte[]> lrange(String key, int start, int stop) {
+    final var list = list(key);
+    final var from = Math.max(start < 0 ? list.size() + start : start, 0);
+    final var to = Math.min(stop < 0 ? list.size() + stop : stop, list.size() - 1);
+    final var range = new ArrayList<byte[]>(Math.max(to - from + 1, 0));
+    var index = 0;
+
+    for (var item : list) {
+      if (index > to) {
+        break;
+      }
+
+      if (index >= from) {
+        range.add(item);
+      }
+
+      index++;
+    }
+
+    return range;
+  }
+
+  private void ltrim(String key, int start, int stop) {
+    // trimming the head, as the ack does, doesn't copy the rest of the list
+    if (start >= 0 && stop == -1) {
+      for (int i = 0; i < start; i++) {
+        lpop(key);
+      }
+
+      return;
+    }
+
+    final var kept = lrange(key, start, stop);
+
+    if (kept.isEmpty()) {
+      lists.remove(key);
+    } else {
+      lists.put(key, new ArrayDeque<>(kept));
+    }
+  }
+
+  private ArrayDeque<byte[]> list(String key) {
+    return lists.getOrDefault(key, EMPTY_LIST);
+  }
+
+  /** isVisible of ack-message.lua */
+  private static boolean isVisible(long subscribedTs, Long offset, byte[] encoded) {
+    final var seq = messageSeq(encoded);
+
+    if (seq != MessageCodec.NO_SEQUENCE && offset != null) {
+      return seq >= offset;
+    }
+
+    return subscribedTs <= messageTs(encoded);
+  }
+
+  private static long messageSeq(byte[] encoded) {
+    try {
+      return MessageCodec.sequence(Buffer.buffer(encoded));
+    } catch (IOException e) {
+      throw new IllegalStateException("Message is neither an envelope nor JSON", e);
+    }
+  }
+
+  private static long messageTs(byte[] encoded) {
+    try {
+      return MessageCodec.ts(Buffer.buffer(encoded));
+    } catch (IOException e) {
+      throw new IllegalStateException("Message is neither an envelope nor JSON", e);
+    }
+  }
+
+  private static long number(byte[] value) {
+    return Long.parseLong(string(value));
+  }
+
+  private static String string(byte[] value) {
+    return new String(value, StandardCharsets.UTF_8);
+  }
+}
@@ -2,17 +2,25 @@ package com.morozov.pubsub;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.morozov.pubsub.admission.OverloadedException;
 import com.morozov.pubsub.constants.CommonConstants;
+import com.morozov.pubsub.delivery.PublishNotifier;
 import com.morozov.pubsub.model.dto.Message;
 import com.morozov.pubsub.model.dto.SubscriberInfo;
-import com.morozov.pubsub.model.req.PublishMessageRequest;
+import com.morozov.pubsub.model.req.RawPublishMessageRequest;
 import com.morozov.pubsub.model.res.ErrorResponse;
+import com.morozov.pubsub.model.res.PublishBatchResponse;
 import com.morozov.pubsub.model.res.SubscribeResponse;
+import com.morozov.pubsub.store.MessageCompressor;
+import com.morozov.pubsub.store.MessageStore;
+import com.morozov.pubsub.store.PublishCoalescer;
+import com.morozov.pubsub.store.TopicStore;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.impl.logging.Logger;
 import io.vertx.core.impl.logging.LoggerFactory;
 import io.vertx.ext.web.RoutingContext;
-import io.vertx.redis.client.RedisAPI;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -21,42 +29,157 @@ public class ServiceUtils {
   private static final ObjectMapper MAPPER = new ObjectMapper();
   private static final Logger logger = LoggerFactory.getLogger(ServiceUtils.class);
 
+  /**
+   * Publish a message whose payload is taken from the request body as is
+   *
+   * @param coalescer publish coalescer
+   * @param compressor payload compressor
+   * @param publishNotifier notifier of the waiting subscribers
+   * @param rc routing context
+   * @param request request read from the body
+   * @param topic topic the waiting subscribers are notified of
+   * @param topicKey topic or partition storage key the message is appended to
+   */
   public static void publishMessage(
-      RedisAPI redisApi, RoutingContext rc, PublishMessageRequest request, String topicQueue) {
-    try {
-      final var message = new Message(request.getMessage(), System.currentTimeMillis());
-      final var messageJson = MAPPER.writeValueAsString(message);
+      PublishCoalescer coalescer,
+      MessageCompressor compressor,
+      PublishNotifier publishNotifier,
+      RoutingContext rc,
+      RawPublishMessageRequest request,
+      String topic,
+      String topicKey) {
+    final var encodedMessage =
+        compressor.encode(request.getMessageJson(), System.currentTimeMillis());
 
-      redisApi
-          .rpush(List.of(topicQueue, messageJson))
-          .onSuccess(val -> rc.response().setStatusCode(200).end("Message sent"))
-          .onFailure(throwable -> writeInternalServerError(rc, throwable));
-    } catch (JsonProcessingException e) {
-      writeInternalServerError(rc, e);
+    coalescer
+        .push(topicKey, encodedMessage)
+        .onSuccess(
+            val -> {
+              publishNotifier.published(topic);
+              rc.response().setStatusCode(200).end("Message sent");
+            })
+        .onFailure(throwable -> writeInternalServerError(rc, throwable));
+  }
+
+  /**
+   * Publish a batch of messages with a single topic store append, keeping their order
+   *
+   * @param topicStore topic store
+   * @param compressor payload compressor
+   * @param publishNotifier notifier of the waiting subscribers
+   * @param rc routing context
+   * @param messages messages to publish
+   * @param topic topic the waiting subscribers are notified of
+   * @param topicKey topic or partition storage key the messages are appended to
+   */
+  public static void publishMessages(
+      TopicStore topicStore,
+      MessageCompressor compressor,
+      PublishNotifier publishNotifier,
+      RoutingContext rc,
+      List<String> messages,
+      String topic,
+      String topicKey) {
+    final var ts = System.currentTimeMillis();
+    final var encodedMessages = new ArrayList<Buffer>(messages.size());
+
+    for (var message : messages) {
+      encodedMessages.add(compressor.encode(new Message(message, ts)));
     }
+
+    topicStore
+        .append(topicKey, encodedMessages)
+        .onSuccess(
+            topicLength -> {
+              publishNotifier.published(topic);
+
+              final var response =
+                  toJsonString(new PublishBatchResponse(messages.size(), topicLength), rc);
+              rc.response()
+                  .setStatusCode(200)
+                  .putHeader(CommonConstants.CONTENT_TYPE_HEADER, CommonConstants.APPLICATION_JSON)
+                  .end(response);
+            })
+        .onFailure(throwable -> writeInternalServerError(rc, throwable));
   }
 
-  public static void subscribeToTopic(RedisAPI redisApi, RoutingContext rc, String topic) {
+  /**
+   * Subscribe a new subscriber to the topic
+   *
+   * @param messageStore message store
+   * @param rc routing context
+   * @param topic topic
+   */
+  public static void subscribeToTopic(MessageStore messageStore, RoutingContext rc, String topic) {
     final var subInfo =
         new SubscriberInfo(UUID.randomUUID().toString(), topic, System.currentTimeMillis());
 
-    try {
-      redisApi
-          .set(List.of(subInfo.getSubId(), MAPPER.writeValueAsString(subInfo)))
-          .onSuccess(
-              val -> {
-                final var response =
-                    ServiceUtils.toJsonString(new SubscribeResponse(subInfo.getSubId(), topic), rc);
-                rc.response()
-                    .setStatusCode(200)
-                    .putHeader(
-                        CommonConstants.CONTENT_TYPE_HEADER, CommonConstants.APPLICATION_JSON)
-                    .end(response);
-              })
-          .onFailure(throwable -> writeInternalServerError(rc, throwable));
-    } catch (JsonProcessingException e) {
-      writeInternalServerError(rc, e);
+    messageStore
+        .subscribe(subInfo)
+        .onSuccess(
+            val -> {
+              final var response =
+                  ServiceUtils.toJsonString(new SubscribeResponse(subInfo.getSubId(), topic), rc);
+              rc.response()
+                  .setStatusCode(200)
+                  .putHeader(CommonConstants.CONTENT_TYPE_HEADER, CommonConstants.APPLICATION_JSON)
+                  .end(response);
+            })
+        .onFailure(throwable -> writeInternalServerError(rc, throwable));
+  }
+
+  /**
+   * Remove the subscription
+   *
+   * @param messageStore message store
+   * @param rc routing context
+   * @param subInfo subscriber info
+   */
+  public static void unsubscribeFromTopic(
+      MessageStore messageStore, RoutingContext rc, SubscriberInfo subInfo) {
+    messageStore
+        .unsubscribe(subInfo)
+        .onSuccess(val -> rc.response().setStatusCode(200).end("Unsubscribed"))
+        .onFailure(throwable -> writeInternalServerError(rc, throwable));
+  }
+
+  /**
+   * Check the client accepts a content encoding, e.g. Accept-Encoding: gzip, deflate;q=0.5
+   *
+   * @param rc routing context
+   * @param encoding content encoding
+   * @return true if the encoding is listed and not refused with q=0
+   */
+  public static boolean acceptsEncoding(RoutingContext rc, String encoding) {
+    final var acceptEncoding = rc.request().getHeader(CommonConstants.ACCEPT_ENCODING_HEADER);
+
+    if (acceptEncoding == null) {
+      return false;
+    }
+
+    for (var coding : acceptEncoding.split(",")) {
+      final var params = coding.split(";");
+
+      if (!params[0].trim().equalsIgnoreCase(encoding)) {
+        continue;
+      }
+
+      for (int i = 1; i < params.length; i++) {
+        final var param = params[i].trim();
+
+        try {
+          if (param.startsWith("q=") && Double.parseDouble(param.substring(2)) == 0) {
+            return false;
+          }
+        } catch (NumberFormatException e) {
+          // a malformed weight doesn't refuse the encoding
+        }
+      }
+
+      return true;
     }
+
+    return false;
   }
 
   /**
@@ -117,12 +240,18 @@ public class ServiceUtils {
   }
 
   /**
-   * Write an internal server error to the response
+   * Write an internal server error to the response, or a too many requests one if the failure is
+   * an admission control refusal
    *
    * @param rc routing context
    * @param throwable error info
    */
   public static void writeInternalServerError(RoutingContext rc, Throwable throwable) {
+    if (throwable instanceof OverloadedException) {
+      writeTooManyRequestsError(rc, (OverloadedException) throwable);
+      return;
+    }
+
     logger.warn(throwable.getMessage());
 
     try {
@@ -135,6 +264,25 @@ public class ServiceUtils {
     }
   }
 
+  /**
+   * Write a too many requests error with a Retry-After header to the response, not logged: the
+   * refusals come in bursts exactly when the node is overloaded
+   *
+   * @param rc routing context
+   * @param e admission control refusal
+   */
+  public static void writeTooManyRequestsError(RoutingContext rc, OverloadedException e) {
+    try {
+      rc.response()
+          .setStatusCode(HttpResponseStatus.TOO_MANY_REQUESTS.code())
+          .putHeader(CommonConstants.RETRY_AFTER_HEADER, String.valueOf(e.getRetryAfterSeconds()))
+          .putHeader(CommonConstants.CONTENT_TYPE_HEADER, CommonConstants.APPLICATION_JSON)
+          .end(MAPPER.writeValueAsString(new ErrorResponse(e.getMessage())));
+    } catch (JsonProcessingException jsonException) {
+      logger.warn(jsonException.getMessage());
+    }
+  }
+
   /**
    * Write a bad request error to the response
    *
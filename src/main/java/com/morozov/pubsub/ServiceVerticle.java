@@ -2,171 +2,340 @@ package com.morozov.pubsub;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.morozov.pubsub.admission.OverloadedException;
+import com.morozov.pubsub.admission.PublishRateLimiter;
 import com.morozov.pubsub.constants.CommonConstants;
+import com.morozov.pubsub.constants.ConfigConstants;
 import com.morozov.pubsub.constants.EndPoints;
+import com.morozov.pubsub.delivery.LongPollRegistry;
+import com.morozov.pubsub.delivery.PublishNotifier;
+import com.morozov.pubsub.delivery.PushSessions;
+import com.morozov.pubsub.metrics.HttpMetrics;
+import com.morozov.pubsub.metrics.Prometheus;
+import com.morozov.pubsub.metrics.RedisMetrics;
+import com.morozov.pubsub.metrics.TopicDepthSampler;
 import com.morozov.pubsub.model.dto.Message;
+import com.morozov.pubsub.model.dto.RetentionPolicy;
 import com.morozov.pubsub.model.dto.SubscriberInfo;
+import com.morozov.pubsub.model.req.AckMessageRequest;
 import com.morozov.pubsub.model.req.GetMessageRequest;
+import com.morozov.pubsub.model.req.PublishBatchRequest;
 import com.morozov.pubsub.model.req.PublishMessageRequest;
+import com.morozov.pubsub.model.req.RawPublishMessageRequest;
 import com.morozov.pubsub.model.res.GetMessageResponse;
+import com.morozov.pubsub.model.res.GetMessagesResponse;
+import com.morozov.pubsub.model.res.HealthResponse;
+import com.morozov.pubsub.model.res.ReadMessagesResponse;
+import com.morozov.pubsub.model.res.ReceiveMessageResponse;
 import com.morozov.pubsub.model.res.RegisterPublisherResponse;
+import com.morozov.pubsub.store.AckResult;
+import com.morozov.pubsub.store.CompressedMessage;
+import com.morozov.pubsub.store.MessageCompressor;
+import com.morozov.pubsub.store.MessageStore;
+import com.morozov.pubsub.store.PartitionedTopicStore;
+import com.morozov.pubsub.store.PublishCoalescer;
+import com.morozov.pubsub.store.TopicStore;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.impl.logging.Logger;
 import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Route;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.BodyHandler;
-import io.vertx.redis.client.Redis;
-import io.vertx.redis.client.RedisAPI;
-import io.vertx.redis.client.RedisConnection;
-import io.vertx.redis.client.RedisOptions;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 /** Main verticle */
 public class ServiceVerticle extends AbstractVerticle {
 
   private static final Logger logger = LoggerFactory.getLogger(ServiceVerticle.class);
-  private static RedisConnection redisClient;
-  private static RedisAPI redisApi;
-  private static final RedisOptions options = new RedisOptions();
-  private static final int MAX_RECONNECT_RETRIES = 16;
+  private static final String SYSTEM_PROPERTY_PREFIX = "pubsub.";
   private static final ObjectMapper MAPPER = new ObjectMapper();
 
+  private MessageStore messageStore;
+  private PublishCoalescer publishCoalescer;
+  private PublishRateLimiter publishRateLimiter;
+  private HttpMetrics httpMetrics;
+  private RedisMetrics redisMetrics;
+  private TopicDepthSampler topicDepthSampler;
+  private MessageCompressor messageCompressor;
+  private PublishNotifier publishNotifier;
+  private LongPollRegistry longPollRegistry;
+  private PushSessions pushSessions;
+
   /**
-   * Main method: deploy the main verticle here
+   * Main method: deploy the verticle instances here, one per core unless -Dpubsub.instances is set
    *
    * @param args
    * @throws Exception
    */
   public static void main(String[] args) throws Exception {
-    createRedisClient()
-        .onSuccess(
-            conn -> {
-              redisClient = conn;
-              redisApi = RedisAPI.api(redisClient);
-              logger.info("Created Redis client");
-            });
+    final var config = configFromSystemProperties();
+    final var instances = instances(config);
 
     var vertx = Vertx.vertx();
-    vertx.deployVerticle(new ServiceVerticle());
+    vertx
+        .deployVerticle(
+            ServiceVerticle::new,
+            new DeploymentOptions().setInstances(instances).setConfig(config))
+        .onSuccess(id -> logger.info("Deployed " + instances + " verticle instances"))
+        .onFailure(throwable -> logger.error("Failed to deploy verticles", throwable));
   }
 
   /**
-   * Create Redis client connection with reconnection attempt
+   * Read the number of verticle instances to deploy
    *
-   * @return Connection
+   * @param config verticle config
+   * @return instances config, the number of cores if not set
    */
-  private static Future<RedisConnection> createRedisClient() {
-    Promise<RedisConnection> promise = Promise.promise();
-    var vertx = Vertx.vertx();
-    Redis.createClient(vertx, options)
-        .connect()
-        .onSuccess(
-            conn -> {
-              logger.info("Connected to Redis");
-              conn.exceptionHandler(
-                  e -> {
-                    attemptReconnect(0);
-                  });
-              promise.complete(conn);
-            });
-
-    return promise.future();
+  static int instances(JsonObject config) {
+    return config.getInteger(ConfigConstants.INSTANCES, Runtime.getRuntime().availableProcessors());
   }
 
-  /** Attempt to reconnect up to MAX_RECONNECT_RETRIES */
-  private static void attemptReconnect(int retry) {
-    var vertx = Vertx.vertx();
+  /**
+   * Collect verticle config from -Dpubsub.* system properties
+   *
+   * @return config
+   */
+  public static JsonObject configFromSystemProperties() {
+    final var config = new JsonObject();
 
-    if (retry > MAX_RECONNECT_RETRIES) {
-      logger.error("Failed connecting to Redis");
-    } else {
-      // retry with backoff up to 10240 ms
-      long backoff = (long) (Math.pow(2, Math.min(retry, 10)) * 10);
+    for (var name : System.getProperties().stringPropertyNames()) {
+      if (!name.startsWith(SYSTEM_PROPERTY_PREFIX)) {
+        continue;
+      }
+
+      final var key = name.substring(SYSTEM_PROPERTY_PREFIX.length());
+      final var value = System.getProperty(name);
 
-      vertx.setTimer(
-          backoff,
-          timer -> {
-            createRedisClient().onFailure(t -> attemptReconnect(retry + 1));
-          });
+      if (value.matches("-?\\d+")) {
+        config.put(key, Integer.parseInt(value));
+      } else if (value.equals("true") || value.equals("false")) {
+        config.put(key, Boolean.parseBoolean(value));
+      } else {
+        config.put(key, value);
+      }
     }
+
+    return config;
   }
 
   @Override
-  public void start() throws Exception {
-    super.start();
+  public void start(Promise<Void> startPromise) throws Exception {
+    messageStore = MessageStore.create(vertx, config());
+    publishCoalescer = new PublishCoalescer(context, messageStore, config());
+    publishRateLimiter = PublishRateLimiter.get(vertx, config());
+    httpMetrics = HttpMetrics.get(vertx);
+    redisMetrics = RedisMetrics.get(vertx);
+    topicDepthSampler = TopicDepthSampler.get(vertx, config(), messageStore);
+    messageCompressor = new MessageCompressor(config());
+    publishNotifier = PublishNotifier.get(vertx, config());
+    longPollRegistry = new LongPollRegistry(vertx, messageStore);
+    pushSessions =
+        new PushSessions(
+            vertx,
+            messageStore,
+            usesListEngine()
+                ? config()
+                    .getLong(
+                        ConfigConstants.LEASE_VISIBILITY_MS,
+                        ConfigConstants.DEFAULT_LEASE_VISIBILITY_MS)
+                : 0);
 
     var router = makeRouter();
 
-    vertx.createHttpServer().requestHandler(router).listen(getPort(), getAsyncResultHandler());
+    vertx
+        .createHttpServer()
+        .requestHandler(router)
+        .listen(getPort(), getAsyncResultHandler(startPromise));
   }
 
-  private Handler<AsyncResult<HttpServer>> getAsyncResultHandler() {
+  private Handler<AsyncResult<HttpServer>> getAsyncResultHandler(Promise<Void> startPromise) {
     return result -> {
       if (result.succeeded()) {
         logger.info("Started");
+        startPromise.complete();
       } else {
         logger.info("Failed to start");
+        startPromise.fail(result.cause());
       }
     };
   }
 
   private Integer getPort() {
-    return config().getInteger("http.port", 8080);
+    return config().getInteger(ConfigConstants.HTTP_PORT, ConfigConstants.DEFAULT_HTTP_PORT);
   }
 
   /**
-   * Organize http routing
+   * Organize http routing, every route is timed by the HTTP metrics
    *
    * @return Router object
    */
   private Router makeRouter() {
     Router router = Router.router(vertx);
-    router
-        .post(EndPoints.TOPIC_REGISTER.getVal() + CommonConstants.TOPIC_URL_PARAM)
+    timedRoute(router, HttpMethod.POST, EndPoints.TOPIC_REGISTER)
         .produces(CommonConstants.APPLICATION_JSON)
-        .handler(ServiceVerticle::registerPublisher);
-    router
-        .post(EndPoints.MESSAGE_PUBLISH.getVal() + CommonConstants.TOPIC_URL_PARAM)
+        .handler(this::registerPublisher);
+    timedRoute(router, HttpMethod.POST, EndPoints.MESSAGE_PUBLISH)
         .produces(CommonConstants.APPLICATION_JSON)
         .handler(makeBodyHandler())
-        .handler(ServiceVerticle::publishMessage);
+        .handler(this::publishMessage);
 
-    router
-        .post(EndPoints.TOPIC_SUBSCRIBE.getVal() + CommonConstants.TOPIC_URL_PARAM)
+    timedRoute(router, HttpMethod.POST, EndPoints.MESSAGE_PUBLISH_BATCH)
+        .produces(CommonConstants.APPLICATION_JSON)
+        .handler(
+            makeBodyHandler(
+                config()
+                    .getInteger(
+                        ConfigConstants.PUBLISH_MAX_BATCH_BYTES,
+                        ConfigConstants.DEFAULT_PUBLISH_MAX_BATCH_BYTES)))
+        .handler(this::publishMessages);
+
+    timedRoute(router, HttpMethod.POST, EndPoints.TOPIC_SUBSCRIBE)
         .produces(CommonConstants.APPLICATION_JSON)
         .handler(makeBodyHandler())
-        .handler(ServiceVerticle::subscribe);
+        .handler(this::subscribe);
 
-    router
-        .get(EndPoints.MESSAGE_GET.getVal() + CommonConstants.TOPIC_URL_PARAM)
+    timedRoute(router, HttpMethod.DELETE, EndPoints.TOPIC_UNSUBSCRIBE)
         .produces(CommonConstants.APPLICATION_JSON)
         .handler(makeBodyHandler())
-        .handler(ServiceVerticle::getMessage);
+        .handler(this::unsubscribe);
 
-    router
-        .delete(EndPoints.MESSAGE_ACK.getVal() + CommonConstants.TOPIC_URL_PARAM)
+    timedRoute(router, HttpMethod.GET, EndPoints.MESSAGE_GET)
+        .produces(CommonConstants.APPLICATION_JSON)
+        .handler(makeBodyHandler())
+        .handler(this::getMessage);
+
+    timedRoute(router, HttpMethod.DELETE, EndPoints.MESSAGE_ACK)
+        .produces(CommonConstants.APPLICATION_JSON)
+        .handler(makeBodyHandler())
+        .handler(this::ackMessage);
+
+    timedRoute(router, HttpMethod.POST, EndPoints.MESSAGE_RECEIVE)
         .produces(CommonConstants.APPLICATION_JSON)
         .handler(makeBodyHandler())
-        .handler(ServiceVerticle::ackMessage);
+        .handler(this::receiveMessage);
+
+    // no body handler: it would consume the request before the WebSocket upgrade
+    timedRoute(router, HttpMethod.GET, EndPoints.MESSAGE_STREAM).handler(this::streamMessages);
+
+    router
+        .get(EndPoints.HEALTH.getVal())
+        .produces(CommonConstants.APPLICATION_JSON)
+        .handler(httpMetrics.timer(HttpMethod.GET.name(), EndPoints.HEALTH.getVal()))
+        .handler(this::health);
+
+    router.get(EndPoints.METRICS.getVal()).handler(this::metrics);
     return router;
   }
 
+  /**
+   * Start a topic route with the HTTP metrics timer as its first handler
+   *
+   * @param router router
+   * @param method HTTP method
+   * @param endPoint end point, followed by the topic param
+   * @return route
+   */
+  private Route timedRoute(Router router, HttpMethod method, EndPoints endPoint) {
+    final var path = endPoint.getVal() + CommonConstants.TOPIC_URL_PARAM;
+
+    return router.route(method, path).handler(httpMetrics.timer(method.name(), path));
+  }
+
   /**
    * Body handler: prevent messages larger than 128Kb
    *
    * @return
    */
   private static BodyHandler makeBodyHandler() {
-    return BodyHandler.create().setBodyLimit(128000);
+    return makeBodyHandler(128000);
+  }
+
+  /**
+   * Body handler: prevent bodies larger than the limit
+   *
+   * @param bodyLimit max body size in bytes
+   * @return
+   */
+  private static BodyHandler makeBodyHandler(long bodyLimit) {
+    return BodyHandler.create().setBodyLimit(bodyLimit);
+  }
+
+  /**
+   * Health GET Method handler: report this instance and the message store state
+   *
+   * @param rc routing context
+   */
+  private void health(RoutingContext rc) {
+    final var instance = deploymentID();
+    final var eventLoop = Thread.currentThread().getName();
+
+    messageStore
+        .ping()
+        .onComplete(
+            result -> {
+              final var redisUp = result.succeeded();
+              final var response =
+                  ServiceUtils.toJsonString(
+                      new HealthResponse(
+                          instance, eventLoop, redisUp ? "UP" : "DOWN", counters()),
+                      rc);
+
+              rc.response()
+                  .setStatusCode(
+                      redisUp
+                          ? HttpResponseStatus.OK.code()
+                          : HttpResponseStatus.SERVICE_UNAVAILABLE.code())
+                  .putHeader(CommonConstants.CONTENT_TYPE_HEADER, CommonConstants.APPLICATION_JSON)
+                  .end(response);
+            });
+  }
+
+  /**
+   * Metrics GET Method handler: the node metrics in the Prometheus text format
+   *
+   * @param rc routing context
+   */
+  private void metrics(RoutingContext rc) {
+    final var out = new StringBuilder(16384);
+    httpMetrics.write(out);
+    redisMetrics.write(out);
+    topicDepthSampler.write(out);
+
+    rc.response()
+        .putHeader(CommonConstants.CONTENT_TYPE_HEADER, Prometheus.CONTENT_TYPE)
+        .end(out.toString());
+  }
+
+  /**
+   * Collect the counters of this instance and of the node-wide caches
+   *
+   * @return counters by name
+   */
+  private Map<String, Long> counters() {
+    final var counters = new TreeMap<String, Long>();
+    counters.putAll(messageStore.counters());
+    counters.putAll(publishCoalescer.counters());
+    counters.put("admission.rateLimited", publishRateLimiter.limited());
+    counters.put("longPoll.parked", longPollRegistry.parkedCount());
+    counters.put("push.sessions", pushSessions.sessionCount());
+    return counters;
   }
 
   /**
@@ -174,28 +343,133 @@ public class ServiceVerticle extends AbstractVerticle {
    *
    * @param rc routing context
    */
-  private static void registerPublisher(RoutingContext rc) {
+  private void registerPublisher(RoutingContext rc) {
     final var topic = rc.request().getParam(CommonConstants.TOPIC);
 
-    redisApi
-        .get(topic + CommonConstants.PUBLISHER_SUFFIX)
-        .onSuccess(value -> tryRegisterPublisherForTopic(rc, topic, value))
+    // partition keys are hash-tagged with braces, a topic can't look like one of them
+    if (topic.startsWith("{")) {
+      ServiceUtils.writeError(
+          rc, HttpResponseStatus.BAD_REQUEST.code(), "Topic name can't start with '{'");
+      return;
+    }
+
+    final int partitions;
+    final RetentionPolicy retentionPolicy;
+
+    try {
+      partitions = getPartitions(rc);
+      retentionPolicy = getRetentionPolicy(rc);
+    } catch (IllegalArgumentException e) {
+      ServiceUtils.writeBadRequestError(rc, e, e.getMessage());
+      return;
+    }
+
+    messageStore
+        .publisher(topic)
+        .onSuccess(
+            pubId -> tryRegisterPublisherForTopic(rc, topic, partitions, retentionPolicy, pubId))
         .onFailure(throwable -> ServiceUtils.writeInternalServerError(rc, throwable));
   }
 
+  /**
+   * Read the retention limits of a new topic, the ones not set are taken from the config
+   *
+   * @param rc routing context
+   * @return retention policy, null if no limit is set
+   * @throws IllegalArgumentException if a limit is not a non-negative number
+   */
+  private RetentionPolicy getRetentionPolicy(RoutingContext rc) {
+    final var maxMessages = getRetentionLimit(rc, CommonConstants.RETENTION_MESSAGES);
+    final var maxBytes = getRetentionLimit(rc, CommonConstants.RETENTION_BYTES);
+    final var maxAgeMs = getRetentionLimit(rc, CommonConstants.RETENTION_MS);
+
+    if (maxMessages == null && maxBytes == null && maxAgeMs == null) {
+      return null;
+    }
+
+    final var defaultPolicy = RetentionPolicy.fromConfig(config());
+
+    return new RetentionPolicy(
+        maxMessages == null ? defaultPolicy.getMaxMessages() : maxMessages,
+        maxBytes == null ? defaultPolicy.getMaxBytes() : maxBytes,
+        maxAgeMs == null ? defaultPolicy.getMaxAgeMs() : maxAgeMs);
+  }
+
+  private Long getRetentionLimit(RoutingContext rc, String param) {
+    final var value = rc.request().getParam(param);
+
+    if (value == null) {
+      return null;
+    }
+
+    final long limit;
+
+    try {
+      limit = Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(param + " must be a number");
+    }
+
+    if (limit < 0) {
+      throw new IllegalArgumentException(param + " can't be negative");
+    }
+
+    return limit;
+  }
+
+  /**
+   * Read the partition count of a new topic, 1 if not set
+   *
+   * @param rc routing context
+   * @return partition count
+   * @throws IllegalArgumentException if the count is not a number or out of range
+   */
+  private int getPartitions(RoutingContext rc) {
+    final var value = rc.request().getParam(CommonConstants.PARTITIONS);
+    final var maxPartitions =
+        config()
+            .getInteger(
+                ConfigConstants.TOPIC_MAX_PARTITIONS, ConfigConstants.DEFAULT_TOPIC_MAX_PARTITIONS);
+
+    if (value == null) {
+      return 1;
+    }
+
+    final int partitions;
+
+    try {
+      partitions = Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Partitions must be a number");
+    }
+
+    if (partitions < 1 || partitions > maxPartitions) {
+      throw new IllegalArgumentException("Partitions must be between 1 and " + maxPartitions);
+    }
+
+    return partitions;
+  }
+
   /**
    * Try to register the publisher for the topic
    *
    * @param rc routing context
    * @param topic specified topic
-   * @param publisherFromRedis publisher taken from Redis
+   * @param partitions partition count
+   * @param retentionPolicy retention policy, null for the default one
+   * @param registeredPubId publisher taken from the message store
    */
-  private static void tryRegisterPublisherForTopic(
-      RoutingContext rc, String topic, io.vertx.redis.client.Response publisherFromRedis) {
-    if (publisherFromRedis == null) {
+  private void tryRegisterPublisherForTopic(
+      RoutingContext rc,
+      String topic,
+      int partitions,
+      RetentionPolicy retentionPolicy,
+      String registeredPubId) {
+    if (registeredPubId == null) {
       final var pubId = UUID.randomUUID().toString();
-      redisApi
-          .set(List.of(topic + CommonConstants.PUBLISHER_SUFFIX, pubId))
+
+      messageStore
+          .register(topic, pubId, partitions, retentionPolicy)
           .onSuccess(
               val -> {
                 final var response =
@@ -215,7 +489,7 @@ public class ServiceVerticle extends AbstractVerticle {
    *
    * @param rc routing context
    */
-  private static void publishMessage(RoutingContext rc) {
+  private void publishMessage(RoutingContext rc) {
     final var topic = rc.request().getParam(CommonConstants.TOPIC);
 
     if (topic == null) {
@@ -223,14 +497,19 @@ public class ServiceVerticle extends AbstractVerticle {
       return;
     }
 
+    if (rc.getBody() == null) {
+      ServiceUtils.writeError(rc, HttpResponseStatus.BAD_REQUEST.code(), "Request body is empty");
+      return;
+    }
+
     try {
-      final var request = MAPPER.readValue(rc.getBodyAsString(), PublishMessageRequest.class);
+      final var request = RawPublishMessageRequest.parse(rc.getBody());
 
-      redisApi
-          .get(topic + CommonConstants.PUBLISHER_SUFFIX)
-          .onSuccess(value -> tryPublishMessage(rc, topic, request, value))
+      messageStore
+          .publisher(topic)
+          .onSuccess(pubId -> tryPublishMessage(rc, topic, request, pubId))
           .onFailure(throwable -> ServiceUtils.writeInternalServerError(rc, throwable));
-    } catch (JsonProcessingException e) {
+    } catch (IOException e) {
       logger.warn(e.getMessage());
       rc.response()
           .setStatusCode(HttpResponseStatus.BAD_REQUEST.code())
@@ -244,31 +523,183 @@ public class ServiceVerticle extends AbstractVerticle {
    * @param rc routing context
    * @param topic topic
    * @param request request data
-   * @param topicFromRedis topic from Redis
+   * @param registeredPubId publisher of the topic taken from the message store
    */
-  private static void tryPublishMessage(
-      RoutingContext rc,
-      String topic,
-      PublishMessageRequest request,
-      io.vertx.redis.client.Response topicFromRedis) {
+  private void tryPublishMessage(
+      RoutingContext rc, String topic, RawPublishMessageRequest request, String registeredPubId) {
 
-    if (topicFromRedis == null) {
+    if (isPublisherAuthorized(rc, topic, request.getPubId(), registeredPubId)
+        && isPublishAdmitted(rc, topic, 1)) {
+      messageStore
+          .route(topic, rc.request().getParam(CommonConstants.KEY))
+          .onSuccess(
+              topicKey ->
+                  ServiceUtils.publishMessage(
+                      publishCoalescer,
+                      messageCompressor,
+                      publishNotifier,
+                      rc,
+                      request,
+                      topic,
+                      topicKey))
+          .onFailure(throwable -> ServiceUtils.writeInternalServerError(rc, throwable));
+    }
+  }
+
+  /**
+   * Check the publisher is the one registered to the topic, writing the error response otherwise
+   *
+   * @param rc routing context
+   * @param topic topic
+   * @param pubId publisher from the request
+   * @param registeredPubId publisher of the topic taken from the message store
+   * @return true if the publisher can publish to the topic
+   */
+  private static boolean isPublisherAuthorized(
+      RoutingContext rc, String topic, String pubId, String registeredPubId) {
+    if (registeredPubId == null) {
       ServiceUtils.writeError(rc, HttpResponseStatus.NOT_FOUND.code(), "Topic was not found");
-    } else {
-      if (topicFromRedis.toString().equals(request.getPubId())) {
+      return false;
+    }
 
-        ServiceUtils.publishMessage(redisApi, rc, request, topic);
-      } else {
-        ServiceUtils.writeError(
-            rc,
-            HttpResponseStatus.UNAUTHORIZED.code(),
-            "Publisher "
-                + request.getPubId()
-                + " is not registered to topic "
-                + topic
-                + " and cannot publish messages to it");
+    if (!registeredPubId.equals(pubId)) {
+      ServiceUtils.writeError(
+          rc,
+          HttpResponseStatus.UNAUTHORIZED.code(),
+          "Publisher "
+              + pubId
+              + " is not registered to topic "
+              + topic
+              + " and cannot publish messages to it");
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Check the topic is within its publish rate, writing a too many requests response otherwise
+   *
+   * @param rc routing context
+   * @param topic topic
+   * @param messages number of messages to publish
+   * @return true if the messages can be published
+   */
+  private boolean isPublishAdmitted(RoutingContext rc, String topic, int messages) {
+    try {
+      publishRateLimiter.acquire(topic, messages);
+      return true;
+    } catch (OverloadedException e) {
+      ServiceUtils.writeTooManyRequestsError(rc, e);
+      return false;
+    }
+  }
+
+  /**
+   * Publish Batch POST Method handler: a JSON batch or NDJSON lines of one publisher
+   *
+   * @param rc routing context
+   */
+  private void publishMessages(RoutingContext rc) {
+    final var topic = rc.request().getParam(CommonConstants.TOPIC);
+
+    if (topic == null) {
+      ServiceUtils.writeError(rc, HttpResponseStatus.BAD_REQUEST.code(), "Topic was not set");
+      return;
+    }
+
+    final PublishBatchRequest request;
+
+    try {
+      request = readPublishBatchRequest(rc);
+    } catch (JsonProcessingException | IllegalArgumentException e) {
+      ServiceUtils.writeBadRequestError(rc, e, "Couldn't read request body");
+      return;
+    }
+
+    final var maxBatchMessages =
+        config()
+            .getInteger(
+                ConfigConstants.PUBLISH_MAX_BATCH_MESSAGES,
+                ConfigConstants.DEFAULT_PUBLISH_MAX_BATCH_MESSAGES);
+
+    if (request.getMessages() == null || request.getMessages().isEmpty()) {
+      ServiceUtils.writeError(rc, HttpResponseStatus.BAD_REQUEST.code(), "No messages to publish");
+      return;
+    }
+
+    if (request.getMessages().size() > maxBatchMessages) {
+      ServiceUtils.writeError(
+          rc,
+          HttpResponseStatus.BAD_REQUEST.code(),
+          "A batch can't have more than " + maxBatchMessages + " messages");
+      return;
+    }
+
+    messageStore
+        .publisher(topic)
+        .onSuccess(
+            registeredPubId -> {
+              if (isPublisherAuthorized(rc, topic, request.getPubId(), registeredPubId)
+                  && isPublishAdmitted(rc, topic, request.getMessages().size())) {
+                messageStore
+                    .route(topic, rc.request().getParam(CommonConstants.KEY))
+                    .onSuccess(
+                        topicKey ->
+                            ServiceUtils.publishMessages(
+                                messageStore,
+                                messageCompressor,
+                                publishNotifier,
+                                rc,
+                                request.getMessages(),
+                                topic,
+                                topicKey))
+                    .onFailure(throwable -> ServiceUtils.writeInternalServerError(rc, throwable));
+              }
+            })
+        .onFailure(throwable -> ServiceUtils.writeInternalServerError(rc, throwable));
+  }
+
+  /**
+   * Read a batch either from a JSON body or from NDJSON lines sharing the same pubId
+   *
+   * @param rc routing context
+   * @return batch request
+   * @throws JsonProcessingException if the body is not a valid JSON
+   */
+  private static PublishBatchRequest readPublishBatchRequest(RoutingContext rc)
+      throws JsonProcessingException {
+    final var contentType = rc.request().getHeader(CommonConstants.CONTENT_TYPE_HEADER);
+    final var body = rc.getBodyAsString();
+
+    if (body == null) {
+      throw new IllegalArgumentException("Request body is empty");
+    }
+
+    if (contentType == null || !contentType.startsWith(CommonConstants.APPLICATION_NDJSON)) {
+      return MAPPER.readValue(body, PublishBatchRequest.class);
+    }
+
+    String pubId = null;
+    final var messages = new ArrayList<String>();
+
+    for (var line : body.split("\n")) {
+      if (line.isBlank()) {
+        continue;
+      }
+
+      final var request = MAPPER.readValue(line, PublishMessageRequest.class);
+
+      if (pubId == null) {
+        pubId = request.getPubId();
+      } else if (!pubId.equals(request.getPubId())) {
+        throw new IllegalArgumentException("Batch messages have different publishers");
       }
+
+      messages.add(request.getMessage());
     }
+
+    return new PublishBatchRequest(pubId, messages);
   }
 
   /**
@@ -276,7 +707,7 @@ public class ServiceVerticle extends AbstractVerticle {
    *
    * @param rc routing context
    */
-  private static void subscribe(RoutingContext rc) {
+  private void subscribe(RoutingContext rc) {
     final var topic = rc.request().getParam(CommonConstants.TOPIC);
 
     if (topic == null) {
@@ -284,27 +715,70 @@ public class ServiceVerticle extends AbstractVerticle {
       return;
     }
 
-    redisApi
-        .get(topic + CommonConstants.PUBLISHER_SUFFIX)
+    messageStore
+        .publisher(topic)
         .onSuccess(
-            value -> {
-              if (value == null) {
+            pubId -> {
+              if (pubId == null) {
                 ServiceUtils.writeError(
                     rc, HttpResponseStatus.NOT_FOUND.code(), "Topic was not found");
                 return;
               }
 
-              ServiceUtils.subscribeToTopic(redisApi, rc, topic);
+              ServiceUtils.subscribeToTopic(messageStore, rc, topic);
             })
         .onFailure(throwable -> ServiceUtils.writeInternalServerError(rc, throwable));
   }
 
+  /**
+   * Unsubscribe DELETE Method handler
+   *
+   * @param rc routing context
+   */
+  private void unsubscribe(RoutingContext rc) {
+    final var topic = rc.request().getParam(CommonConstants.TOPIC);
+
+    if (topic == null) {
+      ServiceUtils.writeError(rc, HttpResponseStatus.BAD_REQUEST.code(), "Topic was not set");
+      return;
+    }
+
+    try {
+      final var request = MAPPER.readValue(rc.getBodyAsString(), GetMessageRequest.class);
+      final var subId = request.getSubId();
+
+      messageStore
+          .subscriber(subId)
+          .onSuccess(
+              subInfo -> {
+                if (subInfo == null) {
+                  ServiceUtils.writeError(
+                      rc, HttpResponseStatus.NOT_FOUND.code(), "Unknown subscriber id " + subId);
+                  return;
+                }
+
+                if (!subInfo.getTopic().equals(topic)) {
+                  ServiceUtils.writeError(
+                      rc,
+                      HttpResponseStatus.NOT_FOUND.code(),
+                      "The subscriber " + subId + "is not subscribed to topic " + topic);
+                  return;
+                }
+
+                ServiceUtils.unsubscribeFromTopic(messageStore, rc, subInfo);
+              })
+          .onFailure(throwable -> ServiceUtils.writeInternalServerError(rc, throwable));
+    } catch (JsonProcessingException e) {
+      ServiceUtils.writeBadRequestError(rc, e, "Couldn't read request body");
+    }
+  }
+
   /**
    * Get Message Get Method handler (get a message, but don't take it out from the topic)
    *
    * @param rc routing context
    */
-  private static void getMessage(RoutingContext rc) {
+  private void getMessage(RoutingContext rc) {
     final var topic = rc.request().getParam(CommonConstants.TOPIC);
 
     if (topic == null) {
@@ -312,13 +786,48 @@ public class ServiceVerticle extends AbstractVerticle {
       return;
     }
 
+    final var offsetParam = rc.request().getParam(CommonConstants.OFFSET);
+
+    if (offsetParam != null && !usesListEngine()) {
+      ServiceUtils.writeError(
+          rc,
+          HttpResponseStatus.NOT_IMPLEMENTED.code(),
+          "Offset reads need the list storage engine");
+      return;
+    }
+
+    final long waitMs;
+    final int max;
+    final long maxBytes;
+    final Long offset;
+    final String topicKey;
+
+    try {
+      waitMs = getWaitMs(rc);
+      max = getMax(rc);
+      maxBytes = getMaxBytes(rc);
+      offset = offsetParam == null ? null : Math.max(0, Long.parseLong(offsetParam));
+      topicKey = getTopicKey(rc, topic);
+    } catch (NumberFormatException e) {
+      ServiceUtils.writeBadRequestError(
+          rc, e, "Wait, max, maxBytes, offset and partition must be numbers");
+      return;
+    }
+
     try {
       final var request = MAPPER.readValue(rc.getBodyAsString(), GetMessageRequest.class);
       final var subId = request.getSubId();
 
-      redisApi
-          .get(subId)
-          .onSuccess(subInfoResponse -> tryGetMessage(rc, topic, subId, subInfoResponse))
+      messageStore
+          .subscriber(subId)
+          .onSuccess(
+              subInfo -> {
+                if (offset == null) {
+                  tryGetMessage(rc, topic, subId, subInfo, waitMs, max, maxBytes);
+                } else {
+                  tryReadMessages(rc, topic, subId, subInfo, topicKey, offset, max, maxBytes);
+                }
+              })
           .onFailure(throwable -> ServiceUtils.writeInternalServerError(rc, throwable));
     } catch (JsonProcessingException e) {
       ServiceUtils.writeBadRequestError(rc, e, "Couldn't read request body");
@@ -326,27 +835,30 @@ public class ServiceVerticle extends AbstractVerticle {
   }
 
   /**
-   * Try to get the message
+   * Try to get the message, or a range of messages if max or maxBytes is set
    *
    * @param rc routing context
    * @param topic topic
    * @param subId subscriber id
-   * @param subInfoFromRedis subscriber info
+   * @param subInfo subscriber info taken from the message store
+   * @param waitMs how long to wait for a message if there is none, 0 to respond immediately
+   * @param max max number of messages of a range, 0 to get a single message
+   * @param maxBytes max total size of a range
    */
-  private static void tryGetMessage(
+  private void tryGetMessage(
       RoutingContext rc,
       String topic,
       String subId,
-      io.vertx.redis.client.Response subInfoFromRedis) {
-    if (subInfoFromRedis == null) {
+      SubscriberInfo subInfo,
+      long waitMs,
+      int max,
+      long maxBytes) {
+    if (subInfo == null) {
       ServiceUtils.writeError(
           rc, HttpResponseStatus.NOT_FOUND.code(), "Unknown subscriber id " + subId);
       return;
     }
 
-    final var subInfo =
-        ServiceUtils.fromString(subInfoFromRedis.toString(), SubscriberInfo.class, rc);
-
     if (!subInfo.getTopic().equals(topic)) {
       ServiceUtils.writeError(
           rc,
@@ -355,39 +867,229 @@ public class ServiceVerticle extends AbstractVerticle {
       return;
     }
 
-    redisApi
-        .lrange(topic, "0", "0")
+    if (max > 0) {
+      // a long poll only waits for the first message, the range is read once it's there
+      final Future<List<Message>> nextMessages =
+          waitMs > 0
+              ? longPollRegistry
+                  .poll(subInfo, waitMs, rc.response())
+                  .compose(
+                      message ->
+                          message == null
+                              ? Future.<List<Message>>succeededFuture(List.of())
+                              : messageStore.peek(subInfo, max, maxBytes))
+              : messageStore.peek(subInfo, max, maxBytes);
+
+      nextMessages
+          .onSuccess(
+              messages -> {
+                if (!rc.response().closed()) {
+                  writeMessages(rc, messages);
+                }
+              })
+          .onFailure(throwable -> ServiceUtils.writeInternalServerError(rc, throwable));
+      return;
+    }
+
+    final var nextMessage =
+        waitMs > 0
+            ? longPollRegistry.poll(subInfo, waitMs, rc.response())
+            : messageStore.peek(subInfo);
+
+    nextMessage
         .onSuccess(
-            rangeValue -> {
-              if (rangeValue == null || rangeValue.size() == 0) {
-                rc.response().setStatusCode(HttpResponseStatus.OK.code()).end("");
-                return;
+            message -> {
+              if (!rc.response().closed()) {
+                writeMessage(rc, message);
               }
+            })
+        .onFailure(throwable -> ServiceUtils.writeInternalServerError(rc, throwable));
+  }
 
-              final var message =
-                  ServiceUtils.fromString(rangeValue.get(0).toString(), Message.class, rc);
-
-              if (subInfo.getTs() > message.getTs()) {
-                rc.response().setStatusCode(HttpResponseStatus.OK.code()).end("");
-              } else {
-                rc.response()
-                    .setStatusCode(HttpResponseStatus.OK.code())
-                    .putHeader(
-                        CommonConstants.CONTENT_TYPE_HEADER, CommonConstants.APPLICATION_JSON)
-                    .end(
-                        ServiceUtils.toJsonString(
-                            new GetMessageResponse(message.getMessage()), rc));
-              }
+  /**
+   * Try to read a range of messages from an offset, whether the subscribers acked them or not
+   *
+   * @param rc routing context
+   * @param topic topic
+   * @param subId subscriber id
+   * @param subInfo subscriber info taken from the message store
+   * @param topicKey topic or partition storage key to read
+   * @param offset first topic sequence to read
+   * @param max max number of messages, 0 for get.maxMessages
+   * @param maxBytes max total size of the range
+   */
+  private void tryReadMessages(
+      RoutingContext rc,
+      String topic,
+      String subId,
+      SubscriberInfo subInfo,
+      String topicKey,
+      long offset,
+      int max,
+      long maxBytes) {
+    if (subInfo == null) {
+      ServiceUtils.writeError(
+          rc, HttpResponseStatus.NOT_FOUND.code(), "Unknown subscriber id " + subId);
+      return;
+    }
+
+    if (!subInfo.getTopic().equals(topic)) {
+      ServiceUtils.writeError(
+          rc,
+          HttpResponseStatus.NOT_FOUND.code(),
+          "The subscriber " + subId + "is not subscribed to topic " + topic);
+      return;
+    }
+
+    final var count =
+        max > 0
+            ? max
+            : config()
+                .getInteger(
+                    ConfigConstants.GET_MAX_MESSAGES, ConfigConstants.DEFAULT_GET_MAX_MESSAGES);
+
+    messageStore
+        .read(subInfo, topicKey, offset, count, maxBytes)
+        .onSuccess(
+            messages -> {
+              final var payloads =
+                  messages.stream().map(Message::getMessage).collect(Collectors.toList());
+              // an empty read is retried from the same offset
+              final var nextOffset =
+                  messages.isEmpty() ? offset : messages.get(messages.size() - 1).getSeq() + 1;
+
+              rc.response()
+                  .setStatusCode(HttpResponseStatus.OK.code())
+                  .putHeader(CommonConstants.CONTENT_TYPE_HEADER, CommonConstants.APPLICATION_JSON)
+                  .end(
+                      ServiceUtils.toJsonString(
+                          new ReadMessagesResponse(payloads, nextOffset), rc));
             })
         .onFailure(throwable -> ServiceUtils.writeInternalServerError(rc, throwable));
   }
 
+  /**
+   * Write a message, or a blank response if there is none. A deflated message is written as is to
+   * a client accepting the deflate encoding.
+   *
+   * @param rc routing context
+   * @param message message or null
+   */
+  private static void writeMessage(RoutingContext rc, Message message) {
+    if (message == null) {
+      rc.response().setStatusCode(HttpResponseStatus.OK.code()).end("");
+      return;
+    }
+
+    rc.response()
+        .setStatusCode(HttpResponseStatus.OK.code())
+        .putHeader(CommonConstants.CONTENT_TYPE_HEADER, CommonConstants.APPLICATION_JSON)
+        .putHeader(CommonConstants.VARY_HEADER, CommonConstants.ACCEPT_ENCODING_HEADER);
+
+    if (message instanceof CompressedMessage
+        && ((CompressedMessage) message).isJson()
+        && ServiceUtils.acceptsEncoding(rc, CommonConstants.DEFLATE)) {
+      rc.response()
+          .putHeader(CommonConstants.CONTENT_ENCODING_HEADER, CommonConstants.DEFLATE)
+          .end(((CompressedMessage) message).toDeflateResponse());
+      return;
+    }
+
+    rc.response()
+        .end(ServiceUtils.toJsonString(new GetMessageResponse(message.getMessage()), rc));
+  }
+
+  /**
+   * Write a range of messages, an empty range is written as an empty list
+   *
+   * @param rc routing context
+   * @param messages messages
+   */
+  private static void writeMessages(RoutingContext rc, List<Message> messages) {
+    final var payloads = messages.stream().map(Message::getMessage).collect(Collectors.toList());
+
+    rc.response()
+        .setStatusCode(HttpResponseStatus.OK.code())
+        .putHeader(CommonConstants.CONTENT_TYPE_HEADER, CommonConstants.APPLICATION_JSON)
+        .end(ServiceUtils.toJsonString(new GetMessagesResponse(payloads), rc));
+  }
+
+  /**
+   * Read the wait query param capped by the longPoll.maxWaitMs config
+   *
+   * @param rc routing context
+   * @return wait in milliseconds, 0 if not set
+   */
+  private long getWaitMs(RoutingContext rc) {
+    final var wait = rc.request().getParam(CommonConstants.WAIT);
+
+    if (wait == null) {
+      return 0;
+    }
+
+    final var maxWaitMs =
+        config()
+            .getLong(
+                ConfigConstants.LONG_POLL_MAX_WAIT_MS,
+                ConfigConstants.DEFAULT_LONG_POLL_MAX_WAIT_MS);
+
+    return Math.max(0, Math.min(Long.parseLong(wait), maxWaitMs));
+  }
+
+  /**
+   * Read the max query param capped by the get.maxMessages config. If only maxBytes is set, the
+   * range is capped by the config alone.
+   *
+   * @param rc routing context
+   * @return max number of messages of a range, 0 if neither max nor maxBytes is set
+   */
+  private int getMax(RoutingContext rc) {
+    final var max = rc.request().getParam(CommonConstants.MAX);
+    final var maxBytes = rc.request().getParam(CommonConstants.MAX_BYTES);
+
+    if (max == null && maxBytes == null) {
+      return 0;
+    }
+
+    final var maxMessages =
+        config()
+            .getInteger(ConfigConstants.GET_MAX_MESSAGES, ConfigConstants.DEFAULT_GET_MAX_MESSAGES);
+
+    return max == null ? maxMessages : Math.max(1, Math.min(Integer.parseInt(max), maxMessages));
+  }
+
+  /**
+   * Read the partition query param
+   *
+   * @param rc routing context
+   * @param topic topic
+   * @return storage key of the partition, the first one if not set
+   */
+  private static String getTopicKey(RoutingContext rc, String topic) {
+    final var partition = rc.request().getParam(CommonConstants.PARTITION);
+
+    return PartitionedTopicStore.partitionKey(
+        topic, partition == null ? 0 : Math.max(0, Integer.parseInt(partition)));
+  }
+
+  /**
+   * Read the maxBytes query param
+   *
+   * @param rc routing context
+   * @return max total size of a range, unlimited if not set
+   */
+  private static long getMaxBytes(RoutingContext rc) {
+    final var maxBytes = rc.request().getParam(CommonConstants.MAX_BYTES);
+
+    return maxBytes == null ? Long.MAX_VALUE : Math.max(0, Long.parseLong(maxBytes));
+  }
+
   /**
    * Ack Message Delete Method handler (get a message and take it out from the topic)
    *
    * @param rc routing context
    */
-  private static void ackMessage(RoutingContext rc) {
+  private void ackMessage(RoutingContext rc) {
     final var topic = rc.request().getParam(CommonConstants.TOPIC);
 
     if (topic == null) {
@@ -395,33 +1097,150 @@ public class ServiceVerticle extends AbstractVerticle {
       return;
     }
 
+    final int max;
+    final long maxBytes;
+
     try {
-      final var request = MAPPER.readValue(rc.getBodyAsString(), GetMessageRequest.class);
+      max = getMax(rc);
+      maxBytes = getMaxBytes(rc);
+    } catch (NumberFormatException e) {
+      ServiceUtils.writeBadRequestError(rc, e, "Max and maxBytes must be numbers");
+      return;
+    }
+
+    try {
+      final var request = MAPPER.readValue(rc.getBodyAsString(), AckMessageRequest.class);
       final var subId = request.getSubId();
+      final var receipt = request.getReceipt();
 
-      redisApi
-          .get(subId)
-          .onSuccess(subInfoResponse -> tryAckMessage(rc, topic, subId, subInfoResponse))
+      if (receipt != null && !usesListEngine()) {
+        writeLeasesNotSupported(rc);
+        return;
+      }
+
+      // a received message is acked alone, the range params only apply to the topic head
+      final var ack =
+          receipt != null
+              ? messageStore.ackLease(topic, subId, receipt)
+              : messageStore.ack(topic, subId, Math.max(1, max), maxBytes);
+
+      ack.onSuccess(
+              ackResult -> tryAckMessage(rc, topic, subId, ackResult, receipt == null && max > 0))
           .onFailure(throwable -> ServiceUtils.writeInternalServerError(rc, throwable));
     } catch (JsonProcessingException e) {
       ServiceUtils.writeInternalServerError(rc, e);
     }
   }
 
-  private static void tryAckMessage(
+  /**
+   * Write the result of the ack: the subscriber check and taking the message out are done
+   * atomically by the message store, so concurrent acks never take a message out twice
+   *
+   * @param rc routing context
+   * @param topic topic
+   * @param subId subscriber id
+   * @param ackResult ack result: status and the acked messages
+   * @param range whether a range was acked and should be written as a list
+   */
+  private void tryAckMessage(
+      RoutingContext rc, String topic, String subId, AckResult ackResult, boolean range) {
+    final var status = ackResult.getStatus();
+
+    if (status == AckResult.UNKNOWN_SUBSCRIBER) {
+      ServiceUtils.writeError(
+          rc, HttpResponseStatus.NOT_FOUND.code(), "Unknown subscriber id " + subId);
+      return;
+    }
+
+    if (status == AckResult.WRONG_TOPIC) {
+      ServiceUtils.writeError(
+          rc,
+          HttpResponseStatus.NOT_FOUND.code(),
+          "The subscriber " + subId + "is not subscribed to topic " + topic);
+      return;
+    }
+
+    if (status == AckResult.UNKNOWN_LEASE) {
+      ServiceUtils.writeError(
+          rc, HttpResponseStatus.NOT_FOUND.code(), "Unknown or expired receipt");
+      return;
+    }
+
+    if (range) {
+      writeMessages(rc, ackResult.getMessages());
+      return;
+    }
+
+    writeMessage(rc, status == AckResult.ACKED ? ackResult.getMessage() : null);
+  }
+
+  /**
+   * Receive Message POST Method handler (take a message out of the topic under a lease, it's put
+   * back unless acked with the receipt before the lease expires)
+   *
+   * @param rc routing context
+   */
+  private void receiveMessage(RoutingContext rc) {
+    final var topic = rc.request().getParam(CommonConstants.TOPIC);
+
+    if (topic == null) {
+      ServiceUtils.writeError(rc, HttpResponseStatus.BAD_REQUEST.code(), "Topic was not set");
+      return;
+    }
+
+    if (!usesListEngine()) {
+      writeLeasesNotSupported(rc);
+      return;
+    }
+
+    final long waitMs;
+    final long visibilityMs;
+
+    try {
+      waitMs = getWaitMs(rc);
+      visibilityMs = getVisibilityMs(rc);
+    } catch (NumberFormatException e) {
+      ServiceUtils.writeBadRequestError(rc, e, "Wait and visibilityMs must be numbers");
+      return;
+    }
+
+    try {
+      final var request = MAPPER.readValue(rc.getBodyAsString(), GetMessageRequest.class);
+      final var subId = request.getSubId();
+
+      messageStore
+          .subscriber(subId)
+          .onSuccess(
+              subInfo -> tryReceiveMessage(rc, topic, subId, subInfo, waitMs, visibilityMs))
+          .onFailure(throwable -> ServiceUtils.writeInternalServerError(rc, throwable));
+    } catch (JsonProcessingException e) {
+      ServiceUtils.writeBadRequestError(rc, e, "Couldn't read request body");
+    }
+  }
+
+  /**
+   * Try to receive the message, after waiting for one if the topic is empty
+   *
+   * @param rc routing context
+   * @param topic topic
+   * @param subId subscriber id
+   * @param subInfo subscriber info taken from the message store
+   * @param waitMs how long to wait for a message if there is none, 0 to respond immediately
+   * @param visibilityMs lease duration
+   */
+  private void tryReceiveMessage(
       RoutingContext rc,
       String topic,
       String subId,
-      io.vertx.redis.client.Response subInfoResponse) {
-    if (subInfoResponse == null) {
+      SubscriberInfo subInfo,
+      long waitMs,
+      long visibilityMs) {
+    if (subInfo == null) {
       ServiceUtils.writeError(
           rc, HttpResponseStatus.NOT_FOUND.code(), "Unknown subscriber id " + subId);
       return;
     }
 
-    final var subInfo =
-        ServiceUtils.fromString(subInfoResponse.toString(), SubscriberInfo.class, rc);
-
     if (!subInfo.getTopic().equals(topic)) {
       ServiceUtils.writeError(
           rc,
@@ -430,41 +1249,146 @@ public class ServiceVerticle extends AbstractVerticle {
       return;
     }
 
-    redisApi
-        .lrange(topic, "0", "0")
+    // a long poll only waits for a message, another subscriber may still receive it first
+    final Future<Boolean> ready =
+        waitMs > 0
+            ? longPollRegistry.poll(subInfo, waitMs, rc.response()).map(message -> message != null)
+            : Future.succeededFuture(true);
+
+    ready
+        .compose(
+            found ->
+                found && !rc.response().closed()
+                    ? messageStore.receive(
+                        topic, subId, System.currentTimeMillis() + visibilityMs)
+                    : Future.succeededFuture(
+                        new AckResult(AckResult.NOTHING_TO_ACK, List.of())))
         .onSuccess(
-            rangeValue -> {
-              if (rangeValue == null || rangeValue.size() == 0) {
-                rc.response().setStatusCode(HttpResponseStatus.OK.code()).end("");
+            ackResult -> {
+              if (rc.response().closed()) {
                 return;
               }
-              final var message =
-                  ServiceUtils.fromString(rangeValue.get(0).toString(), Message.class, rc);
-
-              if (subInfo.getTs() > message.getTs()) {
-                rc.response().setStatusCode(HttpResponseStatus.OK.code()).end("");
-              } else {
-                redisApi
-                    .lpop(topic)
-                    .onSuccess(
-                        responseValue -> {
-                          if (responseValue == null) {
-                            rc.response().setStatusCode(HttpResponseStatus.OK.code()).end("");
-                            return;
-                          }
-
-                          rc.response()
-                              .setStatusCode(HttpResponseStatus.OK.code())
-                              .putHeader(
-                                  CommonConstants.CONTENT_TYPE_HEADER,
-                                  CommonConstants.APPLICATION_JSON)
-                              .end(
-                                  ServiceUtils.toJsonString(
-                                      new GetMessageResponse(message.getMessage()), rc));
-                        })
-                    .onFailure(throwable -> ServiceUtils.writeInternalServerError(rc, throwable));
+
+              if (ackResult.getStatus() != AckResult.ACKED) {
+                tryAckMessage(rc, topic, subId, ackResult, false);
+                return;
               }
+
+              rc.response()
+                  .setStatusCode(HttpResponseStatus.OK.code())
+                  .putHeader(CommonConstants.CONTENT_TYPE_HEADER, CommonConstants.APPLICATION_JSON)
+                  .end(
+                      ServiceUtils.toJsonString(
+                          new ReceiveMessageResponse(
+                              ackResult.getMessage().getMessage(), ackResult.getReceipt()),
+                          rc));
             })
         .onFailure(throwable -> ServiceUtils.writeInternalServerError(rc, throwable));
   }
+
+  /**
+   * Read the visibilityMs query param capped by the lease.maxVisibilityMs config
+   *
+   * @param rc routing context
+   * @return lease duration, lease.visibilityMs if not set
+   */
+  private long getVisibilityMs(RoutingContext rc) {
+    final var visibilityMs = rc.request().getParam(CommonConstants.VISIBILITY_MS);
+
+    if (visibilityMs == null) {
+      return config()
+          .getLong(
+              ConfigConstants.LEASE_VISIBILITY_MS, ConfigConstants.DEFAULT_LEASE_VISIBILITY_MS);
+    }
+
+    final var maxVisibilityMs =
+        config()
+            .getLong(
+                ConfigConstants.LEASE_MAX_VISIBILITY_MS,
+                ConfigConstants.DEFAULT_LEASE_MAX_VISIBILITY_MS);
+
+    return Math.max(1, Math.min(Long.parseLong(visibilityMs), maxVisibilityMs));
+  }
+
+  /** @return whether the storage engine sequences messages and keeps them in flight under leases */
+  private boolean usesListEngine() {
+    return TopicStore.LIST_ENGINE.equals(
+        config().getString(ConfigConstants.STORAGE_ENGINE, TopicStore.LIST_ENGINE));
+  }
+
+  private static void writeLeasesNotSupported(RoutingContext rc) {
+    ServiceUtils.writeError(
+        rc,
+        HttpResponseStatus.NOT_IMPLEMENTED.code(),
+        "Receive and receipt acks need the list storage engine");
+  }
+
+  /**
+   * Stream Messages GET Method handler: a WebSocket if the request asks for an upgrade, Server-Sent
+   * Events otherwise
+   *
+   * @param rc routing context
+   */
+  private void streamMessages(RoutingContext rc) {
+    final var topic = rc.request().getParam(CommonConstants.TOPIC);
+    final var subId = rc.request().getParam(CommonConstants.SUB_ID);
+
+    if (topic == null) {
+      ServiceUtils.writeError(rc, HttpResponseStatus.BAD_REQUEST.code(), "Topic was not set");
+      return;
+    }
+
+    if (subId == null) {
+      ServiceUtils.writeError(
+          rc, HttpResponseStatus.BAD_REQUEST.code(), "Subscriber id was not set");
+      return;
+    }
+
+    // keep the request from being read until it's upgraded
+    rc.request().pause();
+
+    messageStore
+        .subscriber(subId)
+        .onSuccess(subInfo -> tryStreamMessages(rc, topic, subId, subInfo))
+        .onFailure(throwable -> ServiceUtils.writeInternalServerError(rc, throwable));
+  }
+
+  /**
+   * Try to open the push stream of the subscriber
+   *
+   * @param rc routing context
+   * @param topic topic
+   * @param subId subscriber id
+   * @param subInfo subscriber info taken from the message store
+   */
+  private void tryStreamMessages(
+      RoutingContext rc, String topic, String subId, SubscriberInfo subInfo) {
+    if (subInfo == null) {
+      ServiceUtils.writeError(
+          rc, HttpResponseStatus.NOT_FOUND.code(), "Unknown subscriber id " + subId);
+      return;
+    }
+
+    if (!subInfo.getTopic().equals(topic)) {
+      ServiceUtils.writeError(
+          rc,
+          HttpResponseStatus.NOT_FOUND.code(),
+          "The subscriber " + subId + "is not subscribed to topic " + topic);
+      return;
+    }
+
+    final var upgrade = rc.request().getHeader(CommonConstants.UPGRADE_HEADER);
+
+    if (!CommonConstants.WEBSOCKET.equalsIgnoreCase(upgrade)) {
+      pushSessions.openEventStream(rc.response(), subInfo);
+      return;
+    }
+
+    final var autoAck = Boolean.parseBoolean(rc.request().getParam(CommonConstants.AUTO_ACK));
+
+    rc.request()
+        .toWebSocket()
+        .onSuccess(ws -> pushSessions.openWebSocket(ws, subInfo, autoAck))
+        .onFailure(throwable -> logger.warn("Failed to upgrade to WebSocket: " + throwable));
+  }
 }
@@ -0,0 +1,36 @@
+package com.morozov.pubsub;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import java.util.function.Supplier;
+
+/** Node-wide resources shared by all the verticle instances of a Vert.x instance */
+public class SharedResources {
+  private static final String LOCAL_MAP_NAME = "pubsub.shared";
+
+  /**
+   * Get the resource registered under the name or create it on the first call
+   *
+   * @param vertx Vert.x instance
+   * @param name resource name
+   * @param factory resource factory
+   * @param <T> resource type
+   * @return shared resource
+   */
+  @SuppressWarnings("unchecked")
+  public static <T extends Shareable> T get(Vertx vertx, String name, Supplier<T> factory) {
+    final LocalMap<String, Shareable> resources = vertx.sharedData().getLocalMap(LOCAL_MAP_NAME);
+
+    synchronized (SharedResources.class) {
+      var resource = (T) resources.get(name);
+
+      if (resource == null) {
+        resource = factory.get();
+        resources.put(name, resource);
+      }
+
+      return resource;
+    }
+  }
+}
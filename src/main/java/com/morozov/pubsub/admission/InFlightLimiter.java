@@ -0,0 +1,57 @@
+package com.morozov.pubsub.admission;
+
+import io.vertx.core.Future;
+import java.util.function.Supplier;
+
+/**
+ * Bound on the Redis operations a verticle has in flight. Above it, new operations fail right away
+ * with an {@link OverloadedException} instead of queueing behind the Redis connection pool, so the
+ * latency of the admitted ones stays predictable under a burst.
+ *
+ * <p>Confined to the event loop of its verticle.
+ */
+public class InFlightLimiter {
+  private final int maxInFlight;
+  private final long retryAfterSeconds;
+  private int inFlight;
+  private long rejected;
+
+  /**
+   * @param maxInFlight max operations in flight, 0 for unlimited
+   * @param retryAfterSeconds delay the refused clients are asked to wait
+   */
+  public InFlightLimiter(int maxInFlight, long retryAfterSeconds) {
+    this.maxInFlight = maxInFlight;
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  /**
+   * Start the operation if the limit allows it
+   *
+   * @param operation operation to start
+   * @param <T> result type
+   * @return operation result, or a failure with an {@link OverloadedException}
+   */
+  public <T> Future<T> admit(Supplier<Future<T>> operation) {
+    if (maxInFlight > 0 && inFlight >= maxInFlight) {
+      rejected++;
+      return Future.failedFuture(
+          new OverloadedException(
+              "Too many Redis operations in flight: " + inFlight, retryAfterSeconds));
+    }
+
+    inFlight++;
+    return operation.get().onComplete(result -> inFlight--);
+  }
+
+  public int inFlight() {
+    return inFlight;
+  }
+
+  /**
+   * @return operations refused by the limit
+   */
+  public long rejected() {
+    return rejected;
+  }
+}
@@ -0,0 +1,19 @@
+package com.morozov.pubsub.admission;
+
+/** Request refused by admission control, the client should retry after a delay */
+public class OverloadedException extends RuntimeException {
+  private final long retryAfterSeconds;
+
+  /**
+   * @param message error message
+   * @param retryAfterSeconds delay the client should wait before retrying
+   */
+  public OverloadedException(String message, long retryAfterSeconds) {
+    super(message, null, false, false);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+}
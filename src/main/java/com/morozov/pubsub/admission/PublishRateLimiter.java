@@ -0,0 +1,77 @@
+package com.morozov.pubsub.admission;
+
+import com.morozov.pubsub.SharedResources;
+import com.morozov.pubsub.constants.ConfigConstants;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-topic publish rate limit of the node, a token bucket per topic where every published message
+ * takes a token. Shared by all the verticles of the node, so the limit doesn't grow with the
+ * number of instances.
+ */
+public class PublishRateLimiter implements Shareable {
+  private static final String RESOURCE_NAME = "admission.publishRate";
+
+  private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+  private final double rate;
+  private final double burst;
+  private final LongAdder limited = new LongAdder();
+
+  private PublishRateLimiter(JsonObject config) {
+    this.rate =
+        config.getDouble(
+            ConfigConstants.ADMISSION_TOPIC_PUBLISH_RATE,
+            ConfigConstants.DEFAULT_ADMISSION_TOPIC_PUBLISH_RATE);
+    this.burst = config.getDouble(ConfigConstants.ADMISSION_TOPIC_PUBLISH_BURST, rate);
+  }
+
+  /**
+   * Get the limiter shared by the Vert.x instance or create it on the first call
+   *
+   * @param vertx Vert.x instance
+   * @param config verticle config
+   * @return shared limiter
+   */
+  public static PublishRateLimiter get(Vertx vertx, JsonObject config) {
+    return SharedResources.get(vertx, RESOURCE_NAME, () -> new PublishRateLimiter(config));
+  }
+
+  /**
+   * Take the tokens of the messages about to be published
+   *
+   * @param topic topic
+   * @param messages number of messages
+   * @throws OverloadedException if the topic is over its rate
+   */
+  public void acquire(String topic, int messages) {
+    if (rate <= 0) {
+      return;
+    }
+
+    final var now = System.nanoTime();
+    final var waitNanos =
+        buckets
+            .computeIfAbsent(topic, key -> new TokenBucket(rate, Math.max(burst, 1), now))
+            .tryAcquire(messages, now);
+
+    if (waitNanos > 0) {
+      limited.increment();
+      throw new OverloadedException(
+          "Topic " + topic + " is over its publish rate",
+          Math.max(1, (TimeUnit.NANOSECONDS.toMillis(waitNanos) + 999) / 1000));
+    }
+  }
+
+  /**
+   * @return publishes refused by the rate limit
+   */
+  public long limited() {
+    return limited.sum();
+  }
+}
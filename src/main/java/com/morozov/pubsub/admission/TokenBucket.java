@@ -0,0 +1,48 @@
+package com.morozov.pubsub.admission;
+
+/**
+ * Token bucket refilled at a constant rate up to its capacity. A request larger than the capacity
+ * is let through once the bucket is full and leaves it in debt, so a large batch is delayed rather
+ * than refused forever.
+ */
+class TokenBucket {
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+  private final double ratePerNano;
+  private final double capacity;
+  private double tokens;
+  private long refilledAt;
+
+  /**
+   * @param ratePerSecond tokens added per second
+   * @param capacity max tokens, the allowed burst
+   * @param nowNanos current {@link System#nanoTime()}
+   */
+  TokenBucket(double ratePerSecond, double capacity, long nowNanos) {
+    this.ratePerNano = ratePerSecond / NANOS_PER_SECOND;
+    this.capacity = capacity;
+    this.tokens = capacity;
+    this.refilledAt = nowNanos;
+  }
+
+  /**
+   * Take tokens if there are enough of them
+   *
+   * @param permits tokens to take
+   * @param nowNanos current {@link System#nanoTime()}
+   * @return 0 if the tokens were taken, otherwise nanos to wait until there are enough of them
+   */
+  synchronized long tryAcquire(long permits, long nowNanos) {
+    tokens = Math.min(capacity, tokens + (nowNanos - refilledAt) * ratePerNano);
+    refilledAt = nowNanos;
+
+    final var required = Math.min(permits, capacity);
+
+    if (tokens >= required) {
+      tokens -= permits;
+      return 0;
+    }
+
+    return (long) Math.ceil((required - tokens) / ratePerNano);
+  }
+}
@@ -0,0 +1,104 @@
+package com.morozov.pubsub.cache;
+
+import io.vertx.core.shareddata.Shareable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache with an optional expire-after-write TTL. Thread safe, so a single instance can
+ * be shared by verticles running on different event loops.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class LocalCache<K, V> implements Shareable {
+  private final long ttlNanos;
+  private final Map<K, Entry<V>> entries;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * @param maxSize max number of entries, the least recently used one is evicted above it
+   * @param ttlMillis entry time to live, 0 to keep entries until they are evicted
+   */
+  public LocalCache(int maxSize, long ttlMillis) {
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<K, LocalCache.Entry<V>> eldest) {
+            if (size() > maxSize) {
+              evictions.increment();
+              return true;
+            }
+
+            return false;
+          }
+        };
+  }
+
+  /**
+   * Get a cached value
+   *
+   * @param key key
+   * @return value or null if it's absent or expired
+   */
+  public synchronized V get(K key) {
+    final var entry = entries.get(key);
+
+    if (entry == null) {
+      misses.increment();
+      return null;
+    }
+
+    if (ttlNanos > 0 && System.nanoTime() - entry.writtenAt > ttlNanos) {
+      entries.remove(key);
+      misses.increment();
+      return null;
+    }
+
+    hits.increment();
+    return entry.value;
+  }
+
+  public synchronized void put(K key, V value) {
+    entries.put(key, new Entry<>(value, System.nanoTime()));
+  }
+
+  public synchronized void invalidate(K key) {
+    entries.remove(key);
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public long hits() {
+    return hits.sum();
+  }
+
+  public long misses() {
+    return misses.sum();
+  }
+
+  public long evictions() {
+    return evictions.sum();
+  }
+
+  private static class Entry<V> {
+    private final V value;
+    private final long writtenAt;
+
+    private Entry(V value, long writtenAt) {
+      this.value = value;
+      this.writtenAt = writtenAt;
+    }
+  }
+}
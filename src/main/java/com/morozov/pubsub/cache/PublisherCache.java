@@ -0,0 +1,228 @@
+package com.morozov.pubsub.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.morozov.pubsub.SharedResources;
+import com.morozov.pubsub.constants.CommonConstants;
+import com.morozov.pubsub.constants.ConfigConstants;
+import com.morozov.pubsub.model.dto.RetentionPolicy;
+import com.morozov.pubsub.redis.RedisNotifications;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.redis.client.RedisAPI;
+import java.util.UUID;
+
+/**
+ * Node-local cache of the topic publisher ids, partition counts and retention policies. Entries
+ * are invalidated by the publishers channel, and by Redis keyspace notifications of the publisher
+ * keys when they are enabled.
+ */
+public class PublisherCache implements Shareable {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final String RESOURCE_NAME = "cache.publishers";
+  private static final String KEYSPACE_PATTERN =
+      "__keyspace@*__:*" + CommonConstants.PUBLISHER_SUFFIX;
+  private static final String KEYSPACE_SEPARATOR = "__:";
+  private static final String NODE_SEPARATOR = "|";
+
+  private final LocalCache<String, String> cache;
+  private final LocalCache<String, Integer> partitionsCache;
+  private final LocalCache<String, RetentionPolicy> retentionCache;
+  private final RetentionPolicy defaultRetention;
+  private final String nodeId = UUID.randomUUID().toString();
+
+  private PublisherCache(
+      LocalCache<String, String> cache,
+      LocalCache<String, Integer> partitionsCache,
+      LocalCache<String, RetentionPolicy> retentionCache,
+      RetentionPolicy defaultRetention) {
+    this.cache = cache;
+    this.partitionsCache = partitionsCache;
+    this.retentionCache = retentionCache;
+    this.defaultRetention = defaultRetention;
+  }
+
+  /**
+   * Get the cache shared by the Vert.x instance or create it on the first call
+   *
+   * @param vertx Vert.x instance
+   * @param config verticle config
+   * @return shared cache
+   */
+  public static PublisherCache get(Vertx vertx, JsonObject config) {
+    return SharedResources.get(
+        vertx,
+        RESOURCE_NAME,
+        () -> {
+          final var maxSize =
+              config.getInteger(
+                  ConfigConstants.PUBLISHER_CACHE_MAX_SIZE,
+                  ConfigConstants.DEFAULT_PUBLISHER_CACHE_MAX_SIZE);
+          final var ttlMs =
+              config.getLong(
+                  ConfigConstants.PUBLISHER_CACHE_TTL_MS,
+                  ConfigConstants.DEFAULT_PUBLISHER_CACHE_TTL_MS);
+          final var publisherCache =
+              new PublisherCache(
+                  new LocalCache<>(maxSize, ttlMs),
+                  new LocalCache<>(maxSize, ttlMs),
+                  new LocalCache<>(maxSize, ttlMs),
+                  RetentionPolicy.fromConfig(config));
+          final var notifications = RedisNotifications.get(vertx, config);
+
+          notifications.listen(
+              RedisNotifications.PUBLISHERS_CHANNEL, publisherCache::onRemoteRegistration);
+          notifications.onReset(val -> publisherCache.clear());
+
+          if (config.getBoolean(ConfigConstants.REDIS_KEYSPACE_NOTIFICATIONS, false)) {
+            notifications.listenPattern(
+                KEYSPACE_PATTERN,
+                channel -> publisherCache.invalidate(topicFromKeyspaceChannel(channel)));
+          }
+
+          return publisherCache;
+        });
+  }
+
+  /**
+   * Extract the topic from a keyspace channel: __keyspace@0__:%topic%-publisher
+   *
+   * @param channel keyspace channel
+   * @return topic
+   */
+  private static String topicFromKeyspaceChannel(String channel) {
+    final var key =
+        channel.substring(channel.indexOf(KEYSPACE_SEPARATOR) + KEYSPACE_SEPARATOR.length());
+    return key.substring(0, key.length() - CommonConstants.PUBLISHER_SUFFIX.length());
+  }
+
+  /**
+   * Get the publisher id of the topic from the cache or from Redis
+   *
+   * @param redisApi Redis API
+   * @param topic topic
+   * @return publisher id or null if the topic has no publisher
+   */
+  public Future<String> lookup(RedisAPI redisApi, String topic) {
+    final var pubId = cache.get(topic);
+
+    if (pubId != null) {
+      return Future.succeededFuture(pubId);
+    }
+
+    return redisApi
+        .get(topic + CommonConstants.PUBLISHER_SUFFIX)
+        .map(
+            value -> {
+              if (value == null) {
+                return null;
+              }
+
+              final var pubIdFromRedis = value.toString();
+              cache.put(topic, pubIdFromRedis);
+              return pubIdFromRedis;
+            });
+  }
+
+  /**
+   * Get the partition count of the topic from the cache or from Redis
+   *
+   * @param redisApi Redis API
+   * @param topic topic
+   * @return partition count, 1 if the topic is not partitioned
+   */
+  public Future<Integer> partitions(RedisAPI redisApi, String topic) {
+    final var partitions = partitionsCache.get(topic);
+
+    if (partitions != null) {
+      return Future.succeededFuture(partitions);
+    }
+
+    return redisApi
+        .get(topic + CommonConstants.PARTITIONS_SUFFIX)
+        .map(
+            value -> {
+              final var partitionsFromRedis = value == null ? 1 : value.toInteger();
+              partitionsCache.put(topic, partitionsFromRedis);
+              return partitionsFromRedis;
+            });
+  }
+
+  /**
+   * Get the retention policy of the topic from the cache or from Redis
+   *
+   * @param redisApi Redis API
+   * @param topic topic
+   * @return retention policy, the default one if the topic was registered without it
+   */
+  public Future<RetentionPolicy> retention(RedisAPI redisApi, String topic) {
+    final var retention = retentionCache.get(topic);
+
+    if (retention != null) {
+      return Future.succeededFuture(retention);
+    }
+
+    return redisApi
+        .get(topic + CommonConstants.RETENTION_SUFFIX)
+        .compose(
+            value -> {
+              try {
+                final var retentionFromRedis =
+                    value == null
+                        ? defaultRetention
+                        : MAPPER.readValue(value.toString(), RetentionPolicy.class);
+                retentionCache.put(topic, retentionFromRedis);
+                return Future.succeededFuture(retentionFromRedis);
+              } catch (JsonProcessingException e) {
+                return Future.failedFuture(e);
+              }
+            });
+  }
+
+  /**
+   * Cache a new registration and tell the other nodes to drop their stale entries of the topic
+   *
+   * @param redisApi Redis API
+   * @param topic topic
+   * @param pubId publisher id
+   * @param partitions partition count
+   * @param retention retention policy, null for the default one
+   */
+  public void registered(
+      RedisAPI redisApi, String topic, String pubId, int partitions, RetentionPolicy retention) {
+    cache.put(topic, pubId);
+    partitionsCache.put(topic, partitions);
+    retentionCache.put(topic, retention == null ? defaultRetention : retention);
+    redisApi.publish(RedisNotifications.PUBLISHERS_CHANNEL, nodeId + NODE_SEPARATOR + topic);
+  }
+
+  /**
+   * Drop the entries of a topic registered by another node, the registrations of this node are
+   * already cached
+   *
+   * @param payload %nodeId%|%topic%
+   */
+  private void onRemoteRegistration(String payload) {
+    final var separatorIndex = payload.indexOf(NODE_SEPARATOR);
+
+    if (separatorIndex < 0 || payload.startsWith(nodeId)) {
+      return;
+    }
+
+    invalidate(payload.substring(separatorIndex + 1));
+  }
+
+  private void invalidate(String topic) {
+    cache.invalidate(topic);
+    partitionsCache.invalidate(topic);
+    retentionCache.invalidate(topic);
+  }
+
+  private void clear() {
+    cache.clear();
+    partitionsCache.clear();
+    retentionCache.clear();
+  }
+}
@@ -0,0 +1,155 @@
+package com.morozov.pubsub.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.morozov.pubsub.SharedResources;
+import com.morozov.pubsub.constants.ConfigConstants;
+import com.morozov.pubsub.model.dto.SubscriberInfo;
+import com.morozov.pubsub.redis.RedisNotifications;
+import com.morozov.pubsub.redis.SharedRedisClient;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.redis.client.RedisAPI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Node-local cache of decoded subscriber infos, so polling subscribers don't cost a Redis GET and a
+ * JSON parse per request. Entries are invalidated through the subscribers channel when a
+ * subscription is removed, and are never served past the subscription expiry.
+ */
+public class SubscriberCache implements Shareable {
+  private static final String RESOURCE_NAME = "cache.subscribers";
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final LocalCache<String, SubscriberInfo> cache;
+  private final long subscriptionTtlSeconds;
+
+  /**
+   * @param cache decoded subscriber infos by id
+   * @param subscriptionTtlSeconds subscription key expiry, 0 if subscriptions never expire
+   */
+  SubscriberCache(LocalCache<String, SubscriberInfo> cache, long subscriptionTtlSeconds) {
+    this.cache = cache;
+    this.subscriptionTtlSeconds = subscriptionTtlSeconds;
+  }
+
+  /**
+   * Get the cache shared by the Vert.x instance or create it on the first call
+   *
+   * @param vertx Vert.x instance
+   * @param config verticle config
+   * @return shared cache
+   */
+  public static SubscriberCache get(Vertx vertx, JsonObject config) {
+    return SharedResources.get(
+        vertx,
+        RESOURCE_NAME,
+        () -> {
+          final var subscriberCache =
+              new SubscriberCache(
+                  new LocalCache<>(
+                      config.getInteger(
+                          ConfigConstants.SUBSCRIBER_CACHE_MAX_SIZE,
+                          ConfigConstants.DEFAULT_SUBSCRIBER_CACHE_MAX_SIZE),
+                      config.getLong(
+                          ConfigConstants.SUBSCRIBER_CACHE_TTL_MS,
+                          ConfigConstants.DEFAULT_SUBSCRIBER_CACHE_TTL_MS)),
+                  config.getLong(ConfigConstants.SUBSCRIPTION_TTL_SECONDS, 0L));
+          final var notifications = RedisNotifications.get(vertx, config);
+
+          notifications.listen(
+              RedisNotifications.SUBSCRIBERS_CHANNEL, subscriberCache.cache::invalidate);
+          notifications.onReset(val -> subscriberCache.cache.clear());
+
+          return subscriberCache;
+        });
+  }
+
+  /**
+   * Get the subscriber info from the cache or from Redis, a read replica if there are some
+   *
+   * @param redisClient Redis client
+   * @param subId subscriber id
+   * @return subscriber info or null if the subscription doesn't exist
+   */
+  public Future<SubscriberInfo> lookup(SharedRedisClient redisClient, String subId) {
+    final var subInfo = cache.get(subId);
+
+    if (subInfo != null) {
+      if (!isExpired(subInfo)) {
+        return Future.succeededFuture(subInfo);
+      }
+
+      cache.invalidate(subId);
+      return Future.succeededFuture();
+    }
+
+    // a subscription is never rewritten, a replica that doesn't have it yet defers to the master
+    return redisClient
+        .read(null, api -> api.get(subId))
+        .compose(
+            value -> {
+              if (value == null) {
+                return Future.succeededFuture();
+              }
+
+              try {
+                final var subInfoFromRedis =
+                    MAPPER.readValue(value.toString(), SubscriberInfo.class);
+                cache.put(subId, subInfoFromRedis);
+                return Future.succeededFuture(subInfoFromRedis);
+              } catch (JsonProcessingException e) {
+                return Future.failedFuture(e);
+              }
+            });
+  }
+
+  /**
+   * Cache a new subscription
+   *
+   * @param subInfo subscriber info
+   */
+  public void subscribed(SubscriberInfo subInfo) {
+    cache.put(subInfo.getSubId(), subInfo);
+  }
+
+  /**
+   * Drop a removed subscription and tell the other nodes to drop it as well
+   *
+   * @param redisApi Redis API
+   * @param subId subscriber id
+   */
+  public void unsubscribed(RedisAPI redisApi, String subId) {
+    cache.invalidate(subId);
+    redisApi.publish(RedisNotifications.SUBSCRIBERS_CHANNEL, subId);
+  }
+
+  /**
+   * Subscription key expiry is set on subscribe, so it's known without asking Redis
+   *
+   * @param subInfo subscriber info
+   * @return true if Redis has already expired the subscription
+   */
+  private boolean isExpired(SubscriberInfo subInfo) {
+    return subscriptionTtlSeconds > 0
+        && System.currentTimeMillis()
+            >= subInfo.getTs() + TimeUnit.SECONDS.toMillis(subscriptionTtlSeconds);
+  }
+
+  /**
+   * @return subscription key expiry, 0 if subscriptions never expire
+   */
+  public long subscriptionTtlSeconds() {
+    return subscriptionTtlSeconds;
+  }
+
+  public long hits() {
+    return cache.hits();
+  }
+
+  public long misses() {
+    return cache.misses();
+  }
+}
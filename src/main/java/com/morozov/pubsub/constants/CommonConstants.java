@@ -3,8 +3,40 @@ package com.morozov.pubsub.constants;
 public class CommonConstants {
   public static final String TOPIC_URL_PARAM = ":topic";
   public static final String TOPIC = "topic";
+  public static final String WAIT = "wait";
+  public static final String MAX = "max";
+  public static final String MAX_BYTES = "maxBytes";
+  public static final String SUB_ID = "subId";
+  public static final String AUTO_ACK = "autoAck";
+  public static final String VISIBILITY_MS = "visibilityMs";
+  public static final String OFFSET = "offset";
+  public static final String PARTITION = "partition";
   public static final String QUEUE_SUFFIX = "-queue";
+  public static final String STREAM_SUFFIX = "-stream";
   public static final String APPLICATION_JSON = "application/json";
+  public static final String APPLICATION_NDJSON = "application/x-ndjson";
+  public static final String TEXT_EVENT_STREAM = "text/event-stream";
   public static final String CONTENT_TYPE_HEADER = "Content-Type";
+  public static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+  public static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+  public static final String VARY_HEADER = "Vary";
+  public static final String DEFLATE = "deflate";
+  public static final String CACHE_CONTROL_HEADER = "Cache-Control";
+  public static final String RETRY_AFTER_HEADER = "Retry-After";
+  public static final String UPGRADE_HEADER = "Upgrade";
+  public static final String NO_CACHE = "no-cache";
+  public static final String WEBSOCKET = "websocket";
   public static final String PUBLISHER_SUFFIX = "-publisher";
+  public static final String PARTITIONS_SUFFIX = "-partitions";
+  public static final String RETENTION_SUFFIX = "-retention";
+  public static final String BYTES_SUFFIX = "-bytes";
+  public static final String IN_FLIGHT_SUFFIX = "-inflight";
+  public static final String LEASES_SUFFIX = "-leases";
+  public static final String SEQUENCE_SUFFIX = "-seq";
+  public static final String TOPICS_KEY = "pubsub:topics";
+  public static final String RETENTION_MESSAGES = "retentionMessages";
+  public static final String RETENTION_BYTES = "retentionBytes";
+  public static final String RETENTION_MS = "retentionMs";
+  public static final String PARTITIONS = "partitions";
+  public static final String KEY = "key";
 }
@@ -0,0 +1,104 @@
+package com.morozov.pubsub.constants;
+
+/** Verticle configuration keys */
+public class ConfigConstants {
+  public static final String HTTP_PORT = "http.port";
+  public static final String INSTANCES = "instances";
+  public static final String STORAGE_ENGINE = "storage.engine";
+  public static final String REDIS_CONNECTION_STRING = "redis.connectionString";
+  public static final String REDIS_CLUSTER = "redis.cluster";
+  public static final String REDIS_MAX_POOL_SIZE = "redis.maxPoolSize";
+  public static final String REDIS_MAX_POOL_WAITING = "redis.maxPoolWaiting";
+  public static final String REDIS_MAX_WAITING_HANDLERS = "redis.maxWaitingHandlers";
+  public static final String REDIS_KEYSPACE_NOTIFICATIONS = "redis.keyspaceNotifications";
+  public static final String REDIS_REPLICA_CONNECTION_STRINGS = "redis.replicaConnectionStrings";
+  public static final String REDIS_REPLICA_MAX_LAG_MS = "redis.replicaMaxLagMs";
+  public static final String REDIS_REPLICA_PROBE_INTERVAL_MS = "redis.replicaProbeIntervalMs";
+  public static final String PUBLISHER_CACHE_MAX_SIZE = "publisherCache.maxSize";
+  public static final String PUBLISHER_CACHE_TTL_MS = "publisherCache.ttlMs";
+  public static final String SUBSCRIBER_CACHE_MAX_SIZE = "subscriberCache.maxSize";
+  public static final String SUBSCRIBER_CACHE_TTL_MS = "subscriberCache.ttlMs";
+  public static final String SUBSCRIPTION_TTL_SECONDS = "subscription.ttlSeconds";
+  public static final String PUBLISH_MAX_BATCH_MESSAGES = "publish.maxBatchMessages";
+  public static final String PUBLISH_MAX_BATCH_BYTES = "publish.maxBatchBytes";
+  public static final String PUBLISH_COALESCE_ENABLED = "publish.coalesce.enabled";
+  public static final String PUBLISH_COALESCE_WINDOW_MS = "publish.coalesce.windowMs";
+  public static final String PUBLISH_COALESCE_MAX_MESSAGES = "publish.coalesce.maxMessages";
+  public static final String TOPIC_MAX_PARTITIONS = "topic.maxPartitions";
+  public static final String MEMORY_TOPIC_MAX_MESSAGES = "memory.topicMaxMessages";
+  public static final String MEMORY_TOPIC_MAX_BYTES = "memory.topicMaxBytes";
+  public static final String SPILL_DIR = "spill.dir";
+  public static final String SPILL_SEGMENT_BYTES = "spill.segmentBytes";
+  public static final String SPILL_MAX_BYTES = "spill.maxBytes";
+  public static final String SPILL_REPLAY_BATCH_MESSAGES = "spill.replayBatchMessages";
+  public static final String RETENTION_MAX_MESSAGES = "retention.maxMessages";
+  public static final String RETENTION_MAX_BYTES = "retention.maxBytes";
+  public static final String RETENTION_MAX_AGE_MS = "retention.maxAgeMs";
+  public static final String RETENTION_SWEEP_INTERVAL_MS = "retention.sweepIntervalMs";
+  public static final String RETENTION_SWEEP_TOPICS = "retention.sweepTopics";
+  public static final String RETENTION_SWEEP_MAX_MESSAGES = "retention.sweepMaxMessages";
+  public static final String ADMISSION_MAX_IN_FLIGHT = "admission.maxInFlight";
+  public static final String ADMISSION_RETRY_AFTER_SECONDS = "admission.retryAfterSeconds";
+  public static final String ADMISSION_TOPIC_PUBLISH_RATE = "admission.topicPublishRate";
+  public static final String ADMISSION_TOPIC_PUBLISH_BURST = "admission.topicPublishBurst";
+  public static final String METRICS_DEPTH_SAMPLE_INTERVAL_MS = "metrics.depthSampleIntervalMs";
+  public static final String METRICS_DEPTH_SAMPLE_TOPICS = "metrics.depthSampleTopics";
+  public static final String METRICS_DEPTH_MAX_TOPICS = "metrics.depthMaxTopics";
+  public static final String COMPRESSION_MIN_BYTES = "compression.minBytes";
+  public static final String COMPRESSION_LEVEL = "compression.level";
+  public static final String GET_MAX_MESSAGES = "get.maxMessages";
+  public static final String HEAD_CACHE_ENABLED = "headCache.enabled";
+  public static final String HEAD_CACHE_MAX_TOPICS = "headCache.maxTopics";
+  public static final String HEAD_CACHE_TTL_MS = "headCache.ttlMs";
+  public static final String HEAD_CACHE_NOTIFY_DEBOUNCE_MS = "headCache.notifyDebounceMs";
+  public static final String LEASE_VISIBILITY_MS = "lease.visibilityMs";
+  public static final String LEASE_MAX_VISIBILITY_MS = "lease.maxVisibilityMs";
+  public static final String LEASE_TICK_MS = "lease.tickMs";
+  public static final String LEASE_WHEEL_SIZE = "lease.wheelSize";
+  public static final String LONG_POLL_MAX_WAIT_MS = "longPoll.maxWaitMs";
+  public static final String LONG_POLL_CROSS_NODE = "longPoll.crossNode";
+  public static final String LONG_POLL_NOTIFY_DEBOUNCE_MS = "longPoll.notifyDebounceMs";
+
+  public static final String DEFAULT_REDIS_CONNECTION_STRING = "redis://localhost:6379";
+  public static final int DEFAULT_HTTP_PORT = 8080;
+  public static final int DEFAULT_REDIS_MAX_POOL_SIZE = 16;
+  public static final int DEFAULT_REDIS_MAX_POOL_WAITING = 4096;
+  public static final int DEFAULT_REDIS_MAX_WAITING_HANDLERS = 4096;
+  public static final long DEFAULT_REDIS_REPLICA_MAX_LAG_MS = 1000;
+  public static final long DEFAULT_REDIS_REPLICA_PROBE_INTERVAL_MS = 250;
+  public static final int DEFAULT_PUBLISHER_CACHE_MAX_SIZE = 10000;
+  public static final long DEFAULT_PUBLISHER_CACHE_TTL_MS = 60000;
+  public static final int DEFAULT_SUBSCRIBER_CACHE_MAX_SIZE = 100000;
+  public static final long DEFAULT_SUBSCRIBER_CACHE_TTL_MS = 30000;
+  public static final int DEFAULT_PUBLISH_MAX_BATCH_MESSAGES = 10000;
+  public static final int DEFAULT_PUBLISH_MAX_BATCH_BYTES = 16000000;
+  public static final long DEFAULT_PUBLISH_COALESCE_WINDOW_MS = 0;
+  public static final int DEFAULT_PUBLISH_COALESCE_MAX_MESSAGES = 256;
+  public static final int DEFAULT_TOPIC_MAX_PARTITIONS = 256;
+  public static final int DEFAULT_MEMORY_TOPIC_MAX_MESSAGES = 65536;
+  public static final int DEFAULT_MEMORY_TOPIC_MAX_BYTES = 16777216;
+  public static final int DEFAULT_SPILL_SEGMENT_BYTES = 67108864;
+  public static final long DEFAULT_SPILL_MAX_BYTES = 1073741824;
+  public static final int DEFAULT_SPILL_REPLAY_BATCH_MESSAGES = 1024;
+  public static final long DEFAULT_RETENTION_SWEEP_INTERVAL_MS = 1000;
+  public static final int DEFAULT_RETENTION_SWEEP_TOPICS = 100;
+  public static final int DEFAULT_RETENTION_SWEEP_MAX_MESSAGES = 1000;
+  public static final int DEFAULT_ADMISSION_MAX_IN_FLIGHT = 1024;
+  public static final long DEFAULT_ADMISSION_RETRY_AFTER_SECONDS = 1;
+  public static final double DEFAULT_ADMISSION_TOPIC_PUBLISH_RATE = 0;
+  public static final long DEFAULT_METRICS_DEPTH_SAMPLE_INTERVAL_MS = 5000;
+  public static final int DEFAULT_METRICS_DEPTH_SAMPLE_TOPICS = 100;
+  public static final int DEFAULT_METRICS_DEPTH_MAX_TOPICS = 1000;
+  public static final int DEFAULT_COMPRESSION_MIN_BYTES = 0;
+  public static final int DEFAULT_COMPRESSION_LEVEL = 1;
+  public static final int DEFAULT_GET_MAX_MESSAGES = 1000;
+  public static final int DEFAULT_HEAD_CACHE_MAX_TOPICS = 10000;
+  public static final long DEFAULT_HEAD_CACHE_TTL_MS = 1000;
+  public static final long DEFAULT_HEAD_CACHE_NOTIFY_DEBOUNCE_MS = 1;
+  public static final long DEFAULT_LEASE_VISIBILITY_MS = 30000;
+  public static final long DEFAULT_LEASE_MAX_VISIBILITY_MS = 43200000;
+  public static final long DEFAULT_LEASE_TICK_MS = 100;
+  public static final int DEFAULT_LEASE_WHEEL_SIZE = 1024;
+  public static final long DEFAULT_LONG_POLL_MAX_WAIT_MS = 30000;
+  public static final long DEFAULT_LONG_POLL_NOTIFY_DEBOUNCE_MS = 1;
+}
@@ -3,9 +3,15 @@ package com.morozov.pubsub.constants;
 public enum EndPoints {
   TOPIC_REGISTER("/topic/register/"),
   TOPIC_SUBSCRIBE("/topic/subscribe/"),
+  TOPIC_UNSUBSCRIBE("/topic/unsubscribe/"),
   MESSAGE_PUBLISH("/message/publish/"),
+  MESSAGE_PUBLISH_BATCH("/message/publish-batch/"),
   MESSAGE_GET("/message/get/"),
-  MESSAGE_ACK("/message/ack/");
+  MESSAGE_ACK("/message/ack/"),
+  MESSAGE_RECEIVE("/message/receive/"),
+  MESSAGE_STREAM("/message/stream/"),
+  HEALTH("/health"),
+  METRICS("/metrics");
 
   public String getVal() {
     return val;
@@ -0,0 +1,136 @@
+package com.morozov.pubsub.delivery;
+
+import com.morozov.pubsub.model.dto.Message;
+import com.morozov.pubsub.model.dto.SubscriberInfo;
+import com.morozov.pubsub.store.TopicStore;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerResponse;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Gets parked until a message arrives or their wait expires. A parked get is just a promise and a
+ * timer, it doesn't hold a Redis connection: the topic is peeked again only when the publish
+ * notifier reports new messages in it.
+ *
+ * <p>Owned by a single verticle and only used from its event loop, so it needs no locking.
+ */
+public class LongPollRegistry {
+  private final Vertx vertx;
+  private final TopicStore topicStore;
+  private final Map<String, Set<ParkedGet>> parkedGets = new HashMap<>();
+  private final Map<String, Long> publishVersions = new HashMap<>();
+
+  public LongPollRegistry(Vertx vertx, TopicStore topicStore) {
+    this.vertx = vertx;
+    this.topicStore = topicStore;
+
+    vertx
+        .eventBus()
+        .<String>localConsumer(PublishNotifier.PUBLISHED_ADDRESS, msg -> published(msg.body()));
+  }
+
+  /**
+   * Peek the next message for the subscriber, waiting for it if there is none yet
+   *
+   * @param subInfo subscriber info
+   * @param waitMs max wait
+   * @param response response to stop waiting when the client goes away
+   * @return message or null if nothing arrived in time
+   */
+  public Future<Message> poll(SubscriberInfo subInfo, long waitMs, HttpServerResponse response) {
+    final var parkedGet = new ParkedGet(subInfo);
+    parkedGet.timerId = vertx.setTimer(waitMs, timerId -> expire(parkedGet));
+    response.closeHandler(val -> expire(parkedGet));
+
+    peek(parkedGet);
+    return parkedGet.promise.future();
+  }
+
+  /** @return number of parked gets */
+  public long parkedCount() {
+    return parkedGets.values().stream().mapToLong(Set::size).sum();
+  }
+
+  /**
+   * Peek the topic for the parked get, parking it again if there is still nothing
+   *
+   * @param parkedGet parked get
+   */
+  private void peek(ParkedGet parkedGet) {
+    final var topic = parkedGet.subInfo.getTopic();
+    final long version = publishVersions.getOrDefault(topic, 0L);
+
+    topicStore
+        .peek(parkedGet.subInfo)
+        .onComplete(
+            result -> {
+              if (parkedGet.done) {
+                return;
+              }
+
+              if (result.failed()) {
+                finish(parkedGet);
+                parkedGet.promise.fail(result.cause());
+              } else if (result.result() != null) {
+                finish(parkedGet);
+                parkedGet.promise.complete(result.result());
+              } else if (publishVersions.getOrDefault(topic, 0L) != version) {
+                // published while peeking: the notification was missed, so peek again
+                peek(parkedGet);
+              } else {
+                parkedGets.computeIfAbsent(topic, key -> new LinkedHashSet<>()).add(parkedGet);
+              }
+            });
+  }
+
+  /**
+   * Wake the gets parked on the topic
+   *
+   * @param topic topic with new messages
+   */
+  private void published(String topic) {
+    publishVersions.merge(topic, 1L, Long::sum);
+
+    final var gets = parkedGets.remove(topic);
+
+    if (gets != null) {
+      gets.forEach(this::peek);
+    }
+  }
+
+  private void expire(ParkedGet parkedGet) {
+    if (!parkedGet.done) {
+      finish(parkedGet);
+      parkedGet.promise.complete();
+    }
+  }
+
+  private void finish(ParkedGet parkedGet) {
+    parkedGet.done = true;
+    vertx.cancelTimer(parkedGet.timerId);
+
+    final var topic = parkedGet.subInfo.getTopic();
+    final var gets = parkedGets.get(topic);
+
+    if (gets != null && gets.remove(parkedGet) && gets.isEmpty()) {
+      parkedGets.remove(topic);
+    }
+  }
+
+  /** Get waiting for a message */
+  private static class ParkedGet {
+    private final SubscriberInfo subInfo;
+    private final Promise<Message> promise = Promise.promise();
+    private long timerId;
+    private boolean done;
+
+    private ParkedGet(SubscriberInfo subInfo) {
+      this.subInfo = subInfo;
+    }
+  }
+}
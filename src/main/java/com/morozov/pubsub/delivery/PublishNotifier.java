@@ -0,0 +1,104 @@
+package com.morozov.pubsub.delivery;
+
+import com.morozov.pubsub.SharedResources;
+import com.morozov.pubsub.constants.ConfigConstants;
+import com.morozov.pubsub.redis.RedisNotifications;
+import com.morozov.pubsub.redis.SharedRedisClient;
+import com.morozov.pubsub.store.MessageStore;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.redis.client.RedisAPI;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tells the verticles that a topic got new messages. Local publishes go straight to the local event
+ * bus, publishes of the other nodes come from the published channel. Redis notifications are
+ * debounced per topic, so a hot topic costs at most one PUBLISH per debounce window.
+ */
+public class PublishNotifier implements Shareable {
+  /** Local event bus address of the published topics */
+  public static final String PUBLISHED_ADDRESS = "pubsub.topic.published";
+
+  private static final String RESOURCE_NAME = "delivery.publishNotifier";
+  private static final String NODE_SEPARATOR = "|";
+
+  private final Vertx vertx;
+  private final RedisAPI redisApi;
+  private final String nodeId = UUID.randomUUID().toString();
+  private final boolean crossNode;
+  private final long debounceMs;
+  private final Set<String> pendingTopics = ConcurrentHashMap.newKeySet();
+
+  private PublishNotifier(Vertx vertx, JsonObject config) {
+    this.vertx = vertx;
+    // the memory store is single-node, there are no other nodes to notify
+    this.crossNode =
+        config.getBoolean(ConfigConstants.LONG_POLL_CROSS_NODE, true)
+            && !MessageStore.isMemoryEngine(config);
+    this.redisApi = crossNode ? SharedRedisClient.get(vertx, config).api() : null;
+    this.debounceMs =
+        config.getLong(
+            ConfigConstants.LONG_POLL_NOTIFY_DEBOUNCE_MS,
+            ConfigConstants.DEFAULT_LONG_POLL_NOTIFY_DEBOUNCE_MS);
+  }
+
+  /**
+   * Get the notifier shared by the Vert.x instance or create it on the first call
+   *
+   * @param vertx Vert.x instance
+   * @param config verticle config
+   * @return shared notifier
+   */
+  public static PublishNotifier get(Vertx vertx, JsonObject config) {
+    return SharedResources.get(
+        vertx,
+        RESOURCE_NAME,
+        () -> {
+          final var notifier = new PublishNotifier(vertx, config);
+
+          if (notifier.crossNode) {
+            RedisNotifications.get(vertx, config)
+                .listen(RedisNotifications.PUBLISHED_CHANNEL, notifier::onRemotePublish);
+          }
+
+          return notifier;
+        });
+  }
+
+  /**
+   * Notify the local verticles and the other nodes about new messages in the topic
+   *
+   * @param topic topic
+   */
+  public void published(String topic) {
+    vertx.eventBus().publish(PUBLISHED_ADDRESS, topic);
+
+    if (crossNode && pendingTopics.add(topic)) {
+      vertx.setTimer(
+          debounceMs,
+          timerId -> {
+            pendingTopics.remove(topic);
+            redisApi.publish(
+                RedisNotifications.PUBLISHED_CHANNEL, nodeId + NODE_SEPARATOR + topic);
+          });
+    }
+  }
+
+  /**
+   * Forward a publish of another node to the local verticles
+   *
+   * @param payload %nodeId%|%topic%
+   */
+  private void onRemotePublish(String payload) {
+    final var separatorIndex = payload.indexOf(NODE_SEPARATOR);
+
+    if (separatorIndex < 0 || payload.startsWith(nodeId)) {
+      return;
+    }
+
+    vertx.eventBus().publish(PUBLISHED_ADDRESS, payload.substring(separatorIndex + 1));
+  }
+}
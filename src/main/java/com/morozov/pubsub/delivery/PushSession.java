@@ -0,0 +1,191 @@
+package com.morozov.pubsub.delivery;
+
+import com.morozov.pubsub.model.dto.Message;
+import com.morozov.pubsub.model.dto.SubscriberInfo;
+import com.morozov.pubsub.store.AckResult;
+import com.morozov.pubsub.store.TopicStore;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Delivery of a topic to a subscriber over a push connection.
+ *
+ * <p>A message is sent only when the client has credits left and the connection write queue is not
+ * full. Without auto ack there is one message in flight until the client acks it on the same
+ * connection. With leases, the list engine, the delivered message is received under a lease and the
+ * ack drops exactly that message by the lease receipt, while a competing consumer of the topic list
+ * gets the next one; if the client doesn't ack in time, or goes away, the message is put back once
+ * the lease expires. The other engines keep a cursor per subscriber, the message is peeked and the
+ * ack takes the subscriber head. With auto ack the message is taken out of the topic when it's
+ * sent, and the credits bound the messages in flight.
+ *
+ * <p>Owned by a single verticle and only used from its event loop, so it needs no locking.
+ */
+public class PushSession {
+  private final TopicStore topicStore;
+  private final SubscriberInfo subInfo;
+  private final boolean autoAck;
+  private final long leaseMs;
+  private final Consumer<Message> writer;
+  private final BooleanSupplier writeQueueFull;
+  private final Handler<Throwable> errorHandler;
+
+  private long credits;
+  private long wakeups;
+  private boolean fetching;
+  private boolean awaitingAck;
+  /** Receipt of the lease of the delivered message, null without leases */
+  private String receipt;
+  /** An ack of the delivered message is in flight, another one would pop an undelivered message */
+  private boolean acking;
+
+  private boolean closed;
+
+  /**
+   * @param topicStore topic store
+   * @param subInfo subscriber info
+   * @param autoAck take messages out when they are sent instead of waiting for client acks
+   * @param leaseMs lease of a delivered message awaiting its ack, 0 if the store has no leases
+   * @param credits initial credits
+   * @param writer message writer
+   * @param writeQueueFull whether the connection write queue is full
+   * @param errorHandler handler of the store failures, the session stops delivering
+   */
+  public PushSession(
+      TopicStore topicStore,
+      SubscriberInfo subInfo,
+      boolean autoAck,
+      long leaseMs,
+      long credits,
+      Consumer<Message> writer,
+      BooleanSupplier writeQueueFull,
+      Handler<Throwable> errorHandler) {
+    this.topicStore = topicStore;
+    this.subInfo = subInfo;
+    this.autoAck = autoAck;
+    this.leaseMs = leaseMs;
+    this.credits = credits;
+    this.writer = writer;
+    this.writeQueueFull = writeQueueFull;
+    this.errorHandler = errorHandler;
+  }
+
+  public SubscriberInfo getSubInfo() {
+    return subInfo;
+  }
+
+  /**
+   * Give the session more credits
+   *
+   * @param count credits to add
+   */
+  public void grant(long count) {
+    credits = Long.MAX_VALUE - credits < count ? Long.MAX_VALUE : credits + count;
+    deliver();
+  }
+
+  /** Try delivering again: the topic got new messages or the write queue drained */
+  public void wake() {
+    wakeups++;
+    deliver();
+  }
+
+  /**
+   * Ack the delivered message on behalf of the client
+   *
+   * @return completion, failed if there is no delivered message to ack, its ack is in flight or its
+   *     lease expired
+   */
+  public Future<Void> ack() {
+    if (!awaitingAck) {
+      return Future.failedFuture("No delivered message to ack");
+    }
+
+    if (acking) {
+      return Future.failedFuture("The delivered message is already being acked");
+    }
+
+    acking = true;
+
+    final var ack =
+        receipt == null ? topicStore.ack(subInfo) : topicStore.ackLease(subInfo, receipt);
+
+    return ack.onComplete(
+            result -> {
+              acking = false;
+
+              // a failed ack leaves the message delivered, the client may ack it again
+              if (result.succeeded()) {
+                awaitingAck = false;
+                receipt = null;
+                deliver();
+              }
+            })
+        .compose(
+            ackResult ->
+                ackResult.getStatus() == AckResult.UNKNOWN_LEASE
+                    ? Future.failedFuture("The lease of the delivered message expired")
+                    : Future.succeededFuture());
+  }
+
+  public void close() {
+    closed = true;
+  }
+
+  private void deliver() {
+    if (closed || fetching || awaitingAck || credits <= 0 || writeQueueFull.getAsBoolean()) {
+      return;
+    }
+
+    fetching = true;
+    final var wakeupsBefore = wakeups;
+
+    next()
+        .onComplete(
+            result -> {
+              fetching = false;
+
+              if (closed) {
+                return;
+              }
+
+              if (result.failed()) {
+                errorHandler.handle(result.cause());
+                return;
+              }
+
+              if (result.result() == null) {
+                // woken while fetching: the new message might have been missed, so fetch again
+                if (wakeups != wakeupsBefore) {
+                  deliver();
+                }
+                return;
+              }
+
+              credits--;
+              awaitingAck = !autoAck;
+              writer.accept(result.result());
+              deliver();
+            });
+  }
+
+  private Future<Message> next() {
+    if (autoAck) {
+      return topicStore.ack(subInfo).map(AckResult::getMessage);
+    }
+
+    if (leaseMs > 0) {
+      return topicStore
+          .receive(subInfo, System.currentTimeMillis() + leaseMs)
+          .map(
+              ackResult -> {
+                receipt = ackResult.getReceipt();
+                return ackResult.getMessage();
+              });
+    }
+
+    return topicStore.peek(subInfo);
+  }
+}
@@ -0,0 +1,176 @@
+package com.morozov.pubsub.delivery;
+
+import com.morozov.pubsub.constants.CommonConstants;
+import com.morozov.pubsub.model.dto.Message;
+import com.morozov.pubsub.model.dto.SubscriberInfo;
+import com.morozov.pubsub.store.TopicStore;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Push connections of a verticle: WebSockets with credits and acks sent by the client, and
+ * Server-Sent Events streams with auto ack and TCP backpressure as the only flow control. Sessions
+ * are woken by the publish notifier.
+ *
+ * <p>WebSocket client frames: {"type": "credit", "count": 10} and {"type": "ack"}. Server frames:
+ * {"type": "message", "message": "..."} and {"type": "error", "errorMessage": "..."}.
+ */
+public class PushSessions {
+  private static final Logger logger = LoggerFactory.getLogger(PushSessions.class);
+  private static final String TYPE = "type";
+  private static final String CREDIT = "credit";
+  private static final String COUNT = "count";
+  private static final String ACK = "ack";
+  private static final String MESSAGE = "message";
+  private static final String ERROR = "error";
+  private static final String ERROR_MESSAGE = "errorMessage";
+
+  private final TopicStore topicStore;
+  private final long leaseMs;
+  private final Map<String, Set<PushSession>> sessions = new HashMap<>();
+
+  /**
+   * @param vertx Vert.x instance
+   * @param topicStore topic store
+   * @param leaseMs lease of a WebSocket message awaiting its ack, 0 if the store has no leases
+   */
+  public PushSessions(Vertx vertx, TopicStore topicStore, long leaseMs) {
+    this.topicStore = topicStore;
+    this.leaseMs = leaseMs;
+
+    vertx
+        .eventBus()
+        .<String>localConsumer(PublishNotifier.PUBLISHED_ADDRESS, msg -> published(msg.body()));
+  }
+
+  /**
+   * Push the topic over a WebSocket. Nothing is sent until the client gives credits.
+   *
+   * @param ws WebSocket
+   * @param subInfo subscriber info
+   * @param autoAck take messages out when they are sent instead of waiting for client acks
+   */
+  public void openWebSocket(ServerWebSocket ws, SubscriberInfo subInfo, boolean autoAck) {
+    final var session =
+        new PushSession(
+            topicStore,
+            subInfo,
+            autoAck,
+            leaseMs,
+            0,
+            message -> ws.writeTextMessage(messageFrame(message)),
+            ws::writeQueueFull,
+            throwable -> {
+              logger.warn(throwable.getMessage());
+              ws.close();
+            });
+
+    register(session);
+    ws.drainHandler(val -> session.wake());
+    ws.closeHandler(val -> unregister(session));
+    ws.textMessageHandler(text -> onClientFrame(ws, session, text));
+  }
+
+  /**
+   * Push the topic as Server-Sent Events, messages are taken out when they are sent
+   *
+   * @param response HTTP response
+   * @param subInfo subscriber info
+   */
+  public void openEventStream(HttpServerResponse response, SubscriberInfo subInfo) {
+    response
+        .setChunked(true)
+        .putHeader(CommonConstants.CONTENT_TYPE_HEADER, CommonConstants.TEXT_EVENT_STREAM)
+        .putHeader(CommonConstants.CACHE_CONTROL_HEADER, CommonConstants.NO_CACHE)
+        .write(":\n\n");
+
+    final var session =
+        new PushSession(
+            topicStore,
+            subInfo,
+            true,
+            0,
+            Long.MAX_VALUE,
+            message -> response.write("event: message\ndata: " + messageData(message) + "\n\n"),
+            response::writeQueueFull,
+            throwable -> {
+              logger.warn(throwable.getMessage());
+              response.end();
+            });
+
+    register(session);
+    response.drainHandler(val -> session.wake());
+    response.closeHandler(val -> unregister(session));
+    session.wake();
+  }
+
+  /** @return number of open push sessions */
+  public long sessionCount() {
+    return sessions.values().stream().mapToLong(Set::size).sum();
+  }
+
+  private void onClientFrame(ServerWebSocket ws, PushSession session, String text) {
+    try {
+      final var frame = new JsonObject(text);
+      final var type = frame.getString(TYPE);
+
+      if (CREDIT.equals(type)) {
+        session.grant(Math.max(0, frame.getLong(COUNT, 0L)));
+      } else if (ACK.equals(type)) {
+        session
+            .ack()
+            .onFailure(throwable -> ws.writeTextMessage(errorFrame(throwable.getMessage())));
+      } else {
+        ws.writeTextMessage(errorFrame("Unknown frame type " + type));
+      }
+    } catch (DecodeException | ClassCastException e) {
+      ws.writeTextMessage(errorFrame("Couldn't read frame"));
+    }
+  }
+
+  private void register(PushSession session) {
+    sessions
+        .computeIfAbsent(session.getSubInfo().getTopic(), key -> new LinkedHashSet<>())
+        .add(session);
+  }
+
+  private void unregister(PushSession session) {
+    session.close();
+
+    final var topic = session.getSubInfo().getTopic();
+    final var topicSessions = sessions.get(topic);
+
+    if (topicSessions != null && topicSessions.remove(session) && topicSessions.isEmpty()) {
+      sessions.remove(topic);
+    }
+  }
+
+  private void published(String topic) {
+    final var topicSessions = sessions.get(topic);
+
+    if (topicSessions != null) {
+      topicSessions.forEach(PushSession::wake);
+    }
+  }
+
+  private static String messageData(Message message) {
+    return new JsonObject().put(MESSAGE, message.getMessage()).encode();
+  }
+
+  private static String messageFrame(Message message) {
+    return new JsonObject().put(TYPE, MESSAGE).put(MESSAGE, message.getMessage()).encode();
+  }
+
+  private static String errorFrame(String errorMessage) {
+    return new JsonObject().put(TYPE, ERROR).put(ERROR_MESSAGE, errorMessage).encode();
+  }
+}
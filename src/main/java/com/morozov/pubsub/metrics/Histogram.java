@@ -0,0 +1,92 @@
+package com.morozov.pubsub.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with fixed buckets, written in the Prometheus text format. Recording only
+ * increments two striped counters, so it allocates nothing and doesn't contend between event
+ * loops; the buckets are made cumulative when the histogram is written.
+ */
+public class Histogram {
+  /** Bucket upper bounds in seconds */
+  private static final double[] BOUNDS = {
+    0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60
+  };
+  private static final long[] BOUNDS_NANOS = new long[BOUNDS.length];
+
+  static {
+    for (int i = 0; i < BOUNDS.length; i++) {
+      BOUNDS_NANOS[i] = (long) (BOUNDS[i] * TimeUnit.SECONDS.toNanos(1));
+    }
+  }
+
+  /** Counts per bucket, the last one is +Inf */
+  private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+
+  private final LongAdder sumNanos = new LongAdder();
+
+  public Histogram() {
+    for (int i = 0; i < buckets.length; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * @param nanos observed duration
+   */
+  public void record(long nanos) {
+    var bucket = 0;
+
+    while (bucket < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[bucket]) {
+      bucket++;
+    }
+
+    buckets[bucket].increment();
+    sumNanos.add(nanos);
+  }
+
+  public long count() {
+    long count = 0;
+
+    for (var bucket : buckets) {
+      count += bucket.sum();
+    }
+
+    return count;
+  }
+
+  /**
+   * Write the bucket, sum and count samples
+   *
+   * @param out output
+   * @param name metric name
+   * @param labels labels of the series, e.g. method="GET", empty for none
+   */
+  public void write(StringBuilder out, String name, String labels) {
+    final var separator = labels.isEmpty() ? "" : ",";
+    long cumulative = 0;
+
+    for (int i = 0; i < buckets.length; i++) {
+      cumulative += buckets[i].sum();
+      out.append(name)
+          .append("_bucket{")
+          .append(labels)
+          .append(separator)
+          .append("le=\"")
+          .append(i < BOUNDS.length ? String.valueOf(BOUNDS[i]) : "+Inf")
+          .append("\"} ")
+          .append(cumulative)
+          .append('\n');
+    }
+
+    final var braces = labels.isEmpty() ? "" : "{" + labels + "}";
+    out.append(name)
+        .append("_sum")
+        .append(braces)
+        .append(' ')
+        .append(sumNanos.sum() / (double) TimeUnit.SECONDS.toNanos(1))
+        .append('\n');
+    out.append(name).append("_count").append(braces).append(' ').append(cumulative).append('\n');
+  }
+}
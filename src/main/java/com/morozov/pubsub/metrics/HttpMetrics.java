@@ -0,0 +1,112 @@
+package com.morozov.pubsub.metrics;
+
+import com.morozov.pubsub.SharedResources;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.web.RoutingContext;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request latency and responses by status class of every route, and the requests in flight.
+ * Shared by all the verticles of the node. The series of a route are created once when the route
+ * is set up, a request only reads the clock and bumps striped counters.
+ */
+public class HttpMetrics implements Shareable {
+  private static final String RESOURCE_NAME = "metrics.http";
+  private static final String DURATION = "pubsub_http_request_duration_seconds";
+  private static final String RESPONSES = "pubsub_http_responses_total";
+  private static final String IN_FLIGHT = "pubsub_http_requests_in_flight";
+
+  private final Map<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+  private final LongAdder inFlight = new LongAdder();
+
+  /**
+   * Get the metrics shared by the Vert.x instance or create them on the first call
+   *
+   * @param vertx Vert.x instance
+   * @return shared metrics
+   */
+  public static HttpMetrics get(Vertx vertx) {
+    return SharedResources.get(vertx, RESOURCE_NAME, HttpMetrics::new);
+  }
+
+  /**
+   * Route handler timing the request until its response is done, it has to be the first handler
+   * of the route
+   *
+   * @param method HTTP method
+   * @param path route path
+   * @return handler
+   */
+  public Handler<RoutingContext> timer(String method, String path) {
+    final var route =
+        routes.computeIfAbsent(
+            method + ' ' + path,
+            key ->
+                new RouteMetrics(
+                    Prometheus.label("method", method) + ',' + Prometheus.label("route", path)));
+
+    return rc -> {
+      final var start = System.nanoTime();
+      inFlight.increment();
+      rc.addEndHandler(
+          result -> {
+            inFlight.decrement();
+            route.record(rc.response().getStatusCode(), System.nanoTime() - start);
+          });
+      rc.next();
+    };
+  }
+
+  /**
+   * Write the metrics in the Prometheus text format
+   *
+   * @param out output
+   */
+  public void write(StringBuilder out) {
+    Prometheus.header(out, IN_FLIGHT, "gauge", "HTTP requests being handled");
+    out.append(IN_FLIGHT).append(' ').append(inFlight.sum()).append('\n');
+
+    Prometheus.header(out, DURATION, "histogram", "HTTP request latency by route");
+    routes.values().forEach(route -> route.duration.write(out, DURATION, route.labels));
+
+    Prometheus.header(out, RESPONSES, "counter", "HTTP responses by route and status class");
+    routes.values().forEach(route -> route.writeResponses(out));
+  }
+
+  private static class RouteMetrics {
+    private final String labels;
+    private final Histogram duration = new Histogram();
+    /** Responses by the first digit of the status code */
+    private final LongAdder[] responses = new LongAdder[6];
+
+    RouteMetrics(String labels) {
+      this.labels = labels;
+
+      for (int i = 0; i < responses.length; i++) {
+        responses[i] = new LongAdder();
+      }
+    }
+
+    void record(int statusCode, long nanos) {
+      duration.record(nanos);
+      responses[Math.min(Math.max(statusCode / 100, 0), responses.length - 1)].increment();
+    }
+
+    void writeResponses(StringBuilder out) {
+      for (int i = 1; i < responses.length; i++) {
+        out.append(RESPONSES)
+            .append('{')
+            .append(labels)
+            .append(",status=\"")
+            .append(i)
+            .append("xx\"} ")
+            .append(responses[i].sum())
+            .append('\n');
+      }
+    }
+  }
+}
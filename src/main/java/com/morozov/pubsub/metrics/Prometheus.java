@@ -0,0 +1,33 @@
+package com.morozov.pubsub.metrics;
+
+/** Prometheus text exposition format helpers */
+public class Prometheus {
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private Prometheus() {}
+
+  /**
+   * Write the HELP and TYPE lines of a metric
+   *
+   * @param out output
+   * @param name metric name
+   * @param type counter, gauge or histogram
+   * @param help description
+   */
+  public static void header(StringBuilder out, String name, String type, String help) {
+    out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  /**
+   * @param name label name
+   * @param value label value
+   * @return label pair with the value escaped
+   */
+  public static String label(String name, String value) {
+    return name
+        + "=\""
+        + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")
+        + '"';
+  }
+}
@@ -0,0 +1,89 @@
+package com.morozov.pubsub.metrics;
+
+import com.morozov.pubsub.SharedResources;
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.redis.client.Command;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and errors of every Redis command sent by the node. The series are keyed by the command
+ * constant, so recording a command that was sent before neither builds a name nor allocates.
+ */
+public class RedisMetrics implements Shareable {
+  private static final String RESOURCE_NAME = "metrics.redis";
+  private static final String DURATION = "pubsub_redis_command_duration_seconds";
+  private static final String ERRORS = "pubsub_redis_command_errors_total";
+  private static final String BATCH = "BATCH";
+
+  private final Map<Command, CommandMetrics> commands = new ConcurrentHashMap<>();
+  private final CommandMetrics batches = new CommandMetrics(BATCH);
+
+  /**
+   * Get the metrics shared by the Vert.x instance or create them on the first call
+   *
+   * @param vertx Vert.x instance
+   * @return shared metrics
+   */
+  public static RedisMetrics get(Vertx vertx) {
+    return SharedResources.get(vertx, RESOURCE_NAME, RedisMetrics::new);
+  }
+
+  /**
+   * @param command sent command
+   * @param nanos time until the reply
+   * @param failed true if the command failed or got an error reply
+   */
+  public void record(Command command, long nanos, boolean failed) {
+    commands
+        .computeIfAbsent(command, key -> new CommandMetrics(key.toString()))
+        .record(nanos, failed);
+  }
+
+  /**
+   * @param nanos time until the replies of a batch
+   * @param failed true if the batch failed
+   */
+  public void recordBatch(long nanos, boolean failed) {
+    batches.record(nanos, failed);
+  }
+
+  /**
+   * Write the metrics in the Prometheus text format
+   *
+   * @param out output
+   */
+  public void write(StringBuilder out) {
+    Prometheus.header(out, DURATION, "histogram", "Redis command latency by command");
+    commands.values().forEach(command -> command.duration.write(out, DURATION, command.labels));
+    batches.duration.write(out, DURATION, batches.labels);
+
+    Prometheus.header(out, ERRORS, "counter", "Failed Redis commands by command");
+    commands.values().forEach(command -> command.writeErrors(out));
+    batches.writeErrors(out);
+  }
+
+  private static class CommandMetrics {
+    private final String labels;
+    private final Histogram duration = new Histogram();
+    private final LongAdder errors = new LongAdder();
+
+    CommandMetrics(String name) {
+      this.labels = Prometheus.label("command", name);
+    }
+
+    void record(long nanos, boolean failed) {
+      duration.record(nanos);
+
+      if (failed) {
+        errors.increment();
+      }
+    }
+
+    void writeErrors(StringBuilder out) {
+      out.append(ERRORS).append('{').append(labels).append("} ").append(errors.sum()).append('\n');
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package com.morozov.pubsub.metrics;
+
+import com.morozov.pubsub.SharedResources;
+import com.morozov.pubsub.constants.ConfigConstants;
+import com.morozov.pubsub.store.MessageStore;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Topic lengths sampled in the background: every tick reads the length of the next few registered
+ * topics, so a scrape never waits for Redis and the sampling cost doesn't grow with the number of
+ * topics. The number of reported topics is bounded to keep the series count of the node bounded.
+ *
+ * <p>Shared by all the verticles of the node, the sampler runs on the context of the verticle that
+ * created it and reads through its message store.
+ */
+public class TopicDepthSampler implements Shareable {
+  private static final Logger logger = LoggerFactory.getLogger(TopicDepthSampler.class);
+  private static final String RESOURCE_NAME = "metrics.topicDepth";
+  private static final String DEPTH = "pubsub_topic_depth";
+
+  private final MessageStore messageStore;
+  private final Map<String, Long> depths = new ConcurrentHashMap<>();
+  private final int sampleTopics;
+  private final int maxTopics;
+  private boolean sampling;
+
+  private TopicDepthSampler(MessageStore messageStore, JsonObject config) {
+    this.messageStore = messageStore;
+    this.sampleTopics =
+        config.getInteger(
+            ConfigConstants.METRICS_DEPTH_SAMPLE_TOPICS,
+            ConfigConstants.DEFAULT_METRICS_DEPTH_SAMPLE_TOPICS);
+    this.maxTopics =
+        config.getInteger(
+            ConfigConstants.METRICS_DEPTH_MAX_TOPICS,
+            ConfigConstants.DEFAULT_METRICS_DEPTH_MAX_TOPICS);
+  }
+
+  /**
+   * Get the sampler shared by the Vert.x instance or create it and start sampling on the first
+   * call
+   *
+   * @param vertx Vert.x instance
+   * @param config verticle config
+   * @param messageStore message store of the calling verticle
+   * @return shared sampler
+   */
+  public static TopicDepthSampler get(Vertx vertx, JsonObject config, MessageStore messageStore) {
+    return SharedResources.get(
+        vertx,
+        RESOURCE_NAME,
+        () -> {
+          final var sampler = new TopicDepthSampler(messageStore, config);
+
+          vertx.setPeriodic(
+              config.getLong(
+                  ConfigConstants.METRICS_DEPTH_SAMPLE_INTERVAL_MS,
+                  ConfigConstants.DEFAULT_METRICS_DEPTH_SAMPLE_INTERVAL_MS),
+              timerId -> sampler.sample());
+
+          return sampler;
+        });
+  }
+
+  /**
+   * Write the sampled depths in the Prometheus text format
+   *
+   * @param out output
+   */
+  public void write(StringBuilder out) {
+    Prometheus.header(out, DEPTH, "gauge", "Sampled number of messages kept in a topic");
+    depths.forEach(
+        (topic, depth) ->
+            out.append(DEPTH)
+                .append('{')
+                .append(Prometheus.label("topic", topic))
+                .append("} ")
+                .append(depth)
+                .append('\n'));
+  }
+
+  /** Read the lengths of the next topics */
+  private void sample() {
+    if (sampling) {
+      return;
+    }
+
+    sampling = true;
+
+    messageStore
+        .nextTopics(sampleTopics)
+        .compose(
+            topics -> {
+              final List<Future> lengths = new ArrayList<>(topics.size());
+
+              for (var topic : topics) {
+                if (depths.size() < maxTopics || depths.containsKey(topic)) {
+                  lengths.add(
+                      messageStore.length(topic).onSuccess(depth -> depths.put(topic, depth)));
+                }
+              }
+
+              return CompositeFuture.join(lengths);
+            })
+        .onFailure(throwable -> logger.warn("Topic depth sampling failed: " + throwable))
+        .onComplete(val -> sampling = false);
+  }
+}
@@ -2,21 +2,44 @@ package com.morozov.pubsub.model.dto;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 /** Message in the topic */
 public class Message {
   private final String message;
   private final Long ts;
+  private final Long seq;
+  private final int encodedLength;
 
   @JsonCreator
-  public Message(@JsonProperty("message") String message, @JsonProperty("ts") Long ts) {
+  public Message(
+      @JsonProperty("message") String message,
+      @JsonProperty("ts") Long ts,
+      @JsonProperty("seq") Long seq) {
+    this(message, ts, seq, 0);
+  }
+
+  /**
+   * @param message message
+   * @param ts publish timestamp
+   * @param seq topic sequence, null if the message has none
+   * @param encodedLength size of the message in the topic store
+   */
+  public Message(String message, Long ts, Long seq, int encodedLength) {
     this.message = message;
     this.ts = ts;
+    this.seq = seq;
+    this.encodedLength = encodedLength;
+  }
+
+  public Message(String message, Long ts) {
+    this(message, ts, null);
   }
 
   public Message() {
-    this(null, null);
+    this(null, null, null);
   }
 
   @JsonGetter
@@ -28,4 +51,17 @@ public class Message {
   public Long getTs() {
     return ts;
   }
+
+  /** @return topic sequence, null if the message was stored without one */
+  @JsonGetter
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public Long getSeq() {
+    return seq;
+  }
+
+  /** @return size of the message in the topic store, the one max bytes counts, 0 if unknown */
+  @JsonIgnore
+  public int getEncodedLength() {
+    return encodedLength;
+  }
 }
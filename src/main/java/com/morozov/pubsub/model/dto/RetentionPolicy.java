@@ -0,0 +1,64 @@
+package com.morozov.pubsub.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.morozov.pubsub.constants.ConfigConstants;
+import io.vertx.core.json.JsonObject;
+
+/** Topic retention limits, 0 means unlimited */
+public class RetentionPolicy {
+  private final long maxMessages;
+  private final long maxBytes;
+  private final long maxAgeMs;
+
+  @JsonCreator
+  public RetentionPolicy(
+      @JsonProperty("maxMessages") long maxMessages,
+      @JsonProperty("maxBytes") long maxBytes,
+      @JsonProperty("maxAgeMs") long maxAgeMs) {
+    this.maxMessages = maxMessages;
+    this.maxBytes = maxBytes;
+    this.maxAgeMs = maxAgeMs;
+  }
+
+  public RetentionPolicy() {
+    this(0, 0, 0);
+  }
+
+  /**
+   * Default policy of the topics registered without retention params
+   *
+   * @param config verticle config
+   * @return policy
+   */
+  public static RetentionPolicy fromConfig(JsonObject config) {
+    return new RetentionPolicy(
+        config.getLong(ConfigConstants.RETENTION_MAX_MESSAGES, 0L),
+        config.getLong(ConfigConstants.RETENTION_MAX_BYTES, 0L),
+        config.getLong(ConfigConstants.RETENTION_MAX_AGE_MS, 0L));
+  }
+
+  @JsonGetter
+  public long getMaxMessages() {
+    return maxMessages;
+  }
+
+  @JsonGetter
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  @JsonGetter
+  public long getMaxAgeMs() {
+    return maxAgeMs;
+  }
+
+  /**
+   * @param now current time
+   * @return publish time before which the messages are expired, 0 if they never expire
+   */
+  public long expiredBefore(long now) {
+    return maxAgeMs > 0 ? now - maxAgeMs : 0;
+  }
+}
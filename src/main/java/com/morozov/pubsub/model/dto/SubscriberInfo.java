@@ -2,26 +2,35 @@ package com.morozov.pubsub.model.dto;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
 
 /** Subscriber information */
 public class SubscriberInfo {
   private final String subId;
   private final String topic;
   private final Long ts;
+  private final List<Long> offsets;
 
   @JsonCreator
   public SubscriberInfo(
       @JsonProperty("subId") String subId,
       @JsonProperty("topic") String topic,
-      @JsonProperty("ts") Long ts) {
+      @JsonProperty("ts") Long ts,
+      @JsonProperty("offsets") List<Long> offsets) {
     this.subId = subId;
     this.topic = topic;
     this.ts = ts;
+    this.offsets = offsets;
+  }
+
+  public SubscriberInfo(String subId, String topic, Long ts) {
+    this(subId, topic, ts, null);
   }
 
   public SubscriberInfo() {
-    this(null, null, null);
+    this(null, null, null, null);
   }
 
   @JsonGetter
@@ -38,4 +47,14 @@ public class SubscriberInfo {
   public String getTopic() {
     return topic;
   }
+
+  /**
+   * @return first topic sequence visible to the subscriber by partition, a single one for a topic
+   *     without partitions, null if the storage engine doesn't sequence the messages
+   */
+  @JsonGetter
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public List<Long> getOffsets() {
+    return offsets;
+  }
 }
@@ -0,0 +1,33 @@
+package com.morozov.pubsub.model.req;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/** Ack message by subscriber request, of the topic head or of a received message */
+public class AckMessageRequest {
+  private final String subId;
+  private final String receipt;
+
+  @JsonCreator
+  public AckMessageRequest(
+      @JsonProperty("subId") String subId, @JsonProperty("receipt") String receipt) {
+    this.subId = subId;
+    this.receipt = receipt;
+  }
+
+  public AckMessageRequest() {
+    this(null, null);
+  }
+
+  @JsonGetter
+  public String getSubId() {
+    return subId;
+  }
+
+  /** @return receipt of the lease of a received message, null to ack the topic head */
+  @JsonGetter
+  public String getReceipt() {
+    return receipt;
+  }
+}
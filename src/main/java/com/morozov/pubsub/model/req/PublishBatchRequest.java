@@ -0,0 +1,33 @@
+package com.morozov.pubsub.model.req;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+
+/** Publish a batch of messages by publisher request */
+public class PublishBatchRequest {
+  private final String pubId;
+  private final List<String> messages;
+
+  @JsonCreator
+  public PublishBatchRequest(
+      @JsonProperty("pubId") String pubId, @JsonProperty("messages") List<String> messages) {
+    this.pubId = pubId;
+    this.messages = messages;
+  }
+
+  public PublishBatchRequest() {
+    this(null, null);
+  }
+
+  @JsonGetter
+  public String getPubId() {
+    return pubId;
+  }
+
+  @JsonGetter
+  public List<String> getMessages() {
+    return messages;
+  }
+}
@@ -0,0 +1,116 @@
+package com.morozov.pubsub.model.req;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonToken;
+import io.netty.buffer.ByteBufInputStream;
+import io.vertx.core.buffer.Buffer;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Publish message request read straight from the request body. Only pubId is decoded: the message
+ * is kept as the raw bytes of its JSON value, sharing the body memory, so it can be put into the
+ * stored message without being decoded and encoded again.
+ */
+public class RawPublishMessageRequest {
+  private static final JsonFactory FACTORY = new JsonFactory();
+  private static final Buffer JSON_NULL = Buffer.buffer("null");
+  private static final String PUB_ID = "pubId";
+  private static final String MESSAGE = "message";
+
+  private final String pubId;
+  private final Buffer messageJson;
+
+  public RawPublishMessageRequest(String pubId, Buffer messageJson) {
+    this.pubId = pubId;
+    this.messageJson = messageJson;
+  }
+
+  /**
+   * Stream-parse a {"pubId": ..., "message": ...} body. The message value is skipped by the parser
+   * without being decoded, its bytes are taken as a slice of the body.
+   *
+   * @param body request body
+   * @return request
+   * @throws IOException if the body is not a JSON object or the message is not a scalar value
+   */
+  public static RawPublishMessageRequest parse(Buffer body) throws IOException {
+    String pubId = null;
+    Buffer messageJson = JSON_NULL;
+
+    try (var parser =
+        FACTORY.createParser((InputStream) new ByteBufInputStream(body.getByteBuf()))) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new JsonParseException(parser, "Request body is not a JSON object");
+      }
+
+      var token = parser.nextToken();
+
+      while (token == JsonToken.FIELD_NAME) {
+        final var field = parser.getCurrentName();
+        final var value = parser.nextToken();
+
+        if (MESSAGE.equals(field)) {
+          if (!value.isScalarValue()) {
+            throw new JsonParseException(parser, "Message is not a scalar value");
+          }
+
+          // the value ends right before the next token, which the parser reaches without decoding
+          // the value
+          final var start = (int) parser.getTokenLocation().getByteOffset();
+          token = parser.nextToken();
+          final var end = valueEnd(body, (int) parser.getTokenLocation().getByteOffset());
+          messageJson = body.slice(start, end);
+          continue;
+        }
+
+        if (PUB_ID.equals(field) && value.isScalarValue()) {
+          pubId = parser.getValueAsString();
+        } else {
+          parser.skipChildren();
+        }
+
+        token = parser.nextToken();
+      }
+
+      if (token != JsonToken.END_OBJECT) {
+        throw new JsonParseException(parser, "Request body is not a JSON object");
+      }
+    }
+
+    return new RawPublishMessageRequest(pubId, messageJson);
+  }
+
+  /**
+   * Find the end of a value, skipping back over the separators before the next token
+   *
+   * @param body request body
+   * @param nextTokenStart offset of the token following the value
+   * @return offset right after the last byte of the value
+   */
+  private static int valueEnd(Buffer body, int nextTokenStart) {
+    var end = nextTokenStart;
+
+    while (end > 0) {
+      final var b = body.getByte(end - 1);
+
+      if (b != ',' && b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+        break;
+      }
+
+      end--;
+    }
+
+    return end;
+  }
+
+  public String getPubId() {
+    return pubId;
+  }
+
+  /** @return raw JSON value of the message: a quoted and escaped string, a number or null */
+  public Buffer getMessageJson() {
+    return messageJson;
+  }
+}
@@ -0,0 +1,25 @@
+package com.morozov.pubsub.model.res;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+
+/** Get or ack a range of messages by subscriber response */
+public class GetMessagesResponse {
+  private final List<String> messages;
+
+  @JsonCreator
+  public GetMessagesResponse(@JsonProperty("messages") List<String> messages) {
+    this.messages = messages;
+  }
+
+  public GetMessagesResponse() {
+    this(null);
+  }
+
+  @JsonGetter
+  public List<String> getMessages() {
+    return messages;
+  }
+}
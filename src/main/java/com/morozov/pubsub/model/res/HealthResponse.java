@@ -0,0 +1,50 @@
+package com.morozov.pubsub.model.res;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Map;
+
+/** Verticle instance health response */
+public class HealthResponse {
+  private final String instance;
+  private final String eventLoop;
+  private final String redis;
+  private final Map<String, Long> counters;
+
+  @JsonCreator
+  public HealthResponse(
+      @JsonProperty("instance") String instance,
+      @JsonProperty("eventLoop") String eventLoop,
+      @JsonProperty("redis") String redis,
+      @JsonProperty("counters") Map<String, Long> counters) {
+    this.instance = instance;
+    this.eventLoop = eventLoop;
+    this.redis = redis;
+    this.counters = counters;
+  }
+
+  public HealthResponse() {
+    this(null, null, null, null);
+  }
+
+  @JsonGetter
+  public String getInstance() {
+    return instance;
+  }
+
+  @JsonGetter
+  public String getEventLoop() {
+    return eventLoop;
+  }
+
+  @JsonGetter
+  public String getRedis() {
+    return redis;
+  }
+
+  @JsonGetter
+  public Map<String, Long> getCounters() {
+    return counters;
+  }
+}
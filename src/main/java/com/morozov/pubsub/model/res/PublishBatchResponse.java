@@ -0,0 +1,33 @@
+package com.morozov.pubsub.model.res;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/** Publish a batch of messages response */
+public class PublishBatchResponse {
+  private final Integer published;
+  private final Long topicLength;
+
+  @JsonCreator
+  public PublishBatchResponse(
+      @JsonProperty("published") Integer published,
+      @JsonProperty("topicLength") Long topicLength) {
+    this.published = published;
+    this.topicLength = topicLength;
+  }
+
+  public PublishBatchResponse() {
+    this(null, null);
+  }
+
+  @JsonGetter
+  public Integer getPublished() {
+    return published;
+  }
+
+  @JsonGetter
+  public Long getTopicLength() {
+    return topicLength;
+  }
+}
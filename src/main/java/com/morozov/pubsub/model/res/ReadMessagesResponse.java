@@ -0,0 +1,34 @@
+package com.morozov.pubsub.model.res;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+
+/** Read messages from an offset by subscriber response: the messages and the offset to read next */
+public class ReadMessagesResponse {
+  private final List<String> messages;
+  private final Long nextOffset;
+
+  @JsonCreator
+  public ReadMessagesResponse(
+      @JsonProperty("messages") List<String> messages,
+      @JsonProperty("nextOffset") Long nextOffset) {
+    this.messages = messages;
+    this.nextOffset = nextOffset;
+  }
+
+  public ReadMessagesResponse() {
+    this(null, null);
+  }
+
+  @JsonGetter
+  public List<String> getMessages() {
+    return messages;
+  }
+
+  @JsonGetter
+  public Long getNextOffset() {
+    return nextOffset;
+  }
+}
@@ -0,0 +1,32 @@
+package com.morozov.pubsub.model.res;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/** Receive message by subscriber response: the leased message and the receipt to ack it */
+public class ReceiveMessageResponse {
+  private final String message;
+  private final String receipt;
+
+  @JsonCreator
+  public ReceiveMessageResponse(
+      @JsonProperty("message") String message, @JsonProperty("receipt") String receipt) {
+    this.message = message;
+    this.receipt = receipt;
+  }
+
+  public ReceiveMessageResponse() {
+    this(null, null);
+  }
+
+  @JsonGetter
+  public String getMessage() {
+    return message;
+  }
+
+  @JsonGetter
+  public String getReceipt() {
+    return receipt;
+  }
+}
@@ -0,0 +1,74 @@
+package com.morozov.pubsub.redis;
+
+import com.morozov.pubsub.metrics.RedisMetrics;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.redis.client.Redis;
+import io.vertx.redis.client.RedisConnection;
+import io.vertx.redis.client.Request;
+import io.vertx.redis.client.Response;
+import java.util.List;
+
+/**
+ * Redis client recording the latency and the failures of every command it sends. The {@link
+ * io.vertx.redis.client.RedisAPI} and the scripts built on top of it are instrumented without
+ * knowing it.
+ */
+class InstrumentedRedis implements Redis {
+  private final Redis redis;
+  private final RedisMetrics metrics;
+
+  InstrumentedRedis(Redis redis, RedisMetrics metrics) {
+    this.redis = redis;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public Redis connect(Handler<AsyncResult<RedisConnection>> handler) {
+    redis.connect(handler);
+    return this;
+  }
+
+  @Override
+  public Future<RedisConnection> connect() {
+    return redis.connect();
+  }
+
+  @Override
+  public void close() {
+    redis.close();
+  }
+
+  @Override
+  public Redis send(Request command, Handler<AsyncResult<Response>> onSend) {
+    send(command).onComplete(onSend);
+    return this;
+  }
+
+  @Override
+  public Future<Response> send(Request command) {
+    final var start = System.nanoTime();
+
+    return redis
+        .send(command)
+        .onComplete(
+            result ->
+                metrics.record(command.command(), System.nanoTime() - start, result.failed()));
+  }
+
+  @Override
+  public Redis batch(List<Request> commands, Handler<AsyncResult<List<Response>>> onSend) {
+    batch(commands).onComplete(onSend);
+    return this;
+  }
+
+  @Override
+  public Future<List<Response>> batch(List<Request> commands) {
+    final var start = System.nanoTime();
+
+    return redis
+        .batch(commands)
+        .onComplete(result -> metrics.recordBatch(System.nanoTime() - start, result.failed()));
+  }
+}
@@ -0,0 +1,191 @@
+package com.morozov.pubsub.redis;
+
+import com.morozov.pubsub.SharedResources;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.redis.client.Command;
+import io.vertx.redis.client.Redis;
+import io.vertx.redis.client.RedisConnection;
+import io.vertx.redis.client.Request;
+import io.vertx.redis.client.Response;
+import io.vertx.redis.client.ResponseType;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Node-wide Redis pub/sub listener. Keeps one dedicated subscriber connection and dispatches
+ * channel messages to the registered listeners.
+ *
+ * <p>Listeners are called on the subscriber connection context, verticles that need their own
+ * context should hop to it with {@code context.runOnContext}.
+ */
+public class RedisNotifications implements Shareable {
+  /** Channel with the topics whose publisher registration changed */
+  public static final String PUBLISHERS_CHANNEL = "pubsub:publishers";
+  /** Channel with the removed subscriber ids */
+  public static final String SUBSCRIBERS_CHANNEL = "pubsub:subscribers";
+  /** Channel with the topics that got new messages */
+  public static final String PUBLISHED_CHANNEL = "pubsub:published";
+  /** Channel with the topic lists whose cached heads are outdated */
+  public static final String HEADS_CHANNEL = "pubsub:heads";
+
+  private static final Logger logger = LoggerFactory.getLogger(RedisNotifications.class);
+  private static final String RESOURCE_NAME = "redis.notifications";
+  private static final int MAX_RECONNECT_RETRIES = 16;
+
+  private final Vertx vertx;
+  private final Redis redis;
+  private final Map<String, List<Handler<String>>> channelListeners = new ConcurrentHashMap<>();
+  private final Map<String, List<Handler<String>>> patternListeners = new ConcurrentHashMap<>();
+  private final List<Handler<Void>> resetListeners = new CopyOnWriteArrayList<>();
+  private RedisConnection connection;
+
+  private RedisNotifications(Vertx vertx, Redis redis) {
+    this.vertx = vertx;
+    this.redis = redis;
+  }
+
+  /**
+   * Get the notifications listener shared by the Vert.x instance or create it on the first call
+   *
+   * @param vertx Vert.x instance
+   * @param config verticle config
+   * @return shared listener
+   */
+  public static RedisNotifications get(Vertx vertx, JsonObject config) {
+    return SharedResources.get(
+        vertx,
+        RESOURCE_NAME,
+        () -> {
+          final var notifications =
+              new RedisNotifications(vertx, SharedRedisClient.get(vertx, config).redis());
+          notifications.connect(0);
+          return notifications;
+        });
+  }
+
+  /**
+   * Listen to a channel
+   *
+   * @param channel channel name
+   * @param listener message payload handler
+   */
+  public synchronized void listen(String channel, Handler<String> listener) {
+    final var isNew = !channelListeners.containsKey(channel);
+    channelListeners.computeIfAbsent(channel, key -> new CopyOnWriteArrayList<>()).add(listener);
+
+    if (isNew && connection != null) {
+      connection.send(Request.cmd(Command.SUBSCRIBE).arg(channel));
+    }
+  }
+
+  /**
+   * Listen to the channels matching a pattern, e.g. keyspace notifications
+   *
+   * @param pattern channel pattern
+   * @param listener handler of the matched channel name
+   */
+  public synchronized void listenPattern(String pattern, Handler<String> listener) {
+    final var isNew = !patternListeners.containsKey(pattern);
+    patternListeners.computeIfAbsent(pattern, key -> new CopyOnWriteArrayList<>()).add(listener);
+
+    if (isNew && connection != null) {
+      connection.send(Request.cmd(Command.PSUBSCRIBE).arg(pattern));
+    }
+  }
+
+  /**
+   * Listen to subscriber reconnects: messages might have been missed while disconnected
+   *
+   * @param listener reconnect handler
+   */
+  public void onReset(Handler<Void> listener) {
+    resetListeners.add(listener);
+  }
+
+  /**
+   * Connect the subscriber and (re)subscribe to every known channel
+   *
+   * @param retry current retry
+   */
+  private void connect(int retry) {
+    redis
+        .connect()
+        .onSuccess(
+            conn -> {
+              conn.handler(this::dispatch);
+              conn.exceptionHandler(throwable -> onDisconnect(conn));
+              conn.endHandler(val -> onDisconnect(conn));
+
+              synchronized (this) {
+                connection = conn;
+                channelListeners
+                    .keySet()
+                    .forEach(channel -> conn.send(Request.cmd(Command.SUBSCRIBE).arg(channel)));
+                patternListeners
+                    .keySet()
+                    .forEach(pattern -> conn.send(Request.cmd(Command.PSUBSCRIBE).arg(pattern)));
+              }
+
+              logger.info("Subscribed to Redis notifications");
+              resetListeners.forEach(listener -> listener.handle(null));
+            })
+        .onFailure(throwable -> attemptReconnect(retry + 1));
+  }
+
+  private synchronized void onDisconnect(RedisConnection conn) {
+    if (connection == conn) {
+      logger.warn("Lost Redis notifications connection");
+      connection = null;
+      attemptReconnect(0);
+    }
+  }
+
+  /** Attempt to reconnect up to MAX_RECONNECT_RETRIES */
+  private void attemptReconnect(int retry) {
+    if (retry > MAX_RECONNECT_RETRIES) {
+      logger.error("Failed subscribing to Redis notifications");
+    } else {
+      // retry with backoff up to 10240 ms
+      long backoff = (long) (Math.pow(2, Math.min(retry, 10)) * 10);
+
+      vertx.setTimer(backoff, timer -> connect(retry));
+    }
+  }
+
+  /**
+   * Dispatch a pub/sub message: [message, channel, payload] or [pmessage, pattern, channel,
+   * payload]
+   *
+   * @param msg message from Redis
+   */
+  private void dispatch(Response msg) {
+    if (msg == null || (msg.type() != ResponseType.MULTI && msg.type() != ResponseType.PUSH)) {
+      return;
+    }
+
+    final var kind = msg.get(0).toString();
+
+    if ("message".equals(kind) && msg.size() == 3) {
+      final var listeners = channelListeners.get(msg.get(1).toString());
+
+      if (listeners != null) {
+        final var payload = msg.get(2).toString();
+        listeners.forEach(listener -> listener.handle(payload));
+      }
+    } else if ("pmessage".equals(kind) && msg.size() == 4) {
+      final var listeners = patternListeners.get(msg.get(1).toString());
+
+      if (listeners != null) {
+        final var channel = msg.get(2).toString();
+        listeners.forEach(listener -> listener.handle(channel));
+      }
+    }
+  }
+}
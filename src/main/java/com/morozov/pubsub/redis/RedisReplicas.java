@@ -0,0 +1,251 @@
+package com.morozov.pubsub.redis;
+
+import com.morozov.pubsub.constants.ConfigConstants;
+import com.morozov.pubsub.metrics.RedisMetrics;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonObject;
+import io.vertx.redis.client.Redis;
+import io.vertx.redis.client.RedisAPI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Read replicas of the Redis master for the reads that may be slightly stale. A read goes to the
+ * next replica that is at most redis.replicaMaxLagMs behind the master, or to the master if there
+ * is none, if the replica fails or if it doesn't have the key.
+ *
+ * <p>The lag of every replica is probed with a heartbeat key of the node: its current time is
+ * written to the master and read back from the replicas. Keys written by the node are read from the
+ * master until the replicas have caught up, so a subscriber doesn't peek a message it has just
+ * acked from a replica.
+ *
+ * <p>Shared by all the verticles of the node through the {@link SharedRedisClient}, the probe runs
+ * on the context of the verticle that created it.
+ */
+class RedisReplicas {
+  private static final Logger logger = LoggerFactory.getLogger(RedisReplicas.class);
+  private static final String HEARTBEAT_KEY_PREFIX = "pubsub:heartbeat:";
+  private static final long HEARTBEAT_TTL_MS = 60000;
+  private static final long UNKNOWN_LAG = Long.MAX_VALUE;
+
+  private final RedisAPI master;
+  private final List<Replica> replicas = new ArrayList<>();
+  private final String heartbeatKey = HEARTBEAT_KEY_PREFIX + UUID.randomUUID();
+  private final long maxLagMs;
+  private final long writeWindowMs;
+  private final Map<String, Long> recentWrites = new ConcurrentHashMap<>();
+  private final AtomicInteger next = new AtomicInteger();
+  private final LongAdder replicaReads = new LongAdder();
+  private final LongAdder fallbacks = new LongAdder();
+  private boolean probing;
+
+  private RedisReplicas(RedisAPI master, long maxLagMs, long probeIntervalMs) {
+    this.master = master;
+    this.maxLagMs = maxLagMs;
+    // a replica within the lag at the last probe may be a probe interval further behind by now
+    this.writeWindowMs = maxLagMs + probeIntervalMs;
+  }
+
+  /**
+   * Connect to the replicas of the redis.replicaConnectionStrings config and start probing them
+   *
+   * @param vertx Vert.x instance
+   * @param master Redis API of the master
+   * @param config verticle config
+   * @return replicas or null if none are configured or the client is a cluster one
+   */
+  static RedisReplicas create(Vertx vertx, RedisAPI master, JsonObject config) {
+    final var connectionStrings =
+        config.getString(ConfigConstants.REDIS_REPLICA_CONNECTION_STRINGS, "").trim();
+
+    // a replica pool would hold the keys of its shard only, a cluster client routes by slot
+    if (connectionStrings.isEmpty() || config.getBoolean(ConfigConstants.REDIS_CLUSTER, false)) {
+      return null;
+    }
+
+    final var probeIntervalMs =
+        config.getLong(
+            ConfigConstants.REDIS_REPLICA_PROBE_INTERVAL_MS,
+            ConfigConstants.DEFAULT_REDIS_REPLICA_PROBE_INTERVAL_MS);
+    final var replicas =
+        new RedisReplicas(
+            master,
+            config.getLong(
+                ConfigConstants.REDIS_REPLICA_MAX_LAG_MS,
+                ConfigConstants.DEFAULT_REDIS_REPLICA_MAX_LAG_MS),
+            probeIntervalMs);
+
+    for (var connectionString : connectionStrings.split(",")) {
+      final var redis =
+          new InstrumentedRedis(
+              Redis.createClient(
+                  vertx,
+                  SharedRedisClient.makeOptions(config)
+                      .setConnectionString(connectionString.trim())),
+              RedisMetrics.get(vertx));
+      replicas.replicas.add(new Replica(connectionString.trim(), RedisAPI.api(redis)));
+    }
+
+    vertx.setPeriodic(probeIntervalMs, timerId -> replicas.probe());
+    replicas.probe();
+
+    return replicas;
+  }
+
+  /**
+   * Run a read on a replica, falling back to the master
+   *
+   * @param key key read, null if it's never written by the service after being created
+   * @param read read on the given Redis API, its null result means the key wasn't found
+   * @return read result
+   */
+  <T> Future<T> read(String key, Function<RedisAPI, Future<T>> read) {
+    final var replica = pick(key);
+
+    if (replica == null) {
+      return read.apply(master);
+    }
+
+    replicaReads.increment();
+
+    return read.apply(replica.api)
+        .compose(
+            result -> {
+              if (result != null) {
+                return Future.succeededFuture(result);
+              }
+
+              // the key may be too new to be replicated
+              fallbacks.increment();
+              return read.apply(master);
+            },
+            throwable -> {
+              // left out until the next probe finds it in sync
+              replica.lagMs = UNKNOWN_LAG;
+              fallbacks.increment();
+              return read.apply(master);
+            });
+  }
+
+  /**
+   * Read a key from the master until the replicas have the write
+   *
+   * @param key written key
+   */
+  void written(String key) {
+    recentWrites.put(key, System.currentTimeMillis());
+  }
+
+  /**
+   * @return replica counters by name
+   */
+  Map<String, Long> counters() {
+    return Map.of(
+        "replica.reads",
+        replicaReads.sum(),
+        "replica.fallbacks",
+        fallbacks.sum(),
+        "replica.inSync",
+        replicas.stream().filter(replica -> replica.lagMs <= maxLagMs).count());
+  }
+
+  /**
+   * @return replica in sync to read the key from, null to read it from the master
+   */
+  private Replica pick(String key) {
+    if (key != null) {
+      final var writtenAt = recentWrites.get(key);
+
+      if (writtenAt != null && System.currentTimeMillis() - writtenAt < writeWindowMs) {
+        return null;
+      }
+    }
+
+    final var start = Math.floorMod(next.getAndIncrement(), replicas.size());
+
+    for (int i = 0; i < replicas.size(); i++) {
+      final var replica = replicas.get((start + i) % replicas.size());
+
+      if (replica.lagMs <= maxLagMs) {
+        return replica;
+      }
+    }
+
+    return null;
+  }
+
+  /** Write the heartbeat to the master and measure how far behind it every replica is */
+  private void probe() {
+    if (probing) {
+      return;
+    }
+
+    probing = true;
+
+    final var now = System.currentTimeMillis();
+    recentWrites.values().removeIf(writtenAt -> now - writtenAt >= writeWindowMs);
+
+    master
+        .set(List.of(heartbeatKey, String.valueOf(now), "PX", String.valueOf(HEARTBEAT_TTL_MS)))
+        .compose(
+            val -> {
+              final List<Future> probes = new ArrayList<>();
+              replicas.forEach(replica -> probes.add(probe(replica)));
+              return CompositeFuture.join(probes);
+            })
+        .onFailure(
+            throwable -> {
+              // without a heartbeat the lag can't be told, the master serves every read
+              replicas.forEach(replica -> replica.lagMs = UNKNOWN_LAG);
+              logger.warn("Redis replica probe failed: " + throwable.getMessage());
+            })
+        .onComplete(val -> probing = false);
+  }
+
+  private Future<Void> probe(Replica replica) {
+    return replica
+        .api
+        .get(heartbeatKey)
+        .map(
+            value -> {
+              final var lagMs =
+                  value == null
+                      ? UNKNOWN_LAG
+                      : Math.max(System.currentTimeMillis() - value.toLong(), 0);
+
+              if (lagMs > maxLagMs && replica.lagMs <= maxLagMs) {
+                logger.warn("Redis replica " + replica.connectionString + " fell behind");
+              }
+
+              replica.lagMs = lagMs;
+              return null;
+            })
+        .otherwise(
+            throwable -> {
+              replica.lagMs = UNKNOWN_LAG;
+              return null;
+            })
+        .mapEmpty();
+  }
+
+  private static class Replica {
+    private final String connectionString;
+    private final RedisAPI api;
+    private volatile long lagMs = UNKNOWN_LAG;
+
+    private Replica(String connectionString, RedisAPI api) {
+      this.connectionString = connectionString;
+      this.api = api;
+    }
+  }
+}
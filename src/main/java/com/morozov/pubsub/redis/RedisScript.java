@@ -0,0 +1,150 @@
+package com.morozov.pubsub.redis;
+
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.redis.client.Command;
+import io.vertx.redis.client.Redis;
+import io.vertx.redis.client.RedisAPI;
+import io.vertx.redis.client.Request;
+import io.vertx.redis.client.Response;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lua script executed on the Redis side. Invoked by EVALSHA, falling back to EVAL when Redis
+ * doesn't have the script cached yet (e.g. after a restart or a SCRIPT FLUSH).
+ */
+public class RedisScript {
+  private static final String NO_SCRIPT_ERROR = "NOSCRIPT";
+
+  private final String source;
+  private final String sha;
+
+  private RedisScript(String source) {
+    this.source = source;
+    this.sha = sha1(source);
+  }
+
+  /**
+   * Read a script from the classpath
+   *
+   * @param resource resource path
+   * @return script
+   */
+  public static RedisScript fromResource(String resource) {
+    try (var stream = RedisScript.class.getResourceAsStream(resource)) {
+      if (stream == null) {
+        throw new IllegalArgumentException("Script " + resource + " was not found");
+      }
+
+      return new RedisScript(new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Redis caches scripts by the SHA1 of their source, so it can be computed locally
+   *
+   * @param source script source
+   * @return hex SHA1
+   */
+  public static String sha1(String source) {
+    try {
+      final var digest =
+          MessageDigest.getInstance("SHA-1").digest(source.getBytes(StandardCharsets.UTF_8));
+      final var hex = new StringBuilder(digest.length * 2);
+
+      for (var b : digest) {
+        hex.append(String.format("%02x", b));
+      }
+
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return SHA1 the script is cached by in Redis
+   */
+  public String sha() {
+    return sha;
+  }
+
+  /**
+   * Load the script into the Redis script cache
+   *
+   * @param redisApi Redis API
+   * @return script SHA1
+   */
+  public Future<Response> preload(RedisAPI redisApi) {
+    return redisApi.script(List.of("LOAD", source));
+  }
+
+  /**
+   * Run the script
+   *
+   * @param redisApi Redis API
+   * @param keys keys the script touches
+   * @param args script arguments
+   * @return script result
+   */
+  public Future<Response> eval(RedisAPI redisApi, List<String> keys, List<String> args) {
+    return redisApi
+        .evalsha(makeArgs(sha, keys, args))
+        .recover(
+            throwable -> {
+              if (throwable.getMessage() != null
+                  && throwable.getMessage().startsWith(NO_SCRIPT_ERROR)) {
+                return redisApi.eval(makeArgs(source, keys, args));
+              }
+
+              return Future.failedFuture(throwable);
+            });
+  }
+
+  /**
+   * Run the script with binary arguments, which are written to Redis without String conversions
+   *
+   * @param redis Redis client
+   * @param keys keys the script touches
+   * @param args script arguments
+   * @return script result
+   */
+  public Future<Response> evalBinary(Redis redis, List<String> keys, List<Buffer> args) {
+    return redis
+        .send(makeRequest(Command.EVALSHA, sha, keys, args))
+        .recover(
+            throwable -> {
+              if (throwable.getMessage() != null
+                  && throwable.getMessage().startsWith(NO_SCRIPT_ERROR)) {
+                return redis.send(makeRequest(Command.EVAL, source, keys, args));
+              }
+
+              return Future.failedFuture(throwable);
+            });
+  }
+
+  private static Request makeRequest(
+      Command command, String script, List<String> keys, List<Buffer> args) {
+    final var request = Request.cmd(command).arg(script).arg(keys.size());
+    keys.forEach(request::arg);
+    args.forEach(request::arg);
+    return request;
+  }
+
+  private static List<String> makeArgs(String script, List<String> keys, List<String> args) {
+    final var evalArgs = new ArrayList<String>(2 + keys.size() + args.size());
+    evalArgs.add(script);
+    evalArgs.add(String.valueOf(keys.size()));
+    evalArgs.addAll(keys);
+    evalArgs.addAll(args);
+    return evalArgs;
+  }
+}
@@ -0,0 +1,72 @@
+package com.morozov.pubsub.redis;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.redis.client.RedisAPI;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Lua scripts used by the service */
+public class RedisScripts {
+  /** Ack the topic list head for a subscriber */
+  public static final RedisScript ACK_MESSAGE =
+      RedisScript.fromResource("/scripts/ack-message.lua");
+  /** Append messages to a topic list within its retention limits */
+  public static final RedisScript LIST_APPEND =
+      RedisScript.fromResource("/scripts/list-append.lua");
+  /** Trim the expired messages of a topic list */
+  public static final RedisScript LIST_EXPIRE =
+      RedisScript.fromResource("/scripts/list-expire.lua");
+  /** Read a topic list from a sequence on */
+  public static final RedisScript LIST_READ = RedisScript.fromResource("/scripts/list-read.lua");
+  /** Lease the topic list head to a subscriber after putting the expired leases back */
+  public static final RedisScript LIST_RECEIVE =
+      RedisScript.fromResource("/scripts/list-receive.lua");
+  /** Ack a leased message of a topic list */
+  public static final RedisScript LEASE_ACK = RedisScript.fromResource("/scripts/lease-ack.lua");
+  /** Put the messages of the expired leases back at the topic list head */
+  public static final RedisScript LEASE_EXPIRE =
+      RedisScript.fromResource("/scripts/lease-expire.lua");
+  /** Append messages to a topic stream within its retention limits */
+  public static final RedisScript STREAM_APPEND =
+      RedisScript.fromResource("/scripts/stream-append.lua");
+  /** Get the next message of a subscriber consumer group */
+  public static final RedisScript STREAM_PEEK =
+      RedisScript.fromResource("/scripts/stream-peek.lua");
+  /** Ack the next message of a subscriber consumer group */
+  public static final RedisScript STREAM_ACK =
+      RedisScript.fromResource("/scripts/stream-ack.lua");
+  /** Delete the expired entries of a topic stream */
+  public static final RedisScript STREAM_EXPIRE =
+      RedisScript.fromResource("/scripts/stream-expire.lua");
+
+  private static final List<RedisScript> ALL =
+      List.of(
+          ACK_MESSAGE,
+          LIST_APPEND,
+          LIST_EXPIRE,
+          LIST_READ,
+          LIST_RECEIVE,
+          LEASE_ACK,
+          LEASE_EXPIRE,
+          STREAM_APPEND,
+          STREAM_PEEK,
+          STREAM_ACK,
+          STREAM_EXPIRE);
+
+  /**
+   * Load every script into the Redis script cache
+   *
+   * @param redisApi Redis API
+   * @return completion
+   */
+  public static Future<Void> preloadAll(RedisAPI redisApi) {
+    final List<Future> futures = new ArrayList<>();
+
+    for (var script : ALL) {
+      futures.add(script.preload(redisApi));
+    }
+
+    return CompositeFuture.all(futures).mapEmpty();
+  }
+}
@@ -0,0 +1,235 @@
+package com.morozov.pubsub.redis;
+
+import com.morozov.pubsub.SharedResources;
+import com.morozov.pubsub.constants.ConfigConstants;
+import com.morozov.pubsub.metrics.RedisMetrics;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.redis.client.Redis;
+import io.vertx.redis.client.RedisAPI;
+import io.vertx.redis.client.RedisClientType;
+import io.vertx.redis.client.RedisOptions;
+import io.vertx.redis.client.Response;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Redis client shared by all the verticle instances deployed on the same Vert.x instance. It owns
+ * a bounded pool of pipelined connections, so adding verticles doesn't add sockets to Redis.
+ *
+ * <p>With redis.replicaConnectionStrings set it also keeps a pool per read replica, the reads that
+ * may be slightly stale are routed to them by {@link #read}.
+ *
+ * <p>With redis.cluster set it's a Redis Cluster client: redis.connectionString is a seed node and
+ * every command goes to the node of its key slot.
+ */
+public class SharedRedisClient implements Shareable {
+  private static final Logger logger = LoggerFactory.getLogger(SharedRedisClient.class);
+  private static final String RESOURCE_NAME = "redis.client";
+  private static final int MAX_RECONNECT_RETRIES = 16;
+
+  private final Vertx vertx;
+  /** Never stop probing Redis: publishes wait in the spill log until it's back */
+  private final boolean keepReconnecting;
+  private final Redis redis;
+  private final RedisAPI api;
+  private final AtomicBoolean connected = new AtomicBoolean(false);
+  private final List<Handler<Void>> connectListeners = new CopyOnWriteArrayList<>();
+  private RedisReplicas replicas;
+
+  private SharedRedisClient(Vertx vertx, Redis redis, boolean keepReconnecting) {
+    this.vertx = vertx;
+    this.keepReconnecting = keepReconnecting;
+    this.redis = new InstrumentedRedis(redis, RedisMetrics.get(vertx));
+    this.api = RedisAPI.api(this.redis);
+  }
+
+  /**
+   * Get the client shared by the Vert.x instance or create it on the first call
+   *
+   * @param vertx Vert.x instance
+   * @param config verticle config
+   * @return shared client
+   */
+  public static SharedRedisClient get(Vertx vertx, JsonObject config) {
+    return SharedResources.get(
+        vertx,
+        RESOURCE_NAME,
+        () -> {
+          final var spillDir = config.getString(ConfigConstants.SPILL_DIR);
+          final var client =
+              new SharedRedisClient(
+                  vertx,
+                  Redis.createClient(vertx, makeOptions(config)),
+                  spillDir != null && !spillDir.isEmpty());
+          client.replicas = RedisReplicas.create(vertx, client.api, config);
+          client.connect(0);
+          return client;
+        });
+  }
+
+  /**
+   * Share a client over the given Redis client instead of a pool, e.g. a stand-in for Redis in
+   * the benchmarks. It has to be called before anything gets the shared client.
+   *
+   * @param vertx Vert.x instance
+   * @param redis Redis client
+   * @return shared client
+   */
+  public static SharedRedisClient share(Vertx vertx, Redis redis) {
+    return SharedResources.get(
+        vertx,
+        RESOURCE_NAME,
+        () -> {
+          final var client = new SharedRedisClient(vertx, redis, false);
+          client.ping();
+          return client;
+        });
+  }
+
+  /**
+   * Build pool options from the verticle config
+   *
+   * @param config verticle config
+   * @return Redis options
+   */
+  static RedisOptions makeOptions(JsonObject config) {
+    return new RedisOptions()
+        .setType(
+            config.getBoolean(ConfigConstants.REDIS_CLUSTER, false)
+                ? RedisClientType.CLUSTER
+                : RedisClientType.STANDALONE)
+        .setConnectionString(
+            config.getString(
+                ConfigConstants.REDIS_CONNECTION_STRING,
+                ConfigConstants.DEFAULT_REDIS_CONNECTION_STRING))
+        .setMaxPoolSize(
+            config.getInteger(
+                ConfigConstants.REDIS_MAX_POOL_SIZE, ConfigConstants.DEFAULT_REDIS_MAX_POOL_SIZE))
+        .setMaxPoolWaiting(
+            config.getInteger(
+                ConfigConstants.REDIS_MAX_POOL_WAITING,
+                ConfigConstants.DEFAULT_REDIS_MAX_POOL_WAITING))
+        .setMaxWaitingHandlers(
+            config.getInteger(
+                ConfigConstants.REDIS_MAX_WAITING_HANDLERS,
+                ConfigConstants.DEFAULT_REDIS_MAX_WAITING_HANDLERS));
+  }
+
+  public Redis redis() {
+    return redis;
+  }
+
+  public RedisAPI api() {
+    return api;
+  }
+
+  /**
+   * Run a read that may be slightly stale on a read replica in sync with the master, if
+   * redis.replicaConnectionStrings are set, or on the master
+   *
+   * @param key key read, null if it's never written by the service after being created
+   * @param read read on the given Redis API, its null result means the key wasn't found
+   * @return read result
+   */
+  public <T> Future<T> read(String key, Function<RedisAPI, Future<T>> read) {
+    return replicas == null ? read.apply(api) : replicas.read(key, read);
+  }
+
+  /**
+   * Keep reading a key from the master until the replicas have caught up with a write to it
+   *
+   * @param key written key
+   */
+  public void written(String key) {
+    if (replicas != null) {
+      replicas.written(key);
+    }
+  }
+
+  /**
+   * @return read replica counters by name, empty without replicas
+   */
+  public Map<String, Long> replicaCounters() {
+    return replicas == null ? Map.of() : replicas.counters();
+  }
+
+  public boolean isConnected() {
+    return connected.get();
+  }
+
+  /**
+   * Listen to the client getting connected, on start and after every lost connection
+   *
+   * @param listener connect handler
+   */
+  public void onConnect(Handler<Void> listener) {
+    connectListeners.add(listener);
+  }
+
+  /**
+   * Ping Redis through the pool, updating the connection state
+   *
+   * @return ping response
+   */
+  public Future<Response> ping() {
+    return api.ping(List.of())
+        .onSuccess(val -> connected.set(true))
+        .onFailure(throwable -> markDisconnected());
+  }
+
+  /** Mark the client as disconnected and start probing Redis until it comes back */
+  public void markDisconnected() {
+    if (connected.compareAndSet(true, false)) {
+      logger.warn("Lost connection to Redis");
+      attemptReconnect(0);
+    }
+  }
+
+  /**
+   * Probe a pooled connection
+   *
+   * @param retry current retry
+   */
+  private void connect(int retry) {
+    redis
+        .connect()
+        .onSuccess(
+            conn -> {
+              logger.info("Connected to Redis");
+              connected.set(true);
+              // give the connection back to the pool
+              conn.close();
+              connectListeners.forEach(listener -> listener.handle(null));
+            })
+        .onFailure(throwable -> attemptReconnect(retry + 1));
+  }
+
+  /**
+   * Attempt to reconnect up to MAX_RECONNECT_RETRIES, or until Redis is back when publishes are
+   * spilled meanwhile: only a connect starts the replay of the spill log
+   */
+  private void attemptReconnect(int retry) {
+    if (retry > MAX_RECONNECT_RETRIES && !keepReconnecting) {
+      logger.error("Failed connecting to Redis");
+      return;
+    }
+
+    if (retry == MAX_RECONNECT_RETRIES + 1) {
+      logger.error("Failed connecting to Redis, still probing it for the spill log");
+    }
+
+    // retry with backoff up to 10240 ms
+    long backoff = (long) (Math.pow(2, Math.min(retry, 10)) * 10);
+
+    vertx.setTimer(backoff, timer -> connect(retry));
+  }
+}
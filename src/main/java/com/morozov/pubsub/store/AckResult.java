@@ -0,0 +1,89 @@
+package com.morozov.pubsub.store;
+
+import com.morozov.pubsub.model.dto.Message;
+import io.vertx.core.Future;
+import io.vertx.redis.client.Response;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of an ack or a receive script: status and the messages taken out of the topic, with the
+ * receipt of the lease for a receive
+ */
+public class AckResult {
+  public static final int UNKNOWN_SUBSCRIBER = 0;
+  public static final int WRONG_TOPIC = -1;
+  public static final int ACKED = 1;
+  public static final int NOTHING_TO_ACK = 2;
+  public static final int UNKNOWN_LEASE = 3;
+
+  private final int status;
+  private final List<Message> messages;
+  private final String receipt;
+
+  public AckResult(int status, List<Message> messages) {
+    this(status, messages, null);
+  }
+
+  public AckResult(int status, List<Message> messages, String receipt) {
+    this.status = status;
+    this.messages = messages;
+    this.receipt = receipt;
+  }
+
+  /**
+   * Decode an ack script reply: {status} or {status, encoded messages...}
+   *
+   * @param reply script reply
+   * @return ack result, failed if the message can't be decoded
+   */
+  public static Future<AckResult> fromReply(Response reply) {
+    return fromReply(reply, null);
+  }
+
+  /**
+   * Decode a receive script reply: {status} or {status, encoded message}
+   *
+   * @param reply script reply
+   * @param receipt receipt of the lease taken if the message was received
+   * @return ack result, failed if the message can't be decoded
+   */
+  public static Future<AckResult> fromReply(Response reply, String receipt) {
+    final var status = reply.get(0).toInteger();
+
+    if (status != ACKED) {
+      return Future.succeededFuture(new AckResult(status, List.of()));
+    }
+
+    try {
+      final var messages = new ArrayList<Message>(reply.size() - 1);
+
+      for (int i = 1; i < reply.size(); i++) {
+        messages.add(MessageCodec.decode(reply.get(i).toBuffer()));
+      }
+
+      return Future.succeededFuture(new AckResult(status, messages, receipt));
+    } catch (IOException e) {
+      return Future.failedFuture(e);
+    }
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  /** @return the first acked message or null */
+  public Message getMessage() {
+    return messages.isEmpty() ? null : messages.get(0);
+  }
+
+  public List<Message> getMessages() {
+    return messages;
+  }
+
+  /** @return receipt of the lease taken by a receive, null for an ack */
+  public String getReceipt() {
+    return receipt;
+  }
+}
@@ -0,0 +1,190 @@
+package com.morozov.pubsub.store;
+
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.morozov.pubsub.model.dto.Message;
+import io.vertx.core.buffer.Buffer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Message whose payload is stored deflated. The payload is only inflated when it's read, so a
+ * client accepting the deflate content encoding gets it without inflating it on the server.
+ */
+public class CompressedMessage extends Message {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final long ADLER_BASE = 65521;
+  /** zlib header: deflate with a 32K window, no preset dictionary */
+  private static final byte[] ZLIB_HEADER = {0x78, 0x01};
+
+  private static final byte[] RESPONSE_PREFIX = "{\"message\":".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] RESPONSE_SUFFIX = "}".getBytes(StandardCharsets.UTF_8);
+  private static final Buffer DEFLATED_PREFIX = deflateConstant(RESPONSE_PREFIX, false);
+  private static final Buffer DEFLATED_SUFFIX = deflateConstant(RESPONSE_SUFFIX, true);
+
+  private final boolean json;
+  private final int length;
+  private final int adler;
+  private final Buffer deflated;
+  private String inflated;
+
+  /**
+   * @param ts publish timestamp
+   * @param seq topic sequence, null if the message has none
+   * @param json whether the payload is a JSON value
+   * @param length uncompressed payload length
+   * @param adler Adler-32 of the uncompressed payload
+   * @param deflated raw deflate blocks ending with a sync flush
+   * @param encodedLength size of the message in the topic store
+   */
+  public CompressedMessage(
+      long ts, Long seq, boolean json, int length, int adler, Buffer deflated, int encodedLength) {
+    super(null, ts, seq, encodedLength);
+    this.json = json;
+    this.length = length;
+    this.adler = adler;
+    this.deflated = deflated;
+  }
+
+  @Override
+  @JsonGetter
+  public String getMessage() {
+    if (inflated == null && length > 0) {
+      inflated = inflate();
+    }
+
+    return inflated;
+  }
+
+  public boolean isJson() {
+    return json;
+  }
+
+  /**
+   * Build a deflate encoded {"message": ...} body around the stored payload without inflating it:
+   * deflate blocks of the same stream can be concatenated when each of them ends on a byte
+   * boundary, and the zlib checksum of the body is combined from the checksums of its parts.
+   *
+   * @return zlib stream of the GetMessageResponse JSON
+   */
+  public Buffer toDeflateResponse() {
+    if (!json) {
+      throw new IllegalStateException("The payload is not a JSON value");
+    }
+
+    var checksum = adler32(RESPONSE_PREFIX);
+    checksum = combineAdler32(checksum, adler & 0xffffffffL, length);
+    checksum = combineAdler32(checksum, adler32(RESPONSE_SUFFIX), RESPONSE_SUFFIX.length);
+
+    return Buffer.buffer(
+            ZLIB_HEADER.length
+                + DEFLATED_PREFIX.length()
+                + deflated.length()
+                + DEFLATED_SUFFIX.length()
+                + 4)
+        .appendBytes(ZLIB_HEADER)
+        .appendBuffer(DEFLATED_PREFIX)
+        .appendBuffer(deflated)
+        .appendBuffer(DEFLATED_SUFFIX)
+        .appendInt((int) checksum);
+  }
+
+  private String inflate() {
+    final var inflater = new Inflater(true);
+
+    try {
+      inflater.setInput(deflated.getByteBuf().nioBuffer());
+
+      final var output = new byte[length];
+      var produced = 0;
+
+      while (produced < length) {
+        final var count = inflater.inflate(output, produced, length - produced);
+
+        if (count == 0 && (inflater.needsInput() || inflater.finished())) {
+          throw new DataFormatException("Compressed payload is truncated");
+        }
+
+        produced += count;
+      }
+
+      final var checksum = new Adler32();
+      checksum.update(output);
+
+      if ((int) checksum.getValue() != adler) {
+        throw new DataFormatException("Compressed payload checksum doesn't match");
+      }
+
+      return json
+          ? MAPPER.readValue(output, String.class)
+          : new String(output, StandardCharsets.UTF_8);
+    } catch (DataFormatException e) {
+      throw new UncheckedIOException(new IOException(e));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  private static Buffer deflateConstant(byte[] input, boolean last) {
+    final var deflater = new Deflater(Deflater.BEST_SPEED, true);
+    final var output = new byte[64];
+    final int count;
+
+    deflater.setInput(input);
+
+    if (last) {
+      deflater.finish();
+      count = deflater.deflate(output);
+    } else {
+      count = deflater.deflate(output, 0, output.length, Deflater.SYNC_FLUSH);
+    }
+
+    deflater.end();
+    return Buffer.buffer(count).appendBytes(output, 0, count);
+  }
+
+  private static long adler32(byte[] input) {
+    final var checksum = new Adler32();
+    checksum.update(input);
+    return checksum.getValue();
+  }
+
+  /**
+   * Adler-32 of two concatenated inputs, as zlib's adler32_combine does
+   *
+   * @param adler1 Adler-32 of the first input
+   * @param adler2 Adler-32 of the second input
+   * @param length2 length of the second input
+   * @return Adler-32 of the concatenation
+   */
+  static long combineAdler32(long adler1, long adler2, long length2) {
+    final var rem = length2 % ADLER_BASE;
+    var sum1 = adler1 & 0xffff;
+    var sum2 = (rem * sum1) % ADLER_BASE;
+
+    sum1 += (adler2 & 0xffff) + ADLER_BASE - 1;
+    sum2 += ((adler1 >> 16) & 0xffff) + ((adler2 >> 16) & 0xffff) + ADLER_BASE - rem;
+
+    if (sum1 >= ADLER_BASE) {
+      sum1 -= ADLER_BASE;
+    }
+    if (sum1 >= ADLER_BASE) {
+      sum1 -= ADLER_BASE;
+    }
+    if (sum2 >= ADLER_BASE << 1) {
+      sum2 -= ADLER_BASE << 1;
+    }
+    if (sum2 >= ADLER_BASE) {
+      sum2 -= ADLER_BASE;
+    }
+
+    return sum1 | (sum2 << 16);
+  }
+}
@@ -0,0 +1,332 @@
+package com.morozov.pubsub.store;
+
+import com.morozov.pubsub.SharedResources;
+import com.morozov.pubsub.cache.LocalCache;
+import com.morozov.pubsub.constants.ConfigConstants;
+import com.morozov.pubsub.delivery.PublishNotifier;
+import com.morozov.pubsub.redis.RedisNotifications;
+import com.morozov.pubsub.redis.SharedRedisClient;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.redis.client.RedisAPI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Node-local cache of the first messages of the topic lists, so subscribers polling the same topic
+ * share one read of its head. Concurrent misses of a list are coalesced into a single in-flight
+ * load, and a load only fills the cache if the list wasn't invalidated since it started.
+ *
+ * <p>Acks and trims invalidate the cached head of a list. Publishes only invalidate a head that
+ * reaches the end of the list, the messages appended behind a longer head don't change it. Other
+ * nodes are told through the heads channel, debounced per list, and the cached heads expire after
+ * headCache.ttlMs anyway in case a notification is missed.
+ *
+ * <p>The publish notifications of the other nodes come on their own channel, possibly ahead of the
+ * tail change: a long poll woken then peeks the stale head and parks again. So a remote tail change
+ * dropping a cached head wakes the local gets of the topic once more.
+ *
+ * <p>Shared by all the verticles of the node, a coalesced load completes on the context of every
+ * verticle waiting for it.
+ */
+public class HeadCache implements Shareable {
+  private static final String RESOURCE_NAME = "store.headCache";
+  private static final String NODE_SEPARATOR = "|";
+  private static final char HEAD_CHANGED = 'h';
+  private static final char TAIL_CHANGED = 't';
+
+  private final Vertx vertx;
+  private final boolean enabled;
+  private final LocalCache<String, Head> heads;
+  private final Map<String, Load> loads = new HashMap<>();
+  private final RedisAPI redisApi;
+  private final String nodeId = UUID.randomUUID().toString();
+  private final long debounceMs;
+  private final Set<String> pendingNotifications = ConcurrentHashMap.newKeySet();
+  private final LongAdder coalesced = new LongAdder();
+
+  /**
+   * @param vertx Vert.x instance
+   * @param config verticle config
+   * @param redisApi Redis API the changes are published with, null if the cache is disabled
+   */
+  HeadCache(Vertx vertx, JsonObject config, RedisAPI redisApi) {
+    this.vertx = vertx;
+    this.enabled = isEnabled(config);
+    this.heads =
+        new LocalCache<>(
+            config.getInteger(
+                ConfigConstants.HEAD_CACHE_MAX_TOPICS,
+                ConfigConstants.DEFAULT_HEAD_CACHE_MAX_TOPICS),
+            config.getLong(
+                ConfigConstants.HEAD_CACHE_TTL_MS, ConfigConstants.DEFAULT_HEAD_CACHE_TTL_MS));
+    this.redisApi = redisApi;
+    this.debounceMs =
+        config.getLong(
+            ConfigConstants.HEAD_CACHE_NOTIFY_DEBOUNCE_MS,
+            ConfigConstants.DEFAULT_HEAD_CACHE_NOTIFY_DEBOUNCE_MS);
+  }
+
+  /**
+   * Get the head cache shared by the Vert.x instance or create it on the first call
+   *
+   * @param vertx Vert.x instance
+   * @param config verticle config
+   * @return shared head cache
+   */
+  public static HeadCache get(Vertx vertx, JsonObject config) {
+    return SharedResources.get(
+        vertx,
+        RESOURCE_NAME,
+        () -> {
+          final var redisApi =
+              isEnabled(config) ? SharedRedisClient.get(vertx, config).api() : null;
+          final var headCache = new HeadCache(vertx, config, redisApi);
+
+          if (headCache.enabled) {
+            final var notifications = RedisNotifications.get(vertx, config);
+            notifications.listen(RedisNotifications.HEADS_CHANNEL, headCache::onRemoteChange);
+            // changes may have been missed while disconnected
+            notifications.onReset(val -> headCache.heads.clear());
+          }
+
+          return headCache;
+        });
+  }
+
+  private static boolean isEnabled(JsonObject config) {
+    // the stream engine reads from per-subscriber offsets, there is no shared head
+    return config.getBoolean(ConfigConstants.HEAD_CACHE_ENABLED, true)
+        && TopicStore.LIST_ENGINE.equals(
+            config.getString(ConfigConstants.STORAGE_ENGINE, TopicStore.LIST_ENGINE));
+  }
+
+  /**
+   * Get the first messages of a list from the cache, from a load in flight or from a new load
+   *
+   * @param key list key
+   * @param count number of messages from the head
+   * @param load loader of the given number of messages from the head
+   * @return encoded messages, fewer than count if the list is shorter
+   */
+  public Future<List<Buffer>> head(String key, int count, IntFunction<Future<List<Buffer>>> load) {
+    if (!enabled) {
+      return load.apply(count);
+    }
+
+    final Load newLoad;
+
+    synchronized (this) {
+      final var head = heads.get(key);
+
+      if (head != null && head.covers(count)) {
+        return Future.succeededFuture(head.first(count));
+      }
+
+      final var inFlight = loads.get(key);
+
+      if (inFlight != null && inFlight.count >= count) {
+        coalesced.increment();
+        return onCurrentContext(inFlight.promise.future()).map(range -> first(range, count));
+      }
+
+      newLoad = new Load(count);
+      loads.put(key, newLoad);
+    }
+
+    load.apply(count)
+        .onComplete(
+            result -> {
+              synchronized (this) {
+                // invalidated while in flight: the result may predate the change
+                if (loads.get(key) == newLoad) {
+                  loads.remove(key);
+
+                  if (result.succeeded()) {
+                    heads.put(key, new Head(List.copyOf(result.result()), count));
+                  }
+                }
+              }
+
+              newLoad.promise.handle(result);
+            });
+
+    return newLoad.promise.future();
+  }
+
+  /**
+   * The head of a list moved: acked or trimmed messages
+   *
+   * @param key list key
+   */
+  public void headChanged(String key) {
+    if (enabled) {
+      invalidate(key, false);
+      notifyNodes(HEAD_CHANGED, key);
+    }
+  }
+
+  /**
+   * Messages were appended to a list
+   *
+   * @param key list key
+   */
+  public void tailChanged(String key) {
+    if (enabled) {
+      invalidate(key, true);
+      notifyNodes(TAIL_CHANGED, key);
+    }
+  }
+
+  /**
+   * @return head cache counters by name
+   */
+  public Map<String, Long> counters() {
+    if (!enabled) {
+      return Map.of();
+    }
+
+    return Map.of(
+        "headCache.hits",
+        heads.hits(),
+        "headCache.misses",
+        heads.misses(),
+        "headCache.coalesced",
+        coalesced.sum());
+  }
+
+  /**
+   * Drop the cached head of a list and make the load in flight skip the cache
+   *
+   * @param key list key
+   * @param tailOnly keep a cached head that ends before the tail of the list
+   * @return whether a head was cached or loading and got dropped
+   */
+  private synchronized boolean invalidate(String key, boolean tailOnly) {
+    final var loading = loads.remove(key) != null;
+
+    if (tailOnly) {
+      final var head = heads.get(key);
+
+      if (head == null || !head.reachesTail()) {
+        return loading;
+      }
+    }
+
+    heads.invalidate(key);
+    return true;
+  }
+
+  private void notifyNodes(char change, String key) {
+    final var notification = change + key;
+
+    if (pendingNotifications.add(notification)) {
+      vertx.setTimer(
+          debounceMs,
+          timerId -> {
+            pendingNotifications.remove(notification);
+            redisApi.publish(
+                RedisNotifications.HEADS_CHANNEL, nodeId + NODE_SEPARATOR + notification);
+          });
+    }
+  }
+
+  /**
+   * Apply a change of another node
+   *
+   * @param payload %nodeId%|%change%%key%
+   */
+  void onRemoteChange(String payload) {
+    final var separatorIndex = payload.indexOf(NODE_SEPARATOR);
+
+    if (separatorIndex < 0
+        || payload.length() < separatorIndex + 2
+        || payload.startsWith(nodeId)) {
+      return;
+    }
+
+    final var change = payload.charAt(separatorIndex + 1);
+    final var key = payload.substring(separatorIndex + 2);
+
+    if (invalidate(key, change == TAIL_CHANGED) && change == TAIL_CHANGED) {
+      // the publish notification may have come first and found the stale head
+      vertx
+          .eventBus()
+          .publish(PublishNotifier.PUBLISHED_ADDRESS, PartitionedTopicStore.topicOf(key));
+    }
+  }
+
+  /**
+   * A verticle waiting for another verticle's load gets the result on its own event loop
+   *
+   * @param future load result
+   * @return the same result on the current context
+   */
+  private static <T> Future<T> onCurrentContext(Future<T> future) {
+    final var context = Vertx.currentContext();
+
+    if (context == null) {
+      return future;
+    }
+
+    final Promise<T> promise = Promise.promise();
+    future.onComplete(
+        result -> {
+          if (Vertx.currentContext() == context) {
+            promise.handle(result);
+          } else {
+            context.runOnContext(val -> promise.handle(result));
+          }
+        });
+
+    return promise.future();
+  }
+
+  private static List<Buffer> first(List<Buffer> range, int count) {
+    return range.size() <= count ? range : range.subList(0, count);
+  }
+
+  /** Cached first messages of a list */
+  private static class Head {
+    private final List<Buffer> range;
+    private final int count;
+
+    private Head(List<Buffer> range, int count) {
+      this.range = range;
+      this.count = count;
+    }
+
+    /** Fewer messages than loaded: the list ended, they're all there is */
+    private boolean reachesTail() {
+      return range.size() < count;
+    }
+
+    private boolean covers(int wanted) {
+      return wanted <= count || reachesTail();
+    }
+
+    private List<Buffer> first(int wanted) {
+      return HeadCache.first(range, wanted);
+    }
+  }
+
+  /** Load of the first messages of a list in flight */
+  private static class Load {
+    private final int count;
+    private final Promise<List<Buffer>> promise = Promise.promise();
+
+    private Load(int count) {
+      this.count = count;
+    }
+  }
+}
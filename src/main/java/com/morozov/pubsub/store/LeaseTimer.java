@@ -0,0 +1,114 @@
+package com.morozov.pubsub.store;
+
+import com.morozov.pubsub.constants.ConfigConstants;
+import com.morozov.pubsub.delivery.PublishNotifier;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonObject;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Expiry of the leases taken by the receives of a verticle. The deadlines sit in a {@link
+ * TimerWheel} ticking every lease.tickMs while there are any, instead of a Vert.x timer per lease.
+ *
+ * <p>Acks don't cancel anything: the keys of the leases due in a tick are requeued once each, and
+ * the script only puts back the leases still in flight, so an acked lease costs its wheel node
+ * until its deadline and nothing else. Requeued topics wake the long polls like a publish.
+ *
+ * <p>Owned by a single verticle and only used from its event loop, so it needs no locking.
+ */
+class LeaseTimer {
+  private static final Logger logger = LoggerFactory.getLogger(LeaseTimer.class);
+  /** Expired leases put back per key and call, a key with more is requeued again the next tick */
+  private static final int REQUEUE_MAX = 1000;
+
+  private final Vertx vertx;
+  private final TopicStore topicStore;
+  private final PublishNotifier publishNotifier;
+  private final long tickMs;
+  private final TimerWheel<String> wheel;
+  private long requeued;
+  private long timerId = -1;
+
+  /**
+   * @param vertx Vert.x instance
+   * @param topicStore store of the leased topics
+   * @param publishNotifier notifier of the waiting subscribers
+   * @param config verticle config
+   */
+  LeaseTimer(
+      Vertx vertx, TopicStore topicStore, PublishNotifier publishNotifier, JsonObject config) {
+    this.vertx = vertx;
+    this.topicStore = topicStore;
+    this.publishNotifier = publishNotifier;
+    this.tickMs =
+        config.getLong(ConfigConstants.LEASE_TICK_MS, ConfigConstants.DEFAULT_LEASE_TICK_MS);
+    this.wheel =
+        new TimerWheel<>(
+            config.getInteger(
+                ConfigConstants.LEASE_WHEEL_SIZE, ConfigConstants.DEFAULT_LEASE_WHEEL_SIZE),
+            tickMs,
+            System.currentTimeMillis());
+  }
+
+  /**
+   * Requeue the key of a lease once it expires
+   *
+   * @param receipt receipt of the lease
+   * @param deadline time the lease expires at, in epoch milliseconds
+   */
+  void leased(String receipt, long deadline) {
+    schedule(ListTopicStore.receiptKey(receipt), deadline);
+  }
+
+  /** @return leases taken on this verticle and not expired yet, acked ones included */
+  long pending() {
+    return wheel.size();
+  }
+
+  /** @return leases expired by this verticle and put back */
+  long requeued() {
+    return requeued;
+  }
+
+  private void schedule(String topicKey, long deadline) {
+    wheel.schedule(deadline, topicKey);
+
+    if (timerId < 0) {
+      timerId = vertx.setPeriodic(tickMs, id -> tick());
+    }
+  }
+
+  private void tick() {
+    final var now = System.currentTimeMillis();
+    final Set<String> due = new LinkedHashSet<>();
+    wheel.advance(now, due::add);
+
+    if (wheel.size() == 0) {
+      vertx.cancelTimer(timerId);
+      timerId = -1;
+    }
+
+    for (var topicKey : due) {
+      topicStore
+          .requeue(topicKey, now, REQUEUE_MAX)
+          .onSuccess(
+              expired -> {
+                if (expired == 0) {
+                  return;
+                }
+
+                requeued += expired;
+                publishNotifier.published(PartitionedTopicStore.topicOf(topicKey));
+
+                if (expired >= REQUEUE_MAX) {
+                  schedule(topicKey, now);
+                }
+              })
+          // left to the next receive of the key, which puts the expired leases back first
+          .onFailure(throwable -> logger.warn("Lease requeue failed: " + throwable.getMessage()));
+    }
+  }
+}
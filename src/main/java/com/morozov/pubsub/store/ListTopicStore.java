@@ -0,0 +1,379 @@
+package com.morozov.pubsub.store;
+
+import com.morozov.pubsub.constants.CommonConstants;
+import com.morozov.pubsub.model.dto.Message;
+import com.morozov.pubsub.model.dto.SubscriberInfo;
+import com.morozov.pubsub.redis.RedisScripts;
+import com.morozov.pubsub.redis.SharedRedisClient;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.redis.client.Redis;
+import io.vertx.redis.client.RedisAPI;
+import io.vertx.redis.client.Response;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Topic stored as a Redis list shared by all the subscribers: RPUSH to publish, the head is peeked
+ * and popped by whichever subscriber acks it first. The list size in bytes is kept next to it under
+ * the {%topic%}-bytes key for the retention limits. The keys kept next to a list share its Redis
+ * Cluster slot, see {@link PartitionedTopicStore#siblingKey}.
+ *
+ * <p>Peeks may be served by a read replica. Every write that moves the list head, an ack or a trim,
+ * sends the peeks of the list back to the master until the replicas have it.
+ *
+ * <p>The heads read by the peeks are shared by the subscribers of the node through the {@link
+ * HeadCache}, the writes invalidate them.
+ *
+ * <p>A receive moves the head into the in-flight messages of the list, a {%topic%}-inflight hash
+ * by lease id, and its lease into the {%topic%}-leases sorted set by deadline. The receipt of a
+ * lease is %leaseId%:%topic%, so an ack finds the list of a partitioned topic. Expired leases are
+ * put back at the head by the next receive of the list, or by {@link #requeue} when the lease timer
+ * of the verticle that took them fires.
+ *
+ * <p>The appends give every message the next sequence of its list, counted by the {%topic%}-seq
+ * key, and a subscriber only sees the messages from the sequences of the lists when it subscribed
+ * on. The messages stored before the sequences are cut off by their publish timestamp instead.
+ */
+public class ListTopicStore implements TopicStore {
+  /** Expired leases put back by a receive, the rest are left to the next ones */
+  private static final int RECEIVE_REQUEUE_MAX = 100;
+  private static final char RECEIPT_SEPARATOR = ':';
+
+  private final SharedRedisClient redisClient;
+  private final Redis redis;
+  private final RedisAPI redisApi;
+  private final Retention retention;
+  private final HeadCache headCache;
+
+  public ListTopicStore(SharedRedisClient redisClient, Retention retention, HeadCache headCache) {
+    this.redisClient = redisClient;
+    this.redis = redisClient.redis();
+    this.redisApi = redisClient.api();
+    this.retention = retention;
+    this.headCache = headCache;
+  }
+
+  public static String bytesKey(String topic) {
+    return PartitionedTopicStore.siblingKey(topic, CommonConstants.BYTES_SUFFIX);
+  }
+
+  /**
+   * Get the storage key of a lease receipt
+   *
+   * @param receipt lease receipt
+   * @return topic or partition storage key, null if it's not a receipt
+   */
+  public static String receiptKey(String receipt) {
+    final var separator = receipt.indexOf(RECEIPT_SEPARATOR);
+    return separator < 0 ? null : receipt.substring(separator + 1);
+  }
+
+  private static String sequenceKey(String topic) {
+    return PartitionedTopicStore.siblingKey(topic, CommonConstants.SEQUENCE_SUFFIX);
+  }
+
+  private static String inFlightKey(String topic) {
+    return PartitionedTopicStore.siblingKey(topic, CommonConstants.IN_FLIGHT_SUFFIX);
+  }
+
+  private static String leasesKey(String topic) {
+    return PartitionedTopicStore.siblingKey(topic, CommonConstants.LEASES_SUFFIX);
+  }
+
+  @Override
+  public Future<Long> append(String topic, List<Buffer> messages) {
+    return retention
+        .policy(topic)
+        .compose(
+            policy -> {
+              final var args = new ArrayList<Buffer>(messages.size() + 2);
+              args.add(Buffer.buffer(String.valueOf(policy.getMaxMessages())));
+              args.add(Buffer.buffer(String.valueOf(policy.getMaxBytes())));
+              args.addAll(messages);
+
+              return RedisScripts.LIST_APPEND.evalBinary(
+                  redis, List.of(topic, bytesKey(topic), sequenceKey(topic)), args);
+            })
+        .map(
+            reply -> {
+              final var trimmed = reply.get(1).toLong();
+
+              if (trimmed > 0) {
+                redisClient.written(topic);
+                headCache.headChanged(topic);
+              } else {
+                headCache.tailChanged(topic);
+              }
+
+              retention.trimmed(trimmed);
+              return reply.get(0).toLong();
+            });
+  }
+
+  @Override
+  public Future<Long> expire(String topic, long expiredBefore, int max) {
+    return RedisScripts.LIST_EXPIRE
+        .eval(
+            redisApi,
+            List.of(topic, bytesKey(topic)),
+            List.of(String.valueOf(expiredBefore), String.valueOf(max)))
+        .map(Response::toLong)
+        .onSuccess(
+            expired -> {
+              if (expired > 0) {
+                redisClient.written(topic);
+                headCache.headChanged(topic);
+              }
+            });
+  }
+
+  @Override
+  public Future<Long> length(String topic) {
+    return redisApi.llen(topic).map(Response::toLong);
+  }
+
+  @Override
+  public Future<Long> nextSequence(String topicKey) {
+    return redisApi.get(sequenceKey(topicKey)).map(seq -> seq == null ? 1 : seq.toLong() + 1);
+  }
+
+  @Override
+  public Future<Void> subscribe(SubscriberInfo subInfo) {
+    return Future.succeededFuture();
+  }
+
+  @Override
+  public Future<Void> unsubscribe(SubscriberInfo subInfo) {
+    return Future.succeededFuture();
+  }
+
+  @Override
+  public Future<List<Message>> peek(SubscriberInfo subInfo, int max, long maxBytes) {
+    final var topic = subInfo.getTopic();
+
+    return headCache
+        .head(topic, max, count -> range(topic, count))
+        .compose(
+            range -> {
+              final var messages = new ArrayList<Message>();
+              final var offset = offset(subInfo, topic);
+
+              try {
+                long bytes = 0;
+
+                for (var buffer : range) {
+                  // messages published before the subscription are not visible to the subscriber
+                  if (!isVisible(subInfo, offset, buffer)) {
+                    break;
+                  }
+
+                  bytes += buffer.length();
+
+                  if (!messages.isEmpty() && bytes > maxBytes) {
+                    break;
+                  }
+
+                  messages.add(MessageCodec.decode(buffer));
+                }
+
+                return Future.succeededFuture(messages);
+              } catch (IOException e) {
+                return Future.failedFuture(e);
+              }
+            });
+  }
+
+  @Override
+  public Future<AckResult> ack(SubscriberInfo subInfo, int max, long maxBytes) {
+    final var topic = subInfo.getTopic();
+
+    // before the pop: a peek racing with the ack mustn't see the popped messages on a replica
+    redisClient.written(topic);
+
+    return RedisScripts.ACK_MESSAGE
+        .eval(
+            redisApi,
+            List.of(topic, bytesKey(topic)),
+            List.of(
+                String.valueOf(max),
+                String.valueOf(maxBytes),
+                String.valueOf(subInfo.getTs()),
+                offsetArg(subInfo, topic)))
+        // a failed ack may have popped messages all the same
+        .onComplete(val -> headCache.headChanged(topic))
+        .compose(AckResult::fromReply);
+  }
+
+  /**
+   * Read from the index of the offset, computed by the script from the sequence of the list tail.
+   * The messages put back at the head by expired leases are read if they're not older than the
+   * offset, out of the sequence order.
+   */
+  @Override
+  public Future<List<Message>> read(
+      SubscriberInfo subInfo, String topicKey, long offset, int max, long maxBytes) {
+    final var subscribed = offset(subInfo, topicKey);
+    final var from = subscribed == null ? offset : Math.max(offset, subscribed);
+
+    return redisClient
+        .read(
+            topicKey,
+            api ->
+                RedisScripts.LIST_READ.eval(
+                    api, List.of(topicKey), List.of(String.valueOf(from), String.valueOf(max))))
+        .compose(
+            rangeValue -> {
+              final var messages = new ArrayList<Message>();
+
+              try {
+                long bytes = 0;
+
+                for (var encoded : rangeValue) {
+                  final var buffer = encoded.toBuffer();
+
+                  // unsequenced and requeued messages before the range
+                  if (MessageCodec.sequence(buffer) < from) {
+                    continue;
+                  }
+
+                  bytes += buffer.length();
+
+                  if (!messages.isEmpty() && bytes > maxBytes) {
+                    break;
+                  }
+
+                  messages.add(MessageCodec.decode(buffer));
+                }
+
+                return Future.succeededFuture(messages);
+              } catch (IOException e) {
+                return Future.failedFuture(e);
+              }
+            });
+  }
+
+  @Override
+  public Future<AckResult> receive(SubscriberInfo subInfo, long deadline) {
+    final var topic = subInfo.getTopic();
+    final var leaseId = UUID.randomUUID().toString();
+
+    // the head moves: like an ack, and so may expired leases put back
+    redisClient.written(topic);
+
+    return RedisScripts.LIST_RECEIVE
+        .eval(
+            redisApi,
+            List.of(topic, bytesKey(topic), inFlightKey(topic), leasesKey(topic)),
+            List.of(
+                leaseId,
+                String.valueOf(deadline),
+                String.valueOf(System.currentTimeMillis()),
+                String.valueOf(RECEIVE_REQUEUE_MAX),
+                String.valueOf(subInfo.getTs()),
+                offsetArg(subInfo, topic)))
+        .onComplete(val -> headCache.headChanged(topic))
+        .compose(reply -> AckResult.fromReply(reply, leaseId + RECEIPT_SEPARATOR + topic));
+  }
+
+  @Override
+  public Future<AckResult> ackLease(SubscriberInfo subInfo, String receipt) {
+    final var key = receiptKey(receipt);
+
+    if (key == null || !PartitionedTopicStore.topicOf(key).equals(subInfo.getTopic())) {
+      return Future.succeededFuture(new AckResult(AckResult.UNKNOWN_LEASE, List.of()));
+    }
+
+    return RedisScripts.LEASE_ACK
+        .eval(
+            redisApi,
+            List.of(inFlightKey(key), leasesKey(key)),
+            List.of(receipt.substring(0, receipt.indexOf(RECEIPT_SEPARATOR))))
+        .compose(AckResult::fromReply);
+  }
+
+  @Override
+  public Future<Long> requeue(String topicKey, long now, int max) {
+    return RedisScripts.LEASE_EXPIRE
+        .eval(
+            redisApi,
+            List.of(topicKey, bytesKey(topicKey), inFlightKey(topicKey), leasesKey(topicKey)),
+            List.of(String.valueOf(now), String.valueOf(max)))
+        .map(Response::toLong)
+        .onSuccess(
+            expired -> {
+              if (expired > 0) {
+                redisClient.written(topicKey);
+                headCache.headChanged(topicKey);
+              }
+            });
+  }
+
+  /**
+   * Get the first sequence of a list visible to a subscriber
+   *
+   * @param subInfo subscriber info
+   * @param topicKey topic or partition storage key
+   * @return first visible sequence, null if the subscriber has none for the list
+   */
+  private static Long offset(SubscriberInfo subInfo, String topicKey) {
+    final var offsets = subInfo.getOffsets();
+    final var partition = PartitionedTopicStore.partitionOf(topicKey);
+
+    return offsets == null || partition >= offsets.size() ? null : offsets.get(partition);
+  }
+
+  /**
+   * Get the first visible sequence of a list as a script argument
+   *
+   * @return first visible sequence, empty if the subscriber has none for the list
+   */
+  private static String offsetArg(SubscriberInfo subInfo, String topicKey) {
+    final var offset = offset(subInfo, topicKey);
+    return offset == null ? "" : String.valueOf(offset);
+  }
+
+  /**
+   * Whether a message was published after the subscription, like the isVisible function of the
+   * scripts: by sequence if both the message and the subscriber have one for the list, by timestamp
+   * for the messages stored before the sequences
+   *
+   * @param subInfo subscriber info
+   * @param offset first sequence of the list visible to the subscriber, null if it has none
+   * @param encoded encoded message
+   * @return true if the subscriber sees the message
+   * @throws IOException if the message is corrupted or has an unknown version
+   */
+  private static boolean isVisible(SubscriberInfo subInfo, Long offset, Buffer encoded)
+      throws IOException {
+    final var seq = MessageCodec.sequence(encoded);
+
+    if (seq != MessageCodec.NO_SEQUENCE && offset != null) {
+      return seq >= offset;
+    }
+
+    return subInfo.getTs() <= MessageCodec.ts(encoded);
+  }
+
+  /**
+   * Read the first messages of a list
+   *
+   * @return encoded messages, empty if there is no list
+   */
+  private Future<List<Buffer>> range(String topic, int count) {
+    return redisClient
+        .read(topic, api -> api.lrange(topic, "0", String.valueOf(count - 1)))
+        .map(
+            rangeValue -> {
+              final var range = new ArrayList<Buffer>();
+
+              if (rangeValue != null) {
+                rangeValue.forEach(encoded -> range.add(encoded.toBuffer()));
+              }
+
+              return range;
+            });
+  }
+}
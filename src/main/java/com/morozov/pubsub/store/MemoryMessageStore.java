@@ -0,0 +1,334 @@
+package com.morozov.pubsub.store;
+
+import com.morozov.pubsub.SharedResources;
+import com.morozov.pubsub.constants.ConfigConstants;
+import com.morozov.pubsub.model.dto.Message;
+import com.morozov.pubsub.model.dto.RetentionPolicy;
+import com.morozov.pubsub.model.dto.SubscriberInfo;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single-node store keeping everything in the process memory, for deployments where a network
+ * round trip per request costs too much and the messages don't have to outlive the process.
+ *
+ * <p>Every topic is a bounded {@link TopicRing} with a cursor per subscriber, so like with the
+ * stream engine every subscriber gets every message published after it subscribed. Partition
+ * counts are accepted but not used: there is no cluster to spread the partitions over. Retention
+ * count and size limits cap the ring of the topic, below the memory limits of the node, and age
+ * limits are enforced by a periodic sweep of the rings.
+ *
+ * <p>Shared by all the verticles of the node, every ring is locked only while it's read or
+ * written.
+ */
+public class MemoryMessageStore implements MessageStore, Shareable {
+  private static final String RESOURCE_NAME = "store.memory";
+
+  private final Map<String, String> publishers = new ConcurrentHashMap<>();
+  private final Map<String, SubscriberInfo> subscribers = new ConcurrentHashMap<>();
+  private final Map<String, TopicRing> rings = new ConcurrentHashMap<>();
+  private final Map<String, RetentionPolicy> retentionPolicies = new ConcurrentHashMap<>();
+  private final RetentionPolicy defaultRetention;
+  private final int topicMaxMessages;
+  private final int topicMaxBytes;
+  private final int sweepMaxMessages;
+  private final long subscriptionTtlMs;
+  private final LongAdder expired = new LongAdder();
+
+  private MemoryMessageStore(JsonObject config) {
+    this.topicMaxMessages =
+        config.getInteger(
+            ConfigConstants.MEMORY_TOPIC_MAX_MESSAGES,
+            ConfigConstants.DEFAULT_MEMORY_TOPIC_MAX_MESSAGES);
+    this.topicMaxBytes =
+        config.getInteger(
+            ConfigConstants.MEMORY_TOPIC_MAX_BYTES, ConfigConstants.DEFAULT_MEMORY_TOPIC_MAX_BYTES);
+    this.sweepMaxMessages =
+        config.getInteger(
+            ConfigConstants.RETENTION_SWEEP_MAX_MESSAGES,
+            ConfigConstants.DEFAULT_RETENTION_SWEEP_MAX_MESSAGES);
+    this.subscriptionTtlMs =
+        TimeUnit.SECONDS.toMillis(config.getLong(ConfigConstants.SUBSCRIPTION_TTL_SECONDS, 0L));
+    this.defaultRetention = RetentionPolicy.fromConfig(config);
+  }
+
+  /**
+   * Get the store shared by the Vert.x instance or create it and start sweeping on the first call
+   *
+   * @param vertx Vert.x instance
+   * @param config verticle config
+   * @return shared store
+   */
+  public static MemoryMessageStore get(Vertx vertx, JsonObject config) {
+    return SharedResources.get(
+        vertx,
+        RESOURCE_NAME,
+        () -> {
+          final var store = new MemoryMessageStore(config);
+
+          vertx.setPeriodic(
+              config.getLong(
+                  ConfigConstants.RETENTION_SWEEP_INTERVAL_MS,
+                  ConfigConstants.DEFAULT_RETENTION_SWEEP_INTERVAL_MS),
+              timerId -> store.sweep());
+
+          return store;
+        });
+  }
+
+  @Override
+  public Future<String> publisher(String topic) {
+    return Future.succeededFuture(publishers.get(topic));
+  }
+
+  @Override
+  public Future<Void> register(
+      String topic, String pubId, int partitions, RetentionPolicy retentionPolicy) {
+    if (retentionPolicy == null) {
+      retentionPolicies.remove(topic);
+    } else {
+      retentionPolicies.put(topic, retentionPolicy);
+    }
+
+    final var ring = rings.get(topic);
+
+    if (ring != null) {
+      synchronized (ring) {
+        ring.limit(maxMessages(topic), maxBytes(topic));
+      }
+    }
+
+    publishers.put(topic, pubId);
+    return Future.succeededFuture();
+  }
+
+  @Override
+  public Future<String> route(String topic, String key) {
+    return Future.succeededFuture(topic);
+  }
+
+  @Override
+  public Future<SubscriberInfo> subscriber(String subId) {
+    return Future.succeededFuture(activeSubscriber(subId));
+  }
+
+  @Override
+  public Future<Void> subscribe(SubscriberInfo subInfo) {
+    subscribers.put(subInfo.getSubId(), subInfo);
+
+    final var ring = ring(subInfo.getTopic());
+
+    synchronized (ring) {
+      ring.subscribe(subInfo.getSubId());
+    }
+
+    return Future.succeededFuture();
+  }
+
+  @Override
+  public Future<Void> unsubscribe(SubscriberInfo subInfo) {
+    removeSubscriber(subInfo);
+    return Future.succeededFuture();
+  }
+
+  @Override
+  public Future<Long> append(String topic, List<Buffer> messages) {
+    final var ring = ring(topic);
+
+    try {
+      synchronized (ring) {
+        return Future.succeededFuture(ring.append(messages));
+      }
+    } catch (IllegalArgumentException e) {
+      return Future.failedFuture(e);
+    }
+  }
+
+  @Override
+  public Future<List<Message>> peek(SubscriberInfo subInfo, int max, long maxBytes) {
+    final var ring = rings.get(subInfo.getTopic());
+
+    if (ring == null) {
+      return Future.succeededFuture(List.of());
+    }
+
+    final List<Buffer> encodedMessages;
+
+    synchronized (ring) {
+      encodedMessages = ring.peek(subInfo.getSubId(), max, maxBytes);
+    }
+
+    return decode(encodedMessages);
+  }
+
+  @Override
+  public Future<AckResult> ack(SubscriberInfo subInfo, int max, long maxBytes) {
+    final var ring = ring(subInfo.getTopic());
+    final List<Buffer> encodedMessages;
+
+    synchronized (ring) {
+      encodedMessages = ring.ack(subInfo.getSubId(), max, maxBytes);
+    }
+
+    if (encodedMessages.isEmpty()) {
+      return Future.succeededFuture(new AckResult(AckResult.NOTHING_TO_ACK, List.of()));
+    }
+
+    return decode(encodedMessages).map(messages -> new AckResult(AckResult.ACKED, messages));
+  }
+
+  @Override
+  public Future<Long> expire(String topic, long expiredBefore, int max) {
+    final var ring = rings.get(topic);
+
+    if (ring == null) {
+      return Future.succeededFuture(0L);
+    }
+
+    final long count;
+
+    synchronized (ring) {
+      count = ring.expire(expiredBefore, max);
+    }
+
+    expired.add(count);
+    return Future.succeededFuture(count);
+  }
+
+  @Override
+  public Future<Long> length(String topic) {
+    final var ring = rings.get(topic);
+
+    if (ring == null) {
+      return Future.succeededFuture(0L);
+    }
+
+    synchronized (ring) {
+      return Future.succeededFuture(ring.size());
+    }
+  }
+
+  /** Every registered topic: they are all in memory already */
+  @Override
+  public Future<List<String>> nextTopics(int count) {
+    return Future.succeededFuture(new ArrayList<>(publishers.keySet()));
+  }
+
+  @Override
+  public Future<Void> ping() {
+    return Future.succeededFuture();
+  }
+
+  @Override
+  public Map<String, Long> counters() {
+    long messages = 0;
+    long bytes = 0;
+    long dropped = 0;
+
+    for (var ring : rings.values()) {
+      synchronized (ring) {
+        messages += ring.size();
+        bytes += ring.bytes();
+        dropped += ring.dropped();
+      }
+    }
+
+    return Map.of(
+        "memory.topics",
+        (long) rings.size(),
+        "memory.messages",
+        messages,
+        "memory.bytes",
+        bytes,
+        "retention.trimmed",
+        dropped,
+        "retention.expired",
+        expired.sum());
+  }
+
+  /** Expire the messages of the topics with an age limit */
+  private void sweep() {
+    final var now = System.currentTimeMillis();
+
+    for (var topic : rings.keySet()) {
+      final var expiredBefore = retentionPolicy(topic).expiredBefore(now);
+
+      if (expiredBefore > 0) {
+        expire(topic, expiredBefore, sweepMaxMessages);
+      }
+    }
+  }
+
+  private TopicRing ring(String topic) {
+    return rings.computeIfAbsent(topic, key -> new TopicRing(maxMessages(key), maxBytes(key)));
+  }
+
+  private RetentionPolicy retentionPolicy(String topic) {
+    return retentionPolicies.getOrDefault(topic, defaultRetention);
+  }
+
+  private int maxMessages(String topic) {
+    final var limit = retentionPolicy(topic).getMaxMessages();
+    return limit > 0 ? (int) Math.min(limit, topicMaxMessages) : topicMaxMessages;
+  }
+
+  private int maxBytes(String topic) {
+    final var limit = retentionPolicy(topic).getMaxBytes();
+    return limit > 0 ? (int) Math.min(limit, topicMaxBytes) : topicMaxBytes;
+  }
+
+  /**
+   * Get the subscription, removing it if it's expired
+   *
+   * @param subId subscriber id
+   * @return subscriber info or null
+   */
+  private SubscriberInfo activeSubscriber(String subId) {
+    final var subInfo = subscribers.get(subId);
+
+    if (subInfo != null
+        && subscriptionTtlMs > 0
+        && System.currentTimeMillis() >= subInfo.getTs() + subscriptionTtlMs) {
+      removeSubscriber(subInfo);
+      return null;
+    }
+
+    return subInfo;
+  }
+
+  private void removeSubscriber(SubscriberInfo subInfo) {
+    subscribers.remove(subInfo.getSubId());
+
+    final var ring = rings.get(subInfo.getTopic());
+
+    if (ring != null) {
+      synchronized (ring) {
+        ring.unsubscribe(subInfo.getSubId());
+      }
+    }
+  }
+
+  private static Future<List<Message>> decode(List<Buffer> encodedMessages) {
+    try {
+      final var messages = new ArrayList<Message>(encodedMessages.size());
+
+      for (var encoded : encodedMessages) {
+        messages.add(MessageCodec.decode(encoded));
+      }
+
+      return Future.succeededFuture(messages);
+    } catch (IOException e) {
+      return Future.failedFuture(e);
+    }
+  }
+}
@@ -0,0 +1,234 @@
+package com.morozov.pubsub.store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.morozov.pubsub.model.dto.Message;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encoding of the messages kept in the topic store: a versioned binary envelope with a fixed
+ * header followed by the raw payload bytes.
+ *
+ * <pre>
+ * offset 0   version, 1
+ * offset 1   flags
+ * offset 2   publish timestamp, int64 big-endian
+ * offset 10  payload length, int32 big-endian
+ * offset 14  payload
+ * </pre>
+ *
+ * <p>The list engine gives every message the next sequence of its topic when it's appended: the
+ * version 1 envelope becomes a version 2 one with the sequence, an int64 big-endian, inserted at
+ * offset 10 before the payload length. The payload then starts at offset 22.
+ *
+ * <p>A deflated payload starts with its uncompressed length and its Adler-32, both int32
+ * big-endian, followed by raw deflate blocks ending with a sync flush.
+ *
+ * <p>Messages written before the envelope are JSON objects {"message": ..., "ts": ...}. They start
+ * with '{', which is never a valid version, and are still decoded.
+ */
+public class MessageCodec {
+  public static final byte VERSION = 1;
+  /** Version of the messages sequenced by the list engine */
+  public static final byte SEQUENCED_VERSION = 2;
+  /** Sequence of the messages that have none, written before the sequences or by other engines */
+  public static final long NO_SEQUENCE = -1;
+  /** The payload is a JSON value (e.g. a quoted string as sent by the publisher), not plain text */
+  public static final byte FLAG_JSON_PAYLOAD = 0x01;
+  /** The payload is deflated */
+  public static final byte FLAG_DEFLATE = 0x02;
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final byte LEGACY_JSON_START = '{';
+  private static final Buffer JSON_NULL = Buffer.buffer("null");
+  private static final int FLAGS_OFFSET = 1;
+  static final int TS_OFFSET = 2;
+  private static final int LENGTH_OFFSET = 10;
+  private static final int HEADER_SIZE = 14;
+  private static final int SEQUENCE_OFFSET = 10;
+  private static final int SEQUENCED_LENGTH_OFFSET = 18;
+  private static final int SEQUENCED_HEADER_SIZE = 22;
+  private static final int DEFLATE_HEADER_SIZE = 8;
+
+  public static Buffer encode(Message message) {
+    if (message.getMessage() == null) {
+      return encode(JSON_NULL, message.getTs());
+    }
+
+    final var payload = message.getMessage().getBytes(StandardCharsets.UTF_8);
+
+    return header((byte) 0, message.getTs(), payload.length).appendBytes(payload);
+  }
+
+  /**
+   * Encode a message from the raw JSON value of its payload. The payload bytes are not copied: the
+   * result is a composite of the header and the given buffer.
+   *
+   * @param messageJson raw JSON value of the message payload
+   * @param ts publish timestamp
+   * @return encoded message
+   */
+  public static Buffer encode(Buffer messageJson, long ts) {
+    final var header = header(FLAG_JSON_PAYLOAD, ts, messageJson.length());
+
+    return Buffer.buffer(Unpooled.wrappedBuffer(header.getByteBuf(), messageJson.getByteBuf()));
+  }
+
+  /**
+   * Encode a message with a deflated payload
+   *
+   * @param flags payload flags, without the deflate one
+   * @param ts publish timestamp
+   * @param length uncompressed payload length
+   * @param adler Adler-32 of the uncompressed payload
+   * @param deflated raw deflate blocks ending with a sync flush
+   * @return encoded message
+   */
+  public static Buffer encodeDeflated(byte flags, long ts, int length, int adler, Buffer deflated) {
+    return header((byte) (flags | FLAG_DEFLATE), ts, DEFLATE_HEADER_SIZE + deflated.length())
+        .appendInt(length)
+        .appendInt(adler)
+        .appendBuffer(deflated);
+  }
+
+  /**
+   * Decode a message of either format. A deflated payload is inflated when it's read.
+   *
+   * @param encoded encoded message
+   * @return message
+   * @throws IOException if the message is corrupted or has an unknown version
+   */
+  public static Message decode(Buffer encoded) throws IOException {
+    if (isLegacy(encoded)) {
+      final var message =
+          MAPPER.readValue(
+              (InputStream) new ByteBufInputStream(encoded.getByteBuf()), Message.class);
+
+      return new Message(message.getMessage(), message.getTs(), message.getSeq(), encoded.length());
+    }
+
+    final var headerSize = checkHeader(encoded);
+    final var flags = encoded.getByte(FLAGS_OFFSET);
+    final var payload = encoded.slice(headerSize, encoded.length());
+    final var seq = headerSize == SEQUENCED_HEADER_SIZE ? encoded.getLong(SEQUENCE_OFFSET) : null;
+
+    if ((flags & FLAG_DEFLATE) != 0) {
+      if (payload.length() < DEFLATE_HEADER_SIZE) {
+        throw new IOException("Deflated payload is shorter than its header");
+      }
+
+      return new CompressedMessage(
+          encoded.getLong(TS_OFFSET),
+          seq,
+          (flags & FLAG_JSON_PAYLOAD) != 0,
+          payload.getInt(0),
+          payload.getInt(4),
+          payload.slice(DEFLATE_HEADER_SIZE, payload.length()),
+          encoded.length());
+    }
+    final var text =
+        (flags & FLAG_JSON_PAYLOAD) != 0
+            ? MAPPER.readValue(
+                (InputStream) new ByteBufInputStream(payload.getByteBuf()), String.class)
+            : payload.toString(StandardCharsets.UTF_8);
+
+    return new Message(text, encoded.getLong(TS_OFFSET), seq, encoded.length());
+  }
+
+  /**
+   * Read the publish timestamp without decoding the payload, unless the message is a legacy one
+   *
+   * @param encoded encoded message
+   * @return publish timestamp
+   * @throws IOException if the message is corrupted or has an unknown version
+   */
+  public static long ts(Buffer encoded) throws IOException {
+    if (isLegacy(encoded)) {
+      return decode(encoded).getTs();
+    }
+
+    checkHeader(encoded);
+    return encoded.getLong(TS_OFFSET);
+  }
+
+  /**
+   * Read the topic sequence without decoding the payload
+   *
+   * @param encoded encoded message
+   * @return topic sequence, {@link #NO_SEQUENCE} if the message has none
+   * @throws IOException if the message is corrupted or has an unknown version
+   */
+  public static long sequence(Buffer encoded) throws IOException {
+    if (isLegacy(encoded)) {
+      return NO_SEQUENCE;
+    }
+
+    return checkHeader(encoded) == SEQUENCED_HEADER_SIZE
+        ? encoded.getLong(SEQUENCE_OFFSET)
+        : NO_SEQUENCE;
+  }
+
+  /**
+   * Give a version 1 message its topic sequence, like list-append.lua does. Other messages are
+   * returned as is.
+   *
+   * @param encoded encoded message
+   * @param seq topic sequence
+   * @return sequenced message
+   */
+  public static Buffer sequenced(Buffer encoded, long seq) {
+    if (encoded.length() < HEADER_SIZE || encoded.getByte(0) != VERSION) {
+      return encoded;
+    }
+
+    return Buffer.buffer(encoded.length() + SEQUENCED_HEADER_SIZE - HEADER_SIZE)
+        .appendByte(SEQUENCED_VERSION)
+        .appendBuffer(encoded, FLAGS_OFFSET, SEQUENCE_OFFSET - FLAGS_OFFSET)
+        .appendLong(seq)
+        .appendBuffer(encoded, LENGTH_OFFSET, encoded.length() - LENGTH_OFFSET);
+  }
+
+  private static boolean isLegacy(Buffer encoded) {
+    return encoded.length() > 0 && encoded.getByte(0) == LEGACY_JSON_START;
+  }
+
+  private static Buffer header(byte flags, long ts, int payloadLength) {
+    return Buffer.buffer(HEADER_SIZE)
+        .appendByte(VERSION)
+        .appendByte(flags)
+        .appendLong(ts)
+        .appendInt(payloadLength);
+  }
+
+  /**
+   * Check the header of an envelope
+   *
+   * @param encoded encoded message
+   * @return header size of its version
+   * @throws IOException if the message is corrupted or has an unknown version
+   */
+  private static int checkHeader(Buffer encoded) throws IOException {
+    final var sequenced = encoded.length() > 0 && encoded.getByte(0) == SEQUENCED_VERSION;
+    final var headerSize = sequenced ? SEQUENCED_HEADER_SIZE : HEADER_SIZE;
+
+    if (encoded.length() < headerSize) {
+      throw new IOException("Message is shorter than its header");
+    }
+
+    if (!sequenced && encoded.getByte(0) != VERSION) {
+      throw new IOException("Unknown message format version " + encoded.getByte(0));
+    }
+
+    final var lengthOffset = sequenced ? SEQUENCED_LENGTH_OFFSET : LENGTH_OFFSET;
+
+    if (encoded.getInt(lengthOffset) != encoded.length() - headerSize) {
+      throw new IOException("Message payload length doesn't match its header");
+    }
+
+    return headerSize;
+  }
+}
@@ -0,0 +1,113 @@
+package com.morozov.pubsub.store;
+
+import com.morozov.pubsub.constants.ConfigConstants;
+import com.morozov.pubsub.model.dto.Message;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+/**
+ * Deflate compression of the message payloads above a size threshold, done before they go to
+ * Redis. Payloads that don't get smaller are stored as is.
+ *
+ * <p>The payload is compressed into raw deflate blocks ending with a sync flush, so it can be put
+ * between other deflate blocks, see {@link CompressedMessage#toDeflateResponse()}.
+ *
+ * <p>Owned by a single verticle and only used from its event loop, so the deflater is reused.
+ */
+public class MessageCompressor {
+  private static final int CHUNK_SIZE = 16384;
+
+  private final int minBytes;
+  private final Deflater deflater;
+  private final byte[] chunk = new byte[CHUNK_SIZE];
+
+  public MessageCompressor(JsonObject config) {
+    this.minBytes =
+        config.getInteger(
+            ConfigConstants.COMPRESSION_MIN_BYTES, ConfigConstants.DEFAULT_COMPRESSION_MIN_BYTES);
+    this.deflater =
+        new Deflater(
+            config.getInteger(
+                ConfigConstants.COMPRESSION_LEVEL, ConfigConstants.DEFAULT_COMPRESSION_LEVEL),
+            true);
+  }
+
+  /**
+   * Encode a message from the raw JSON value of its payload, compressing the payload if it's large
+   * enough
+   *
+   * @param messageJson raw JSON value of the message payload
+   * @param ts publish timestamp
+   * @return encoded message
+   */
+  public Buffer encode(Buffer messageJson, long ts) {
+    if (!shouldCompress(messageJson.length())) {
+      return MessageCodec.encode(messageJson, ts);
+    }
+
+    final var deflated = deflate(messageJson);
+
+    if (deflated.length() >= messageJson.length()) {
+      return MessageCodec.encode(messageJson, ts);
+    }
+
+    return MessageCodec.encodeDeflated(
+        MessageCodec.FLAG_JSON_PAYLOAD, ts, messageJson.length(), adler32(messageJson), deflated);
+  }
+
+  /**
+   * Encode a message, compressing the payload if it's large enough
+   *
+   * @param message message
+   * @return encoded message
+   */
+  public Buffer encode(Message message) {
+    if (message.getMessage() == null) {
+      return MessageCodec.encode(message);
+    }
+
+    final var payload = Buffer.buffer(message.getMessage().getBytes(StandardCharsets.UTF_8));
+
+    if (!shouldCompress(payload.length())) {
+      return MessageCodec.encode(message);
+    }
+
+    final var deflated = deflate(payload);
+
+    if (deflated.length() >= payload.length()) {
+      return MessageCodec.encode(message);
+    }
+
+    return MessageCodec.encodeDeflated(
+        (byte) 0, message.getTs(), payload.length(), adler32(payload), deflated);
+  }
+
+  private boolean shouldCompress(int length) {
+    return minBytes > 0 && length >= minBytes;
+  }
+
+  private Buffer deflate(Buffer input) {
+    deflater.reset();
+    deflater.setInput(input.getByteBuf().nioBuffer());
+
+    final var output = Buffer.buffer(input.length() / 2);
+    int count;
+
+    // a sync flush compresses all the input, the chunk is filled up while there is more output
+    do {
+      count = deflater.deflate(chunk, 0, chunk.length, Deflater.SYNC_FLUSH);
+      output.appendBytes(chunk, 0, count);
+    } while (count == chunk.length);
+
+    return output;
+  }
+
+  private static int adler32(Buffer input) {
+    final var adler = new Adler32();
+    adler.update(input.getByteBuf().nioBuffer());
+    return (int) adler.getValue();
+  }
+}
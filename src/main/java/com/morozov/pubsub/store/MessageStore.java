@@ -0,0 +1,184 @@
+package com.morozov.pubsub.store;
+
+import com.morozov.pubsub.constants.ConfigConstants;
+import com.morozov.pubsub.model.dto.RetentionPolicy;
+import com.morozov.pubsub.model.dto.SubscriberInfo;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Storage of the topic publishers, the subscriptions and the topic messages, everything the
+ * handlers keep between requests
+ */
+public interface MessageStore extends TopicStore {
+  String MEMORY_ENGINE = "memory";
+
+  /**
+   * Create the store selected by the storage.engine config: the in-memory store shared by the
+   * verticles of the node, or a Redis store of the verticle
+   *
+   * @param vertx Vert.x instance
+   * @param config verticle config
+   * @return message store
+   */
+  static MessageStore create(Vertx vertx, JsonObject config) {
+    if (isMemoryEngine(config)) {
+      return MemoryMessageStore.get(vertx, config);
+    }
+
+    return new RedisMessageStore(vertx, config);
+  }
+
+  /**
+   * @param config verticle config
+   * @return true if the messages are kept in the process memory and Redis isn't used
+   */
+  static boolean isMemoryEngine(JsonObject config) {
+    return MEMORY_ENGINE.equals(config.getString(ConfigConstants.STORAGE_ENGINE, LIST_ENGINE));
+  }
+
+  /**
+   * Get the publisher registered to the topic
+   *
+   * @param topic topic
+   * @return publisher id or null if the topic is not registered
+   */
+  Future<String> publisher(String topic);
+
+  /**
+   * Register the publisher to the topic
+   *
+   * @param topic topic
+   * @param pubId publisher id
+   * @param partitions partition count
+   * @param retentionPolicy retention of the topic, null for the default one
+   * @return completion
+   */
+  Future<Void> register(
+      String topic, String pubId, int partitions, RetentionPolicy retentionPolicy);
+
+  /**
+   * Choose the storage key a publish to the topic is appended to
+   *
+   * @param topic topic
+   * @param key partitioning key, null if not set
+   * @return storage key for {@link #append}
+   */
+  Future<String> route(String topic, String key);
+
+  /**
+   * Get the subscription
+   *
+   * @param subId subscriber id
+   * @return subscriber info or null if the subscription doesn't exist
+   */
+  Future<SubscriberInfo> subscriber(String subId);
+
+  /**
+   * Save the subscription and prepare the storage for it
+   *
+   * @param subInfo subscriber info
+   * @return completion
+   */
+  @Override
+  Future<Void> subscribe(SubscriberInfo subInfo);
+
+  /**
+   * Remove the subscription and release its storage
+   *
+   * @param subInfo subscriber info
+   * @return completion
+   */
+  @Override
+  Future<Void> unsubscribe(SubscriberInfo subInfo);
+
+  /**
+   * Check the subscriber is subscribed to the topic, then take the next messages out for it
+   *
+   * @param topic topic
+   * @param subId subscriber id
+   * @param max max number of messages
+   * @param maxBytes max total size of the encoded messages
+   * @return ack result
+   */
+  default Future<AckResult> ack(String topic, String subId, int max, long maxBytes) {
+    return subscribed(topic, subId, subInfo -> ack(subInfo, max, maxBytes));
+  }
+
+  /**
+   * Check the subscriber is subscribed to the topic, then take the next message out for it under a
+   * lease
+   *
+   * @param topic topic
+   * @param subId subscriber id
+   * @param deadline time the lease expires at, in epoch milliseconds
+   * @return ack result with the leased message and the receipt of the lease
+   */
+  default Future<AckResult> receive(String topic, String subId, long deadline) {
+    return subscribed(topic, subId, subInfo -> receive(subInfo, deadline));
+  }
+
+  /**
+   * Check the subscriber is subscribed to the topic, then drop the message of a lease
+   *
+   * @param topic topic
+   * @param subId subscriber id
+   * @param receipt receipt of the lease
+   * @return ack result with the acked message
+   */
+  default Future<AckResult> ackLease(String topic, String subId, String receipt) {
+    return subscribed(topic, subId, subInfo -> ackLease(subInfo, receipt));
+  }
+
+  /**
+   * Get the next few registered topics, successive calls go over all of them and start over
+   *
+   * @param count max number of topics, a hint
+   * @return topics
+   */
+  Future<List<String>> nextTopics(int count);
+
+  /**
+   * Check the store is available
+   *
+   * @return completion, failed if the store can't be reached
+   */
+  Future<Void> ping();
+
+  /**
+   * @return store counters by name
+   */
+  Map<String, Long> counters();
+
+  /**
+   * Check the subscriber of an ack against the topic before taking messages out for it. The scripts
+   * get the subscription from here rather than reading its %subId% key, which Redis Cluster may
+   * keep in another slot than the topic keys.
+   *
+   * @param topic topic
+   * @param subId subscriber id
+   * @param operation operation on the messages of the subscriber
+   * @return result of the operation, or the status of an unknown or wrong subscriber
+   */
+  private Future<AckResult> subscribed(
+      String topic, String subId, Function<SubscriberInfo, Future<AckResult>> operation) {
+    return subscriber(subId)
+        .compose(
+            subInfo -> {
+              if (subInfo == null) {
+                return Future.succeededFuture(
+                    new AckResult(AckResult.UNKNOWN_SUBSCRIBER, List.of()));
+              }
+
+              if (!subInfo.getTopic().equals(topic)) {
+                return Future.succeededFuture(new AckResult(AckResult.WRONG_TOPIC, List.of()));
+              }
+
+              return operation.apply(subInfo);
+            });
+  }
+}
@@ -0,0 +1,457 @@
+package com.morozov.pubsub.store;
+
+import com.morozov.pubsub.model.dto.Message;
+import com.morozov.pubsub.model.dto.SubscriberInfo;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Topic split into partitions, each stored by the underlying store under its own key. The keys are
+ * hash-tagged by partition, {topic#0}, {topic#1}..., so Redis Cluster spreads a hot topic across
+ * its nodes while the keys of the same partition stay in one slot. The scripts never take a key of
+ * another slot: the subscriber is checked by the caller and passed to them as arguments.
+ *
+ * <p>Publishes are routed to a partition, round-robin or by a key hash. Partitions aren't assigned
+ * to subscribers exclusively: every subscriber reads all of them, in an order starting from a home
+ * partition derived from its id. A get peeks all the partitions in parallel and returns the
+ * messages starting from the home one, an ack walks the partitions in the same order, both carrying
+ * the max and max bytes budget from a partition to the next. So the subscribers of a topic start
+ * consuming from different partitions, and no partition is left without consumers. Topics with a
+ * single partition are passed to the underlying store as is.
+ *
+ * <p>Owned by a single verticle and only used from its event loop, so it needs no locking.
+ */
+public class PartitionedTopicStore implements TopicStore {
+  private final TopicStore store;
+  private final Function<String, Future<Integer>> partitionCounts;
+  private long publishes;
+
+  /**
+   * @param store underlying store
+   * @param partitionCounts partition count of a topic
+   */
+  public PartitionedTopicStore(
+      TopicStore store, Function<String, Future<Integer>> partitionCounts) {
+    this.store = store;
+    this.partitionCounts = partitionCounts;
+  }
+
+  /**
+   * @param topic topic
+   * @param partition partition
+   * @return storage key of the partition
+   */
+  public static String partitionKey(String topic, int partition) {
+    return "{" + topic + "#" + partition + "}";
+  }
+
+  /**
+   * Get the key of a value kept next to a storage key, in the same Redis Cluster slot since the
+   * scripts take both. A partition key already has a hash tag, an unpartitioned topic gets one:
+   * {topic}-bytes hashes like the topic key.
+   *
+   * @param topicKey topic or partition storage key
+   * @param suffix suffix of the value
+   * @return key of the value
+   */
+  public static String siblingKey(String topicKey, String suffix) {
+    final var open = topicKey.indexOf('{');
+    final var close = open < 0 ? -1 : topicKey.indexOf('}', open + 1);
+
+    return close > open + 1 ? topicKey + suffix : "{" + topicKey + "}" + suffix;
+  }
+
+  /**
+   * Get the topic of a storage key
+   *
+   * @param key topic or partition storage key
+   * @return topic
+   */
+  public static String topicOf(String key) {
+    if (!key.startsWith("{") || !key.endsWith("}")) {
+      return key;
+    }
+
+    final var separator = key.lastIndexOf('#');
+    return separator < 0 ? key : key.substring(1, separator);
+  }
+
+  /**
+   * Get the partition of a storage key
+   *
+   * @param key topic or partition storage key
+   * @return partition, 0 for a topic without partitions
+   */
+  public static int partitionOf(String key) {
+    if (!key.startsWith("{") || !key.endsWith("}")) {
+      return 0;
+    }
+
+    final var separator = key.lastIndexOf('#');
+
+    try {
+      return separator < 0 ? 0 : Integer.parseInt(key.substring(separator + 1, key.length() - 1));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Choose the storage key a publish goes to
+   *
+   * @param topic topic
+   * @param key partitioning key, null to publish round-robin
+   * @return storage key to append to
+   */
+  public Future<String> route(String topic, String key) {
+    return partitionCounts
+        .apply(topic)
+        .map(
+            partitions -> {
+              if (partitions <= 1) {
+                return topic;
+              }
+
+              final var partition =
+                  key == null
+                      ? (int) (publishes++ % partitions)
+                      : Math.floorMod(key.hashCode(), partitions);
+              return partitionKey(topic, partition);
+            });
+  }
+
+  /**
+   * Append to a storage key chosen by {@link #route(String, String)}
+   *
+   * @param topicKey topic or partition storage key
+   * @param messages encoded messages
+   * @return partition length after the append
+   */
+  @Override
+  public Future<Long> append(String topicKey, List<Buffer> messages) {
+    return store.append(topicKey, messages);
+  }
+
+  /** Expire every partition, up to max messages each */
+  @Override
+  public Future<Long> expire(String topic, long expiredBefore, int max) {
+    return sumPartitions(topic, key -> store.expire(key, expiredBefore, max));
+  }
+
+  /** Sum the lengths of the partitions */
+  @Override
+  public Future<Long> length(String topic) {
+    return sumPartitions(topic, store::length);
+  }
+
+  /**
+   * Get the sequences the partitions of a topic will give their next messages, the offsets of a new
+   * subscriber
+   *
+   * @param topic topic
+   * @return next sequence by partition, null if the underlying store doesn't sequence messages
+   */
+  public Future<List<Long>> nextSequences(String topic) {
+    return partitionCounts
+        .apply(topic)
+        .compose(
+            partitions -> {
+              if (partitions <= 1) {
+                return store.nextSequence(topic).map(seq -> seq == null ? null : List.of(seq));
+              }
+
+              final List<Future> sequences = new ArrayList<>(partitions);
+
+              for (int i = 0; i < partitions; i++) {
+                sequences.add(store.nextSequence(partitionKey(topic, i)));
+              }
+
+              return CompositeFuture.all(sequences)
+                  .map(
+                      all -> {
+                        final var offsets = new ArrayList<Long>(partitions);
+
+                        for (int i = 0; i < partitions; i++) {
+                          final Long seq = all.resultAt(i);
+
+                          if (seq == null) {
+                            return null;
+                          }
+
+                          offsets.add(seq);
+                        }
+
+                        return offsets;
+                      });
+            });
+  }
+
+  @Override
+  public Future<Long> nextSequence(String topicKey) {
+    return store.nextSequence(topicKey);
+  }
+
+  @Override
+  public Future<Void> subscribe(SubscriberInfo subInfo) {
+    return forEachPartition(subInfo, store::subscribe);
+  }
+
+  @Override
+  public Future<Void> unsubscribe(SubscriberInfo subInfo) {
+    return forEachPartition(subInfo, store::unsubscribe);
+  }
+
+  /**
+   * Peek every partition in parallel, then take the messages in the subscriber partition order the
+   * way {@link #ack(SubscriberInfo, int, long)} pops them: each partition gets the budget the
+   * previous ones left
+   */
+  @Override
+  public Future<List<Message>> peek(SubscriberInfo subInfo, int max, long maxBytes) {
+    return partitionCounts
+        .apply(subInfo.getTopic())
+        .compose(
+            partitions -> {
+              if (partitions <= 1) {
+                return store.peek(subInfo, max, maxBytes);
+              }
+
+              final List<Future> peeks = new ArrayList<>(partitions);
+
+              for (var key : partitionKeys(subInfo.getTopic(), subInfo.getSubId(), partitions)) {
+                peeks.add(store.peek(onPartition(subInfo, key), max, maxBytes));
+              }
+
+              return CompositeFuture.all(peeks)
+                  .map(
+                      results -> {
+                        final var messages = new ArrayList<Message>();
+                        long bytes = 0;
+
+                        for (int i = 0; i < partitions; i++) {
+                          if (messages.size() >= max || bytes >= maxBytes) {
+                            break;
+                          }
+
+                          final List<Message> partitionMessages = results.resultAt(i);
+                          final var budget = maxBytes - bytes;
+                          long partitionBytes = 0;
+
+                          for (int j = 0;
+                              j < partitionMessages.size() && messages.size() < max;
+                              j++) {
+                            final var message = partitionMessages.get(j);
+                            partitionBytes += message.getEncodedLength();
+
+                            // like a single partition, its first message is taken even if it's
+                            // larger than the budget left
+                            if (j > 0 && partitionBytes > budget) {
+                              break;
+                            }
+
+                            messages.add(message);
+                            bytes += message.getEncodedLength();
+                          }
+                        }
+
+                        return messages;
+                      });
+            });
+  }
+
+  /**
+   * Ack the partitions one by one in the subscriber partition order until max messages or max
+   * bytes, each partition gets the budget the previous ones left. So the acked messages overshoot
+   * max bytes by a message at most, the first one of the last partition acked.
+   */
+  @Override
+  public Future<AckResult> ack(SubscriberInfo subInfo, int max, long maxBytes) {
+    return partitionCounts
+        .apply(subInfo.getTopic())
+        .compose(
+            partitions -> {
+              if (partitions <= 1) {
+                return store.ack(subInfo, max, maxBytes);
+              }
+
+              final var keys = partitionKeys(subInfo.getTopic(), subInfo.getSubId(), partitions);
+              return ackFrom(subInfo, keys, 0, max, maxBytes, List.of(), 0);
+            });
+  }
+
+  /** Receive from the partitions one by one in the subscriber partition order until one has one */
+  @Override
+  public Future<AckResult> receive(SubscriberInfo subInfo, long deadline) {
+    return partitionCounts
+        .apply(subInfo.getTopic())
+        .compose(
+            partitions -> {
+              if (partitions <= 1) {
+                return store.receive(subInfo, deadline);
+              }
+
+              final var keys = partitionKeys(subInfo.getTopic(), subInfo.getSubId(), partitions);
+              return receiveFrom(subInfo, keys, 0, deadline);
+            });
+  }
+
+  /**
+   * Read a partition of the topic, a topic without partitions is read whatever the partition
+   *
+   * @param topicKey partition storage key
+   */
+  @Override
+  public Future<List<Message>> read(
+      SubscriberInfo subInfo, String topicKey, long offset, int max, long maxBytes) {
+    final var topic = topicOf(topicKey);
+
+    return partitionCounts
+        .apply(topic)
+        .compose(
+            partitions ->
+                store.read(subInfo, partitions <= 1 ? topic : topicKey, offset, max, maxBytes));
+  }
+
+  /** The receipt tells the partition of the lease */
+  @Override
+  public Future<AckResult> ackLease(SubscriberInfo subInfo, String receipt) {
+    return store.ackLease(subInfo, receipt);
+  }
+
+  /**
+   * Requeue a storage key the leases were taken from
+   *
+   * @param topicKey topic or partition storage key
+   */
+  @Override
+  public Future<Long> requeue(String topicKey, long now, int max) {
+    return store.requeue(topicKey, now, max);
+  }
+
+  private Future<AckResult> receiveFrom(
+      SubscriberInfo subInfo, List<String> keys, int index, long deadline) {
+    return store
+        .receive(onPartition(subInfo, keys.get(index)), deadline)
+        .compose(
+            result -> {
+              if (result.getStatus() != AckResult.NOTHING_TO_ACK || index == keys.size() - 1) {
+                return Future.succeededFuture(result);
+              }
+
+              return receiveFrom(subInfo, keys, index + 1, deadline);
+            });
+  }
+
+  private Future<AckResult> ackFrom(
+      SubscriberInfo subInfo,
+      List<String> keys,
+      int index,
+      int max,
+      long maxBytes,
+      List<Message> acked,
+      long ackedBytes) {
+    if (index == keys.size() || acked.size() >= max || ackedBytes >= maxBytes) {
+      return Future.succeededFuture(
+          new AckResult(acked.isEmpty() ? AckResult.NOTHING_TO_ACK : AckResult.ACKED, acked));
+    }
+
+    return store
+        .ack(onPartition(subInfo, keys.get(index)), max - acked.size(), maxBytes - ackedBytes)
+        .compose(
+            ackResult -> {
+              final var allAcked = new ArrayList<>(acked);
+              var allAckedBytes = ackedBytes;
+
+              for (var message : ackResult.getMessages()) {
+                allAcked.add(message);
+                allAckedBytes += message.getEncodedLength();
+              }
+
+              return ackFrom(subInfo, keys, index + 1, max, maxBytes, allAcked, allAckedBytes);
+            });
+  }
+
+  /**
+   * Run an operation on every partition of the topic in parallel and sum its results
+   *
+   * @param topic topic
+   * @param operation operation on a storage key
+   * @return sum of the results
+   */
+  private Future<Long> sumPartitions(String topic, Function<String, Future<Long>> operation) {
+    return partitionCounts
+        .apply(topic)
+        .compose(
+            partitions -> {
+              if (partitions <= 1) {
+                return operation.apply(topic);
+              }
+
+              final List<Future> results = new ArrayList<>(partitions);
+
+              for (int i = 0; i < partitions; i++) {
+                results.add(operation.apply(partitionKey(topic, i)));
+              }
+
+              return CompositeFuture.all(results)
+                  .map(
+                      all -> {
+                        long sum = 0;
+
+                        for (int i = 0; i < partitions; i++) {
+                          sum += all.<Long>resultAt(i);
+                        }
+
+                        return sum;
+                      });
+            });
+  }
+
+  private Future<Void> forEachPartition(
+      SubscriberInfo subInfo, Function<SubscriberInfo, Future<Void>> action) {
+    return partitionCounts
+        .apply(subInfo.getTopic())
+        .compose(
+            partitions -> {
+              if (partitions <= 1) {
+                return action.apply(subInfo);
+              }
+
+              final List<Future> actions = new ArrayList<>(partitions);
+
+              for (int i = 0; i < partitions; i++) {
+                final var key = partitionKey(subInfo.getTopic(), i);
+                actions.add(action.apply(onPartition(subInfo, key)));
+              }
+
+              return CompositeFuture.all(actions).mapEmpty();
+            });
+  }
+
+  /**
+   * Partition keys in the order the subscriber consumes them, starting from its home partition
+   *
+   * @param topic topic
+   * @param subId subscriber id
+   * @param partitions partition count
+   * @return partition keys
+   */
+  static List<String> partitionKeys(String topic, String subId, int partitions) {
+    final var home = Math.floorMod(subId.hashCode(), partitions);
+    final var keys = new ArrayList<String>(partitions);
+
+    for (int i = 0; i < partitions; i++) {
+      keys.add(partitionKey(topic, (home + i) % partitions));
+    }
+
+    return keys;
+  }
+
+  private static SubscriberInfo onPartition(SubscriberInfo subInfo, String key) {
+    return new SubscriberInfo(subInfo.getSubId(), key, subInfo.getTs(), subInfo.getOffsets());
+  }
+}
@@ -0,0 +1,149 @@
+package com.morozov.pubsub.store;
+
+import com.morozov.pubsub.constants.ConfigConstants;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Group-commit write pipeline: concurrent publishes to the same topic are buffered for a short
+ * window and written by a single topic store append. Each caller is completed when the append is
+ * acknowledged.
+ *
+ * <p>Owned by a single verticle and only used from its event loop, so it needs no locking. With a
+ * 0 ms window the batch is flushed right after the current event loop task, which coalesces the
+ * publishes of the same I/O read without adding a timer delay.
+ */
+public class PublishCoalescer {
+  private final Context context;
+  private final TopicStore topicStore;
+  private final boolean enabled;
+  private final long windowMs;
+  private final int maxMessages;
+  private final Map<String, Batch> batches = new HashMap<>();
+
+  private long flushes;
+  private long flushedMessages;
+  private long maxBatchSize;
+  private long flushLatencyNanos;
+
+  public PublishCoalescer(Context context, TopicStore topicStore, JsonObject config) {
+    this.context = context;
+    this.topicStore = topicStore;
+    this.enabled = config.getBoolean(ConfigConstants.PUBLISH_COALESCE_ENABLED, false);
+    this.windowMs =
+        config.getLong(
+            ConfigConstants.PUBLISH_COALESCE_WINDOW_MS,
+            ConfigConstants.DEFAULT_PUBLISH_COALESCE_WINDOW_MS);
+    this.maxMessages =
+        config.getInteger(
+            ConfigConstants.PUBLISH_COALESCE_MAX_MESSAGES,
+            ConfigConstants.DEFAULT_PUBLISH_COALESCE_MAX_MESSAGES);
+  }
+
+  /**
+   * Push a message to the topic, possibly together with other messages to the same topic
+   *
+   * @param topicQueue topic
+   * @param encodedMessage encoded message
+   * @return topic length after the push
+   */
+  public Future<Long> push(String topicQueue, Buffer encodedMessage) {
+    if (!enabled) {
+      return topicStore.append(topicQueue, List.of(encodedMessage));
+    }
+
+    var batch = batches.get(topicQueue);
+
+    if (batch == null) {
+      batch = new Batch(topicQueue);
+      batches.put(topicQueue, batch);
+      scheduleFlush(batch);
+    }
+
+    final Promise<Long> promise = Promise.promise();
+    batch.messages.add(encodedMessage);
+    batch.promises.add(promise);
+
+    if (batch.promises.size() >= maxMessages) {
+      flush(batch);
+    }
+
+    return promise.future();
+  }
+
+  private void scheduleFlush(Batch batch) {
+    if (windowMs <= 0) {
+      context.runOnContext(val -> flush(batch));
+    } else {
+      batch.timerId = context.owner().setTimer(windowMs, timerId -> flush(batch));
+    }
+  }
+
+  /**
+   * Write the batch with a single append, unless it was already flushed by reaching maxMessages
+   *
+   * @param batch batch to flush
+   */
+  private void flush(Batch batch) {
+    if (batches.get(batch.topicQueue) != batch) {
+      return;
+    }
+
+    batches.remove(batch.topicQueue);
+
+    if (batch.timerId >= 0) {
+      context.owner().cancelTimer(batch.timerId);
+    }
+
+    final var startedAt = System.nanoTime();
+    final var size = batch.promises.size();
+
+    topicStore
+        .append(batch.topicQueue, batch.messages)
+        .onComplete(
+            result -> {
+              flushes++;
+              flushedMessages += size;
+              maxBatchSize = Math.max(maxBatchSize, size);
+              flushLatencyNanos += System.nanoTime() - startedAt;
+
+              if (result.succeeded()) {
+                final var topicLength = result.result();
+                batch.promises.forEach(promise -> promise.complete(topicLength));
+              } else {
+                batch.promises.forEach(promise -> promise.fail(result.cause()));
+              }
+            });
+  }
+
+  /**
+   * @return batch size and flush latency counters
+   */
+  public Map<String, Long> counters() {
+    return Map.of(
+        "publish.flushes", flushes,
+        "publish.flushedMessages", flushedMessages,
+        "publish.maxBatchSize", maxBatchSize,
+        "publish.avgBatchSize", flushes == 0 ? 0 : flushedMessages / flushes,
+        "publish.avgFlushLatencyMicros", flushes == 0 ? 0 : flushLatencyNanos / flushes / 1000);
+  }
+
+  /** Messages buffered for a topic and the callers waiting for them */
+  private static class Batch {
+    private final String topicQueue;
+    private final List<Buffer> messages = new ArrayList<>();
+    private final List<Promise<Long>> promises = new ArrayList<>();
+    private long timerId = -1;
+
+    private Batch(String topicQueue) {
+      this.topicQueue = topicQueue;
+    }
+  }
+}
@@ -0,0 +1,299 @@
+package com.morozov.pubsub.store;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.morozov.pubsub.admission.InFlightLimiter;
+import com.morozov.pubsub.admission.OverloadedException;
+import com.morozov.pubsub.cache.PublisherCache;
+import com.morozov.pubsub.cache.SubscriberCache;
+import com.morozov.pubsub.constants.CommonConstants;
+import com.morozov.pubsub.constants.ConfigConstants;
+import com.morozov.pubsub.delivery.PublishNotifier;
+import com.morozov.pubsub.model.dto.Message;
+import com.morozov.pubsub.model.dto.RetentionPolicy;
+import com.morozov.pubsub.model.dto.SubscriberInfo;
+import com.morozov.pubsub.redis.RedisScripts;
+import com.morozov.pubsub.redis.SharedRedisClient;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonObject;
+import io.vertx.redis.client.RedisAPI;
+import io.vertx.redis.client.Response;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Store keeping everything in Redis: %topic%-publisher and %topic%-partitions keys, a %subId% key
+ * per subscription, and the messages in the topic store of the storage.engine config. Publishers
+ * and subscriptions are read through the node-local caches.
+ *
+ * <p>With spill.dir set, publishes Redis can't take go to the node {@link SpillLog} instead of
+ * failing, and are replayed when Redis is back.
+ *
+ * <p>Redis operations go through an {@link InFlightLimiter}: above admission.maxInFlight they fail
+ * with an {@link OverloadedException} right away. Publisher and subscriber lookups are not
+ * limited, they are mostly cache hits.
+ *
+ * <p>Leases taken by the receives of the verticle are expired by its {@link LeaseTimer}.
+ *
+ * <p>Owned by a single verticle, the Redis client and the caches behind it are shared by the node.
+ */
+public class RedisMessageStore implements MessageStore {
+  private static final Logger logger = LoggerFactory.getLogger(RedisMessageStore.class);
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final String SCAN_START = "0";
+
+  private final SharedRedisClient redisClient;
+  private final RedisAPI redisApi;
+  private final PublisherCache publisherCache;
+  private final SubscriberCache subscriberCache;
+  private final PartitionedTopicStore topicStore;
+  private final Retention retention;
+  private final SpillLog spillLog;
+  private final HeadCache headCache;
+  private final LeaseTimer leaseTimer;
+  private final InFlightLimiter inFlightLimiter;
+  private String topicsCursor = SCAN_START;
+
+  public RedisMessageStore(Vertx vertx, JsonObject config) {
+    this.redisClient = SharedRedisClient.get(vertx, config);
+    this.redisApi = redisClient.api();
+    this.publisherCache = PublisherCache.get(vertx, config);
+    this.subscriberCache = SubscriberCache.get(vertx, config);
+    this.retention = Retention.get(vertx, config);
+    this.topicStore =
+        new PartitionedTopicStore(
+            TopicStore.create(vertx, redisClient, config, retention),
+            topic -> publisherCache.partitions(redisApi, topic));
+    this.spillLog = SpillLog.get(vertx, config);
+    this.headCache = HeadCache.get(vertx, config);
+    this.leaseTimer = new LeaseTimer(vertx, topicStore, PublishNotifier.get(vertx, config), config);
+    this.inFlightLimiter =
+        new InFlightLimiter(
+            config.getInteger(
+                ConfigConstants.ADMISSION_MAX_IN_FLIGHT,
+                ConfigConstants.DEFAULT_ADMISSION_MAX_IN_FLIGHT),
+            config.getLong(
+                ConfigConstants.ADMISSION_RETRY_AFTER_SECONDS,
+                ConfigConstants.DEFAULT_ADMISSION_RETRY_AFTER_SECONDS));
+
+    RedisScripts.preloadAll(redisApi)
+        .onFailure(throwable -> logger.warn("Failed to preload Redis scripts: " + throwable));
+  }
+
+  @Override
+  public Future<String> publisher(String topic) {
+    return publisherCache.lookup(redisApi, topic);
+  }
+
+  @Override
+  public Future<Void> register(
+      String topic, String pubId, int partitions, RetentionPolicy retentionPolicy) {
+    final String retentionJson;
+
+    try {
+      retentionJson = retentionPolicy == null ? null : MAPPER.writeValueAsString(retentionPolicy);
+    } catch (JsonProcessingException e) {
+      return Future.failedFuture(e);
+    }
+
+    // the topic settings are set first, so the topic never has a publisher without them
+    final var partitionsKey = topic + CommonConstants.PARTITIONS_SUFFIX;
+    final var retentionKey = topic + CommonConstants.RETENTION_SUFFIX;
+
+    return inFlightLimiter.admit(
+        () -> {
+          final Future<Response> partitionsSet =
+              partitions > 1
+                  ? redisApi.set(List.of(partitionsKey, String.valueOf(partitions)))
+                  : redisApi.del(List.of(partitionsKey));
+          final Future<Response> retentionSet =
+              retentionJson != null
+                  ? redisApi.set(List.of(retentionKey, retentionJson))
+                  : redisApi.del(List.of(retentionKey));
+
+          return CompositeFuture.all(partitionsSet, retentionSet)
+              .compose(val -> redisApi.sadd(List.of(CommonConstants.TOPICS_KEY, topic)))
+              .compose(
+                  val -> redisApi.set(List.of(topic + CommonConstants.PUBLISHER_SUFFIX, pubId)))
+              .onSuccess(
+                  val ->
+                      publisherCache.registered(
+                          redisApi, topic, pubId, partitions, retentionPolicy))
+              .mapEmpty();
+        });
+  }
+
+  @Override
+  public Future<String> route(String topic, String key) {
+    return topicStore.route(topic, key);
+  }
+
+  @Override
+  public Future<Long> expire(String topic, long expiredBefore, int max) {
+    return topicStore.expire(topic, expiredBefore, max);
+  }
+
+  @Override
+  public Future<Long> length(String topic) {
+    return topicStore.length(topic);
+  }
+
+  @Override
+  public Future<List<String>> nextTopics(int count) {
+    return redisApi
+        .sscan(List.of(CommonConstants.TOPICS_KEY, topicsCursor, "COUNT", String.valueOf(count)))
+        .map(
+            reply -> {
+              topicsCursor = reply.get(0).toString();
+
+              final var topics = new ArrayList<String>(reply.get(1).size());
+
+              for (var topic : reply.get(1)) {
+                topics.add(topic.toString());
+              }
+
+              return topics;
+            });
+  }
+
+  @Override
+  public Future<SubscriberInfo> subscriber(String subId) {
+    return subscriberCache.lookup(redisClient, subId);
+  }
+
+  /**
+   * The subscriber gets the next sequences of the partitions as its offsets before it's stored, the
+   * messages published from then on are visible to it
+   */
+  @Override
+  public Future<Void> subscribe(SubscriberInfo subInfo) {
+    return inFlightLimiter.admit(
+        () ->
+            topicStore
+                .nextSequences(subInfo.getTopic())
+                .compose(offsets -> store(subInfo, offsets)));
+  }
+
+  private Future<Void> store(SubscriberInfo newSubInfo, List<Long> offsets) {
+    final var subInfo =
+        new SubscriberInfo(
+            newSubInfo.getSubId(), newSubInfo.getTopic(), newSubInfo.getTs(), offsets);
+    final var ttlSeconds = subscriberCache.subscriptionTtlSeconds();
+    final List<String> args;
+
+    try {
+      final var value = MAPPER.writeValueAsString(subInfo);
+      args =
+          ttlSeconds > 0
+              ? List.of(subInfo.getSubId(), value, "EX", String.valueOf(ttlSeconds))
+              : List.of(subInfo.getSubId(), value);
+    } catch (JsonProcessingException e) {
+      return Future.failedFuture(e);
+    }
+
+    return redisApi
+        .set(args)
+        .compose(val -> topicStore.subscribe(subInfo))
+        .onSuccess(val -> subscriberCache.subscribed(subInfo));
+  }
+
+  @Override
+  public Future<Void> unsubscribe(SubscriberInfo subInfo) {
+    return inFlightLimiter.admit(
+        () ->
+            redisApi
+                .del(List.of(subInfo.getSubId()))
+                .compose(val -> topicStore.unsubscribe(subInfo))
+                .onSuccess(val -> subscriberCache.unsubscribed(redisApi, subInfo.getSubId())));
+  }
+
+  @Override
+  public Future<Long> append(String topicKey, List<Buffer> messages) {
+    if (spillLog == null) {
+      return inFlightLimiter.admit(() -> topicStore.append(topicKey, messages));
+    }
+
+    if (spillLog.shouldSpill()) {
+      return spillLog.append(topicKey, messages);
+    }
+
+    return inFlightLimiter
+        .admit(() -> topicStore.append(topicKey, messages))
+        .recover(
+            throwable -> {
+              // messages Redis refused for good aren't retried, neither the ones refused by the
+              // in-flight limit; a transient error reply, e.g. LOADING, is spilled like an outage
+              if (SpillLog.isRefused(throwable) || throwable instanceof OverloadedException) {
+                return Future.failedFuture(throwable);
+              }
+
+              redisClient.markDisconnected();
+              return spillLog.append(topicKey, messages);
+            });
+  }
+
+  @Override
+  public Future<List<Message>> peek(SubscriberInfo subInfo, int max, long maxBytes) {
+    return inFlightLimiter.admit(() -> topicStore.peek(subInfo, max, maxBytes));
+  }
+
+  @Override
+  public Future<List<Message>> read(
+      SubscriberInfo subInfo, String topicKey, long offset, int max, long maxBytes) {
+    return inFlightLimiter.admit(() -> topicStore.read(subInfo, topicKey, offset, max, maxBytes));
+  }
+
+  @Override
+  public Future<AckResult> ack(SubscriberInfo subInfo, int max, long maxBytes) {
+    return inFlightLimiter.admit(() -> topicStore.ack(subInfo, max, maxBytes));
+  }
+
+  @Override
+  public Future<AckResult> receive(SubscriberInfo subInfo, long deadline) {
+    return inFlightLimiter
+        .admit(() -> topicStore.receive(subInfo, deadline))
+        .onSuccess(
+            result -> {
+              if (result.getStatus() == AckResult.ACKED) {
+                leaseTimer.leased(result.getReceipt(), deadline);
+              }
+            });
+  }
+
+  @Override
+  public Future<AckResult> ackLease(SubscriberInfo subInfo, String receipt) {
+    return inFlightLimiter.admit(() -> topicStore.ackLease(subInfo, receipt));
+  }
+
+  @Override
+  public Future<Void> ping() {
+    return redisClient.ping().mapEmpty();
+  }
+
+  @Override
+  public Map<String, Long> counters() {
+    final var counters = new HashMap<String, Long>();
+    counters.put("subscriberCache.hits", subscriberCache.hits());
+    counters.put("subscriberCache.misses", subscriberCache.misses());
+    counters.put("admission.inFlight", (long) inFlightLimiter.inFlight());
+    counters.put("admission.rejected", inFlightLimiter.rejected());
+    counters.put("lease.pending", leaseTimer.pending());
+    counters.put("lease.requeued", leaseTimer.requeued());
+    counters.putAll(retention.counters());
+    counters.putAll(redisClient.replicaCounters());
+    counters.putAll(headCache.counters());
+
+    if (spillLog != null) {
+      counters.putAll(spillLog.counters());
+    }
+
+    return counters;
+  }
+}
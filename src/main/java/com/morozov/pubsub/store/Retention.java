@@ -0,0 +1,157 @@
+package com.morozov.pubsub.store;
+
+import com.morozov.pubsub.SharedResources;
+import com.morozov.pubsub.cache.PublisherCache;
+import com.morozov.pubsub.constants.CommonConstants;
+import com.morozov.pubsub.constants.ConfigConstants;
+import com.morozov.pubsub.model.dto.RetentionPolicy;
+import com.morozov.pubsub.redis.SharedRedisClient;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.redis.client.RedisAPI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Retention of the Redis topics. Message count and size limits are enforced by the topic stores on
+ * every append, in the same script. Age limits are enforced by a sweeper walking the registered
+ * topics in the background: every sweep only visits a few topics and trims a bounded number of
+ * messages from each, and the next sweep doesn't start before the previous one is done, so
+ * sweeping never takes more than a slice of Redis time from the request path.
+ *
+ * <p>Shared by all the verticles of the node, the sweeper runs on the context of the verticle that
+ * created it.
+ */
+public class Retention implements Shareable {
+  private static final Logger logger = LoggerFactory.getLogger(Retention.class);
+  private static final String RESOURCE_NAME = "store.retention";
+  private static final String SCAN_START = "0";
+
+  private final RedisAPI redisApi;
+  private final PublisherCache publisherCache;
+  private final int sweepTopics;
+  private final int sweepMaxMessages;
+  private final LongAdder trimmed = new LongAdder();
+  private final LongAdder expired = new LongAdder();
+  private TopicStore topicStore;
+  private String scanCursor = SCAN_START;
+  private boolean sweeping;
+
+  private Retention(RedisAPI redisApi, PublisherCache publisherCache, JsonObject config) {
+    this.redisApi = redisApi;
+    this.publisherCache = publisherCache;
+    this.sweepTopics =
+        config.getInteger(
+            ConfigConstants.RETENTION_SWEEP_TOPICS, ConfigConstants.DEFAULT_RETENTION_SWEEP_TOPICS);
+    this.sweepMaxMessages =
+        config.getInteger(
+            ConfigConstants.RETENTION_SWEEP_MAX_MESSAGES,
+            ConfigConstants.DEFAULT_RETENTION_SWEEP_MAX_MESSAGES);
+  }
+
+  /**
+   * Get the retention shared by the Vert.x instance or create it and start sweeping on the first
+   * call
+   *
+   * @param vertx Vert.x instance
+   * @param config verticle config
+   * @return shared retention
+   */
+  public static Retention get(Vertx vertx, JsonObject config) {
+    return SharedResources.get(
+        vertx,
+        RESOURCE_NAME,
+        () -> {
+          final var redisClient = SharedRedisClient.get(vertx, config);
+          final var publisherCache = PublisherCache.get(vertx, config);
+          final var retention = new Retention(redisClient.api(), publisherCache, config);
+
+          retention.topicStore =
+              new PartitionedTopicStore(
+                  TopicStore.create(vertx, redisClient, config, retention),
+                  topic -> publisherCache.partitions(redisClient.api(), topic));
+          vertx.setPeriodic(
+              config.getLong(
+                  ConfigConstants.RETENTION_SWEEP_INTERVAL_MS,
+                  ConfigConstants.DEFAULT_RETENTION_SWEEP_INTERVAL_MS),
+              timerId -> retention.sweep());
+
+          return retention;
+        });
+  }
+
+  /**
+   * Get the retention policy of a storage key
+   *
+   * @param topicKey topic or partition storage key
+   * @return policy of the topic
+   */
+  public Future<RetentionPolicy> policy(String topicKey) {
+    return publisherCache.retention(redisApi, PartitionedTopicStore.topicOf(topicKey));
+  }
+
+  /**
+   * Count messages trimmed by the count and size limits
+   *
+   * @param count trimmed messages
+   */
+  public void trimmed(long count) {
+    trimmed.add(count);
+  }
+
+  /**
+   * @return retention counters by name
+   */
+  public Map<String, Long> counters() {
+    return Map.of("retention.trimmed", trimmed.sum(), "retention.expired", expired.sum());
+  }
+
+  /** Expire the messages of the next few registered topics */
+  private void sweep() {
+    if (sweeping) {
+      return;
+    }
+
+    sweeping = true;
+
+    redisApi
+        .sscan(
+            List.of(
+                CommonConstants.TOPICS_KEY, scanCursor, "COUNT", String.valueOf(sweepTopics)))
+        .compose(
+            reply -> {
+              scanCursor = reply.get(0).toString();
+
+              final var now = System.currentTimeMillis();
+              final List<Future> expires = new ArrayList<>();
+
+              for (var topic : reply.get(1)) {
+                expires.add(expire(topic.toString(), now));
+              }
+
+              return CompositeFuture.join(expires);
+            })
+        .onFailure(throwable -> logger.warn("Retention sweep failed: " + throwable.getMessage()))
+        .onComplete(val -> sweeping = false);
+  }
+
+  private Future<Long> expire(String topic, long now) {
+    return policy(topic)
+        .compose(
+            policy -> {
+              if (policy.getMaxAgeMs() <= 0) {
+                return Future.succeededFuture(0L);
+              }
+
+              return topicStore.expire(topic, policy.expiredBefore(now), sweepMaxMessages);
+            })
+        .onSuccess(expired::add);
+  }
+}
@@ -0,0 +1,409 @@
+package com.morozov.pubsub.store;
+
+import com.morozov.pubsub.SharedResources;
+import com.morozov.pubsub.constants.ConfigConstants;
+import com.morozov.pubsub.delivery.PublishNotifier;
+import com.morozov.pubsub.redis.SharedRedisClient;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.impl.logging.Logger;
+import io.vertx.core.impl.logging.LoggerFactory;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.redis.client.impl.types.ErrorType;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Node-local log of the publishes Redis couldn't take. While Redis is down, and until everything
+ * spilled before is replayed, publishes are appended to memory-mapped segment files, which costs
+ * a memory copy instead of a network round trip. When the Redis client reconnects, the log is
+ * replayed to Redis in batches, oldest first.
+ *
+ * <p>A batch is read from one segment and grouped by topic, the topics of a batch are appended
+ * concurrently and the next batch waits for all of them, so the order of every topic is kept. The
+ * replayed position is written to the segment after every batch and fully replayed segments are
+ * deleted, so a restart replays only what's left. A batch that fails is replayed again after the
+ * next reconnect or a retry delay: the messages are delivered at least once. The messages of a
+ * topic Redis refuses for good, see {@link #isRefused}, would fail forever, they are dropped
+ * instead.
+ *
+ * <p>Shared by all the verticles of the node and locked while segments are written or read.
+ */
+public class SpillLog implements Shareable {
+  /** Topic length returned for spilled messages */
+  public static final long SPILLED = -1;
+
+  private static final Logger logger = LoggerFactory.getLogger(SpillLog.class);
+  private static final String RESOURCE_NAME = "store.spillLog";
+  private static final String SEGMENT_PREFIX = "spill-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final long REPLAY_RETRY_MS = 1000;
+  /** Source name Redis gives the scripts in the errors they raise */
+  private static final String SCRIPT_ERROR = "user_script";
+
+  private final Vertx vertx;
+  private final Path dir;
+  private final int segmentBytes;
+  private final long maxBytes;
+  private final int replayBatchMessages;
+  private final SharedRedisClient redisClient;
+  private final TopicStore topicStore;
+  private final PublishNotifier publishNotifier;
+  private final Deque<SpillSegment> segments = new ArrayDeque<>();
+  private long pendingBytes;
+  private long nextSegmentId;
+  private boolean replaying;
+  private long spilledMessages;
+  private long replayedMessages;
+  private long droppedMessages;
+
+  private SpillLog(Vertx vertx, JsonObject config, Path dir) {
+    this.vertx = vertx;
+    this.dir = dir;
+    this.segmentBytes =
+        config.getInteger(
+            ConfigConstants.SPILL_SEGMENT_BYTES, ConfigConstants.DEFAULT_SPILL_SEGMENT_BYTES);
+    this.maxBytes =
+        config.getLong(ConfigConstants.SPILL_MAX_BYTES, ConfigConstants.DEFAULT_SPILL_MAX_BYTES);
+    this.replayBatchMessages =
+        config.getInteger(
+            ConfigConstants.SPILL_REPLAY_BATCH_MESSAGES,
+            ConfigConstants.DEFAULT_SPILL_REPLAY_BATCH_MESSAGES);
+    this.redisClient = SharedRedisClient.get(vertx, config);
+    this.topicStore =
+        TopicStore.create(vertx, redisClient, config, Retention.get(vertx, config));
+    this.publishNotifier = PublishNotifier.get(vertx, config);
+  }
+
+  /**
+   * Get the spill log shared by the Vert.x instance or open it on the first call
+   *
+   * @param vertx Vert.x instance
+   * @param config verticle config
+   * @return shared spill log, null if spill.dir is not set
+   */
+  public static SpillLog get(Vertx vertx, JsonObject config) {
+    final var dir = config.getString(ConfigConstants.SPILL_DIR);
+
+    if (dir == null || dir.isEmpty()) {
+      return null;
+    }
+
+    return SharedResources.get(
+        vertx,
+        RESOURCE_NAME,
+        () -> {
+          final var spillLog = new SpillLog(vertx, config, Paths.get(dir));
+
+          try {
+            spillLog.openSegments();
+          } catch (IOException e) {
+            throw new IllegalStateException("Couldn't open the spill log in " + dir, e);
+          }
+
+          spillLog.redisClient.onConnect(val -> spillLog.replay());
+
+          if (spillLog.redisClient.isConnected()) {
+            spillLog.replay();
+          }
+
+          return spillLog;
+        });
+  }
+
+  /**
+   * Check a publish has to be spilled: Redis is down, or older publishes are not replayed yet and
+   * going straight to Redis would overtake them
+   *
+   * @return true if the publish should be spilled
+   */
+  public synchronized boolean shouldSpill() {
+    return pendingBytes > 0 || !redisClient.isConnected();
+  }
+
+  /**
+   * Append messages to the log, all of them or none
+   *
+   * @param topicKey topic or partition storage key
+   * @param messages encoded messages
+   * @return {@link #SPILLED}, failed if the log is full
+   */
+  public Future<Long> append(String topicKey, List<Buffer> messages) {
+    final var topic = topicKey.getBytes(StandardCharsets.UTF_8);
+
+    try {
+      synchronized (this) {
+        long bytes = 0;
+
+        for (var message : messages) {
+          final var recordSize = SpillSegment.recordSize(topic, message);
+
+          if (recordSize > segmentBytes - SpillSegment.HEADER_SIZE) {
+            return Future.failedFuture(
+                new IOException("Message of " + message.length() + " bytes can't be spilled"));
+          }
+
+          bytes += recordSize;
+        }
+
+        if (pendingBytes + bytes > maxBytes) {
+          return Future.failedFuture(new IOException("Spill log is full"));
+        }
+
+        for (var message : messages) {
+          writeSegment(SpillSegment.recordSize(topic, message)).append(topic, message);
+        }
+
+        pendingBytes += bytes;
+        spilledMessages += messages.size();
+      }
+    } catch (IOException e) {
+      return Future.failedFuture(e);
+    }
+
+    // Redis is back but the log was drained before this append
+    if (redisClient.isConnected()) {
+      replay();
+    }
+
+    return Future.succeededFuture(SPILLED);
+  }
+
+  /** Start replaying the log to Redis unless it's empty or already being replayed */
+  public void replay() {
+    synchronized (this) {
+      if (replaying || pendingBytes == 0) {
+        return;
+      }
+
+      replaying = true;
+    }
+
+    logger.info("Replaying " + pendingBytes() + " spilled bytes to Redis");
+    replayNext();
+  }
+
+  public synchronized long pendingBytes() {
+    return pendingBytes;
+  }
+
+  /**
+   * @return spill log counters by name
+   */
+  public synchronized Map<String, Long> counters() {
+    return Map.of(
+        "spill.pendingBytes",
+        pendingBytes,
+        "spill.segments",
+        (long) segments.size(),
+        "spill.spilledMessages",
+        spilledMessages,
+        "spill.replayedMessages",
+        replayedMessages,
+        "spill.droppedMessages",
+        droppedMessages);
+  }
+
+  private void replayNext() {
+    final var batch = new LinkedHashMap<String, List<Buffer>>();
+    final SpillSegment segment;
+    final int position;
+
+    synchronized (this) {
+      segment = readableSegment();
+
+      if (segment == null) {
+        replaying = false;
+        logger.info("Spill log replayed");
+        return;
+      }
+
+      position = segment.read(replayBatchMessages, batch);
+    }
+
+    final List<Future> appends =
+        batch.entrySet().stream()
+            .map(entry -> topicStore.append(entry.getKey(), entry.getValue()))
+            .collect(Collectors.toList());
+
+    CompositeFuture.join(appends)
+        .onComplete(
+            result -> {
+              Throwable retryCause = null;
+              long dropped = 0;
+              var index = 0;
+
+              for (var entry : batch.entrySet()) {
+                final var append = appends.get(index++);
+
+                if (append.succeeded()) {
+                  continue;
+                }
+
+                if (isRefused(append.cause())) {
+                  logger.error(
+                      "Dropped "
+                          + entry.getValue().size()
+                          + " spilled messages of "
+                          + entry.getKey()
+                          + " refused by Redis: "
+                          + append.cause().getMessage());
+                  dropped += entry.getValue().size();
+                } else {
+                  retryCause = append.cause();
+                }
+              }
+
+              if (retryCause != null) {
+                logger.warn("Failed replaying the spill log: " + retryCause.getMessage());
+
+                synchronized (this) {
+                  replaying = false;
+                }
+
+                vertx.setTimer(REPLAY_RETRY_MS, timerId -> replay());
+                return;
+              }
+
+              synchronized (this) {
+                final var segmentPendingBytes = segment.pendingBytes();
+                segment.commit(position);
+                pendingBytes -= segmentPendingBytes - segment.pendingBytes();
+                replayedMessages +=
+                    batch.values().stream().mapToInt(List::size).sum() - dropped;
+                droppedMessages += dropped;
+              }
+
+              batch.keySet().stream()
+                  .map(PartitionedTopicStore::topicOf)
+                  .distinct()
+                  .forEach(publishNotifier::published);
+              replayNext();
+            });
+  }
+
+  /**
+   * Get the oldest segment with records to replay, deleting the fully replayed ones before it
+   *
+   * @return segment or null if everything is replayed
+   */
+  private SpillSegment readableSegment() {
+    while (!segments.isEmpty()) {
+      final var segment = segments.peekFirst();
+
+      if (segment.pendingBytes() > 0) {
+        return segment;
+      }
+
+      // the last segment is kept for the next appends
+      if (segments.size() == 1) {
+        return null;
+      }
+
+      segments.pollFirst();
+
+      try {
+        segment.delete();
+      } catch (IOException e) {
+        logger.warn("Failed deleting a spill segment: " + e.getMessage());
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Get the segment to append a record to, rotating to a new one if it doesn't fit
+   *
+   * @param recordSize record size
+   * @return segment
+   * @throws IOException if a new segment can't be created
+   */
+  private SpillSegment writeSegment(int recordSize) throws IOException {
+    final var last = segments.peekLast();
+
+    if (last != null && last.fits(recordSize)) {
+      return last;
+    }
+
+    // a full segment is only read from now on, its records are flushed once
+    if (last != null) {
+      last.force();
+    }
+
+    final var id = nextSegmentId++;
+    final var segment =
+        SpillSegment.create(
+            dir.resolve(SEGMENT_PREFIX + String.format("%020d", id) + SEGMENT_SUFFIX),
+            segmentBytes);
+    segments.addLast(segment);
+
+    return segment;
+  }
+
+  /** Open the segments left by a previous run in the id order */
+  private void openSegments() throws IOException {
+    Files.createDirectories(dir);
+
+    final List<Path> paths;
+
+    try (var files = Files.list(dir)) {
+      paths =
+          files
+              .filter(path -> isSegment(path.getFileName().toString()))
+              .sorted()
+              .collect(Collectors.toList());
+    }
+
+    for (var path : paths) {
+      final var name = path.getFileName().toString();
+      final var id =
+          Long.parseLong(
+              name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+      final var segment = SpillSegment.open(path);
+
+      segments.addLast(segment);
+      pendingBytes += segment.pendingBytes();
+      nextSegmentId = id + 1;
+    }
+
+    if (pendingBytes > 0) {
+      logger.info("Found " + pendingBytes + " spilled bytes to replay");
+    }
+  }
+
+  /**
+   * Whether Redis refused messages for good: a WRONGTYPE key, or an error the append script raised
+   * on the messages. The other error replies, OOM, LOADING, READONLY, BUSY, CLUSTERDOWN,
+   * TRYAGAIN..., go away with the outage, the messages they failed are spilled or replayed again.
+   *
+   * @param throwable append failure
+   * @return true if appending the same messages again fails the same way
+   */
+  static boolean isRefused(Throwable throwable) {
+    if (!(throwable instanceof ErrorType)) {
+      return false;
+    }
+
+    final var error = (ErrorType) throwable;
+
+    return error.is("WRONGTYPE")
+        || (error.is("ERR") && String.valueOf(error.getMessage()).contains(SCRIPT_ERROR));
+  }
+
+  private static boolean isSegment(String name) {
+    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+  }
+}
@@ -0,0 +1,190 @@
+package com.morozov.pubsub.store;
+
+import io.vertx.core.buffer.Buffer;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memory-mapped file of the spill log: the read position followed by the records
+ *
+ * <pre>
+ * | read position int64 | topic length int32 | topic | message length int32 | message | ...
+ * </pre>
+ *
+ * <p>The file is mapped at its full size up front and is zero-filled, so a 0 topic length marks
+ * the end of the records. The topic length of a record is written last, a record torn by a crash
+ * is never read. Not thread-safe, the owner synchronizes the access.
+ */
+class SpillSegment {
+  static final int HEADER_SIZE = 8;
+  private static final int RECORD_OVERHEAD = 8;
+
+  private final Path path;
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  private int readPosition;
+  private int writePosition;
+
+  private SpillSegment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+    this.path = path;
+    this.channel = channel;
+    this.buffer = buffer;
+  }
+
+  /**
+   * Create an empty segment file
+   *
+   * @param path segment file
+   * @param size file size
+   * @return segment
+   * @throws IOException if the file can't be created or mapped
+   */
+  static SpillSegment create(Path path, int size) throws IOException {
+    final var channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    final var segment =
+        new SpillSegment(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    segment.readPosition = HEADER_SIZE;
+    segment.writePosition = HEADER_SIZE;
+    segment.buffer.putLong(0, HEADER_SIZE);
+
+    return segment;
+  }
+
+  /**
+   * Open a segment left by a previous run, finding the end of its records
+   *
+   * @param path segment file
+   * @return segment
+   * @throws IOException if the file can't be mapped
+   */
+  static SpillSegment open(Path path) throws IOException {
+    final var channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    final var segment =
+        new SpillSegment(
+            path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+    segment.readPosition = (int) Math.max(HEADER_SIZE, segment.buffer.getLong(0));
+
+    var position = HEADER_SIZE;
+
+    while (segment.recordAt(position)) {
+      position = segment.nextRecord(position);
+    }
+
+    segment.writePosition = position;
+    return segment;
+  }
+
+  /**
+   * @param topic topic UTF-8 bytes
+   * @param message encoded message
+   * @return record size
+   */
+  static int recordSize(byte[] topic, Buffer message) {
+    return RECORD_OVERHEAD + topic.length + message.length();
+  }
+
+  /**
+   * @param recordSize record size
+   * @return true if the record fits after the last one
+   */
+  boolean fits(int recordSize) {
+    return writePosition + recordSize <= buffer.capacity();
+  }
+
+  /**
+   * Write a record after the last one, the caller checks it fits
+   *
+   * @param topic topic UTF-8 bytes
+   * @param message encoded message
+   */
+  void append(byte[] topic, Buffer message) {
+    final var record = buffer.duplicate();
+    record.position(writePosition + 4);
+    record.put(topic);
+    record.putInt(message.length());
+    record.put(message.getBytes());
+
+    // the topic length completes the record
+    buffer.putInt(writePosition, topic.length);
+    writePosition = record.position();
+  }
+
+  /**
+   * Read the records after the read position, grouped by topic in the record order
+   *
+   * @param maxRecords max records to read
+   * @param batch topic to messages map to add the records to
+   * @return position after the last read record, to be committed once the batch is replayed
+   */
+  int read(int maxRecords, Map<String, List<Buffer>> batch) {
+    var position = readPosition;
+
+    for (int i = 0; i < maxRecords && position < writePosition; i++) {
+      final var topicLength = buffer.getInt(position);
+      final var topic = new byte[topicLength];
+      final var record = buffer.duplicate();
+      record.position(position + 4);
+      record.get(topic);
+
+      final var message = new byte[record.getInt()];
+      record.get(message);
+
+      batch
+          .computeIfAbsent(new String(topic, StandardCharsets.UTF_8), key -> new ArrayList<>())
+          .add(Buffer.buffer(message));
+      position = record.position();
+    }
+
+    return position;
+  }
+
+  /**
+   * Mark the records up to the position replayed
+   *
+   * @param position position returned by a read
+   */
+  void commit(int position) {
+    buffer.putLong(0, position);
+    readPosition = position;
+  }
+
+  /**
+   * @return bytes of the records not replayed yet
+   */
+  int pendingBytes() {
+    return writePosition - readPosition;
+  }
+
+  /** Unmap the file and delete it */
+  void delete() throws IOException {
+    channel.close();
+    Files.deleteIfExists(path);
+  }
+
+  /** Flush the written records and the read position to the file */
+  void force() {
+    buffer.force();
+  }
+
+  private boolean recordAt(int position) {
+    return position + 4 <= buffer.capacity() && buffer.getInt(position) > 0;
+  }
+
+  private int nextRecord(int position) {
+    final var messagePosition = position + 4 + buffer.getInt(position);
+    return messagePosition + 4 + buffer.getInt(messagePosition);
+  }
+}
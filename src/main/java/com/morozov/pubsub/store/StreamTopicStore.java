@@ -0,0 +1,131 @@
+package com.morozov.pubsub.store;
+
+import com.morozov.pubsub.constants.CommonConstants;
+import com.morozov.pubsub.model.dto.Message;
+import com.morozov.pubsub.model.dto.SubscriberInfo;
+import com.morozov.pubsub.redis.RedisScripts;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.redis.client.Redis;
+import io.vertx.redis.client.RedisAPI;
+import io.vertx.redis.client.Response;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Topic stored as a Redis stream. Every subscription is a consumer group created at the end of the
+ * stream, so each subscriber has its own offset: all the subscribers get every message published
+ * after they subscribed, and acks of one subscriber don't affect the others.
+ *
+ * <p>Entries trimmed by the retention are removed from the stream even if some groups haven't
+ * acked them, those groups skip them. The stream size in bytes is kept under the
+ * {%topic%-stream}-bytes key.
+ *
+ * <p>The group name is the subscriber id. The message handed out by peek stays in the group
+ * pending list until it's acked, so repeated peeks return the same message.
+ */
+public class StreamTopicStore implements TopicStore {
+  private final Redis redis;
+  private final RedisAPI redisApi;
+  private final Retention retention;
+
+  public StreamTopicStore(Redis redis, RedisAPI redisApi, Retention retention) {
+    this.redis = redis;
+    this.redisApi = redisApi;
+    this.retention = retention;
+  }
+
+  public static String streamKey(String topic) {
+    return topic + CommonConstants.STREAM_SUFFIX;
+  }
+
+  @Override
+  public Future<Long> append(String topic, List<Buffer> messages) {
+    final var keys = List.of(streamKey(topic), ListTopicStore.bytesKey(streamKey(topic)));
+
+    return retention
+        .policy(topic)
+        .compose(
+            policy -> {
+              final var args = new ArrayList<Buffer>(messages.size() + 2);
+              args.add(Buffer.buffer(String.valueOf(policy.getMaxMessages())));
+              args.add(Buffer.buffer(String.valueOf(policy.getMaxBytes())));
+              args.addAll(messages);
+
+              return RedisScripts.STREAM_APPEND.evalBinary(redis, keys, args);
+            })
+        .map(
+            reply -> {
+              retention.trimmed(reply.get(1).toLong());
+              return reply.get(0).toLong();
+            });
+  }
+
+  @Override
+  public Future<Long> expire(String topic, long expiredBefore, int max) {
+    return RedisScripts.STREAM_EXPIRE
+        .eval(
+            redisApi,
+            List.of(streamKey(topic), ListTopicStore.bytesKey(streamKey(topic))),
+            List.of(String.valueOf(expiredBefore), String.valueOf(max)))
+        .map(Response::toLong);
+  }
+
+  @Override
+  public Future<Long> length(String topic) {
+    return redisApi.xlen(streamKey(topic)).map(Response::toLong);
+  }
+
+  @Override
+  public Future<Void> subscribe(SubscriberInfo subInfo) {
+    return redisApi
+        .xgroup(
+            List.of("CREATE", streamKey(subInfo.getTopic()), subInfo.getSubId(), "$", "MKSTREAM"))
+        .mapEmpty();
+  }
+
+  @Override
+  public Future<Void> unsubscribe(SubscriberInfo subInfo) {
+    return redisApi
+        .xgroup(List.of("DESTROY", streamKey(subInfo.getTopic()), subInfo.getSubId()))
+        .mapEmpty();
+  }
+
+  @Override
+  public Future<List<Message>> peek(SubscriberInfo subInfo, int max, long maxBytes) {
+    return RedisScripts.STREAM_PEEK
+        .eval(
+            redisApi,
+            List.of(streamKey(subInfo.getTopic())),
+            List.of(subInfo.getSubId(), String.valueOf(max), String.valueOf(maxBytes)))
+        .compose(
+            encodedMessages -> {
+              final var messages = new ArrayList<Message>();
+
+              if (encodedMessages == null) {
+                return Future.succeededFuture(messages);
+              }
+
+              try {
+                for (var encoded : encodedMessages) {
+                  messages.add(MessageCodec.decode(encoded.toBuffer()));
+                }
+
+                return Future.succeededFuture(messages);
+              } catch (IOException e) {
+                return Future.failedFuture(e);
+              }
+            });
+  }
+
+  @Override
+  public Future<AckResult> ack(SubscriberInfo subInfo, int max, long maxBytes) {
+    return RedisScripts.STREAM_ACK
+        .eval(
+            redisApi,
+            List.of(streamKey(subInfo.getTopic())),
+            List.of(subInfo.getSubId(), String.valueOf(max), String.valueOf(maxBytes)))
+        .compose(AckResult::fromReply);
+  }
+}
@@ -0,0 +1,110 @@
+package com.morozov.pubsub.store;
+
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel: a ring of buckets, one per tick, every deadline hashed into the bucket of its
+ * tick. Scheduling is constant time and an advance only visits the buckets of the ticks that went
+ * by, whatever the number of pending deadlines. A deadline more than a turn of the wheel away sits
+ * in its bucket for the extra turns.
+ *
+ * <p>Every deadline costs one small node in a singly linked bucket list and nothing else: no timer,
+ * no task. A deadline is never fired early, and late by a tick at most when advanced every tick.
+ *
+ * <p>Not thread-safe, driven by its owner calling {@link #advance}.
+ */
+class TimerWheel<T> {
+  private final long tickMs;
+  private final Node<T>[] buckets;
+  private final int mask;
+  /** Next tick to visit */
+  private long tick;
+  private int size;
+
+  /**
+   * @param wheelSize buckets, rounded up to a power of two
+   * @param tickMs tick duration in milliseconds
+   * @param nowMs current time in milliseconds
+   */
+  @SuppressWarnings("unchecked")
+  TimerWheel(int wheelSize, long tickMs, long nowMs) {
+    final var buckets = Integer.highestOneBit(Math.max(wheelSize - 1, 1)) << 1;
+
+    this.tickMs = tickMs;
+    this.buckets = (Node<T>[]) new Node[buckets];
+    this.mask = buckets - 1;
+    this.tick = nowMs / tickMs;
+  }
+
+  /**
+   * Schedule an item
+   *
+   * @param deadlineMs time to fire the item at, in milliseconds
+   * @param item item
+   */
+  void schedule(long deadlineMs, T item) {
+    // rounded up: fired at the first advance past the deadline, not in the tick before it
+    final var deadlineTick = Math.max(Math.floorDiv(deadlineMs + tickMs - 1, tickMs), tick);
+    final var index = (int) (deadlineTick & mask);
+
+    buckets[index] = new Node<>(deadlineTick, item, buckets[index]);
+    size++;
+  }
+
+  /**
+   * Fire the items due by a time, in no particular order
+   *
+   * @param nowMs current time in milliseconds
+   * @param fired handler of the fired items
+   */
+  void advance(long nowMs, Consumer<T> fired) {
+    final var nowTick = nowMs / tickMs;
+
+    if (nowTick < tick) {
+      return;
+    }
+
+    // after a stall longer than a turn, every bucket is visited once
+    final var ticks = Math.min(nowTick - tick + 1, buckets.length);
+    final var from = tick;
+    // moved first: an item scheduled by the handler goes to a bucket ahead
+    tick = nowTick + 1;
+
+    for (long i = 0; i < ticks; i++) {
+      final var index = (int) ((from + i) & mask);
+      var node = buckets[index];
+      buckets[index] = null;
+
+      while (node != null) {
+        final var next = node.next;
+
+        if (node.tick <= nowTick) {
+          size--;
+          fired.accept(node.item);
+        } else {
+          node.next = buckets[index];
+          buckets[index] = node;
+        }
+
+        node = next;
+      }
+    }
+  }
+
+  /** @return pending items */
+  int size() {
+    return size;
+  }
+
+  private static class Node<T> {
+    private final long tick;
+    private final T item;
+    private Node<T> next;
+
+    private Node(long tick, T item, Node<T> next) {
+      this.tick = tick;
+      this.item = item;
+      this.next = next;
+    }
+  }
+}
@@ -0,0 +1,329 @@
+package com.morozov.pubsub.store;
+
+import io.vertx.core.buffer.Buffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded ring of the encoded messages of a topic, with a read cursor per subscriber.
+ *
+ * <p>The messages are numbered by a sequence. Their bytes are kept back to back in one byte array
+ * used as a ring, and the offset and length of every message in int arrays indexed by the
+ * sequence, so the ring costs no object per message. The arrays start small and grow up to the
+ * limits. A subscriber cursor starts at the end of the ring, so a subscriber only gets the
+ * messages published after it subscribed. Messages are released as soon as every cursor is past
+ * them; when the ring is full or its oldest message is expired, the message is dropped even if a
+ * lagging subscriber hasn't read it yet, and that subscriber skips to the oldest kept message.
+ *
+ * <p>Not thread-safe, the owner synchronizes on the ring.
+ */
+class TopicRing {
+  private static final int INITIAL_SLOTS = 16;
+  private static final int INITIAL_BYTES = 4096;
+
+  private final Map<String, Long> cursors = new HashMap<>();
+
+  private int maxMessages;
+  private int maxBytes;
+  private int[] offsets = new int[INITIAL_SLOTS];
+  private int[] lengths = new int[INITIAL_SLOTS];
+  private byte[] data;
+  /** Sequence of the oldest kept message */
+  private long head;
+  /** Sequence of the next message */
+  private long tail;
+  private int dataTail;
+  private int usedBytes;
+  private long dropped;
+
+  /**
+   * @param maxMessages max kept messages
+   * @param maxBytes max total size of the kept messages
+   */
+  TopicRing(int maxMessages, int maxBytes) {
+    this.maxMessages = maxMessages;
+    this.maxBytes = maxBytes;
+    this.data = new byte[Math.min(INITIAL_BYTES, maxBytes)];
+  }
+
+  /**
+   * Append messages, unless nobody is subscribed: they would never be visible to anyone
+   *
+   * @param messages encoded messages
+   * @return kept messages after the append
+   * @throws IllegalArgumentException if a message is larger than the ring
+   */
+  long append(List<Buffer> messages) {
+    for (var message : messages) {
+      if (message.length() > maxBytes) {
+        throw new IllegalArgumentException(
+            "Message of " + message.length() + " bytes doesn't fit a topic of " + maxBytes);
+      }
+    }
+
+    if (cursors.isEmpty()) {
+      tail += messages.size();
+      head = tail;
+      return 0;
+    }
+
+    for (var message : messages) {
+      append(message);
+    }
+
+    return tail - head;
+  }
+
+  /**
+   * Change the limits, dropping the oldest messages over the new ones
+   *
+   * @param maxMessages max kept messages
+   * @param maxBytes max total size of the kept messages
+   */
+  void limit(int maxMessages, int maxBytes) {
+    this.maxMessages = maxMessages;
+    this.maxBytes = maxBytes;
+
+    while (head < tail && (tail - head > maxMessages || usedBytes > maxBytes)) {
+      removeHead();
+      dropped++;
+    }
+  }
+
+  /**
+   * Drop the oldest messages published before a time, even if a lagging subscriber hasn't read
+   * them
+   *
+   * @param expiredBefore publish time the kept messages are not older than
+   * @param max max number of dropped messages
+   * @return dropped messages
+   */
+  long expire(long expiredBefore, int max) {
+    long expired = 0;
+
+    while (head < tail && expired < max && ts(slot(head)) < expiredBefore) {
+      removeHead();
+      expired++;
+    }
+
+    return expired;
+  }
+
+  /**
+   * Start a cursor at the end of the ring
+   *
+   * @param subId subscriber id
+   */
+  void subscribe(String subId) {
+    cursors.putIfAbsent(subId, tail);
+  }
+
+  /**
+   * Remove the cursor and release the messages nobody else needs
+   *
+   * @param subId subscriber id
+   */
+  void unsubscribe(String subId) {
+    if (cursors.remove(subId) != null) {
+      release();
+    }
+  }
+
+  /**
+   * Read the next messages of the subscriber, the first one is read even if it's larger than max
+   * bytes
+   *
+   * @param subId subscriber id
+   * @param max max number of messages
+   * @param maxBytes max total size
+   * @return encoded messages, empty if there is nothing or the subscriber is unknown
+   */
+  List<Buffer> peek(String subId, int max, long maxBytes) {
+    final var cursor = cursors.get(subId);
+
+    if (cursor == null) {
+      return List.of();
+    }
+
+    final var messages = new ArrayList<Buffer>();
+    long bytes = 0;
+
+    for (long seq = Math.max(cursor, head); seq < tail && messages.size() < max; seq++) {
+      final var slot = slot(seq);
+      bytes += lengths[slot];
+
+      if (!messages.isEmpty() && bytes > maxBytes) {
+        break;
+      }
+
+      messages.add(read(slot));
+    }
+
+    return messages;
+  }
+
+  /**
+   * Read the next messages of the subscriber, the same range a peek returns, and move its cursor
+   * past them
+   *
+   * @param subId subscriber id
+   * @param max max number of messages
+   * @param maxBytes max total size
+   * @return encoded messages, empty if there is nothing or the subscriber is unknown
+   */
+  List<Buffer> ack(String subId, int max, long maxBytes) {
+    final var messages = peek(subId, max, maxBytes);
+
+    if (!messages.isEmpty()) {
+      cursors.put(subId, Math.max(cursors.get(subId), head) + messages.size());
+      release();
+    }
+
+    return messages;
+  }
+
+  long size() {
+    return tail - head;
+  }
+
+  long bytes() {
+    return usedBytes;
+  }
+
+  /**
+   * @return messages dropped by a full ring before every subscriber read them
+   */
+  long dropped() {
+    return dropped;
+  }
+
+  boolean hasSubscribers() {
+    return !cursors.isEmpty();
+  }
+
+  private void append(Buffer message) {
+    final var length = message.length();
+
+    while (tail - head >= maxMessages || usedBytes + length > maxBytes) {
+      removeHead();
+      dropped++;
+    }
+
+    if (tail - head == offsets.length) {
+      growSlots();
+    }
+
+    if (usedBytes + length > data.length) {
+      growData(usedBytes + length);
+    }
+
+    if (usedBytes == 0) {
+      dataTail = 0;
+    }
+
+    final var slot = slot(tail);
+    offsets[slot] = dataTail;
+    lengths[slot] = length;
+
+    final var firstPart = Math.min(length, data.length - dataTail);
+    message.getBytes(0, firstPart, data, dataTail);
+    message.getBytes(firstPart, length, data, 0);
+
+    dataTail = (dataTail + length) % data.length;
+    usedBytes += length;
+    tail++;
+  }
+
+  private Buffer read(int slot) {
+    final var offset = offsets[slot];
+    final var length = lengths[slot];
+    final var bytes = new byte[length];
+    final var firstPart = Math.min(length, data.length - offset);
+
+    System.arraycopy(data, offset, bytes, 0, firstPart);
+    System.arraycopy(data, 0, bytes, firstPart, length - firstPart);
+
+    return Buffer.buffer(bytes);
+  }
+
+  /** Release the messages every cursor is past */
+  private void release() {
+    long minCursor = tail;
+
+    for (var cursor : cursors.values()) {
+      minCursor = Math.min(minCursor, cursor);
+    }
+
+    while (head < minCursor) {
+      removeHead();
+    }
+  }
+
+  private void removeHead() {
+    final var slot = slot(head);
+    usedBytes -= lengths[slot];
+    head++;
+  }
+
+  /**
+   * Read the publish time from the header of the encoded message, which may wrap around the ring
+   *
+   * @param slot message slot
+   * @return publish timestamp
+   */
+  private long ts(int slot) {
+    long ts = 0;
+
+    for (int i = 0; i < Long.BYTES; i++) {
+      ts = (ts << 8) | (data[(offsets[slot] + MessageCodec.TS_OFFSET + i) % data.length] & 0xff);
+    }
+
+    return ts;
+  }
+
+  private int slot(long seq) {
+    // the slot arrays length is a power of two
+    return (int) (seq & (offsets.length - 1));
+  }
+
+  private void growSlots() {
+    final var newOffsets = new int[offsets.length * 2];
+    final var newLengths = new int[lengths.length * 2];
+
+    for (long seq = head; seq < tail; seq++) {
+      final var newSlot = (int) (seq & (newOffsets.length - 1));
+      newOffsets[newSlot] = offsets[slot(seq)];
+      newLengths[newSlot] = lengths[slot(seq)];
+    }
+
+    offsets = newOffsets;
+    lengths = newLengths;
+  }
+
+  /**
+   * Grow the byte ring, moving the kept messages back to back to its start
+   *
+   * @param required min size
+   */
+  private void growData(int required) {
+    final var newData =
+        new byte[(int) Math.min(maxBytes, Math.max(required, (long) data.length * 2))];
+    var position = 0;
+
+    for (long seq = head; seq < tail; seq++) {
+      final var slot = slot(seq);
+      final var length = lengths[slot];
+      final var firstPart = Math.min(length, data.length - offsets[slot]);
+
+      System.arraycopy(data, offsets[slot], newData, position, firstPart);
+      System.arraycopy(data, 0, newData, position + firstPart, length - firstPart);
+      offsets[slot] = position;
+      position += length;
+    }
+
+    data = newData;
+    dataTail = position % data.length;
+  }
+}
@@ -0,0 +1,194 @@
+package com.morozov.pubsub.store;
+
+import com.morozov.pubsub.constants.ConfigConstants;
+import com.morozov.pubsub.model.dto.Message;
+import com.morozov.pubsub.model.dto.SubscriberInfo;
+import com.morozov.pubsub.redis.SharedRedisClient;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import java.util.List;
+
+/** Storage of the topic messages */
+public interface TopicStore {
+  String LIST_ENGINE = "list";
+  String STREAM_ENGINE = "stream";
+
+  /**
+   * Create the store selected by the storage.engine config
+   *
+   * @param vertx Vert.x instance
+   * @param redisClient Redis client
+   * @param config verticle config
+   * @param retention retention of the topics
+   * @return topic store
+   */
+  static TopicStore create(
+      Vertx vertx, SharedRedisClient redisClient, JsonObject config, Retention retention) {
+    final var engine = config.getString(ConfigConstants.STORAGE_ENGINE, LIST_ENGINE);
+
+    switch (engine) {
+      case LIST_ENGINE:
+        return new ListTopicStore(redisClient, retention, HeadCache.get(vertx, config));
+      case STREAM_ENGINE:
+        return new StreamTopicStore(redisClient.redis(), redisClient.api(), retention);
+      default:
+        throw new IllegalArgumentException("Unknown storage engine " + engine);
+    }
+  }
+
+  /**
+   * Append encoded messages to the topic, keeping their order, and trim the oldest messages over
+   * the retention limits of the topic
+   *
+   * @param topic topic
+   * @param messages encoded messages
+   * @return topic length after the append
+   */
+  Future<Long> append(String topic, List<Buffer> messages);
+
+  /**
+   * Trim the oldest messages published before a time
+   *
+   * @param topic topic
+   * @param expiredBefore publish time the kept messages are not older than
+   * @param max max messages to trim
+   * @return trimmed messages
+   */
+  Future<Long> expire(String topic, long expiredBefore, int max);
+
+  /**
+   * Count the messages kept in the topic
+   *
+   * @param topic topic
+   * @return topic length
+   */
+  Future<Long> length(String topic);
+
+  /**
+   * Get the sequence the next message appended to a storage key will get
+   *
+   * @param topicKey topic or partition storage key
+   * @return next sequence, null if the store doesn't sequence messages
+   */
+  default Future<Long> nextSequence(String topicKey) {
+    return Future.succeededFuture(null);
+  }
+
+  /**
+   * Prepare the storage for a new subscriber
+   *
+   * @param subInfo subscriber info
+   * @return completion
+   */
+  Future<Void> subscribe(SubscriberInfo subInfo);
+
+  /**
+   * Release the storage of a removed subscriber
+   *
+   * @param subInfo subscriber info
+   * @return completion
+   */
+  Future<Void> unsubscribe(SubscriberInfo subInfo);
+
+  /**
+   * Get the next messages for the subscriber without taking them out. The first message is
+   * returned even if it's larger than max bytes.
+   *
+   * @param subInfo subscriber info
+   * @param max max number of messages
+   * @param maxBytes max total size of the encoded messages
+   * @return messages in the topic order, empty if there is nothing for the subscriber
+   */
+  Future<List<Message>> peek(SubscriberInfo subInfo, int max, long maxBytes);
+
+  /**
+   * Get the next message for the subscriber without taking it out
+   *
+   * @param subInfo subscriber info
+   * @return message or null if there is nothing for the subscriber
+   */
+  default Future<Message> peek(SubscriberInfo subInfo) {
+    return peek(subInfo, 1, Long.MAX_VALUE)
+        .map(messages -> messages.isEmpty() ? null : messages.get(0));
+  }
+
+  /**
+   * Get the messages of a storage key from a topic sequence on without taking them out, nor
+   * stopping at the messages other subscribers haven't acked yet. The messages before the offsets
+   * of the subscriber are skipped. The first message is returned even if it's larger than max
+   * bytes. Only the list engine sequences messages.
+   *
+   * @param subInfo subscriber info
+   * @param topicKey topic or partition storage key
+   * @param offset first sequence to read
+   * @param max max number of messages
+   * @param maxBytes max total size of the encoded messages
+   * @return messages in the sequence order, empty if there is none from the offset on
+   */
+  default Future<List<Message>> read(
+      SubscriberInfo subInfo, String topicKey, long offset, int max, long maxBytes) {
+    return Future.failedFuture(
+        new UnsupportedOperationException("Offset reads need the list engine"));
+  }
+
+  /**
+   * Atomically take the next messages out for the subscriber, the same range a peek with the same
+   * limits returns. The subscriber is checked by the caller: the scripts get the subscription as
+   * arguments, a %subId% key may be in another Redis Cluster slot than the topic keys.
+   *
+   * @param subInfo subscriber info
+   * @param max max number of messages
+   * @param maxBytes max total size of the encoded messages
+   * @return ack result
+   */
+  Future<AckResult> ack(SubscriberInfo subInfo, int max, long maxBytes);
+
+  /**
+   * Atomically take the next message out for the subscriber
+   *
+   * @param subInfo subscriber info
+   * @return ack result
+   */
+  default Future<AckResult> ack(SubscriberInfo subInfo) {
+    return ack(subInfo, 1, Long.MAX_VALUE);
+  }
+
+  /**
+   * Atomically take the next message out for the subscriber under a lease: the message is kept in
+   * flight until it's acked with the receipt of the lease, or put back at the head of the topic
+   * once the lease expires. Only the list engine supports leases.
+   *
+   * @param subInfo subscriber info
+   * @param deadline time the lease expires at, in epoch milliseconds
+   * @return ack result with the leased message and the receipt of the lease
+   */
+  default Future<AckResult> receive(SubscriberInfo subInfo, long deadline) {
+    return Future.failedFuture(new UnsupportedOperationException("Leases need the list engine"));
+  }
+
+  /**
+   * Atomically drop the message of a lease of the subscriber topic
+   *
+   * @param subInfo subscriber info
+   * @param receipt receipt of the lease
+   * @return ack result with the acked message, {@link AckResult#UNKNOWN_LEASE} if the lease is
+   *     unknown or its message was put back
+   */
+  default Future<AckResult> ackLease(SubscriberInfo subInfo, String receipt) {
+    return Future.failedFuture(new UnsupportedOperationException("Leases need the list engine"));
+  }
+
+  /**
+   * Put the messages of the expired leases back at the head of the topic
+   *
+   * @param topicKey topic or partition storage key
+   * @param now current time in epoch milliseconds
+   * @param max max leases to expire
+   * @return expired leases
+   */
+  default Future<Long> requeue(String topicKey, long now, int max) {
+    return Future.failedFuture(new UnsupportedOperationException("Leases need the list engine"));
+  }
+}
@@ -0,0 +1,62 @@
+-- Atomically ack a range from the head of a topic for a subscriber
+-- KEYS[1] topic or partition list, KEYS[2] list size in bytes, ARGV[1] max messages,
+-- ARGV[2] max bytes, ARGV[3] subscription timestamp, ARGV[4] first sequence of the list visible to
+-- the subscriber, empty if it has none
+-- Returns {status} or {status, popped messages...}: 1 popped, 2 nothing to ack
+-- Publish timestamp of a message: read from the binary envelope header, version byte 1 or 2
+-- followed by the flags byte and an int64 big-endian timestamp, or decoded from a legacy JSON
+-- message
+local function messageTs(encoded)
+  local version = string.byte(encoded, 1)
+
+  if version == 1 or version == 2 then
+    return (struct.unpack('>i8', encoded, 3))
+  end
+
+  return tonumber(cjson.decode(encoded)['ts'])
+end
+
+-- Whether a message was published after the subscription: by sequence if both the message and the
+-- subscriber have one for the list, by timestamp for the ones stored before the sequences
+local function isVisible(subscribedTs, offset, encoded)
+  if string.byte(encoded, 1) == 2 and offset then
+    return (struct.unpack('>i8', encoded, 11)) >= offset
+  end
+
+  return subscribedTs <= messageTs(encoded)
+end
+
+local max = tonumber(ARGV[1])
+local maxBytes = tonumber(ARGV[2])
+local subscribedTs = tonumber(ARGV[3])
+local offset = tonumber(ARGV[4])
+local range = redis.call('LRANGE', KEYS[1], 0, max - 1)
+local result = {1}
+local bytes = 0
+
+for i, encoded in ipairs(range) do
+  -- messages published before the subscription are not visible to the subscriber
+  if not isVisible(subscribedTs, offset, encoded) then
+    break
+  end
+
+  -- the first message is taken even if it's larger than max bytes
+  if i > 1 and bytes + #encoded > maxBytes then
+    break
+  end
+
+  bytes = bytes + #encoded
+  result[#result + 1] = encoded
+end
+
+if #result == 1 then
+  return {2}
+end
+
+redis.call('LTRIM', KEYS[1], #result - 1, -1)
+
+if redis.call('DECRBY', KEYS[2], bytes) < 0 then
+  redis.call('SET', KEYS[2], 0)
+end
+
+return result
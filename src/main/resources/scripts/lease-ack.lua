@@ -0,0 +1,13 @@
+-- Ack a leased message of a topic list: drop it from the in-flight messages
+-- KEYS[1] in-flight messages by lease id, KEYS[2] lease ids by deadline, ARGV[1] lease id
+-- Returns {status} or {status, acked message}:
+--   1 acked, 3 unknown lease, or expired and put back in the list
+local encoded = redis.call('HGET', KEYS[1], ARGV[1])
+if not encoded then
+  return {3}
+end
+
+redis.call('HDEL', KEYS[1], ARGV[1])
+redis.call('ZREM', KEYS[2], ARGV[1])
+
+return {1, encoded}
@@ -0,0 +1,27 @@
+-- Put the messages of the expired leases back at the head of a topic list
+-- KEYS[1] topic or partition list, KEYS[2] its size in bytes, KEYS[3] in-flight messages by
+-- lease id, KEYS[4] lease ids by deadline, ARGV[1] current time, ARGV[2] max leases to expire
+-- Returns the number of expired leases
+local expired = redis.call('ZRANGEBYSCORE', KEYS[4], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[2]))
+local bytes = 0
+
+-- the oldest expired lease ends up at the head, ahead of the messages never delivered
+for i = #expired, 1, -1 do
+  local encoded = redis.call('HGET', KEYS[3], expired[i])
+
+  if encoded then
+    redis.call('LPUSH', KEYS[1], encoded)
+    bytes = bytes + #encoded
+  end
+end
+
+if #expired > 0 then
+  redis.call('HDEL', KEYS[3], unpack(expired))
+  redis.call('ZREM', KEYS[4], unpack(expired))
+end
+
+if bytes > 0 then
+  redis.call('INCRBY', KEYS[2], bytes)
+end
+
+return #expired
@@ -0,0 +1,52 @@
+-- Append messages to a topic list in order, each with the next sequence of the list, then trim its
+-- head down to the retention limits
+-- KEYS[1] topic or partition list, KEYS[2] its size in bytes, KEYS[3] its last sequence,
+-- ARGV[1] max messages, ARGV[2] max bytes (0 for unlimited), ARGV[3..] encoded messages
+-- Returns {list length, trimmed messages}
+local maxMessages = tonumber(ARGV[1])
+local maxBytes = tonumber(ARGV[2])
+local length = 0
+local bytes = 0
+local seq = redis.call('INCRBY', KEYS[3], #ARGV - 2) - (#ARGV - 2)
+
+for i = 3, #ARGV do
+  local encoded = ARGV[i]
+  seq = seq + 1
+
+  -- a version 1 envelope becomes a version 2 one, the sequence is inserted after the timestamp
+  if string.byte(encoded, 1) == 1 then
+    local header = '\2' .. string.sub(encoded, 2, 10)
+    encoded = header .. struct.pack('>i8', seq) .. string.sub(encoded, 11)
+  end
+
+  length = redis.call('RPUSH', KEYS[1], encoded)
+  bytes = bytes + #encoded
+end
+
+bytes = redis.call('INCRBY', KEYS[2], bytes)
+
+local trimmed = 0
+
+if maxMessages > 0 and length > maxMessages then
+  -- popped one by one to keep the byte size exact
+  while length > maxMessages do
+    bytes = bytes - #redis.call('LPOP', KEYS[1])
+    length = length - 1
+    trimmed = trimmed + 1
+  end
+end
+
+if maxBytes > 0 then
+  -- the newest message is kept even if it's larger than max bytes
+  while bytes > maxBytes and length > 1 do
+    bytes = bytes - #redis.call('LPOP', KEYS[1])
+    length = length - 1
+    trimmed = trimmed + 1
+  end
+end
+
+if trimmed > 0 then
+  redis.call('SET', KEYS[2], math.max(bytes, 0))
+end
+
+return {length, trimmed}
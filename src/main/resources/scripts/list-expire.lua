@@ -0,0 +1,38 @@
+-- Trim the messages published before a time from the head of a topic list
+-- KEYS[1] topic or partition list, KEYS[2] its size in bytes, ARGV[1] min publish timestamp,
+-- ARGV[2] max messages to trim
+-- Returns the number of trimmed messages
+-- Publish timestamp of a message: read from the binary envelope header, version byte 1 or 2
+-- followed by the flags byte and an int64 big-endian timestamp, or decoded from a legacy JSON
+-- message
+local function messageTs(encoded)
+  local version = string.byte(encoded, 1)
+
+  if version == 1 or version == 2 then
+    return (struct.unpack('>i8', encoded, 3))
+  end
+
+  return tonumber(cjson.decode(encoded)['ts'])
+end
+
+local minTs = tonumber(ARGV[1])
+local max = tonumber(ARGV[2])
+local trimmed = 0
+local bytes = 0
+
+while trimmed < max do
+  local encoded = redis.call('LINDEX', KEYS[1], 0)
+  if not encoded or messageTs(encoded) >= minTs then
+    break
+  end
+
+  redis.call('LPOP', KEYS[1])
+  bytes = bytes + #encoded
+  trimmed = trimmed + 1
+end
+
+if bytes > 0 and redis.call('DECRBY', KEYS[2], bytes) < 0 then
+  redis.call('SET', KEYS[2], 0)
+end
+
+return trimmed
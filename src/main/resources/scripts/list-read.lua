@@ -0,0 +1,23 @@
+-- Read the messages of a topic list from a sequence on. The appends give consecutive sequences and
+-- only pops and requeued leases touch the head, so the sequences are consecutive back from the
+-- tail: the index of a sequence is computed from the tail one instead of scanning the list.
+-- KEYS[1] topic or partition list, ARGV[1] first sequence, ARGV[2] max messages
+-- Returns the encoded messages from the index of the sequence, or from the head if it's older
+local tail = redis.call('LINDEX', KEYS[1], -1)
+
+-- nothing appended since the messages are sequenced
+if not tail or string.byte(tail, 1) ~= 2 then
+  return {}
+end
+
+local tailSeq = struct.unpack('>i8', tail, 11)
+local from = tonumber(ARGV[1])
+
+if from > tailSeq then
+  return {}
+end
+
+local length = redis.call('LLEN', KEYS[1])
+local start = math.max(length - 1 - (tailSeq - from), 0)
+
+return redis.call('LRANGE', KEYS[1], start, start + tonumber(ARGV[2]) - 1)
@@ -0,0 +1,65 @@
+-- Put the expired leases of a topic list back at its head, then take the head out for a subscriber
+-- and keep it in flight under a new lease
+-- KEYS[1] topic or partition list, KEYS[2] list size in bytes, KEYS[3] in-flight messages by
+-- lease id, KEYS[4] lease ids by deadline, ARGV[1] lease id, ARGV[2] lease deadline,
+-- ARGV[3] current time, ARGV[4] max expired leases to put back, ARGV[5] subscription timestamp,
+-- ARGV[6] first sequence of the list visible to the subscriber, empty if it has none
+-- Returns {status} or {status, leased message}: 1 leased, 2 nothing to receive
+-- Publish timestamp of a message: read from the binary envelope header, version byte 1 or 2
+-- followed by the flags byte and an int64 big-endian timestamp, or decoded from a legacy JSON
+-- message
+local function messageTs(encoded)
+  local version = string.byte(encoded, 1)
+
+  if version == 1 or version == 2 then
+    return (struct.unpack('>i8', encoded, 3))
+  end
+
+  return tonumber(cjson.decode(encoded)['ts'])
+end
+
+-- Whether a message was published after the subscription: by sequence if both the message and the
+-- subscriber have one for the list, by timestamp for the ones stored before the sequences
+local function isVisible(subscribedTs, offset, encoded)
+  if string.byte(encoded, 1) == 2 and offset then
+    return (struct.unpack('>i8', encoded, 11)) >= offset
+  end
+
+  return subscribedTs <= messageTs(encoded)
+end
+
+-- the oldest expired lease ends up at the head, ahead of the messages never delivered
+local expired = redis.call('ZRANGEBYSCORE', KEYS[4], '-inf', ARGV[3], 'LIMIT', 0, tonumber(ARGV[4]))
+local bytes = 0
+
+for i = #expired, 1, -1 do
+  local encoded = redis.call('HGET', KEYS[3], expired[i])
+
+  if encoded then
+    redis.call('LPUSH', KEYS[1], encoded)
+    bytes = bytes + #encoded
+  end
+end
+
+if #expired > 0 then
+  redis.call('HDEL', KEYS[3], unpack(expired))
+  redis.call('ZREM', KEYS[4], unpack(expired))
+end
+
+local result = {2}
+local encoded = redis.call('LINDEX', KEYS[1], 0)
+
+-- messages published before the subscription are not visible to the subscriber
+if encoded and isVisible(tonumber(ARGV[5]), tonumber(ARGV[6]), encoded) then
+  redis.call('LPOP', KEYS[1])
+  redis.call('HSET', KEYS[3], ARGV[1], encoded)
+  redis.call('ZADD', KEYS[4], ARGV[2], ARGV[1])
+  bytes = bytes - #encoded
+  result = {1, encoded}
+end
+
+if bytes ~= 0 and redis.call('INCRBY', KEYS[2], bytes) < 0 then
+  redis.call('SET', KEYS[2], 0)
+end
+
+return result
@@ -0,0 +1,48 @@
+-- Atomically ack the next messages of a subscriber consumer group
+-- KEYS[1] topic or partition stream, ARGV[1] subscriber id (group and consumer name),
+-- ARGV[2] max messages, ARGV[3] max bytes
+-- Returns {status} or {status, acked messages...}: 1 acked, 2 nothing to ack
+local group = ARGV[1]
+local max = tonumber(ARGV[2])
+local maxBytes = tonumber(ARGV[3])
+local entries = redis.call(
+  'XREADGROUP', 'GROUP', group, group, 'COUNT', max, 'STREAMS', KEYS[1], '0')[1][2]
+
+if #entries < max then
+  local fresh = redis.call(
+    'XREADGROUP', 'GROUP', group, group, 'COUNT', max - #entries, 'STREAMS', KEYS[1], '>')
+  if fresh then
+    for _, entry in ipairs(fresh[1][2]) do
+      entries[#entries + 1] = entry
+    end
+  end
+end
+
+local result = {1}
+local ids = {}
+local bytes = 0
+
+for _, entry in ipairs(entries) do
+  -- pending entries trimmed by the retention come back without fields, they are just acked
+  if entry[2] then
+    -- the first message is acked even if it's larger than max bytes
+    bytes = bytes + #entry[2][2]
+    if #result > 1 and bytes > maxBytes then
+      break
+    end
+
+    result[#result + 1] = entry[2][2]
+  end
+
+  ids[#ids + 1] = entry[1]
+end
+
+if #ids > 0 then
+  redis.call('XACK', KEYS[1], group, unpack(ids))
+end
+
+if #result == 1 then
+  return {2}
+end
+
+return result
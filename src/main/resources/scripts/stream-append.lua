@@ -0,0 +1,34 @@
+-- Append messages to a topic stream in order, then trim its oldest entries down to the retention
+-- limits
+-- KEYS[1] topic or partition stream, KEYS[2] its size in bytes, ARGV[1] max messages,
+-- ARGV[2] max bytes (0 for unlimited), ARGV[3..] encoded messages
+-- Returns {stream length, trimmed messages}
+local maxMessages = tonumber(ARGV[1])
+local maxBytes = tonumber(ARGV[2])
+local bytes = 0
+
+for i = 3, #ARGV do
+  redis.call('XADD', KEYS[1], '*', 'message', ARGV[i])
+  bytes = bytes + #ARGV[i]
+end
+
+bytes = redis.call('INCRBY', KEYS[2], bytes)
+
+local length = redis.call('XLEN', KEYS[1])
+local trimmed = 0
+
+-- deleted one by one to keep the byte size exact, the newest entry is always kept
+while length > 1
+    and ((maxMessages > 0 and length > maxMessages) or (maxBytes > 0 and bytes > maxBytes)) do
+  local oldest = redis.call('XRANGE', KEYS[1], '-', '+', 'COUNT', 1)[1]
+  redis.call('XDEL', KEYS[1], oldest[1])
+  bytes = bytes - #oldest[2][2]
+  length = length - 1
+  trimmed = trimmed + 1
+end
+
+if trimmed > 0 then
+  redis.call('SET', KEYS[2], math.max(bytes, 0))
+end
+
+return {length, trimmed}
@@ -0,0 +1,17 @@
+-- Delete the entries added before a time from a topic stream, entry ids start with the add time
+-- KEYS[1] topic or partition stream, KEYS[2] its size in bytes, ARGV[1] min publish timestamp,
+-- ARGV[2] max entries to delete
+-- Returns the number of deleted entries
+local entries = redis.call('XRANGE', KEYS[1], '-', tonumber(ARGV[1]) - 1, 'COUNT', ARGV[2])
+local bytes = 0
+
+for _, entry in ipairs(entries) do
+  redis.call('XDEL', KEYS[1], entry[1])
+  bytes = bytes + #entry[2][2]
+end
+
+if bytes > 0 and redis.call('DECRBY', KEYS[2], bytes) < 0 then
+  redis.call('SET', KEYS[2], 0)
+end
+
+return #entries
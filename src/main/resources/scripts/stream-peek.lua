@@ -0,0 +1,39 @@
+-- Get the next messages of a subscriber consumer group without acking them
+-- KEYS[1] topic stream, ARGV[1] subscriber id (group and consumer name), ARGV[2] max messages,
+-- ARGV[3] max bytes
+-- Returns the encoded messages
+local group = ARGV[1]
+local max = tonumber(ARGV[2])
+local maxBytes = tonumber(ARGV[3])
+
+-- messages delivered before and not acked yet are still the next ones
+local entries = redis.call(
+  'XREADGROUP', 'GROUP', group, group, 'COUNT', max, 'STREAMS', KEYS[1], '0')[1][2]
+
+if #entries < max then
+  local fresh = redis.call(
+    'XREADGROUP', 'GROUP', group, group, 'COUNT', max - #entries, 'STREAMS', KEYS[1], '>')
+  if fresh then
+    for _, entry in ipairs(fresh[1][2]) do
+      entries[#entries + 1] = entry
+    end
+  end
+end
+
+local result = {}
+local bytes = 0
+
+for _, entry in ipairs(entries) do
+  -- pending entries trimmed by the retention come back without fields
+  if entry[2] then
+    -- the first message is returned even if it's larger than max bytes
+    bytes = bytes + #entry[2][2]
+    if #result > 0 and bytes > maxBytes then
+      break
+    end
+
+    result[#result + 1] = entry[2][2]
+  end
+end
+
+return result
@@ -1,8 +1,17 @@
 package com.morozov.pubsub;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.morozov.pubsub.constants.ConfigConstants;
+import com.morozov.pubsub.redis.SharedRedisClient;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -20,4 +29,41 @@ public class TestMainVerticle {
   void verticle_deployed(Vertx vertx, VertxTestContext testContext) throws Throwable {
     testContext.completeNow();
   }
+
+  @Test
+  void verticle_instances_deployed(Vertx vertx, VertxTestContext testContext) throws Throwable {
+    final Set<SharedRedisClient> clients = ConcurrentHashMap.newKeySet();
+
+    vertx.deployVerticle(
+        () ->
+            new ServiceVerticle() {
+              @Override
+              public void start(Promise<Void> startPromise) throws Exception {
+                clients.add(SharedRedisClient.get(vertx, config()));
+                super.start(startPromise);
+              }
+            },
+        new DeploymentOptions().setInstances(2),
+        testContext.succeeding(
+            id ->
+                testContext.verify(
+                    () -> {
+                      // every instance shares the client of the Vert.x instance
+                      assertEquals(Set.of(SharedRedisClient.get(vertx, new JsonObject())), clients);
+                      testContext.completeNow();
+                    })));
+  }
+
+  @Test
+  void instances_default_to_cores(Vertx vertx, VertxTestContext testContext) {
+    testContext.verify(
+        () -> {
+          assertEquals(
+              Runtime.getRuntime().availableProcessors(),
+              ServiceVerticle.instances(new JsonObject()));
+          assertEquals(
+              3, ServiceVerticle.instances(new JsonObject().put(ConfigConstants.INSTANCES, 3)));
+          testContext.completeNow();
+        });
+  }
 }
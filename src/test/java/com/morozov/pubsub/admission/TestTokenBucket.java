@@ -0,0 +1,40 @@
+package com.morozov.pubsub.admission;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class TestTokenBucket {
+  private static final long SECOND = 1_000_000_000L;
+
+  @Test
+  void burst_taken_then_refused() {
+    final var bucket = new TokenBucket(10, 5, 0);
+
+    for (int i = 0; i < 5; i++) {
+      assertEquals(0, bucket.tryAcquire(1, 0));
+    }
+
+    assertEquals(SECOND / 10, bucket.tryAcquire(1, 0));
+  }
+
+  @Test
+  void tokens_refilled_at_rate_up_to_capacity() {
+    final var bucket = new TokenBucket(10, 5, 0);
+    bucket.tryAcquire(5, 0);
+
+    assertEquals(0, bucket.tryAcquire(2, SECOND / 5));
+    assertTrue(bucket.tryAcquire(1, SECOND / 5) > 0);
+    assertEquals(0, bucket.tryAcquire(5, 100 * SECOND));
+    assertTrue(bucket.tryAcquire(1, 100 * SECOND) > 0);
+  }
+
+  @Test
+  void request_over_capacity_taken_from_full_bucket_into_debt() {
+    final var bucket = new TokenBucket(10, 5, 0);
+
+    assertEquals(0, bucket.tryAcquire(20, 0));
+    assertEquals(SECOND * 8 / 5, bucket.tryAcquire(1, 0));
+  }
+}
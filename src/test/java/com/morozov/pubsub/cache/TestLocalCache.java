@@ -0,0 +1,44 @@
+package com.morozov.pubsub.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+public class TestLocalCache {
+
+  @Test
+  void least_recently_used_entry_evicted() {
+    final var cache = new LocalCache<String, String>(2, 0);
+    cache.put("a", "1");
+    cache.put("b", "2");
+    cache.get("a");
+    cache.put("c", "3");
+
+    assertEquals("1", cache.get("a"));
+    assertNull(cache.get("b"));
+    assertEquals("3", cache.get("c"));
+    assertEquals(1, cache.evictions());
+  }
+
+  @Test
+  void expired_entry_missed() throws InterruptedException {
+    final var cache = new LocalCache<String, String>(2, 1);
+    cache.put("a", "1");
+    Thread.sleep(5);
+
+    assertNull(cache.get("a"));
+    assertEquals(0, cache.hits());
+    assertEquals(1, cache.misses());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  void invalidated_entry_missed() {
+    final var cache = new LocalCache<String, String>(2, 0);
+    cache.put("a", "1");
+    cache.invalidate("a");
+
+    assertNull(cache.get("a"));
+  }
+}
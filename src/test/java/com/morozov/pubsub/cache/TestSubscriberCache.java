@@ -0,0 +1,35 @@
+package com.morozov.pubsub.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.morozov.pubsub.model.dto.SubscriberInfo;
+import org.junit.jupiter.api.Test;
+
+public class TestSubscriberCache {
+
+  @Test
+  void new_subscription_served_without_redis() {
+    final var subscriberCache = new SubscriberCache(new LocalCache<>(2, 0), 0);
+    final var subInfo = new SubscriberInfo("sub", "topic", System.currentTimeMillis());
+    subscriberCache.subscribed(subInfo);
+
+    // a hit never touches the Redis client
+    assertSame(subInfo, subscriberCache.lookup(null, "sub").result());
+    assertEquals(1, subscriberCache.hits());
+    assertEquals(0, subscriberCache.misses());
+  }
+
+  @Test
+  void expired_subscription_not_served() {
+    final var subscriberCache = new SubscriberCache(new LocalCache<>(2, 0), 1);
+    final var ts = System.currentTimeMillis() - 2000;
+    subscriberCache.subscribed(new SubscriberInfo("sub", "topic", ts));
+
+    final var lookup = subscriberCache.lookup(null, "sub");
+    assertTrue(lookup.succeeded());
+    assertNull(lookup.result());
+  }
+}
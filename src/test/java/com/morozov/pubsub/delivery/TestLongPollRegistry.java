@@ -0,0 +1,149 @@
+package com.morozov.pubsub.delivery;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.morozov.pubsub.model.dto.Message;
+import com.morozov.pubsub.model.dto.SubscriberInfo;
+import com.morozov.pubsub.store.StubTopicStore;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class TestLongPollRegistry {
+  private static final String TOPIC = "topic";
+  private static final SubscriberInfo SUB_INFO = new SubscriberInfo("sub", TOPIC, 0L);
+  private static final Message MESSAGE = new Message("hello", 1L);
+
+  @Test
+  void parked_get_woken_by_a_publish(Vertx vertx, VertxTestContext testContext) {
+    final var store = new StubTopicStore();
+
+    poll(
+            vertx,
+            store,
+            3_600_000,
+            (registry, poll) -> {
+              testContext.verify(() -> assertEquals(1, registry.parkedCount()));
+              store.messages.add(MESSAGE);
+              vertx.eventBus().publish(PublishNotifier.PUBLISHED_ADDRESS, TOPIC);
+
+              poll.onComplete(
+                  testContext.succeeding(
+                      message ->
+                          testContext.verify(
+                              () -> {
+                                assertSame(MESSAGE, message);
+                                assertEquals(0, registry.parkedCount());
+                                assertEquals(2, store.peeks);
+                                testContext.completeNow();
+                              })));
+            })
+        .onFailure(testContext::failNow);
+  }
+
+  @Test
+  void parked_get_expires_empty(Vertx vertx, VertxTestContext testContext) {
+    final var store = new StubTopicStore();
+
+    poll(
+            vertx,
+            store,
+            50,
+            (registry, poll) ->
+                poll.onComplete(
+                    testContext.succeeding(
+                        message ->
+                            testContext.verify(
+                                () -> {
+                                  assertNull(message);
+                                  assertEquals(0, registry.parkedCount());
+                                  assertEquals(1, store.peeks);
+                                  testContext.completeNow();
+                                }))))
+        .onFailure(testContext::failNow);
+  }
+
+  @Test
+  void parked_get_released_when_the_client_goes_away(Vertx vertx, VertxTestContext testContext) {
+    final var store = new StubTopicStore();
+    final var request = new AtomicReference<HttpClientRequest>();
+
+    poll(
+            vertx,
+            store,
+            3_600_000,
+            (registry, poll) -> {
+              poll.onComplete(
+                  testContext.succeeding(
+                      message ->
+                          testContext.verify(
+                              () -> {
+                                assertNull(message);
+                                assertEquals(0, registry.parkedCount());
+                                testContext.completeNow();
+                              })));
+
+              request.get().connection().close();
+            })
+        .onSuccess(request::set)
+        .onFailure(testContext::failNow);
+  }
+
+  /**
+   * Send a get served by a long poll of the registry
+   *
+   * @param vertx Vert.x instance
+   * @param store topic store of the registry
+   * @param waitMs max wait of the poll
+   * @param polled called on the event loop of the registry once the get is polled
+   * @return client request, set before the get is sent
+   */
+  private static Future<HttpClientRequest> poll(
+      Vertx vertx,
+      StubTopicStore store,
+      long waitMs,
+      BiConsumer<LongPollRegistry, Future<Message>> polled) {
+    final Promise<Integer> port = Promise.promise();
+    final var context = vertx.getOrCreateContext();
+
+    context.runOnContext(
+        val -> {
+          final var registry = new LongPollRegistry(vertx, store);
+
+          vertx
+              .createHttpServer()
+              .requestHandler(
+                  req -> polled.accept(registry, registry.poll(SUB_INFO, waitMs, req.response())))
+              .listen(0)
+              .map(HttpServer::actualPort)
+              .onComplete(port);
+        });
+
+    final Promise<HttpClientRequest> sent = Promise.promise();
+
+    port.future()
+        .compose(
+            actualPort ->
+                vertx.createHttpClient().request(HttpMethod.GET, actualPort, "localhost", "/"))
+        .onSuccess(
+            request -> {
+              sent.complete(request);
+              request.end();
+            })
+        .onFailure(sent::fail);
+
+    return sent.future();
+  }
+}
@@ -0,0 +1,43 @@
+package com.morozov.pubsub.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class TestHistogram {
+
+  @Test
+  void buckets_written_cumulative() {
+    final var histogram = new Histogram();
+    histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+    histogram.record(TimeUnit.SECONDS.toNanos(100));
+
+    final var out = new StringBuilder();
+    histogram.write(out, "latency", "route=\"/a\"");
+    final var text = out.toString();
+
+    assertTrue(text.contains("latency_bucket{route=\"/a\",le=\"5.0E-4\"} 1\n"));
+    assertTrue(text.contains("latency_bucket{route=\"/a\",le=\"0.001\"} 2\n"));
+    assertTrue(text.contains("latency_bucket{route=\"/a\",le=\"0.005\"} 3\n"));
+    assertTrue(text.contains("latency_bucket{route=\"/a\",le=\"60.0\"} 3\n"));
+    assertTrue(text.contains("latency_bucket{route=\"/a\",le=\"+Inf\"} 4\n"));
+    assertTrue(text.contains("latency_count{route=\"/a\"} 4\n"));
+    assertEquals(4, histogram.count());
+  }
+
+  @Test
+  void series_without_labels() {
+    final var histogram = new Histogram();
+    histogram.record(1);
+
+    final var out = new StringBuilder();
+    histogram.write(out, "latency", "");
+
+    assertTrue(out.toString().contains("latency_bucket{le=\"+Inf\"} 1\n"));
+    assertTrue(out.toString().contains("latency_count 1\n"));
+  }
+}
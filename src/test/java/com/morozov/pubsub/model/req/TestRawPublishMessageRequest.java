@@ -0,0 +1,41 @@
+package com.morozov.pubsub.model.req;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.morozov.pubsub.store.MessageCodec;
+import io.vertx.core.buffer.Buffer;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+public class TestRawPublishMessageRequest {
+
+  @Test
+  void message_value_sliced_as_is() throws IOException {
+    final var request =
+        RawPublishMessageRequest.parse(
+            Buffer.buffer("{ \"message\" : \"a \\\"quoted\\\" \\u00e9\" ,\n \"pubId\": \"p-1\" }"));
+
+    assertEquals("p-1", request.getPubId());
+    assertEquals("\"a \\\"quoted\\\" \\u00e9\"", request.getMessageJson().toString());
+  }
+
+  @Test
+  void encoded_message_decoded_back() throws IOException {
+    final var request =
+        RawPublishMessageRequest.parse(
+            Buffer.buffer("{\"pubId\":\"p-1\",\"extra\":{\"a\":[1]},\"message\":\"héllo\\n\"}"));
+    final var message =
+        MessageCodec.decode(MessageCodec.encode(request.getMessageJson(), 42));
+
+    assertEquals("héllo\n", message.getMessage());
+    assertEquals(42, message.getTs());
+  }
+
+  @Test
+  void structured_message_rejected() {
+    assertThrows(
+        IOException.class,
+        () -> RawPublishMessageRequest.parse(Buffer.buffer("{\"pubId\":\"p-1\",\"message\":{}}")));
+  }
+}
@@ -0,0 +1,64 @@
+package com.morozov.pubsub.store;
+
+import com.morozov.pubsub.model.dto.Message;
+import com.morozov.pubsub.model.dto.SubscriberInfo;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Topic store of the tests: records the appends and answers them with a settable result, peeks the
+ * messages put by the test
+ */
+public class StubTopicStore implements TopicStore {
+  /** Appends in call order, the storage key and the messages */
+  public final List<String> appendKeys = new ArrayList<>();
+
+  public final List<List<Buffer>> appends = new ArrayList<>();
+  /** Messages every peek returns */
+  public final List<Message> messages = new ArrayList<>();
+
+  public Function<List<Buffer>, Future<Long>> appendResult =
+      messages -> Future.succeededFuture((long) messages.size());
+  public int peeks;
+
+  @Override
+  public Future<Long> append(String topic, List<Buffer> messages) {
+    appendKeys.add(topic);
+    appends.add(List.copyOf(messages));
+    return appendResult.apply(messages);
+  }
+
+  @Override
+  public Future<Long> expire(String topic, long expiredBefore, int max) {
+    return Future.succeededFuture(0L);
+  }
+
+  @Override
+  public Future<Long> length(String topic) {
+    return Future.succeededFuture((long) messages.size());
+  }
+
+  @Override
+  public Future<Void> subscribe(SubscriberInfo subInfo) {
+    return Future.succeededFuture();
+  }
+
+  @Override
+  public Future<Void> unsubscribe(SubscriberInfo subInfo) {
+    return Future.succeededFuture();
+  }
+
+  @Override
+  public Future<List<Message>> peek(SubscriberInfo subInfo, int max, long maxBytes) {
+    peeks++;
+    return Future.succeededFuture(List.copyOf(messages.subList(0, Math.min(max, messages.size()))));
+  }
+
+  @Override
+  public Future<AckResult> ack(SubscriberInfo subInfo, int max, long maxBytes) {
+    return Future.succeededFuture(new AckResult(AckResult.NOTHING_TO_ACK, List.of()));
+  }
+}
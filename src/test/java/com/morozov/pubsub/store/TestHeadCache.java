@@ -0,0 +1,126 @@
+package com.morozov.pubsub.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import com.morozov.pubsub.constants.ConfigConstants;
+import com.morozov.pubsub.delivery.PublishNotifier;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class TestHeadCache {
+  private static final String KEY = "topic";
+  private static final List<Buffer> RANGE = List.of(Buffer.buffer("a"), Buffer.buffer("b"));
+
+  @Test
+  void concurrent_misses_coalesced_into_one_load(Vertx vertx) {
+    final var headCache = headCache(vertx);
+    final var loader = new Loader();
+
+    final var first = headCache.head(KEY, 2, loader);
+    final var second = headCache.head(KEY, 1, loader);
+    assertEquals(1, loader.loads.size());
+
+    loader.loads.get(0).complete(RANGE);
+    assertEquals(RANGE, first.result());
+    assertEquals(RANGE.subList(0, 1), second.result());
+
+    assertEquals(RANGE, headCache.head(KEY, 2, loader).result());
+    assertEquals(1, loader.loads.size());
+    assertEquals(1L, headCache.counters().get("headCache.coalesced"));
+  }
+
+  @Test
+  void load_invalidated_in_flight_not_cached(Vertx vertx) {
+    final var headCache = headCache(vertx);
+    final var loader = new Loader();
+
+    final var stale = headCache.head(KEY, 2, loader);
+    headCache.headChanged(KEY);
+    loader.loads.get(0).complete(RANGE);
+    // the caller still gets what it asked for, only the cache skips it
+    assertEquals(RANGE, stale.result());
+
+    final var fresh = headCache.head(KEY, 2, loader);
+    assertEquals(2, loader.loads.size());
+    assertFalse(fresh.isComplete());
+  }
+
+  @Test
+  void append_only_invalidates_a_head_reaching_the_tail(Vertx vertx) {
+    final var headCache = headCache(vertx);
+    final var loader = new Loader();
+
+    headCache.head(KEY, 2, loader);
+    loader.loads.get(0).complete(RANGE);
+    headCache.tailChanged(KEY);
+    headCache.head(KEY, 2, loader);
+    assertEquals(1, loader.loads.size());
+
+    headCache.head("short", 5, loader);
+    loader.loads.get(1).complete(RANGE);
+    headCache.tailChanged("short");
+    headCache.head("short", 5, loader);
+    assertEquals(3, loader.loads.size());
+  }
+
+  @Test
+  void remote_append_dropping_a_head_wakes_the_topic(Vertx vertx, VertxTestContext testContext) {
+    final var headCache = headCache(vertx);
+    final var loader = new Loader();
+    final var key = PartitionedTopicStore.partitionKey("partitioned", 1);
+
+    headCache.head(key, 2, loader);
+    loader.loads.get(0).complete(List.of());
+    headCache.head(KEY, 2, loader);
+    loader.loads.get(1).complete(RANGE);
+
+    vertx
+        .eventBus()
+        .<String>localConsumer(
+            PublishNotifier.PUBLISHED_ADDRESS,
+            msg ->
+                testContext.verify(
+                    () -> {
+                      assertEquals("partitioned", msg.body());
+                      testContext.completeNow();
+                    }));
+
+    // the longer head is kept, so the gets parked on it needn't peek again
+    headCache.onRemoteChange("node|t" + KEY);
+    headCache.onRemoteChange("node|t" + key);
+    headCache.head(key, 2, loader);
+    assertEquals(3, loader.loads.size());
+  }
+
+  private static HeadCache headCache(Vertx vertx) {
+    // the notifications of the changes are never sent within a test
+    final var config =
+        new JsonObject().put(ConfigConstants.HEAD_CACHE_NOTIFY_DEBOUNCE_MS, 3_600_000L);
+
+    return new HeadCache(vertx, config, null);
+  }
+
+  /** Loads completed by the test */
+  private static class Loader implements IntFunction<Future<List<Buffer>>> {
+    private final List<Promise<List<Buffer>>> loads = new ArrayList<>();
+
+    @Override
+    public Future<List<Buffer>> apply(int count) {
+      final Promise<List<Buffer>> load = Promise.promise();
+      loads.add(load);
+      return load.future();
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package com.morozov.pubsub.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.morozov.pubsub.model.dto.Message;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import org.junit.jupiter.api.Test;
+
+public class TestMessageCodec {
+
+  @Test
+  void binary_message_decoded() throws IOException {
+    final var encoded = MessageCodec.encode(new Message("héllo", 1620000000000L));
+
+    assertEquals(MessageCodec.VERSION, encoded.getByte(0));
+    assertEquals(1620000000000L, MessageCodec.ts(encoded));
+    assertEquals("héllo", MessageCodec.decode(encoded).getMessage());
+  }
+
+  @Test
+  void json_payload_decoded() throws IOException {
+    final var encoded = MessageCodec.encode(Buffer.buffer("\"a\\nb\""), 7);
+
+    assertEquals("a\nb", MessageCodec.decode(encoded).getMessage());
+    assertNull(MessageCodec.decode(MessageCodec.encode(new Message(null, 7L))).getMessage());
+  }
+
+  @Test
+  void legacy_json_message_decoded() throws IOException {
+    final var encoded = Buffer.buffer("{\"message\":\"old\",\"ts\":1620000000000}");
+
+    assertEquals(1620000000000L, MessageCodec.ts(encoded));
+    assertEquals("old", MessageCodec.decode(encoded).getMessage());
+  }
+
+  @Test
+  void sequenced_message_decoded() throws IOException {
+    final var encoded = MessageCodec.encode(new Message("héllo", 1620000000000L));
+    final var sequenced = MessageCodec.sequenced(encoded, 42);
+
+    assertEquals(MessageCodec.SEQUENCED_VERSION, sequenced.getByte(0));
+    assertEquals(encoded.length() + 8, sequenced.length());
+    assertEquals(1620000000000L, MessageCodec.ts(sequenced));
+    assertEquals(42L, MessageCodec.sequence(sequenced));
+    assertEquals(MessageCodec.NO_SEQUENCE, MessageCodec.sequence(encoded));
+
+    final var message = MessageCodec.decode(sequenced);
+    assertEquals("héllo", message.getMessage());
+    assertEquals(42L, message.getSeq());
+    assertNull(MessageCodec.decode(encoded).getSeq());
+  }
+
+  @Test
+  void compressed_message_sequenced() throws IOException {
+    final var compressor = new MessageCompressor(new JsonObject().put("compression.minBytes", 64));
+    final var payload = "abc".repeat(1000);
+    final var sequenced = MessageCodec.sequenced(compressor.encode(new Message(payload, 7L)), 3);
+    final var message = MessageCodec.decode(sequenced);
+
+    assertTrue(message instanceof CompressedMessage);
+    assertEquals(3L, message.getSeq());
+    assertEquals(payload, message.getMessage());
+  }
+
+  @Test
+  void truncated_message_rejected() {
+    final var encoded = MessageCodec.encode(new Message("hello", 7L));
+
+    assertThrows(IOException.class, () -> MessageCodec.decode(encoded.slice(0, 16)));
+  }
+
+  @Test
+  void compressed_message_decoded() throws IOException {
+    final var compressor = new MessageCompressor(new JsonObject().put("compression.minBytes", 64));
+    final var payload = "abc".repeat(1000);
+    final var encoded = compressor.encode(new Message(payload, 7L));
+    final var message = MessageCodec.decode(encoded);
+
+    assertTrue(message instanceof CompressedMessage);
+    assertTrue(encoded.length() < payload.length());
+    assertEquals(7L, MessageCodec.ts(encoded));
+    assertEquals(payload, message.getMessage());
+  }
+
+  @Test
+  void deflate_response_built_without_inflating() throws IOException, DataFormatException {
+    final var compressor = new MessageCompressor(new JsonObject().put("compression.minBytes", 64));
+    final var messageJson = Buffer.buffer("\"" + "x\\ny".repeat(500) + "\"");
+    final var message = (CompressedMessage) MessageCodec.decode(compressor.encode(messageJson, 7));
+
+    final var body = message.toDeflateResponse().getBytes();
+    final var inflater = new Inflater();
+    inflater.setInput(body);
+    final var output = new byte[messageJson.length() + 64];
+    final var length = inflater.inflate(output);
+
+    // a zlib inflater only finishes if the checksum matches
+    assertTrue(inflater.finished());
+    assertEquals(
+        "{\"message\":" + messageJson + "}",
+        new String(output, 0, length, StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,141 @@
+package com.morozov.pubsub.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.morozov.pubsub.model.dto.Message;
+import com.morozov.pubsub.model.dto.SubscriberInfo;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+public class TestPartitionedTopicStore {
+  private static final String TOPIC = "topic";
+
+  @Test
+  void publishes_without_key_routed_round_robin() {
+    final var store = new PartitionedTopicStore(new StubTopicStore(), topic -> partitions(3));
+    final var keys = new ArrayList<String>();
+
+    for (int i = 0; i < 6; i++) {
+      keys.add(store.route(TOPIC, null).result());
+    }
+
+    assertEquals(
+        List.of("{topic#0}", "{topic#1}", "{topic#2}", "{topic#0}", "{topic#1}", "{topic#2}"),
+        keys);
+  }
+
+  @Test
+  void publishes_with_key_routed_to_the_key_partition() {
+    final var store = new PartitionedTopicStore(new StubTopicStore(), topic -> partitions(8));
+    final var partition = Math.floorMod("order-42".hashCode(), 8);
+
+    for (int i = 0; i < 3; i++) {
+      assertEquals(
+          PartitionedTopicStore.partitionKey(TOPIC, partition),
+          store.route(TOPIC, "order-42").result());
+    }
+
+    // a single partition topic is stored under its own key
+    final var single = new PartitionedTopicStore(new StubTopicStore(), topic -> partitions(1));
+    assertEquals(TOPIC, single.route(TOPIC, "order-42").result());
+  }
+
+  @Test
+  void partitions_consumed_from_the_home_one() {
+    final var home = Math.floorMod("sub".hashCode(), 4);
+    final var keys = PartitionedTopicStore.partitionKeys(TOPIC, "sub", 4);
+
+    assertEquals(4, keys.size());
+
+    for (int i = 0; i < 4; i++) {
+      assertEquals(PartitionedTopicStore.partitionKey(TOPIC, (home + i) % 4), keys.get(i));
+    }
+  }
+
+  @Test
+  void max_bytes_shared_by_the_partitions() {
+    final var partitionStore = new PartitionStore();
+    final var keys = PartitionedTopicStore.partitionKeys(TOPIC, "sub", 3);
+    partitionStore.add(keys.get(0), 40, 40);
+    partitionStore.add(keys.get(1), 30, 100);
+    partitionStore.add(keys.get(2), 10);
+    final var store = new PartitionedTopicStore(partitionStore, topic -> partitions(3));
+    final var subInfo = new SubscriberInfo("sub", TOPIC, 0L);
+
+    // the home partition takes 80 bytes, the next one its first message over the 20 left, then
+    // the budget is spent
+    final var peeked = store.peek(subInfo, 10, 100).result();
+    assertEquals(List.of(40, 40, 30), lengths(peeked));
+
+    final var acked = store.ack(subInfo, 10, 100).result();
+    assertEquals(AckResult.ACKED, acked.getStatus());
+    assertEquals(lengths(peeked), lengths(acked.getMessages()));
+    assertEquals(List.of(100), lengths(partitionStore.lists.get(keys.get(1))));
+    assertEquals(List.of(10), lengths(partitionStore.lists.get(keys.get(2))));
+  }
+
+  private static Future<Integer> partitions(int count) {
+    return Future.succeededFuture(count);
+  }
+
+  private static List<Integer> lengths(List<Message> messages) {
+    return messages.stream().map(Message::getEncodedLength).collect(Collectors.toList());
+  }
+
+  /** Partition lists of messages of a given encoded size, limited like the list scripts */
+  private static class PartitionStore extends StubTopicStore {
+    private final Map<String, List<Message>> lists = new HashMap<>();
+
+    private void add(String key, int... encodedLengths) {
+      final var list = lists.computeIfAbsent(key, k -> new ArrayList<>());
+
+      for (var encodedLength : encodedLengths) {
+        list.add(new Message("m", 1L, null, encodedLength));
+      }
+    }
+
+    @Override
+    public Future<Long> append(String topic, List<Buffer> messages) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Future<List<Message>> peek(SubscriberInfo subInfo, int max, long maxBytes) {
+      return Future.succeededFuture(head(subInfo.getTopic(), max, maxBytes));
+    }
+
+    @Override
+    public Future<AckResult> ack(SubscriberInfo subInfo, int max, long maxBytes) {
+      final var head = head(subInfo.getTopic(), max, maxBytes);
+      lists.get(subInfo.getTopic()).subList(0, head.size()).clear();
+
+      return Future.succeededFuture(
+          new AckResult(head.isEmpty() ? AckResult.NOTHING_TO_ACK : AckResult.ACKED, head));
+    }
+
+    /** The first message is taken even if it's larger than max bytes */
+    private List<Message> head(String key, int max, long maxBytes) {
+      final var list = lists.getOrDefault(key, List.of());
+      final var head = new ArrayList<Message>();
+      long bytes = 0;
+
+      for (var message : list) {
+        bytes += message.getEncodedLength();
+
+        if (head.size() >= max || (!head.isEmpty() && bytes > maxBytes)) {
+          break;
+        }
+
+        head.add(message);
+      }
+
+      return head;
+    }
+  }
+}
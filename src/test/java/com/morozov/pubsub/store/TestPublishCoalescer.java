@@ -0,0 +1,121 @@
+package com.morozov.pubsub.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.morozov.pubsub.constants.ConfigConstants;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.io.IOException;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class TestPublishCoalescer {
+  private static final String TOPIC = "topic";
+  private static final Buffer FIRST = Buffer.buffer("a");
+  private static final Buffer SECOND = Buffer.buffer("b");
+  private static final Buffer THIRD = Buffer.buffer("c");
+
+  @Test
+  void batch_flushed_when_the_window_ends(Vertx vertx, VertxTestContext testContext) {
+    final var store = new StubTopicStore();
+    final var context = vertx.getOrCreateContext();
+    final var coalescer = new PublishCoalescer(context, store, config(50, 10));
+
+    context.runOnContext(
+        val -> {
+          final var first = coalescer.push(TOPIC, FIRST);
+          final var second = coalescer.push(TOPIC, SECOND);
+          testContext.verify(() -> assertTrue(store.appends.isEmpty()));
+
+          CompositeFuture.all(first, second)
+              .onComplete(
+                  testContext.succeeding(
+                      all ->
+                          testContext.verify(
+                              () -> {
+                                assertEquals(List.of(List.of(FIRST, SECOND)), store.appends);
+                                // every caller gets the topic length after the single append
+                                assertEquals(2L, first.result());
+                                assertEquals(2L, second.result());
+                                testContext.completeNow();
+                              })));
+        });
+  }
+
+  @Test
+  void full_batch_flushed_before_the_window_ends(Vertx vertx, VertxTestContext testContext) {
+    final var store = new StubTopicStore();
+    final var context = vertx.getOrCreateContext();
+    final var coalescer = new PublishCoalescer(context, store, config(3_600_000, 2));
+
+    context.runOnContext(
+        val ->
+            testContext.verify(
+                () -> {
+                  // timer ids are sequential: the window timer of the batch is the next one
+                  final var probeId = vertx.setTimer(3_600_000, id -> {});
+                  vertx.cancelTimer(probeId);
+
+                  final var first = coalescer.push(TOPIC, FIRST);
+                  final var second = coalescer.push(TOPIC, SECOND);
+                  assertEquals(List.of(List.of(FIRST, SECOND)), store.appends);
+                  assertTrue(first.succeeded() && second.succeeded());
+                  assertFalse(vertx.cancelTimer(probeId + 1), "window timer left running");
+
+                  // the next message starts a new batch
+                  coalescer.push(TOPIC, THIRD);
+                  assertEquals(1, store.appends.size());
+                  testContext.completeNow();
+                }));
+  }
+
+  @Test
+  void append_failure_fails_every_caller(Vertx vertx, VertxTestContext testContext) {
+    final var store = new StubTopicStore();
+    final var cause = new IOException("Connection reset by peer");
+    store.appendResult = messages -> Future.failedFuture(cause);
+    final var context = vertx.getOrCreateContext();
+    final var coalescer = new PublishCoalescer(context, store, config(0, 10));
+
+    context.runOnContext(
+        val -> {
+          final List<Future> pushes =
+              List.of(
+                  coalescer.push(TOPIC, FIRST),
+                  coalescer.push(TOPIC, SECOND),
+                  coalescer.push(TOPIC, THIRD));
+
+          CompositeFuture.join(pushes)
+              .onComplete(
+                  testContext.failing(
+                      throwable ->
+                          testContext.verify(
+                              () -> {
+                                assertEquals(1, store.appends.size());
+
+                                for (var push : pushes) {
+                                  assertSame(cause, push.cause());
+                                }
+
+                                testContext.completeNow();
+                              })));
+        });
+  }
+
+  private static JsonObject config(long windowMs, int maxMessages) {
+    return new JsonObject()
+        .put(ConfigConstants.PUBLISH_COALESCE_ENABLED, true)
+        .put(ConfigConstants.PUBLISH_COALESCE_WINDOW_MS, windowMs)
+        .put(ConfigConstants.PUBLISH_COALESCE_MAX_MESSAGES, maxMessages);
+  }
+}
@@ -0,0 +1,43 @@
+package com.morozov.pubsub.store;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.vertx.redis.client.impl.types.ErrorType;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+public class TestSpillLog {
+  @Test
+  void deterministic_rejections_refused() {
+    assertTrue(
+        SpillLog.isRefused(
+            ErrorType.create("WRONGTYPE Operation against a key holding the wrong kind of value")));
+    assertTrue(
+        SpillLog.isRefused(
+            ErrorType.create(
+                "ERR Error running script (call to f_0a1b): @user_script:17: bad argument")));
+  }
+
+  @Test
+  void transient_error_replies_not_refused() {
+    for (var error :
+        new String[] {
+          "OOM command not allowed when used memory > 'maxmemory'.",
+          "LOADING Redis is loading the dataset in memory",
+          "READONLY You can't write against a read only replica.",
+          "BUSY Redis is busy running a script.",
+          "MASTERDOWN Link with MASTER is down and replica-serve-stale-data is set to 'no'.",
+          "CLUSTERDOWN The cluster is down",
+          "TRYAGAIN Multiple keys request during rehashing of slot",
+          "ERR max number of clients reached"
+        }) {
+      assertFalse(SpillLog.isRefused(ErrorType.create(error)), error);
+    }
+  }
+
+  @Test
+  void connection_failures_not_refused() {
+    assertFalse(SpillLog.isRefused(new IOException("Connection reset by peer")));
+  }
+}
@@ -0,0 +1,73 @@
+package com.morozov.pubsub.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import io.vertx.core.buffer.Buffer;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestSpillSegment {
+  private static final byte[] TOPIC = "topic".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] OTHER_TOPIC = "other".getBytes(StandardCharsets.UTF_8);
+
+  @TempDir Path dir;
+
+  @Test
+  void records_read_grouped_by_topic_in_order() throws IOException {
+    final var segment = SpillSegment.create(dir.resolve("spill.log"), 1024);
+    segment.append(TOPIC, Buffer.buffer("a"));
+    segment.append(OTHER_TOPIC, Buffer.buffer("b"));
+    segment.append(TOPIC, Buffer.buffer("c"));
+
+    final var batch = new LinkedHashMap<String, List<Buffer>>();
+    segment.read(10, batch);
+
+    assertEquals(Map.of("topic", List.of("a", "c"), "other", List.of("b")), strings(batch));
+  }
+
+  @Test
+  void committed_records_not_read_after_reopen() throws IOException {
+    final var path = dir.resolve("spill.log");
+    final var segment = SpillSegment.create(path, 1024);
+    segment.append(TOPIC, Buffer.buffer("a"));
+    segment.append(TOPIC, Buffer.buffer("b"));
+    segment.append(TOPIC, Buffer.buffer("c"));
+    segment.commit(segment.read(2, new LinkedHashMap<>()));
+    segment.force();
+
+    final var reopened = SpillSegment.open(path);
+    final var batch = new LinkedHashMap<String, List<Buffer>>();
+    reopened.read(10, batch);
+
+    assertEquals(Map.of("topic", List.of("c")), strings(batch));
+    assertEquals(SpillSegment.recordSize(TOPIC, Buffer.buffer("c")), reopened.pendingBytes());
+  }
+
+  @Test
+  void record_over_the_end_doesnt_fit() throws IOException {
+    final var message = Buffer.buffer("message");
+    final var recordSize = SpillSegment.recordSize(TOPIC, message);
+    final var segment =
+        SpillSegment.create(dir.resolve("spill.log"), SpillSegment.HEADER_SIZE + recordSize);
+    segment.append(TOPIC, message);
+
+    assertFalse(segment.fits(recordSize));
+  }
+
+  private static Map<String, List<String>> strings(Map<String, List<Buffer>> batch) {
+    return batch.entrySet().stream()
+        .collect(
+            Collectors.toMap(
+                Map.Entry::getKey,
+                entry ->
+                    entry.getValue().stream().map(Buffer::toString).collect(Collectors.toList())));
+  }
+}
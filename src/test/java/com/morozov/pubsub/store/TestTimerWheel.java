@@ -0,0 +1,82 @@
+package com.morozov.pubsub.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class TestTimerWheel {
+  @Test
+  void items_fired_at_their_deadline_not_before() {
+    final var wheel = new TimerWheel<String>(8, 10, 1000);
+    final var fired = new ArrayList<String>();
+    wheel.schedule(1005, "a");
+    wheel.schedule(1010, "b");
+
+    wheel.advance(1009, fired::add);
+    assertEquals(List.of(), fired);
+
+    wheel.advance(1010, fired::add);
+    assertEquals(2, fired.size());
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  void past_deadline_fired_at_next_advance() {
+    final var wheel = new TimerWheel<String>(8, 10, 1000);
+    final var fired = new ArrayList<String>();
+    wheel.schedule(500, "a");
+
+    wheel.advance(1000, fired::add);
+    assertEquals(List.of("a"), fired);
+  }
+
+  @Test
+  void deadline_beyond_a_turn_kept_for_the_extra_turns() {
+    final var wheel = new TimerWheel<String>(8, 10, 1000);
+    final var fired = new ArrayList<String>();
+    wheel.schedule(1250, "a");
+
+    for (long now = 1000; now < 1250; now += 10) {
+      wheel.advance(now, fired::add);
+    }
+
+    assertEquals(List.of(), fired);
+    assertEquals(1, wheel.size());
+
+    wheel.advance(1250, fired::add);
+    assertEquals(List.of("a"), fired);
+  }
+
+  @Test
+  void stall_longer_than_a_turn_fires_everything_due() {
+    final var wheel = new TimerWheel<String>(8, 10, 1000);
+    final var fired = new ArrayList<String>();
+    wheel.schedule(1030, "a");
+    wheel.schedule(1200, "b");
+    wheel.schedule(5000, "c");
+
+    wheel.advance(2000, fired::add);
+    assertEquals(2, fired.size());
+    assertEquals(1, wheel.size());
+  }
+
+  @Test
+  void item_scheduled_by_the_handler_fired_at_next_advance() {
+    final var wheel = new TimerWheel<String>(8, 10, 1000);
+    final var fired = new ArrayList<String>();
+    wheel.schedule(1000, "a");
+
+    wheel.advance(
+        1000,
+        item -> {
+          fired.add(item);
+          wheel.schedule(0, "b");
+        });
+    assertEquals(List.of("a"), fired);
+
+    wheel.advance(1010, fired::add);
+    assertEquals(List.of("a", "b"), fired);
+  }
+}
@@ -0,0 +1,140 @@
+package com.morozov.pubsub.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.vertx.core.buffer.Buffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+public class TestTopicRing {
+
+  @Test
+  void messages_before_subscription_not_visible() {
+    final var ring = new TopicRing(16, 1024);
+    ring.append(messages("a"));
+    ring.subscribe("sub");
+    ring.append(messages("b"));
+
+    assertEquals(List.of("b"), strings(ring.peek("sub", 10, Long.MAX_VALUE)));
+  }
+
+  @Test
+  void every_subscriber_gets_every_message() {
+    final var ring = new TopicRing(16, 1024);
+    ring.subscribe("sub1");
+    ring.subscribe("sub2");
+    ring.append(messages("a", "b", "c"));
+
+    assertEquals(List.of("a", "b"), strings(ring.ack("sub1", 2, Long.MAX_VALUE)));
+    assertEquals(List.of("c"), strings(ring.peek("sub1", 10, Long.MAX_VALUE)));
+    assertEquals(List.of("a", "b", "c"), strings(ring.peek("sub2", 10, Long.MAX_VALUE)));
+  }
+
+  @Test
+  void messages_released_after_every_subscriber_acked() {
+    final var ring = new TopicRing(16, 1024);
+    ring.subscribe("sub1");
+    ring.subscribe("sub2");
+    ring.append(messages("a", "b"));
+    ring.ack("sub1", 2, Long.MAX_VALUE);
+
+    assertEquals(2, ring.size());
+
+    ring.ack("sub2", 1, Long.MAX_VALUE);
+
+    assertEquals(1, ring.size());
+    assertEquals(1, ring.bytes());
+  }
+
+  @Test
+  void first_message_taken_over_max_bytes() {
+    final var ring = new TopicRing(16, 1024);
+    ring.subscribe("sub");
+    ring.append(messages("aaa", "bbb"));
+
+    assertEquals(List.of("aaa"), strings(ring.peek("sub", 10, 1)));
+    assertEquals(List.of("aaa", "bbb"), strings(ring.peek("sub", 10, 6)));
+  }
+
+  @Test
+  void oldest_message_dropped_when_full() {
+    final var ring = new TopicRing(2, 1024);
+    ring.subscribe("sub");
+    ring.append(messages("a", "b", "c"));
+
+    assertEquals(List.of("b", "c"), strings(ring.peek("sub", 10, Long.MAX_VALUE)));
+    assertEquals(1, ring.dropped());
+  }
+
+  @Test
+  void messages_wrap_around_and_grow() {
+    final var ring = new TopicRing(100000, 1 << 20);
+    ring.subscribe("sub");
+    final var expected = new ArrayList<String>();
+
+    for (int i = 0; i < 10000; i++) {
+      final var message = "message-" + i;
+      ring.append(messages(message));
+      expected.add(message);
+
+      if (i % 3 == 0) {
+        assertEquals(List.of(expected.remove(0)), strings(ring.ack("sub", 1, Long.MAX_VALUE)));
+      }
+    }
+
+    assertEquals(expected, strings(ring.peek("sub", 100000, Long.MAX_VALUE)));
+    assertTrue(ring.bytes() <= 1 << 20);
+  }
+
+  @Test
+  void message_larger_than_ring_rejected() {
+    final var ring = new TopicRing(16, 2);
+    ring.subscribe("sub");
+
+    assertThrows(IllegalArgumentException.class, () -> ring.append(messages("abc")));
+  }
+
+  @Test
+  void expired_messages_dropped_even_if_unread() {
+    final var ring = new TopicRing(16, 1024);
+    ring.subscribe("sub");
+    ring.append(List.of(message("a", 1000), message("b", 2000), message("c", 3000)));
+
+    assertEquals(0, ring.expire(1000, 10));
+    assertEquals(1, ring.expire(3000, 1));
+    assertEquals(1, ring.expire(3000, 10));
+    assertEquals(1, ring.peek("sub", 10, Long.MAX_VALUE).size());
+  }
+
+  @Test
+  void lower_limits_drop_oldest_messages() {
+    final var ring = new TopicRing(16, 1024);
+    ring.subscribe("sub");
+    ring.append(messages("a", "b", "c"));
+    ring.limit(2, 1024);
+
+    assertEquals(List.of("b", "c"), strings(ring.peek("sub", 10, Long.MAX_VALUE)));
+    assertEquals(1, ring.dropped());
+  }
+
+  private static Buffer message(String text, long ts) {
+    return Buffer.buffer()
+        .appendByte(MessageCodec.VERSION)
+        .appendByte(MessageCodec.FLAG_JSON_PAYLOAD)
+        .appendLong(ts)
+        .appendInt(text.length())
+        .appendString(text);
+  }
+
+  private static List<Buffer> messages(String... messages) {
+    return List.of(messages).stream().map(Buffer::buffer).collect(Collectors.toList());
+  }
+
+  private static List<String> strings(List<Buffer> buffers) {
+    return buffers.stream().map(Buffer::toString).collect(Collectors.toList());
+  }
+}